@@ -45,13 +45,18 @@ import static com.sun.faces.RIConstants.FACES_PREFIX;
 import static com.sun.faces.config.ConfigManager.getAnnotatedClasses;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.DisableFaceletJSFViewHandler;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.DisableFaceletJSFViewHandlerDeprecated;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableClientIdIndex;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableFaceletsResourceResolverResolveCompositeComponents;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableLazyBeanValidation;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.FaceletsCacheStatistics;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.FaceletsCompilationCacheWarmup;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.FaceletsSkipComments;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletCache;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsCompilationCacheDirectory;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsDecorators;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsDefaultRefreshPeriod;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsDefaultRefreshPeriodDeprecated;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsExpressionCacheMaxEntries;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsResourceResolver;
 import static com.sun.faces.el.ELUtils.buildFacesResolver;
 import static com.sun.faces.el.FacesCompositeELResolver.ELResolverChainType.Faces;
@@ -70,11 +75,13 @@ import static java.util.Collections.emptyMap;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
 import static javax.faces.FactoryFinder.FACELET_CACHE_FACTORY;
 import static javax.faces.FactoryFinder.FLOW_HANDLER_FACTORY;
 import static javax.faces.application.ProjectStage.Development;
 import static javax.faces.application.ProjectStage.Production;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -103,8 +110,10 @@ import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
 import javax.faces.el.PropertyResolver;
 import javax.faces.el.VariableResolver;
+import javax.faces.event.PostAddToViewEvent;
 import javax.faces.event.PostConstructApplicationEvent;
 import javax.faces.event.PreDestroyCustomScopeEvent;
+import javax.faces.event.PreRemoveFromViewEvent;
 import javax.faces.event.ScopeContext;
 import javax.faces.event.SystemEvent;
 import javax.faces.event.SystemEventListener;
@@ -122,7 +131,9 @@ import com.sun.faces.application.annotation.AnnotationManager;
 import com.sun.faces.application.annotation.FacesComponentUsage;
 import com.sun.faces.application.resource.ResourceCache;
 import com.sun.faces.application.resource.ResourceManager;
+import com.sun.faces.component.ClientIdIndex;
 import com.sun.faces.component.search.SearchExpressionHandlerImpl;
+import com.sun.faces.facelets.compiler.CompiledFaceletStore;
 import com.sun.faces.config.ConfigManager;
 import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.el.DemuxCompositeELResolver;
@@ -131,6 +142,7 @@ import com.sun.faces.el.VariableResolverChainWrapper;
 import com.sun.faces.facelets.PrivateApiFaceletCacheAdapter;
 import com.sun.faces.facelets.compiler.Compiler;
 import com.sun.faces.facelets.compiler.SAXCompiler;
+import com.sun.faces.facelets.el.ExpressionCache;
 import com.sun.faces.facelets.impl.DefaultFaceletFactory;
 import com.sun.faces.facelets.impl.DefaultResourceResolver;
 import com.sun.faces.facelets.tag.composite.CompositeLibrary;
@@ -271,6 +283,12 @@ public class ApplicationAssociate {
         // install the bean manager as a system event listener for custom
         // scopes being destoryed.
         app.subscribeToEvent(PreDestroyCustomScopeEvent.class, ScopeContext.class, beanManager);
+        if (webConfig.isOptionEnabled(EnableClientIdIndex)) {
+            // keep the client id index of the current view up to date
+            ClientIdIndex.Listener clientIdIndexListener = new ClientIdIndex.Listener();
+            app.subscribeToEvent(PostAddToViewEvent.class, clientIdIndexListener);
+            app.subscribeToEvent(PreRemoveFromViewEvent.class, clientIdIndexListener);
+        }
         annotationManager = new AnnotationManager();
 
         devModeEnabled = appImpl.getProjectStage() == Development;
@@ -337,6 +355,10 @@ public class ApplicationAssociate {
 
             String facesConfigVersion = getFacesConfigXmlVersion(context);
             context.getExternalContext().getApplicationMap().put(FACES_CONFIG_VERSION, facesConfigVersion);
+
+            if (faceletFactory != null && webConfig.isOptionEnabled(FaceletsCompilationCacheWarmup)) {
+                faceletFactory.warmup(context);
+            }
         }
 
     }
@@ -864,6 +886,25 @@ public class ApplicationAssociate {
         DefaultFaceletFactory toReturn = new DefaultFaceletFactory();
         toReturn.init(compiler, resolver, period, cache);
 
+        // expression cache
+        int maxExpressions;
+        try {
+            maxExpressions = Integer.parseInt(webConfig.getOptionValue(FaceletsExpressionCacheMaxEntries));
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(WARNING)) {
+                LOGGER.log(WARNING, "jsf.state.server.cannot.parse.int.option",
+                        new Object[] { FaceletsExpressionCacheMaxEntries.getQualifiedName(), FaceletsExpressionCacheMaxEntries.getDefaultValue() });
+            }
+            maxExpressions = Integer.parseInt(FaceletsExpressionCacheMaxEntries.getDefaultValue());
+        }
+        if (maxExpressions > 0) {
+            ExpressionCache expressionCache = new ExpressionCache(maxExpressions);
+            if (webConfig.isOptionEnabled(FaceletsCacheStatistics)) {
+                expressionCache.registerStatistics(ctx);
+            }
+            toReturn.setExpressionCache(expressionCache);
+        }
+
         return toReturn;
     }
 
@@ -876,6 +917,24 @@ public class ApplicationAssociate {
         // Skip params?
         newCompiler.setTrimmingComments(webConfig.isOptionEnabled(FaceletsSkipComments));
 
+        String compilationCacheDirectory = webConfig.getOptionValue(FaceletsCompilationCacheDirectory);
+        if (compilationCacheDirectory != null && compilationCacheDirectory.length() > 0) {
+            File directory = new File(compilationCacheDirectory);
+            if (!directory.isAbsolute()) {
+                File tempDir = (File) appMap.get("javax.servlet.context.tempdir");
+                if (tempDir != null) {
+                    directory = new File(tempDir, compilationCacheDirectory);
+                }
+            }
+            try {
+                newCompiler.setCompiledFaceletStore(new CompiledFaceletStore(directory));
+            } catch (FacesException fe) {
+                if (LOGGER.isLoggable(SEVERE)) {
+                    LOGGER.log(SEVERE, fe.getMessage(), fe);
+                }
+            }
+        }
+
         addTagLibraries(newCompiler);
 
         return newCompiler;
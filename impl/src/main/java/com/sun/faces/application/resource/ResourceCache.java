@@ -37,18 +37,21 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-
 package com.sun.faces.application.resource;
 
 import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
 import com.sun.faces.util.FacesLogger;
-import com.sun.faces.util.MultiKeyConcurrentHashMap;
 import com.sun.faces.util.Util;
 
 import javax.servlet.ServletContext;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,6 +71,17 @@ import java.util.logging.Logger;
  * then no caching will be perfomed.  Otherwise, the value of the option will
  * be the number of minutes between modification checks.
  * </p>
+ *
+ * <p>
+ * Lookups that found no resource are remembered as well, for the number of
+ * seconds given by <code>com.sun.faces.resourceCacheMissingResourceTTL</code>
+ * (<code>0</code> disables this), so that repeated requests for resources
+ * that don't exist do not repeat the classpath and web application search.
+ * The total number of entries is bounded by
+ * <code>com.sun.faces.resourceCacheMaxEntries</code>; when the bound is
+ * exceeded, expired entries and missing resource entries are evicted first,
+ * followed by the least recently used.
+ * </p>
  */
 public class ResourceCache {
 
@@ -77,13 +91,33 @@ public class ResourceCache {
     /**
      * The <code>ResourceInfo<code> cache.
      */
-    private MultiKeyConcurrentHashMap<Object,ResourceInfoCheckPeriodProxy> resourceCache;
+    private final Map<Key,Entry> resourceCache;
+
+
+    /**
+     * Resource check period in milliseconds.
+     */
+    private final long checkPeriod;
 
 
     /**
-     * Resource check period in minutes.
+     * How long, in milliseconds, a missing resource is remembered.
      */
-    private long checkPeriod;
+    private final long missingResourceTTL;
+
+
+    /**
+     * The maximum number of entries, missing resources included.
+     */
+    private final int maxEntries;
+
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder missingResourceHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
 
 
     // ------------------------------------------------------------ Constructors
@@ -97,7 +131,9 @@ public class ResourceCache {
     }
 
     private ResourceCache(WebConfiguration config) {
-        this(getCheckPeriod(config));
+        this(getLongOption(config, WebContextInitParameter.ResourceUpdateCheckPeriod),
+             getLongOption(config, WebContextInitParameter.ResourceCacheMaxEntries),
+             getLongOption(config, WebContextInitParameter.ResourceCacheMissingResourceTTL));
 
         if (LOGGER.isLoggable(Level.FINE)) {
             ServletContext sc = config.getServletContext();
@@ -109,8 +145,17 @@ public class ResourceCache {
 
     // this one is for unit tests
     ResourceCache(long period) {
+        this(period,
+             Long.parseLong(WebContextInitParameter.ResourceCacheMaxEntries.getDefaultValue()),
+             Long.parseLong(WebContextInitParameter.ResourceCacheMissingResourceTTL.getDefaultValue()));
+    }
+
+    // this one is for unit tests
+    ResourceCache(long period, long maxEntries, long missingResourceTTL) {
         checkPeriod = ((period != -1) ? period * 1000L * 60L : -1);
-        resourceCache = new MultiKeyConcurrentHashMap<>(30);
+        this.maxEntries = (maxEntries > 0 && maxEntries < Integer.MAX_VALUE) ? (int) maxEntries : Integer.MAX_VALUE;
+        this.missingResourceTTL = (missingResourceTTL > 0) ? missingResourceTTL * 1000L : 0;
+        resourceCache = new ConcurrentHashMap<>(30);
     }
 
     // ---------------------------------------------------------- Public Methods
@@ -134,13 +179,44 @@ public class ResourceCache {
                        "Caching ResourceInfo: {0}",
                        info.toString());
         }
-        ResourceInfoCheckPeriodProxy proxy =
-              resourceCache.putIfAbsent(info.name,
-                                        info.libraryName,
-                                        info.localePrefix,
-                                        new ArrayList(contracts),
-                                        new ResourceInfoCheckPeriodProxy(info, checkPeriod));
-        return ((proxy != null) ? proxy.getResourceInfo() : null);
+        Key key = new Key(info.name, info.libraryName, info.localePrefix, contracts, true);
+        Entry entry = new Entry(info, expiration(info));
+        Entry previous = resourceCache.putIfAbsent(key, entry);
+        if (previous != null && previous.info == null) {
+            // the resource was missing before, but has since appeared
+            if (resourceCache.replace(key, previous, entry)) {
+                previous = null;
+            } else {
+                previous = resourceCache.get(key);
+            }
+        }
+        if (previous == null) {
+            evictIfNecessary();
+        }
+        return ((previous != null) ? previous.info : null);
+
+    }
+
+
+    /**
+     * Remember that no resource could be found for the specified arguments.
+     *
+     * @param name the resource name
+     * @param libraryName the library name
+     * @param localePrefix the locale prefix
+     * @param contracts the contracts
+     */
+    public void addMissing(String name, String libraryName, String localePrefix, List<String> contracts) {
+
+        Util.notNull("name", name);
+
+        if (missingResourceTTL == 0) {
+            return;
+        }
+        Key key = new Key(name, libraryName, localePrefix, contracts, true);
+        if (resourceCache.putIfAbsent(key, new Entry(null, System.currentTimeMillis() + missingResourceTTL)) == null) {
+            evictIfNecessary();
+        }
 
     }
 
@@ -155,16 +231,34 @@ public class ResourceCache {
      */
     public ResourceInfo get(String name, String libraryName, String localePrefix, List<String> contracts) {
 
-        Util.notNull("name", name);
+        Entry entry = lookup(name, libraryName, localePrefix, contracts);
+        return ((entry != null) ? entry.info : null);
 
-        ResourceInfoCheckPeriodProxy proxy =
-              resourceCache.get(name, libraryName, localePrefix, contracts);
-        if (proxy != null && proxy.needsRefreshed()) {
-            resourceCache.remove(name, libraryName, localePrefix, contracts);
-            return null;
+    }
+
+
+    /**
+     * Unlike {@link #get(String, String, String, List)}, this tells a resource
+     * that isn't cached from one that a recent lookup found to be missing.
+     *
+     * @param name the resource name
+     * @param libraryName the library name
+     * @param localePrefix the locale prefix
+     * @param contracts the contracts
+     * @return the cache entry for the specified arguments, or <code>null</code>
+     *  if there is none
+     */
+    Entry lookup(String name, String libraryName, String localePrefix, List<String> contracts) {
+
+        Entry entry = getEntry(name, libraryName, localePrefix, contracts);
+        if (entry == null) {
+            misses.increment();
+        } else if (entry.info == null) {
+            missingResourceHits.increment();
         } else {
-            return ((proxy != null) ? proxy.getResourceInfo() : null);
+            hits.increment();
         }
+        return entry;
 
     }
 
@@ -182,16 +276,119 @@ public class ResourceCache {
     }
 
 
+    public int size() {
+        return resourceCache.size();
+    }
+
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+
+    public long getMissingResourceHitCount() {
+        return missingResourceHits.sum();
+    }
+
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+
     // --------------------------------------------------------- Private Methods
 
 
-    private static Long getCheckPeriod(WebConfiguration webConfig) {
+    private Entry getEntry(String name, String libraryName, String localePrefix, List<String> contracts) {
+
+        Util.notNull("name", name);
+
+        Key key = new Key(name, libraryName, localePrefix, contracts, false);
+        Entry entry = resourceCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (entry.isExpired(now)) {
+            resourceCache.remove(key, entry);
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry;
+
+    }
+
+
+    private long expiration(ResourceInfo info) {
+
+        if (checkPeriod != -1L && (!(info.getHelper() instanceof ClasspathResourceHelper))) {
+            return System.currentTimeMillis() + checkPeriod;
+        }
+        return Long.MAX_VALUE;
+
+    }
+
+
+    /**
+     * Bring the cache back below its bound.  Only one thread evicts at a
+     * time; others simply continue, as the bound is a soft one.
+     */
+    private void evictIfNecessary() {
+
+        if (resourceCache.size() <= maxEntries || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            // evict a little more than necessary so the scan isn't repeated
+            // for every addition
+            int target = maxEntries - Math.max(1, maxEntries / 10);
+            List<Map.Entry<Key,Entry>> candidates = new ArrayList<>();
+            for (Map.Entry<Key,Entry> e : resourceCache.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.info == null || entry.isExpired(now)) {
+                    if (resourceCache.remove(e.getKey(), entry)) {
+                        evictions.increment();
+                    }
+                } else {
+                    candidates.add(e);
+                }
+            }
+            int excess = resourceCache.size() - target;
+            if (excess > 0) {
+                candidates.sort((a, b) -> Long.compare(a.getValue().lastAccess, b.getValue().lastAccess));
+                for (int i = 0, len = candidates.size(); i < len && excess > 0; i++) {
+                    Map.Entry<Key,Entry> e = candidates.get(i);
+                    if (resourceCache.remove(e.getKey(), e.getValue())) {
+                        evictions.increment();
+                        excess--;
+                    }
+                }
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                           "ResourceCache exceeded {0} entries; {1} entries remain",
+                           new Object[] { maxEntries, resourceCache.size() });
+            }
+        } finally {
+            evicting.set(false);
+        }
+
+    }
+
+
+    private static long getLongOption(WebConfiguration webConfig, WebContextInitParameter param) {
 
-        String val = webConfig.getOptionValue(WebContextInitParameter.ResourceUpdateCheckPeriod);
+        String val = webConfig.getOptionValue(param);
         try {
             return (Long.parseLong(val));
         } catch (NumberFormatException nfe) {
-            return Long.parseLong(WebContextInitParameter.ResourceUpdateCheckPeriod.getDefaultValue());
+            return Long.parseLong(param.getDefaultValue());
         }
 
     }
@@ -211,39 +408,112 @@ public class ResourceCache {
     // ---------------------------------------------------------- Nested Classes
 
 
-    private static final class ResourceInfoCheckPeriodProxy {
+    private static final class Key {
 
-        private ResourceInfo resourceInfo;
-        private Long checkTime;
+        private final String name;
+        private final String libraryName;
+        private final String localePrefix;
+        private final List<String> contracts;
+        private final int hash;
 
 
         // -------------------------------------------------------- Constructors
 
 
-        public ResourceInfoCheckPeriodProxy(ResourceInfo resourceInfo,
-                                            long checkPeriod) {
+        /**
+         * @param copyContracts <code>true</code> if the contracts must be
+         *  copied as the key will be stored
+         */
+        Key(String name, String libraryName, String localePrefix, List<String> contracts, boolean copyContracts) {
 
-            this.resourceInfo = resourceInfo;
-            if (checkPeriod != -1L && (!(resourceInfo.getHelper() instanceof ClasspathResourceHelper))) {
-                checkTime = System.currentTimeMillis() + checkPeriod;
+            this.name = name;
+            this.libraryName = libraryName;
+            this.localePrefix = localePrefix;
+            if (contracts == null || contracts.isEmpty()) {
+                this.contracts = Collections.emptyList();
+            } else {
+                this.contracts = copyContracts ? new ArrayList<>(contracts) : contracts;
             }
+            int h = name.hashCode();
+            h = 31 * h + (libraryName != null ? libraryName.hashCode() : 0);
+            h = 31 * h + (localePrefix != null ? localePrefix.hashCode() : 0);
+            hash = 31 * h + this.contracts.hashCode();
+
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                   && name.equals(other.name)
+                   && (libraryName != null ? libraryName.equals(other.libraryName) : other.libraryName == null)
+                   && (localePrefix != null ? localePrefix.equals(other.localePrefix) : other.localePrefix == null)
+                   && contracts.equals(other.contracts);
+
+        }
+
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
 
-        private boolean needsRefreshed() {
+    } // END Key
+
+
+    /**
+     * A cached {@link ResourceInfo}, or a missing resource if
+     * <code>info</code> is <code>null</code>.
+     */
+    static final class Entry {
+
+        private final ResourceInfo info;
+        private final long expires;
+        private volatile long lastAccess;
 
-            return (checkTime != null
-                       && (checkTime < System.currentTimeMillis()));
+
+        // -------------------------------------------------------- Constructors
+
+
+        Entry(ResourceInfo info, long expires) {
+
+            this.info = info;
+            this.expires = expires;
+            this.lastAccess = System.nanoTime();
 
         }
 
 
-        private ResourceInfo getResourceInfo() {
+        /**
+         * @return the cached {@link ResourceInfo}, <code>null</code> if the
+         *  resource is missing
+         */
+        ResourceInfo getInfo() {
+            return info;
+        }
+
+
+        /**
+         * @return <code>true</code> if a recent lookup found no resource
+         */
+        boolean isMissing() {
+            return info == null;
+        }
 
-            return resourceInfo;
 
+        private boolean isExpired(long now) {
+            return expires < now;
         }
 
-    } // END ResourceInfoCheckPeriodProxy
+    } // END Entry
 
 
 } // END ResourceCache
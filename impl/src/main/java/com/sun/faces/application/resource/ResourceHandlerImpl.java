@@ -42,9 +42,11 @@ package com.sun.faces.application.resource;
 
 import com.sun.faces.application.ApplicationAssociate;
 import com.sun.faces.config.WebConfiguration;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableStaticResourceIndex;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.DefaultResourceMaxAge;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ResourceBufferSize;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ResourceExcludes;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.WebAppResourcesDirectory;
 import com.sun.faces.util.FacesLogger;
 import com.sun.faces.util.RequestStateManager;
 import static com.sun.faces.util.RequestStateManager.RESOURCE_REQUEST;
@@ -55,13 +57,17 @@ import static com.sun.faces.util.Util.notNegative;
 import static com.sun.faces.util.Util.notNull;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import static java.lang.Boolean.FALSE;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.logging.Level;
 import static java.util.logging.Level.FINE;
@@ -71,11 +77,17 @@ import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import static javax.faces.application.ProjectStage.Development;
 import static javax.faces.application.ProjectStage.Production;
+import javax.faces.application.Application;
 import javax.faces.application.Resource;
 import javax.faces.application.ResourceHandler;
 import javax.faces.application.ResourceVisitOption;
 import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
+import javax.faces.event.AbortProcessingException;
+import javax.faces.event.PostConstructApplicationEvent;
+import javax.faces.event.SystemEvent;
+import javax.faces.event.SystemEventListener;
+import javax.servlet.http.HttpServletRequest;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 
@@ -92,6 +104,7 @@ public class ResourceHandlerImpl extends ResourceHandler {
     private long creationTime;
     private long maxAge;
     private WebConfiguration webconfig;
+    private StaticResourceIndex staticResourceIndex;
 
     // ------------------------------------------------------------ Constructors
 
@@ -107,6 +120,7 @@ public class ResourceHandlerImpl extends ResourceHandler {
         manager = ApplicationAssociate.getInstance(extContext).getResourceManager();
         initExclusions(extContext.getApplicationMap());
         initMaxAge();
+        initStaticResourceIndex();
     }
 
 
@@ -311,7 +325,10 @@ public class ResourceHandlerImpl extends ResourceHandler {
         }
 
         if (resource != null) {
-            if (resource.userAgentNeedsUpdate(context)) {
+            StaticResourceIndex.Entry indexed = getIndexedResource(context, resource);
+            if (indexed != null) {
+                handleIndexedResource(context, resource, indexed);
+            } else if (resource.userAgentNeedsUpdate(context)) {
                 ReadableByteChannel resourceChannel = null;
                 WritableByteChannel out = null;
                 ByteBuffer buf = allocateByteBuffer();
@@ -419,6 +436,78 @@ public class ResourceHandlerImpl extends ResourceHandler {
         ctx.getExternalContext().setResponseStatus(SC_NOT_MODIFIED);
     }
 
+    private StaticResourceIndex.Entry getIndexedResource(FacesContext ctx, Resource resource) {
+
+        // Only resources created by this handler are indexed; anything
+        // wrapping or replacing them may alter content or headers.
+        if (staticResourceIndex == null || resource.getClass() != ResourceImpl.class) {
+            return null;
+        }
+        ResourceInfo info = ((ResourceImpl) resource).getResourceInfo();
+        if (!(info instanceof ClientResourceInfo)) {
+            return null;
+        }
+        return staticResourceIndex.get((ClientResourceInfo) info, resource.getContentType(), ctx);
+
+    }
+
+    private void handleIndexedResource(FacesContext ctx,
+                                       Resource resource,
+                                       StaticResourceIndex.Entry entry)
+    throws IOException {
+
+        ExternalContext extContext = ctx.getExternalContext();
+        Map<String,String> requestHeaders = extContext.getRequestHeaderMap();
+        String ifNoneMatch = requestHeaders.get("If-None-Match");
+        boolean notModified;
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence over If-Modified-Since
+            notModified = entry.matches(ifNoneMatch);
+        } else {
+            notModified = !resource.userAgentNeedsUpdate(ctx);
+        }
+
+        String encoding = entry.selectEncoding(requestHeaders.get("Accept-Encoding"));
+        SimpleDateFormat format = new SimpleDateFormat(ResourceImpl.RFC1123_DATE_PATTERN, Locale.US);
+        format.setTimeZone(ResourceImpl.GMT);
+        extContext.setResponseHeader("ETag", entry.getETag(encoding));
+        extContext.setResponseHeader("Expires", format.format(new Date(System.currentTimeMillis() + maxAge)));
+        extContext.setResponseHeader("Last-Modified", format.format(new Date(entry.getLastModified())));
+        if (entry.hasEncodedVariants()) {
+            extContext.setResponseHeader("Vary", "Accept-Encoding");
+        }
+
+        if (notModified) {
+            send304(ctx);
+            return;
+        }
+
+        byte[] content = entry.getContent(encoding);
+        String contentType = resource.getContentType();
+        if (contentType != null) {
+            extContext.setResponseContentType(contentType);
+        }
+        if (encoding != null) {
+            extContext.setResponseHeader("Content-Encoding", encoding);
+        }
+        extContext.setResponseContentLength(content.length);
+        if (isHeadRequest(extContext)) {
+            return;
+        }
+        OutputStream out = extContext.getResponseOutputStream();
+        out.write(content);
+        out.flush();
+
+    }
+
+    private static boolean isHeadRequest(ExternalContext extContext) {
+
+        Object request = extContext.getRequest();
+        return request instanceof HttpServletRequest
+               && "HEAD".equals(((HttpServletRequest) request).getMethod());
+
+    }
+
 
 
     // ------------------------------------------------- Package Private Methods
@@ -611,6 +700,22 @@ public class ResourceHandlerImpl extends ResourceHandler {
         maxAge = Long.parseLong(webconfig.getOptionValue(DefaultResourceMaxAge));
     }
 
+    private void initStaticResourceIndex() {
+
+        FacesContext ctx = FacesContext.getCurrentInstance();
+        // resources may change during development, so only index them once
+        // the application is in production
+        if (!webconfig.isOptionEnabled(EnableStaticResourceIndex) || !ctx.isProjectStage(Production)) {
+            return;
+        }
+        staticResourceIndex = new StaticResourceIndex(creationTime);
+        Application application = ctx.getApplication();
+        application.subscribeToEvent(PostConstructApplicationEvent.class,
+                                     Application.class,
+                                     new BuildStaticResourceIndexListener());
+
+    }
+
     private void handleHeaders(FacesContext ctx, Resource resource) {
 
         ExternalContext extContext = ctx.getExternalContext();
@@ -639,5 +744,34 @@ public class ResourceHandlerImpl extends ResourceHandler {
         
         return ByteBuffer.allocate(size);
     }
-    
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * Indexes the web application's static resources once the application
+     * has been configured, so the first requests for them do not pay the
+     * cost of reading and compressing.
+     */
+    private final class BuildStaticResourceIndexListener implements SystemEventListener {
+
+        @Override
+        public boolean isListenerForSource(Object source) {
+            return source instanceof Application;
+        }
+
+        @Override
+        public void processEvent(SystemEvent event) throws AbortProcessingException {
+
+            FacesContext ctx = FacesContext.getCurrentInstance();
+            staticResourceIndex.build(ctx,
+                                      ctx.getApplication().getResourceHandler(),
+                                      webconfig.getOptionValue(WebAppResourcesDirectory),
+                                      ResourceHandlerImpl.this::isExcluded);
+
+        }
+
+    } // END BuildStaticResourceIndexListener
+
 }
@@ -95,12 +95,12 @@ public class ResourceImpl extends Resource implements Externalizable {
     private static final Logger LOGGER = FacesLogger.APPLICATION.getLogger();
 
     /* HTTP Date format required by the HTTP/1.1 RFC */
-    private static final String RFC1123_DATE_PATTERN =
+    static final String RFC1123_DATE_PATTERN =
           "EEE, dd MMM yyyy HH:mm:ss zzz";
 
     private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
 
-    private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+    static final TimeZone GMT = TimeZone.getTimeZone("GMT");
 
 
     /* The meta data on the resource */
@@ -479,6 +479,14 @@ public class ResourceImpl extends Resource implements Externalizable {
         maxAge = in.readLong();
     }
 
+    /**
+     * @return the {@link ResourceInfo} backing this resource
+     */
+    ResourceInfo getResourceInfo() {
+        initResourceInfo();
+        return resourceInfo;
+    }
+
     private void initResourceInfo(){
         if (resourceInfo != null) {
             return;
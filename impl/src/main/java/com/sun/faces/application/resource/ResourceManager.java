@@ -177,14 +177,18 @@ public class ResourceManager {
         String localePrefix = getLocalePrefix(facesContext);
         List<String> contracts = getResourceLibraryContracts(facesContext);
         
-        ResourceInfo info = getFromCache(resourceName, null, localePrefix, contracts);
+        ResourceCache.Entry cached = lookupInCache(resourceName, null, localePrefix, contracts);
+        ResourceInfo info = (cached != null) ? cached.getInfo() : null;
         
-        if (info == null) {
+        if (cached == null) {
             if (isCompressable(contentType, facesContext)) {
                 info = findResourceCompressed(null, resourceName, true, localePrefix, contracts, facesContext);
             } else {
                info = findResourceNonCompressed(null, resourceName, true, localePrefix, contracts, facesContext);
             }
+            if (info == null) {
+                addMissingToCache(resourceName, null, localePrefix, contracts);
+            }
         }
 
         return info;
@@ -195,14 +199,18 @@ public class ResourceManager {
         String localePrefix = getLocalePrefix(ctx);
         List<String> contracts = getResourceLibraryContracts(ctx);
         
-        ResourceInfo info = getFromCache(resourceName, libraryName, localePrefix, contracts);
+        ResourceCache.Entry cached = lookupInCache(resourceName, libraryName, localePrefix, contracts);
+        ResourceInfo info = (cached != null) ? cached.getInfo() : null;
         
-        if (info == null) {
+        if (cached == null) {
             if (isCompressable(contentType, ctx)) {
                 info = findResourceCompressed(libraryName, resourceName, isViewResource, localePrefix, contracts, ctx);
             } else {
                info = findResourceNonCompressed(libraryName, resourceName, isViewResource, localePrefix, contracts, ctx);
             }
+            if (info == null) {
+                addMissingToCache(resourceName, libraryName, localePrefix, contracts);
+            }
         }
 
         return info;
@@ -424,6 +432,39 @@ public class ResourceManager {
     }
 
 
+    /**
+     * @param name the resource name
+     * @param library the library name
+     * @param localePrefix the Locale prefix
+     * @param contracts the contracts
+     * @return the cache entry, which may record that no resource matches the
+     *  specified arguments, or <code>null</code> if no cached entry is found
+     */
+    private ResourceCache.Entry lookupInCache(String name, String library, String localePrefix, List<String> contracts) {
+        if (cache == null) {
+            return null;
+        }
+
+        return cache.lookup(name, library, localePrefix, contracts);
+    }
+
+
+    /**
+     * Records in the cache that no resource matches the specified arguments.
+     * @param name the resource name
+     * @param library the library name
+     * @param localePrefix the Locale prefix
+     * @param contracts the contracts
+     */
+    private void addMissingToCache(String name, String library, String localePrefix, List<String> contracts) {
+        if (cache == null) {
+            return;
+        }
+
+        cache.addMissing(name, library, localePrefix, contracts);
+    }
+
+
     /**
      * Adds the the specified {@link ResourceInfo} to the cache.
      * @param info the @{link ResourceInfo} to add.
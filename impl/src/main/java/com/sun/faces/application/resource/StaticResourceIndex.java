@@ -0,0 +1,538 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.application.resource;
+
+import com.sun.faces.util.FacesLogger;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.faces.application.Resource;
+import javax.faces.application.ResourceHandler;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+
+/**
+ * <p>
+ * An in-memory index of static resources.  Each entry holds the raw bytes of
+ * the resource, pre-compressed <code>gzip</code> and <code>deflate</code>
+ * variants (for textual content only, and only when they are smaller than the
+ * original), a strong <code>ETag</code> derived from the content for each of
+ * them, and the <code>Last-Modified</code> time.  This allows {@link ResourceHandlerImpl}
+ * to answer conditional requests and to serve the resource with a single
+ * write, without opening a stream or a <code>URLConnection</code> per
+ * request.
+ * </p>
+ *
+ * <p>
+ * Resources found in the web application's resource directory are indexed
+ * at startup by {@link #build(FacesContext, ResourceHandler, String, Predicate)}.
+ * Resources that cannot be enumerated portably (e.g. those within JAR files)
+ * are added the first time they are requested.  Resources that may contain
+ * EL expressions, or that are larger than {@link #MAX_INDEXED_SIZE}, are
+ * never indexed.
+ * </p>
+ */
+final class StaticResourceIndex {
+
+    private static final Logger LOGGER = FacesLogger.RESOURCE.getLogger();
+
+    /**
+     * Resources larger than this are streamed as usual.
+     */
+    static final int MAX_INDEXED_SIZE = 1024 * 1024;
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile("^\\d+(_\\d+)*$");
+
+    private final ConcurrentMap<String,Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> skipped = ConcurrentHashMap.newKeySet();
+    private final long fallbackLastModified;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    StaticResourceIndex(long fallbackLastModified) {
+        this.fallbackLastModified = fallbackLastModified;
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @param info the resolved resource
+     * @param contentType the content type of the resource
+     * @param ctx the {@link FacesContext} for the current request
+     * @return the index entry for the specified resource, creating it if
+     *  necessary, or <code>null</code> if the resource cannot be indexed
+     */
+    Entry get(ClientResourceInfo info, String contentType, FacesContext ctx) {
+
+        if (info.supportsEL()) {
+            return null;
+        }
+        String key = info.getHelper().getClass().getName() + ':' + info.getPath();
+        Entry entry = entries.get(key);
+        if (entry == null && !skipped.contains(key)) {
+            entry = load(info, contentType, ctx);
+            if (entry == null) {
+                skipped.add(key);
+            } else {
+                Entry existing = entries.putIfAbsent(key, entry);
+                if (existing != null) {
+                    entry = existing;
+                }
+            }
+        }
+        return entry;
+
+    }
+
+
+    /**
+     * Indexes every resource found beneath <code>basePath</code> within the
+     * web application.
+     *
+     * @param ctx the {@link FacesContext} for the current request
+     * @param handler the {@link ResourceHandler} used to resolve resources
+     * @param basePath the web application resource directory
+     * @param excluded resource names that must not be served
+     */
+    void build(FacesContext ctx,
+               ResourceHandler handler,
+               String basePath,
+               Predicate<String> excluded) {
+
+        long start = System.currentTimeMillis();
+        ExternalContext extContext = ctx.getExternalContext();
+        String base = basePath.endsWith("/") ? basePath : basePath + '/';
+        buildFromPath(ctx, handler, extContext, base, base, excluded);
+        // jsf.js is requested by practically every application
+        index(ctx, handler, ResourceHandler.JSF_SCRIPT_RESOURCE_NAME, ResourceHandler.JSF_SCRIPT_LIBRARY_NAME);
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE,
+                       "Indexed {0} static resources in {1} ms",
+                       new Object[] { entries.size(), System.currentTimeMillis() - start });
+        }
+
+    }
+
+
+    int size() {
+        return entries.size();
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void buildFromPath(FacesContext ctx,
+                               ResourceHandler handler,
+                               ExternalContext extContext,
+                               String base,
+                               String path,
+                               Predicate<String> excluded) {
+
+        Set<String> paths = extContext.getResourcePaths(path);
+        if (paths == null) {
+            return;
+        }
+        for (String child : paths) {
+            if (child.endsWith("/")) {
+                buildFromPath(ctx, handler, extContext, base, child, excluded);
+                continue;
+            }
+            if (excluded.test(child)) {
+                continue;
+            }
+            String[] segments = child.substring(base.length()).split("/");
+            String libraryName = null;
+            int nameStart = 0;
+            if (segments.length > 1) {
+                libraryName = segments[0];
+                nameStart = 1;
+                if (segments.length > 2 && VERSION_PATTERN.matcher(segments[1]).matches()) {
+                    nameStart = 2;
+                }
+            }
+            StringBuilder resourceName = new StringBuilder(child.length());
+            for (int i = nameStart; i < segments.length; i++) {
+                if (i > nameStart) {
+                    resourceName.append('/');
+                }
+                resourceName.append(segments[i]);
+            }
+            index(ctx, handler, resourceName.toString(), libraryName);
+        }
+
+    }
+
+
+    private void index(FacesContext ctx,
+                       ResourceHandler handler,
+                       String resourceName,
+                       String libraryName) {
+
+        try {
+            Resource resource = handler.createResource(resourceName, libraryName);
+            if (resource instanceof ResourceImpl) {
+                ResourceInfo info = ((ResourceImpl) resource).getResourceInfo();
+                if (info instanceof ClientResourceInfo) {
+                    get((ClientResourceInfo) info, resource.getContentType(), ctx);
+                }
+            }
+        } catch (RuntimeException re) {
+            // the path did not map onto a resource (e.g. a locale prefix or
+            // a versioned resource); it will be indexed on first request, if
+            // at all.
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.log(Level.FINEST,
+                           "Unable to index resource " + resourceName + " in library " + libraryName,
+                           re);
+            }
+        }
+
+    }
+
+
+    private Entry load(ClientResourceInfo info, String contentType, FacesContext ctx) {
+
+        ResourceHelper helper = info.getHelper();
+        byte[] content;
+        try (InputStream in = helper.getNonCompressedInputStream(info, ctx)) {
+            if (in == null) {
+                return null;
+            }
+            content = readFully(in);
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Unable to index " + info.getPath(), ioe);
+            }
+            return null;
+        }
+        if (content == null) {
+            return null;
+        }
+
+        long lastModified = info.getLastModified(ctx);
+        if (lastModified == 0) {
+            lastModified = fallbackLastModified;
+        }
+
+        byte[] gzip = null;
+        byte[] deflate = null;
+        if (info.isCompressable() || isTextual(contentType)) {
+            gzip = smallerOrNull(content, compress(content, true));
+            deflate = smallerOrNull(content, compress(content, false));
+        }
+
+        return new Entry(content, gzip, deflate, etag(content), lastModified);
+
+    }
+
+
+    private static byte[] readFully(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buf = new byte[4096];
+        for (int read = in.read(buf); read != -1; read = in.read(buf)) {
+            if (out.size() + read > MAX_INDEXED_SIZE) {
+                return null;
+            }
+            out.write(buf, 0, read);
+        }
+        return out.toByteArray();
+
+    }
+
+
+    private static byte[] compress(byte[] content, boolean gzip) {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 2 + 64);
+        Deflater deflater = gzip ? null : new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream out = gzip
+                                ? new GZIPOutputStream(baos, 4096) {
+                                    {
+                                        def.setLevel(Deflater.BEST_COMPRESSION);
+                                    }
+                                }
+                                : new DeflaterOutputStream(baos, deflater, 4096)) {
+            out.write(content);
+        } catch (IOException ioe) {
+            // cannot happen writing to memory
+            return null;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return baos.toByteArray();
+
+    }
+
+
+    private static byte[] smallerOrNull(byte[] content, byte[] compressed) {
+        return (compressed != null && compressed.length < content.length) ? compressed : null;
+    }
+
+
+    private static boolean isTextual(String contentType) {
+
+        if (contentType == null) {
+            return false;
+        }
+        return contentType.startsWith("text/")
+               || contentType.endsWith("javascript")
+               || contentType.endsWith("json")
+               || contentType.endsWith("xml")
+               || contentType.startsWith("image/svg");
+
+    }
+
+
+    private static String etag(byte[] content) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            byte[] truncated = new byte[16];
+            System.arraycopy(digest, 0, truncated, 0, truncated.length);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(truncated) + '"';
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+
+    }
+
+
+    /**
+     * @return <code>etag</code> with the content coding appended within the quotes
+     */
+    private static String variant(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + '-' + encoding + '"';
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * An indexed resource.
+     */
+    static final class Entry {
+
+        private final byte[] content;
+        private final byte[] gzip;
+        private final byte[] deflate;
+        private final String etag;
+        private final String gzipETag;
+        private final String deflateETag;
+        private final long lastModified;
+
+
+        Entry(byte[] content, byte[] gzip, byte[] deflate, String etag, long lastModified) {
+            this.content = content;
+            this.gzip = gzip;
+            this.deflate = deflate;
+            this.etag = etag;
+            // a strong validator has to differ for each representation
+            this.gzipETag = (gzip != null) ? variant(etag, "gzip") : null;
+            this.deflateETag = (deflate != null) ? variant(etag, "deflate") : null;
+            this.lastModified = lastModified;
+        }
+
+
+        /**
+         * @param encoding the content coding returned by
+         *  {@link #selectEncoding(String)}
+         * @return the <code>ETag</code> of the representation in that coding
+         */
+        String getETag(String encoding) {
+
+            if ("gzip".equals(encoding) && gzipETag != null) {
+                return gzipETag;
+            }
+            if ("deflate".equals(encoding) && deflateETag != null) {
+                return deflateETag;
+            }
+            return etag;
+
+        }
+
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+
+        boolean hasEncodedVariants() {
+            return gzip != null || deflate != null;
+        }
+
+
+        /**
+         * @param ifNoneMatch the value of the <code>If-None-Match</code>
+         *  request header
+         * @return <code>true</code> if the header matches this entry
+         */
+        boolean matches(String ifNoneMatch) {
+
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    // weak comparison is permitted for If-None-Match
+                    tag = tag.substring(2);
+                }
+                if ("*".equals(tag)
+                    || etag.equals(tag)
+                    || tag.equals(gzipETag)
+                    || tag.equals(deflateETag)) {
+                    return true;
+                }
+            }
+            return false;
+
+        }
+
+
+        /**
+         * @param acceptEncoding the value of the <code>Accept-Encoding</code>
+         *  request header, may be <code>null</code>
+         * @return the content coding to use, or <code>null</code> for the
+         *  identity encoding
+         */
+        String selectEncoding(String acceptEncoding) {
+
+            if (acceptEncoding == null || !hasEncodedVariants()) {
+                return null;
+            }
+            boolean acceptsGzip = false;
+            boolean acceptsDeflate = false;
+            boolean acceptsAny = false;
+            boolean gzipRefused = false;
+            boolean deflateRefused = false;
+            for (String coding : acceptEncoding.split(",")) {
+                String name = coding;
+                boolean refused = false;
+                int semi = coding.indexOf(';');
+                if (semi != -1) {
+                    name = coding.substring(0, semi);
+                    refused = isZeroQuality(coding.substring(semi + 1));
+                }
+                name = name.trim().toLowerCase();
+                switch (name) {
+                    case "gzip":
+                    case "x-gzip":
+                        acceptsGzip = !refused;
+                        gzipRefused = refused;
+                        break;
+                    case "deflate":
+                        acceptsDeflate = !refused;
+                        deflateRefused = refused;
+                        break;
+                    case "*":
+                        acceptsAny = !refused;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (gzip != null && (acceptsGzip || (acceptsAny && !gzipRefused))) {
+                return "gzip";
+            }
+            if (deflate != null && (acceptsDeflate || (acceptsAny && !deflateRefused))) {
+                return "deflate";
+            }
+            return null;
+
+        }
+
+
+        /**
+         * @param encoding a value returned by {@link #selectEncoding(String)}
+         * @return the bytes to send for the specified content coding
+         */
+        byte[] getContent(String encoding) {
+
+            if ("gzip".equals(encoding)) {
+                return gzip;
+            }
+            if ("deflate".equals(encoding)) {
+                return deflate;
+            }
+            return content;
+
+        }
+
+
+        private static boolean isZeroQuality(String params) {
+
+            for (String param : params.split(";")) {
+                param = param.trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Float.parseFloat(param.substring(2).trim()) == 0f;
+                    } catch (NumberFormatException nfe) {
+                        return false;
+                    }
+                }
+            }
+            return false;
+
+        }
+
+    } // END Entry
+
+}
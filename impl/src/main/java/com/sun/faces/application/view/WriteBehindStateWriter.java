@@ -41,6 +41,8 @@
 package com.sun.faces.application.view;
 
 import com.sun.faces.RIConstants;
+import com.sun.faces.io.EncodedText;
+import com.sun.faces.io.EncodedTextWriter;
 import com.sun.faces.io.FastStringWriter;
 import com.sun.faces.util.Util;
 
@@ -54,7 +56,7 @@ import java.io.Writer;
  * Custom {@link Writer} to efficiently handle the state manager replacement
  * marker written out by {@link MultiViewHandler#writeState(javax.faces.context.FacesContext)}.
  */
-final class WriteBehindStateWriter extends Writer {
+final class WriteBehindStateWriter extends Writer implements EncodedTextWriter {
 
     // length of the state marker
     private static final int STATE_MARKER_LEN =
@@ -153,6 +155,17 @@ final class WriteBehindStateWriter extends Writer {
     }
 
 
+    /**
+     * Writes directly to the current <code>out</code>.
+     *
+     * @see EncodedTextWriter#write(EncodedText)
+     */
+    @Override
+    public void write(EncodedText text) throws IOException {
+        text.writeTo(out);
+    }
+
+
     /**
      * This is a no-op.
      */
@@ -0,0 +1,600 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.component;
+
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableClientIdIndex;
+import static javax.faces.component.visit.VisitHint.SKIP_TRANSIENT;
+import static javax.faces.component.visit.VisitHint.SKIP_UNRENDERED;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.faces.component.ContextCallback;
+import javax.faces.component.NamingContainer;
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIComponentBase;
+import javax.faces.component.UIForm;
+import javax.faces.component.UINamingContainer;
+import javax.faces.component.UIViewRoot;
+import javax.faces.component.visit.VisitCallback;
+import javax.faces.component.visit.VisitContext;
+import javax.faces.component.visit.VisitHint;
+import javax.faces.context.FacesContext;
+import javax.faces.event.AbortProcessingException;
+import javax.faces.event.PostAddToViewEvent;
+import javax.faces.event.PreRemoveFromViewEvent;
+import javax.faces.event.SystemEvent;
+import javax.faces.event.SystemEventListener;
+
+import com.sun.faces.config.WebConfiguration;
+
+/**
+ * <p>
+ * <code>ClientIdIndex</code> maps client ids to the components of a single
+ * view so that {@link UIViewRoot#invokeOnComponent}, absolute
+ * {@link UIComponent#findComponent} expressions and partial visits can reach
+ * their targets without walking the component tree.
+ * </p>
+ *
+ * <p>
+ * The index is enabled by the <code>com.sun.faces.enableClientIdIndex</code>
+ * context parameter.  It is created lazily, the first time a lookup is made
+ * against a view, and is kept as transient state of the {@link UIViewRoot}.
+ * After that it is kept current by the {@link Listener}, which records
+ * components announced by {@link PostAddToViewEvent} and forgets those
+ * announced by {@link PreRemoveFromViewEvent}.  Client ids of added components
+ * are only computed at the next lookup, so the index never assigns ids
+ * earlier than a regular tree walk would.
+ * </p>
+ *
+ * <p>
+ * Components below an iterating component such as <code>UIData</code> or
+ * <code>UIRepeat</code> are not indexed, as their client ids depend on the
+ * current row.  More generally, a component is only returned if none of its
+ * ancestors customizes the traversal in question, so the result is the same
+ * as the one a tree walk would produce.  Every hit is verified against the
+ * live tree; callers fall back to the tree walk whenever this class returns
+ * <code>null</code>.
+ * </p>
+ */
+public final class ClientIdIndex {
+
+    private static final String INDEX_KEY = ClientIdIndex.class.getName();
+
+    private static final ConcurrentMap<Class<?>, Boolean> INVOKE_TRANSPARENT =
+          new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, Boolean> VISIT_TRANSPARENT =
+          new ConcurrentHashMap<>();
+
+    private final UIViewRoot root;
+    private final Map<String, UIComponent> components = new HashMap<>();
+    private final Map<UIComponent, String> clientIds = new IdentityHashMap<>();
+    private final Set<UIComponent> pending =
+          Collections.newSetFromMap(new IdentityHashMap<UIComponent, Boolean>());
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private ClientIdIndex(UIViewRoot root) {
+
+        this.root = root;
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param root the view to obtain the index for
+     * @return the index for <code>root</code>, creating it if necessary, or
+     *  <code>null</code> if the client id index is not enabled
+     */
+    public static ClientIdIndex getIndex(FacesContext context, UIViewRoot root) {
+
+        if (context == null || root == null || !isEnabled(context)) {
+            return null;
+        }
+        ClientIdIndex index = (ClientIdIndex)
+              root.getTransientStateHelper().getTransient(INDEX_KEY);
+        if (index == null) {
+            index = new ClientIdIndex(root);
+            index.addSubtree(context, root);
+            root.getTransientStateHelper().putTransient(INDEX_KEY, index);
+        }
+        return index;
+
+    }
+
+
+    /**
+     * <p>
+     * Invoke <code>callback</code> on the component identified by
+     * <code>clientId</code>, if the index can locate it.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param clientId the client id of the target component
+     * @param callback the callback to invoke
+     * @return <code>true</code> if the target was found and the callback
+     *  invoked, <code>false</code> if the caller must walk the tree instead
+     */
+    public boolean invokeOnComponent(FacesContext context,
+                                     String clientId,
+                                     ContextCallback callback) {
+
+        UIComponent target = lookup(context, clientId, INVOKE_TRANSPARENT);
+        // let the target match itself, in case it treats its own client id
+        // specially
+        return target != null
+                 && target.invokeOnComponent(context, clientId, callback);
+
+    }
+
+
+    /**
+     * <p>
+     * Locate the component identified by a search expression that is
+     * relative to the view root, if the index can locate it.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param expression the search expression, without the leading separator
+     * @param separatorChar the naming container separator character
+     * @return the component, or <code>null</code> if the caller must search
+     *  the tree instead
+     */
+    public UIComponent findComponent(FacesContext context,
+                                     String expression,
+                                     char separatorChar) {
+
+        if (root instanceof NamingContainer) {
+            return null;
+        }
+        UIComponent target = lookup(context, expression, INVOKE_TRANSPARENT);
+        if (target == null) {
+            return null;
+        }
+
+        // findComponent() addresses a component through the ids of its
+        // NamingContainer ancestors, which is not necessarily its client id
+        // (e.g. for a form with prependId="false").
+        int end = expression.length();
+        for (UIComponent c = target; c != root; c = c.getParent()) {
+            if (c == target || c instanceof NamingContainer) {
+                String id = c.getId();
+                int start = end - id.length();
+                if (start < 0 || !expression.startsWith(id, start)) {
+                    return null;
+                }
+                if (start > 0) {
+                    if (start == 1 || expression.charAt(start - 1) != separatorChar) {
+                        return null;
+                    }
+                    start--;
+                }
+                end = start;
+            }
+        }
+        return (end == 0) ? target : null;
+
+    }
+
+
+    /**
+     * <p>
+     * Visit the components identified by <code>clientIds</code>, in tree
+     * order, as {@link UIComponent#visitTree} on the view root would.
+     * Nothing is visited unless every id can be resolved by the index.
+     * </p>
+     *
+     * @param visitContext the <code>VisitContext</code> for this visit
+     * @param clientIds the client ids of the components to visit
+     * @param callback the callback to invoke
+     * @return <code>true</code> if the visit was performed, <code>false</code>
+     *  if the caller must visit the tree instead
+     */
+    public boolean visitTree(VisitContext visitContext,
+                             Collection<String> clientIds,
+                             VisitCallback callback) {
+
+        FacesContext context = visitContext.getFacesContext();
+        Set<UIComponent> targets = Collections.newSetFromMap(
+              new IdentityHashMap<UIComponent, Boolean>(clientIds.size()));
+        for (String clientId : clientIds) {
+            UIComponent target = lookup(context, clientId, VISIT_TRANSPARENT);
+            if (target == null) {
+                return false;
+            }
+            targets.add(target);
+        }
+
+        // a target that lies within another target is reached by the visit
+        // of that other target, as it would during a tree walk
+        List<UIComponent> ordered = new ArrayList<>(targets.size());
+        for (UIComponent target : targets) {
+            boolean nested = false;
+            for (UIComponent c = target.getParent(); c != null && !nested; c = c.getParent()) {
+                nested = targets.contains(c);
+            }
+            if (!nested) {
+                ordered.add(target);
+            }
+        }
+        if (ordered.size() > 1) {
+            sortInTreeOrder(ordered);
+        }
+
+        for (UIComponent target : ordered) {
+            if (visitTarget(visitContext, target, callback)) {
+                break;
+            }
+        }
+        return true;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static boolean isEnabled(FacesContext context) {
+
+        WebConfiguration webConfig =
+              WebConfiguration.getInstance(context.getExternalContext());
+        return webConfig != null && webConfig.isOptionEnabled(EnableClientIdIndex);
+
+    }
+
+
+    private UIComponent lookup(FacesContext context,
+                               String clientId,
+                               ConcurrentMap<Class<?>, Boolean> transparency) {
+
+        if (!pending.isEmpty()) {
+            addPending(context);
+        }
+        UIComponent target = components.get(clientId);
+        if (target == null || !isReachable(target, transparency)) {
+            return null;
+        }
+        // the client id may have changed since the component was indexed
+        if (!clientId.equals(target.getClientId(context))) {
+            remove(target);
+            return null;
+        }
+        return target;
+
+    }
+
+
+    /*
+     * A component is reachable if it is still part of this view and none of
+     * its ancestors below the root customizes the traversal.
+     */
+    private boolean isReachable(UIComponent component,
+                                ConcurrentMap<Class<?>, Boolean> transparency) {
+
+        for (UIComponent c = component.getParent(); c != null; c = c.getParent()) {
+            if (c == root) {
+                return true;
+            }
+            if (!isTransparent(c.getClass(), transparency)) {
+                return false;
+            }
+        }
+        return false;
+
+    }
+
+
+    private void addSubtree(FacesContext context, UIComponent component) {
+
+        if (component != root) {
+            add(context, component);
+        }
+        if (component != root && !isIndexable(component.getClass())) {
+            return;
+        }
+        Iterator<UIComponent> kids = component.getFacetsAndChildren();
+        while (kids.hasNext()) {
+            addSubtree(context, kids.next());
+        }
+
+    }
+
+
+    private void addPending(FacesContext context) {
+
+        List<UIComponent> added = new ArrayList<>(pending);
+        pending.clear();
+        for (UIComponent component : added) {
+            if (isReachable(component, INVOKE_TRANSPARENT)
+                  || isReachable(component, VISIT_TRANSPARENT)) {
+                add(context, component);
+            }
+        }
+
+    }
+
+
+    private void add(FacesContext context, UIComponent component) {
+
+        String clientId = component.getClientId(context);
+        String previous = clientIds.put(component, clientId);
+        if (previous != null && !previous.equals(clientId)
+              && components.get(previous) == component) {
+            components.remove(previous);
+        }
+        components.put(clientId, component);
+
+    }
+
+
+    private void remove(UIComponent component) {
+
+        pending.remove(component);
+        String clientId = clientIds.remove(component);
+        if (clientId != null && components.get(clientId) == component) {
+            components.remove(clientId);
+        }
+
+    }
+
+
+    private boolean visitTarget(VisitContext visitContext,
+                                UIComponent target,
+                                VisitCallback callback) {
+
+        FacesContext context = visitContext.getFacesContext();
+        List<UIComponent> ancestors = new ArrayList<>();
+        for (UIComponent c = target.getParent(); c != null; c = c.getParent()) {
+            ancestors.add(c);
+        }
+
+        // Make the ancestors current in the same order UIComponent.visitTree()
+        // would, as the target may refer to them (e.g. through #{cc}).
+        Set<VisitHint> hints = visitContext.getHints();
+        int pushed = 0;
+        try {
+            for (int i = ancestors.size() - 1; i >= 0; i--) {
+                UIComponent ancestor = ancestors.get(i);
+                if ((hints.contains(SKIP_UNRENDERED) && !ancestor.isRendered())
+                      || (hints.contains(SKIP_TRANSIENT) && ancestor.isTransient())) {
+                    return false;
+                }
+                ancestor.pushComponentToEL(context, null);
+                pushed++;
+            }
+            return target.visitTree(visitContext, callback);
+        } finally {
+            for (int i = ancestors.size() - pushed; i < ancestors.size(); i++) {
+                ancestors.get(i).popComponentFromEL(context);
+            }
+        }
+
+    }
+
+
+    private static void sortInTreeOrder(List<UIComponent> components) {
+
+        final Map<UIComponent, int[]> paths = new IdentityHashMap<>(components.size());
+        for (UIComponent component : components) {
+            paths.put(component, getTreePath(component));
+        }
+        Collections.sort(components, (c1, c2) -> {
+            int[] p1 = paths.get(c1);
+            int[] p2 = paths.get(c2);
+            for (int i = 0, len = Math.min(p1.length, p2.length); i < len; i++) {
+                if (p1[i] != p2[i]) {
+                    return (p1[i] < p2[i]) ? -1 : 1;
+                }
+            }
+            return p1.length - p2.length;
+        });
+
+    }
+
+
+    /*
+     * The position of each of the component's ancestors (and of the component
+     * itself) within its parent, in UIComponent.getFacetsAndChildren() order.
+     */
+    private static int[] getTreePath(UIComponent component) {
+
+        List<Integer> positions = new ArrayList<>();
+        for (UIComponent c = component, parent = c.getParent();
+             parent != null;
+             c = parent, parent = c.getParent()) {
+            int position = -1;
+            int facetCount = parent.getFacetCount();
+            if (facetCount > 0) {
+                int i = 0;
+                for (UIComponent facet : parent.getFacets().values()) {
+                    if (facet == c) {
+                        position = i;
+                        break;
+                    }
+                    i++;
+                }
+            }
+            if (position == -1 && parent.getChildCount() > 0) {
+                int i = parent.getChildren().indexOf(c);
+                position = (i == -1) ? -1 : facetCount + i;
+            }
+            positions.add(position);
+        }
+        int[] path = new int[positions.size()];
+        for (int i = 0, len = path.length; i < len; i++) {
+            path[i] = positions.get(len - 1 - i);
+        }
+        return path;
+
+    }
+
+
+    private static boolean isIndexable(Class<?> componentClass) {
+
+        return isTransparent(componentClass, INVOKE_TRANSPARENT)
+                 || isTransparent(componentClass, VISIT_TRANSPARENT);
+
+    }
+
+
+    /*
+     * A component class is transparent for a traversal if it does not
+     * override the methods driving it beyond the standard implementations,
+     * which only recurse (or, for naming containers, prune subtrees that do
+     * not contain any of the targets).
+     */
+    private static boolean isTransparent(Class<?> componentClass,
+                                         ConcurrentMap<Class<?>, Boolean> transparency) {
+
+        Boolean transparent = transparency.get(componentClass);
+        if (transparent == null) {
+            try {
+                if (transparency == INVOKE_TRANSPARENT) {
+                    Class<?> declaring = componentClass.getMethod("invokeOnComponent",
+                                                                  FacesContext.class,
+                                                                  String.class,
+                                                                  ContextCallback.class)
+                          .getDeclaringClass();
+                    transparent = (declaring == UIComponent.class
+                                     || declaring == UIComponentBase.class);
+                } else {
+                    Class<?> declaring = componentClass.getMethod("visitTree",
+                                                                  VisitContext.class,
+                                                                  VisitCallback.class)
+                          .getDeclaringClass();
+                    Class<?> visitable = getDeclaringClass(componentClass,
+                                                           "isVisitable",
+                                                           VisitContext.class);
+                    transparent = (declaring == UIComponent.class
+                                     || declaring == UINamingContainer.class
+                                     || declaring == UIForm.class)
+                                  && visitable == UIComponent.class;
+                }
+            } catch (NoSuchMethodException nsme) {
+                transparent = false;
+            }
+            transparency.put(componentClass, transparent);
+        }
+        return transparent;
+
+    }
+
+
+    private static Class<?> getDeclaringClass(Class<?> componentClass,
+                                              String name,
+                                              Class<?>... parameterTypes) {
+
+        for (Class<?> c = componentClass; c != null; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return c;
+            } catch (NoSuchMethodException ignored) {
+                // continue with the superclass
+            }
+        }
+        return null;
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * <p>
+     * Keeps the index of the current view in sync with components being added
+     * to and removed from it.  Installed by the <code>ApplicationAssociate</code>
+     * when the client id index is enabled.
+     * </p>
+     */
+    public static class Listener implements SystemEventListener {
+
+        @Override
+        public boolean isListenerForSource(Object source) {
+
+            return source instanceof UIComponent;
+
+        }
+
+
+        @Override
+        public void processEvent(SystemEvent event) throws AbortProcessingException {
+
+            FacesContext context = FacesContext.getCurrentInstance();
+            UIViewRoot root = (context != null) ? context.getViewRoot() : null;
+            if (root == null) {
+                return;
+            }
+            ClientIdIndex index = (ClientIdIndex)
+                  root.getTransientStateHelper().getTransient(INDEX_KEY);
+            if (index == null) {
+                // the index will be built from the complete tree when it is
+                // first used
+                return;
+            }
+            UIComponent component = (UIComponent) event.getSource();
+            if (event instanceof PostAddToViewEvent) {
+                index.pending.add(component);
+            } else if (event instanceof PreRemoveFromViewEvent) {
+                index.remove(component);
+            }
+
+        }
+
+    }
+
+}
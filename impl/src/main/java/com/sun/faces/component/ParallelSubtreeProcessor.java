@@ -0,0 +1,602 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.component;
+
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableParallelSubtreeProcessing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.el.ELContext;
+import javax.el.ELContextEvent;
+import javax.el.ELContextListener;
+import javax.el.ExpressionFactory;
+import javax.faces.application.Application;
+import javax.faces.application.FacesMessage;
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIForm;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.ExceptionHandler;
+import javax.faces.context.ExceptionHandlerWrapper;
+import javax.faces.context.FacesContext;
+import javax.faces.context.FacesContextWrapper;
+import javax.faces.event.AbortProcessingException;
+import javax.faces.event.FacesEvent;
+import javax.faces.event.PhaseId;
+import javax.faces.event.SystemEvent;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.el.ELContextImpl;
+import com.sun.faces.el.ELUtils;
+
+/**
+ * <p>
+ * <code>ParallelSubtreeProcessor</code> runs the apply request values,
+ * process validations and update model values processing of the children of
+ * a component concurrently, one task per child, on the common
+ * {@link ForkJoinPool}.
+ * </p>
+ *
+ * <p>
+ * Parallel processing must be enabled with the
+ * <code>com.sun.faces.enableParallelSubtreeProcessing</code> context
+ * parameter, and is then requested by setting the
+ * {@link #PARALLEL_SUBTREES_ATTRIBUTE} attribute to <code>true</code> on a
+ * component, whose children are then processed in parallel.  When set on the
+ * {@link UIViewRoot}, it applies to the children of the view root and to the
+ * children of every {@link UIForm} in the view.  Processing within a
+ * subtree that is already running in parallel is sequential.
+ * </p>
+ *
+ * <p>
+ * Each task sees its own view of the <code>FacesContext</code>: it has
+ * private copies of the context attributes (and thus of the EL component
+ * stacks) and of the <code>ELContext</code>, and it collects messages,
+ * queued <code>FacesEvent</code>s, queued exceptions and the
+ * render response, response complete and validation failed flags instead of
+ * applying them.  Once all tasks have completed, their results are applied
+ * to the real <code>FacesContext</code> in the order of the children, so
+ * messages and events end up queued in the same order as with sequential
+ * processing.  If a task failed, the results of the children before it are
+ * applied and its exception is rethrown.
+ * </p>
+ *
+ * <p>
+ * The subtrees must be independent of each other, and everything they
+ * evaluate must be safe to use from other threads.  In particular, state
+ * bound to the request thread (e.g. CDI request scoped beans in some
+ * containers, security or transaction contexts) is not available to the
+ * tasks.
+ * </p>
+ */
+public final class ParallelSubtreeProcessor {
+
+    /**
+     * The name of the component attribute that requests parallel processing
+     * of the children of that component.
+     */
+    public static final String PARALLEL_SUBTREES_ATTRIBUTE =
+          "com.sun.faces.parallelSubtrees";
+
+    private static final ThreadLocal<SubtreeContext> CURRENT_TASK = new ThreadLocal<>();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private ParallelSubtreeProcessor() {
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * <p>
+     * Process the facets and children of <code>component</code> for the given
+     * phase in parallel, if that has been requested for the component.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param component the component whose facets and children are processed
+     * @param phaseId one of <code>APPLY_REQUEST_VALUES</code>,
+     *  <code>PROCESS_VALIDATIONS</code> or <code>UPDATE_MODEL_VALUES</code>
+     * @return <code>true</code> if the facets and children have been
+     *  processed, <code>false</code> if the caller has to process them
+     */
+    public static boolean processChildren(FacesContext context,
+                                          UIComponent component,
+                                          PhaseId phaseId) {
+
+        if (CURRENT_TASK.get() != null
+              || (component.getFacetCount() + component.getChildCount()) < 2
+              || !isParallel(context, component)) {
+            return false;
+        }
+
+        List<SubtreeTask> tasks = new ArrayList<>(component.getFacetCount() + component.getChildCount());
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        Iterator<UIComponent> kids = component.getFacetsAndChildren();
+        while (kids.hasNext()) {
+            tasks.add(new SubtreeTask(new SubtreeContext(context),
+                                      kids.next(),
+                                      phaseId,
+                                      loader));
+        }
+
+        ForkJoinPool.commonPool().invokeAll(tasks);
+
+        UIViewRoot root = context.getViewRoot();
+        for (SubtreeTask task : tasks) {
+            task.context.applyTo(context, root);
+            if (task.failure != null) {
+                if (task.failure instanceof RuntimeException) {
+                    throw (RuntimeException) task.failure;
+                }
+                if (task.failure instanceof Error) {
+                    throw (Error) task.failure;
+                }
+                throw new IllegalStateException(task.failure);
+            }
+        }
+        return true;
+
+    }
+
+
+    /**
+     * <p>
+     * Collect <code>event</code>, if it has been queued by a subtree that is
+     * processed in parallel.  Called by {@link UIViewRoot#queueEvent}.
+     * </p>
+     *
+     * @param event the event being queued
+     * @return <code>true</code> if the event has been collected, and will be
+     *  queued once the parallel processing is complete
+     */
+    public static boolean queueEvent(FacesEvent event) {
+
+        SubtreeContext task = CURRENT_TASK.get();
+        if (task == null) {
+            return false;
+        }
+        task.events.add(event);
+        return true;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static boolean isParallel(FacesContext context, UIComponent component) {
+
+        WebConfiguration webConfig =
+              WebConfiguration.getInstance(context.getExternalContext());
+        if (webConfig == null || !webConfig.isOptionEnabled(EnableParallelSubtreeProcessing)) {
+            return false;
+        }
+        if (isMarked(component)) {
+            return true;
+        }
+        if (component instanceof UIForm) {
+            UIViewRoot root = context.getViewRoot();
+            return root != null && isMarked(root);
+        }
+        return false;
+
+    }
+
+
+    private static boolean isMarked(UIComponent component) {
+
+        Object value = component.getAttributes().get(PARALLEL_SUBTREES_ATTRIBUTE);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value != null && Boolean.parseBoolean(value.toString());
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    private static final class SubtreeTask implements Callable<Void> {
+
+        private final SubtreeContext context;
+        private final UIComponent component;
+        private final PhaseId phaseId;
+        private final ClassLoader loader;
+        private Throwable failure;
+
+
+        // -------------------------------------------------------- Constructors
+
+
+        SubtreeTask(SubtreeContext context,
+                    UIComponent component,
+                    PhaseId phaseId,
+                    ClassLoader loader) {
+
+            this.context = context;
+            this.component = component;
+            this.phaseId = phaseId;
+            this.loader = loader;
+
+        }
+
+
+        // ------------------------------------------------ Methods from Callable
+
+
+        @Override
+        public Void call() {
+
+            Thread thread = Thread.currentThread();
+            ClassLoader previousLoader = thread.getContextClassLoader();
+            SubtreeContext previousTask = CURRENT_TASK.get();
+            thread.setContextClassLoader(loader);
+            CURRENT_TASK.set(context);
+            context.makeCurrent();
+            try {
+                if (phaseId == PhaseId.APPLY_REQUEST_VALUES) {
+                    component.processDecodes(context);
+                } else if (phaseId == PhaseId.PROCESS_VALIDATIONS) {
+                    component.processValidators(context);
+                } else if (phaseId == PhaseId.UPDATE_MODEL_VALUES) {
+                    component.processUpdates(context);
+                } else {
+                    throw new IllegalArgumentException(phaseId.toString());
+                }
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                context.restoreCurrent();
+                if (previousTask == null) {
+                    CURRENT_TASK.remove();
+                } else {
+                    CURRENT_TASK.set(previousTask);
+                }
+                thread.setContextClassLoader(previousLoader);
+            }
+            return null;
+
+        }
+
+    } // END SubtreeTask
+
+
+    /**
+     * The view of the <code>FacesContext</code> seen by a single task.
+     */
+    private static final class SubtreeContext extends FacesContextWrapper {
+
+        private final Map<Object, Object> attributes;
+        private final List<String> messageClientIds = new ArrayList<>();
+        private final List<FacesMessage> messages = new ArrayList<>();
+        private final List<FacesEvent> events = new ArrayList<>();
+        private final List<SystemEvent> exceptionEvents = new ArrayList<>();
+        private ELContext elContext;
+        private ExceptionHandler exceptionHandler;
+        private boolean renderResponse;
+        private boolean responseComplete;
+        private boolean validationFailed;
+        private FacesContext previous;
+
+
+        // -------------------------------------------------------- Constructors
+
+
+        SubtreeContext(FacesContext wrapped) {
+
+            super(wrapped);
+            attributes = new HashMap<>(wrapped.getAttributes());
+            // the EL component stacks must not be shared between tasks
+            for (Map.Entry<Object, Object> entry : attributes.entrySet()) {
+                if (entry.getValue() instanceof ArrayDeque) {
+                    entry.setValue(((ArrayDeque<?>) entry.getValue()).clone());
+                }
+            }
+
+        }
+
+
+        // --------------------------------------------- Methods from FacesContext
+
+
+        @Override
+        public Map<Object, Object> getAttributes() {
+
+            return attributes;
+
+        }
+
+
+        @Override
+        public ELContext getELContext() {
+
+            if (elContext == null) {
+                Application app = getApplication();
+                ELContextImpl elContextImpl = new ELContextImpl(app.getELResolver());
+                ELContext parent = getWrapped().getELContext();
+                elContextImpl.setFunctionMapper(parent.getFunctionMapper());
+                elContextImpl.putContext(FacesContext.class, this);
+                ExpressionFactory exFactory = ELUtils.getDefaultExpressionFactory(this);
+                if (exFactory != null) {
+                    elContextImpl.putContext(ExpressionFactory.class, exFactory);
+                }
+                elContextImpl.setLocale(parent.getLocale());
+                ELContextListener[] listeners = app.getELContextListeners();
+                if (listeners.length > 0) {
+                    ELContextEvent event = new ELContextEvent(elContextImpl);
+                    for (ELContextListener listener : listeners) {
+                        listener.contextCreated(event);
+                    }
+                }
+                elContext = elContextImpl;
+            }
+            return elContext;
+
+        }
+
+
+        @Override
+        public ExceptionHandler getExceptionHandler() {
+
+            if (exceptionHandler == null) {
+                exceptionHandler = new ExceptionHandlerWrapper(getWrapped().getExceptionHandler()) {
+                    @Override
+                    public void processEvent(SystemEvent event) throws AbortProcessingException {
+                        exceptionEvents.add(event);
+                    }
+                };
+            }
+            return exceptionHandler;
+
+        }
+
+
+        @Override
+        public void addMessage(String clientId, FacesMessage message) {
+
+            if (message == null) {
+                throw new NullPointerException();
+            }
+            messageClientIds.add(clientId);
+            messages.add(message);
+
+        }
+
+
+        @Override
+        public List<FacesMessage> getMessageList() {
+
+            List<FacesMessage> result = new ArrayList<>(getWrapped().getMessageList());
+            result.addAll(messages);
+            return Collections.unmodifiableList(result);
+
+        }
+
+
+        @Override
+        public List<FacesMessage> getMessageList(String clientId) {
+
+            List<FacesMessage> result = new ArrayList<>(getWrapped().getMessageList(clientId));
+            for (int i = 0, len = messages.size(); i < len; i++) {
+                String id = messageClientIds.get(i);
+                if (clientId == null ? id == null : clientId.equals(id)) {
+                    result.add(messages.get(i));
+                }
+            }
+            return Collections.unmodifiableList(result);
+
+        }
+
+
+        @Override
+        public Iterator<FacesMessage> getMessages() {
+
+            return getMessageList().iterator();
+
+        }
+
+
+        @Override
+        public Iterator<FacesMessage> getMessages(String clientId) {
+
+            return getMessageList(clientId).iterator();
+
+        }
+
+
+        @Override
+        public Iterator<String> getClientIdsWithMessages() {
+
+            Set<String> clientIds = new LinkedHashSet<>();
+            Iterator<String> ids = getWrapped().getClientIdsWithMessages();
+            while (ids.hasNext()) {
+                clientIds.add(ids.next());
+            }
+            clientIds.addAll(messageClientIds);
+            return Collections.unmodifiableSet(clientIds).iterator();
+
+        }
+
+
+        @Override
+        public FacesMessage.Severity getMaximumSeverity() {
+
+            FacesMessage.Severity result = getWrapped().getMaximumSeverity();
+            for (FacesMessage message : messages) {
+                FacesMessage.Severity severity = message.getSeverity();
+                if (result == null || (severity != null && severity.compareTo(result) > 0)) {
+                    result = severity;
+                }
+            }
+            return result;
+
+        }
+
+
+        @Override
+        public void renderResponse() {
+
+            renderResponse = true;
+
+        }
+
+
+        @Override
+        public boolean getRenderResponse() {
+
+            return renderResponse || getWrapped().getRenderResponse();
+
+        }
+
+
+        @Override
+        public void responseComplete() {
+
+            responseComplete = true;
+
+        }
+
+
+        @Override
+        public boolean getResponseComplete() {
+
+            return responseComplete || getWrapped().getResponseComplete();
+
+        }
+
+
+        @Override
+        public void validationFailed() {
+
+            validationFailed = true;
+
+        }
+
+
+        @Override
+        public boolean isValidationFailed() {
+
+            return validationFailed || getWrapped().isValidationFailed();
+
+        }
+
+
+        @Override
+        public void release() {
+
+            // the wrapped context is released by its owner
+
+        }
+
+
+        // ------------------------------------------------------ Private Methods
+
+
+        private void makeCurrent() {
+
+            previous = FacesContext.getCurrentInstance();
+            setCurrentInstance(this);
+
+        }
+
+
+        private void restoreCurrent() {
+
+            setCurrentInstance(previous);
+            previous = null;
+
+        }
+
+
+        /*
+         * Apply everything collected by the task to the real context.  Must be
+         * called on the thread owning that context.
+         */
+        private void applyTo(FacesContext context, UIViewRoot root) {
+
+            ExceptionHandler handler = context.getExceptionHandler();
+            for (SystemEvent event : exceptionEvents) {
+                handler.processEvent(event);
+            }
+            for (int i = 0, len = messages.size(); i < len; i++) {
+                context.addMessage(messageClientIds.get(i), messages.get(i));
+            }
+            for (FacesEvent event : events) {
+                root.queueEvent(event);
+            }
+            Map<Object, Object> contextAttributes = context.getAttributes();
+            for (Map.Entry<Object, Object> entry : attributes.entrySet()) {
+                Object value = entry.getValue();
+                if (!(value instanceof ArrayDeque)
+                      && contextAttributes.get(entry.getKey()) != value) {
+                    contextAttributes.put(entry.getKey(), value);
+                }
+            }
+            if (validationFailed) {
+                context.validationFailed();
+            }
+            if (renderResponse) {
+                context.renderResponse();
+            }
+            if (responseComplete) {
+                context.responseComplete();
+            }
+
+        }
+
+    } // END SubtreeContext
+
+}
@@ -0,0 +1,105 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.component;
+
+/**
+ * <p>
+ * Builds the per-row client ids of an iterating component such as <code>UIData</code> or
+ * <code>UIRepeat</code>, i.e. the base client id of the component followed by the separator
+ * character and the row index.
+ * </p>
+ *
+ * <p>
+ * While rows are processed every descendant asks its iterating ancestor for its container client
+ * id, so the same row id is requested many times in a row. The last row id is therefore kept and
+ * returned as long as neither the base client id nor the row index changed. New row ids are built
+ * by appending the row index to a reusable builder that already holds the base client id and the
+ * separator.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread safe and are meant to be held by a single component.
+ * </p>
+ */
+public final class RowClientIdCache {
+
+    private final StringBuilder builder = new StringBuilder(32);
+
+    private String baseClientId;
+    private char separatorChar;
+    private int baseLength;
+
+    private int rowIndex = -1;
+    private String rowClientId;
+
+
+    // ---------------------------------------------------------- Public Methods
+
+    /**
+     * @param baseClientId the client id of the iterating component without any row index
+     * @param separatorChar the naming container separator character
+     * @param rowIndex the current row index, not negative
+     * @return <code>baseClientId</code>, <code>separatorChar</code> and <code>rowIndex</code>
+     *         concatenated
+     */
+    public String getRowClientId(String baseClientId, char separatorChar, int rowIndex) {
+        // The base client id is compared by identity: a component returns the
+        // same instance until its client id is reset, and a reset produces a
+        // new String even when the value turns out to be unchanged.
+        if (baseClientId != this.baseClientId || separatorChar != this.separatorChar) {
+            builder.setLength(0);
+            builder.append(baseClientId).append(separatorChar);
+            this.baseClientId = baseClientId;
+            this.separatorChar = separatorChar;
+            baseLength = builder.length();
+            rowClientId = null;
+        } else if (rowIndex == this.rowIndex && rowClientId != null) {
+            return rowClientId;
+        }
+
+        builder.setLength(baseLength);
+        rowClientId = builder.append(rowIndex).toString();
+        this.rowIndex = rowIndex;
+
+        return rowClientId;
+    }
+
+}
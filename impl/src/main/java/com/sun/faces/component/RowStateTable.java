@@ -0,0 +1,338 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.component;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Holds the per-row state of the <code>EditableValueHolder</code> and <code>UIForm</code>
+ * descendants of an iterating component such as <code>UIData</code> or <code>UIRepeat</code>.
+ * </p>
+ *
+ * <p>
+ * Descendants are identified by their ordinal, i.e. their position in the traversal order of the
+ * iterating component, instead of by their row client id. The state of one row is packed in a
+ * single array holding the local value, the submitted value and the flags of each descendant, and
+ * only rows which differ from the initial state are stored. The initial state is either the
+ * default state of a pristine input, or a row explicitly saved as initial. The ids of the
+ * descendants are recorded once for all rows; if the component tree is found to be different when
+ * a row is saved, the rows saved before are discarded.
+ * </p>
+ *
+ * <p>
+ * A row is saved by calling {@link #beginRow()}, then {@link #save} for each descendant in
+ * traversal order, then {@link #endRow(int)} or {@link #endInitialRow()}. A row is restored by
+ * calling {@link #beginRestore(int)}, then {@link #restore(String)} for each descendant in the
+ * same order, reading the state of the descendant with {@link #getValue()},
+ * {@link #getSubmittedValue()} and {@link #getFlags()} whenever it returns <code>true</code>.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread safe and are meant to be held by a single component.
+ * </p>
+ */
+public final class RowStateTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * <p>Flag set when the input is not valid.</p>
+     */
+    public static final int INVALID = 1;
+
+    /**
+     * <p>Flag set when the input has a local value set.</p>
+     */
+    public static final int LOCAL_VALUE_SET = 2;
+
+    /**
+     * <p>Flag set when the form was submitted.</p>
+     */
+    public static final int SUBMITTED = 4;
+
+    private static final int CELL = 3;
+    private static final String[] NO_IDS = {};
+    private static final Object[] NO_STATE = {};
+    private static final int[] NO_ROW_INDEXES = {};
+    private static final Object[][] NO_ROWS = {};
+
+    // The descendant ids by ordinal
+    private String[] ids = NO_IDS;
+    private int descendants;
+
+    // The initial row, or null for the default state
+    private Object[] initial;
+
+    // The saved rows, sorted by row index
+    private int[] rowIndexes = NO_ROW_INDEXES;
+    private Object[][] rows = NO_ROWS;
+    private int rowCount;
+
+    // The row being saved or restored
+    private transient Object[] buffer;
+    private transient Object[] current;
+    private transient int cursor;
+
+
+    // ------------------------------------------------------------ Constructors
+
+    /**
+     * <p>Creates an empty table whose initial state is the default state.</p>
+     */
+    public RowStateTable() {
+    }
+
+    /**
+     * <p>Creates an empty table with the same descendants and initial state as the given table.</p>
+     *
+     * @param template the table to take the descendants and initial state from
+     */
+    public RowStateTable(RowStateTable template) {
+        ids = Arrays.copyOf(template.ids, template.descendants);
+        descendants = template.descendants;
+        initial = template.initial;
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+    /**
+     * @return <code>true</code> if no row is saved
+     */
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    /**
+     * <p>Starts saving a row.</p>
+     */
+    public void beginRow() {
+        if (buffer == null || buffer.length < descendants * CELL) {
+            buffer = new Object[Math.max(descendants, 4) * CELL];
+        }
+        cursor = 0;
+    }
+
+    /**
+     * <p>Saves the state of the next descendant of the row being saved.</p>
+     *
+     * @param id the id of the descendant
+     * @param value the local value
+     * @param submittedValue the submitted value
+     * @param flags any of {@link #INVALID}, {@link #LOCAL_VALUE_SET} and {@link #SUBMITTED}
+     */
+    public void save(String id, Object value, Object submittedValue, int flags) {
+        if (cursor == descendants) {
+            if (descendants == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(descendants * 2, 4));
+            }
+            ids[descendants++] = id;
+        } else if (!Objects.equals(ids[cursor], id)) {
+            // The component tree changed, the saved rows no longer apply
+            ids[cursor] = id;
+            descendants = cursor + 1;
+            initial = null;
+            clearRows();
+        }
+
+        int offset = cursor * CELL;
+        if (offset == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[offset] = value;
+        buffer[offset + 1] = submittedValue;
+        buffer[offset + 2] = flags;
+        cursor++;
+    }
+
+    /**
+     * <p>Ends saving a row. The row is stored only if it differs from the initial state,
+     * otherwise any row stored before for the same index is removed.</p>
+     *
+     * @param rowIndex the index of the row
+     * @return <code>true</code> if the table was changed
+     */
+    public boolean endRow(int rowIndex) {
+        int length = cursor * CELL;
+        int position = Arrays.binarySearch(rowIndexes, 0, rowCount, rowIndex);
+
+        if (isInitial(buffer, length)) {
+            if (position < 0) {
+                return false;
+            }
+            removeAt(position);
+            return true;
+        }
+
+        if (position >= 0) {
+            Object[] row = rows[position];
+            if (row.length == length) {
+                System.arraycopy(buffer, 0, row, 0, length);
+            } else {
+                rows[position] = Arrays.copyOf(buffer, length);
+            }
+            return true;
+        }
+
+        position = -position - 1;
+        if (rowCount == rowIndexes.length) {
+            int capacity = Math.max(rowCount * 2, 4);
+            rowIndexes = Arrays.copyOf(rowIndexes, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+        System.arraycopy(rowIndexes, position, rowIndexes, position + 1, rowCount - position);
+        System.arraycopy(rows, position, rows, position + 1, rowCount - position);
+        rowIndexes[position] = rowIndex;
+        rows[position] = Arrays.copyOf(buffer, length);
+        rowCount++;
+        return true;
+    }
+
+    /**
+     * <p>Ends saving a row and uses it as the initial state of all rows.</p>
+     */
+    public void endInitialRow() {
+        initial = (cursor == 0) ? NO_STATE : Arrays.copyOf(buffer, cursor * CELL);
+    }
+
+    /**
+     * <p>Removes the row with the given index, if any.</p>
+     *
+     * @param rowIndex the index of the row
+     */
+    public void removeRow(int rowIndex) {
+        int position = Arrays.binarySearch(rowIndexes, 0, rowCount, rowIndex);
+        if (position >= 0) {
+            removeAt(position);
+        }
+    }
+
+    /**
+     * <p>Starts restoring a row.</p>
+     *
+     * @param rowIndex the index of the row
+     * @return <code>true</code> if the row was saved, <code>false</code> if it is in its initial
+     * state
+     */
+    public boolean beginRestore(int rowIndex) {
+        int position = Arrays.binarySearch(rowIndexes, 0, rowCount, rowIndex);
+        current = (position >= 0) ? rows[position] : initial;
+        cursor = 0;
+        return position >= 0;
+    }
+
+    /**
+     * <p>Moves to the next descendant of the row being restored.</p>
+     *
+     * @param id the id of the descendant
+     * @return <code>true</code> if state is available for the descendant, <code>false</code>
+     * if it must be reset to the default state
+     */
+    public boolean restore(String id) {
+        int offset = cursor * CELL;
+        boolean available = current != null
+                && offset < current.length
+                && cursor < descendants
+                && Objects.equals(ids[cursor], id);
+        cursor++;
+        return available;
+    }
+
+    /**
+     * @return the local value of the current descendant
+     */
+    public Object getValue() {
+        return current[(cursor - 1) * CELL];
+    }
+
+    /**
+     * @return the submitted value of the current descendant
+     */
+    public Object getSubmittedValue() {
+        return current[(cursor - 1) * CELL + 1];
+    }
+
+    /**
+     * @return the flags of the current descendant
+     */
+    public int getFlags() {
+        return (Integer) current[(cursor - 1) * CELL + 2];
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+    private boolean isInitial(Object[] row, int length) {
+        if (initial == null) {
+            for (int i = 0; i < length; i += CELL) {
+                if (row[i] != null || row[i + 1] != null || (Integer) row[i + 2] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (initial.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (!Objects.equals(row[i], initial[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(rowIndexes, position + 1, rowIndexes, position, rowCount - position - 1);
+        System.arraycopy(rows, position + 1, rows, position, rowCount - position - 1);
+        rows[--rowCount] = null;
+    }
+
+    private void clearRows() {
+        Arrays.fill(rows, 0, rowCount, null);
+        rowCount = 0;
+    }
+
+}
@@ -93,6 +93,7 @@ public class InitFacesContext extends FacesContext {
     private ServletContextAdapter ec;
     private UIViewRoot viewRoot;
     private Map<Object,Object> attributes;
+    private final boolean registered;
     private ELContext elContext = new ELContext() {
         @Override
         public ELResolver getELResolver() {
@@ -111,11 +112,24 @@ public class InitFacesContext extends FacesContext {
     };
 
     public InitFacesContext(ServletContext sc) {
+        this(sc, true);
+    }
+
+    /**
+     * @param register if <code>false</code>, the context is neither stored in the
+     *  <code>ServletContext</code> nor in the init context maps, so it is never
+     *  returned by {@link FacesContext#getCurrentInstance()} on other threads.
+     *  It is up to the subclass to make it the current instance of its thread.
+     */
+    protected InitFacesContext(ServletContext sc, boolean register) {
         ec = new ServletContextAdapter(sc);
-        sc.setAttribute(INIT_FACES_CONTEXT_ATTR_NAME, this);
-        InitFacesContext.cleanupInitMaps(sc);
-        getThreadInitContextMap().put(Thread.currentThread(), this);
-        getInitContextServletContextMap().put(this, sc);
+        registered = register;
+        if (register) {
+            sc.setAttribute(INIT_FACES_CONTEXT_ATTR_NAME, this);
+            InitFacesContext.cleanupInitMaps(sc);
+            getThreadInitContextMap().put(Thread.currentThread(), this);
+            getInitContextServletContextMap().put(this, sc);
+        }
     }
     
     public void reInitializeExternalContext(ServletContext sc) {
@@ -256,7 +270,7 @@ public class InitFacesContext extends FacesContext {
     public void release() {
         setCurrentInstance(null);
         if (null != ec) {
-            Map<String, Object> appMap = ec.getApplicationMap();
+            Map<String, Object> appMap = registered ? ec.getApplicationMap() : null;
             if (null != appMap && appMap instanceof ApplicationMap) {
                 if (null != ((ApplicationMap)appMap).getContext()) {
                     appMap.remove(INIT_FACES_CONTEXT_ATTR_NAME);
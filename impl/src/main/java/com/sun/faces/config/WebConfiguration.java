@@ -956,6 +956,14 @@ public class WebConfiguration {
               "com.sun.faces.serializationProvider",
               ""
         ),
+        ViewStateStoreClass(
+              "com.sun.faces.viewStateStore",
+              ""
+        ),
+        ViewStateStoreMaxBytes(
+              "com.sun.faces.viewStateStoreMaxBytes",
+              "67108864" // 64 MB
+        ),
         ResponseBufferSize(
               "com.sun.faces.responseBufferSize",
               "1024"
@@ -975,6 +983,42 @@ public class WebConfiguration {
               "com.sun.faces.clientStateWriteBufferSize",
               "8192"
         ),
+        PartialResponseBufferSize(
+              "com.sun.faces.partialResponseBufferSize",
+              "8192"
+        ),
+        WebsocketBatchWindow(
+              "com.sun.faces.websocketBatchWindow",
+              "0" // in milliseconds, 0 disables batching
+        ),
+        WebsocketMaxPendingMessages(
+              "com.sun.faces.websocketMaxPendingMessages",
+              "100"
+        ),
+        PushBroadcastBusClass(
+              "com.sun.faces.pushBroadcastBus",
+              ""
+        ),
+        PushBroadcastDirectory(
+              "com.sun.faces.pushBroadcastDirectory",
+              ""
+        ),
+        PushBroadcastPollInterval(
+              "com.sun.faces.pushBroadcastPollInterval",
+              "100" // in milliseconds
+        ),
+        ViewStateCompressionLevel(
+              "com.sun.faces.viewStateCompressionLevel",
+              "6"
+        ),
+        ViewStateCompressionThreshold(
+              "com.sun.faces.viewStateCompressionThreshold",
+              "256" // in bytes
+        ),
+        ViewStateMaxInflationRatio(
+              "com.sun.faces.viewStateMaxInflationRatio",
+              "100"
+        ),
         ResourceBufferSize(
             "com.sun.faces.resourceBufferSize",
             "2048"
@@ -995,6 +1039,14 @@ public class WebConfiguration {
               "com.sun.faces.resourceUpdateCheckPeriod",
               "5" // in minutes
         ),
+        ResourceCacheMaxEntries(
+              "com.sun.faces.resourceCacheMaxEntries",
+              "10000"
+        ),
+        ResourceCacheMissingResourceTTL(
+              "com.sun.faces.resourceCacheMissingResourceTTL",
+              "60" // in seconds
+        ),
         CompressableMimeTypes(
               "com.sun.faces.compressableMimeTypes",
               ""
@@ -1078,6 +1130,22 @@ public class WebConfiguration {
             "com.sun.faces.faceletCache",
             ""
         ),
+        FaceletsCompilationCacheDirectory(
+            "com.sun.faces.faceletsCompilationCacheDirectory",
+            ""
+        ),
+        FaceletsCacheMaxEntries(
+            "com.sun.faces.faceletsCacheMaxEntries",
+            ""
+        ),
+        FaceletsCacheMaxWeight(
+            "com.sun.faces.faceletsCacheMaxWeight",
+            ""
+        ),
+        FaceletsExpressionCacheMaxEntries(
+            "com.sun.faces.faceletsExpressionCacheMaxEntries",
+            "1000"
+        ),
         FaceletsProcessingFileExtensionProcessAs(
                 "",
                 ""
@@ -1260,6 +1328,10 @@ public class WebConfiguration {
               true,
               CompressViewState
         ),
+        IncrementalClientState(
+              "com.sun.faces.incrementalClientState",
+              false
+        ),
         CompressJavaScript(
             "com.sun.faces.compressJavaScript",
             true
@@ -1344,6 +1416,18 @@ public class WebConfiguration {
               FaceletsSkipComments,
               new FaceletsConfigParamLoggingStrategy()
         ),
+        FaceletsCompilationCacheWarmup(
+              "com.sun.faces.faceletsCompilationCacheWarmup",
+              false
+        ),
+        FaceletsBackgroundRefresh(
+              "com.sun.faces.faceletsBackgroundRefresh",
+              false
+        ),
+        FaceletsCacheStatistics(
+              "com.sun.faces.faceletsCacheStatistics",
+              false
+        ),
         PartialStateSaving(
               StateManager.PARTIAL_STATE_SAVING_PARAM_NAME,
               true
@@ -1372,6 +1456,22 @@ public class WebConfiguration {
               "com.sun.faces.cacheResourceModificationTimestamp",
               false
         ),
+        EnableStaticResourceIndex(
+              "com.sun.faces.enableStaticResourceIndex",
+              false
+        ),
+        EnableStreamingPartialResponse(
+              "com.sun.faces.enableStreamingPartialResponse",
+              false
+        ),
+        EnableClientIdIndex(
+              "com.sun.faces.enableClientIdIndex",
+              false
+        ),
+        EnableParallelSubtreeProcessing(
+              "com.sun.faces.enableParallelSubtreeProcessing",
+              false
+        ),
         EnableAgressiveSessionDirtying(
               "com.sun.faces.enableAgressiveSessionDirtying",
               false
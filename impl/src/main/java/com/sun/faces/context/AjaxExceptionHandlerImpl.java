@@ -188,15 +188,23 @@ public class AjaxExceptionHandlerImpl extends ExceptionHandlerWrapper {
 
     // --------------------------------------------------------- Private Methods
 
-     private void handlePartialResponseError(FacesContext context, Throwable t) {
+     /**
+      * Writes the error into the partial response.  If the response has
+      * already been committed, e.g. by a streamed partial response, the
+      * partial response writer completes the document written so far
+      * instead of starting a new one.
+      */
+     static void handlePartialResponseError(FacesContext context, Throwable t) {
          if (context.getResponseComplete()) {
              return; // don't write anything if the response is complete
          }
          try {
 
              ExternalContext extContext = context.getExternalContext();
-             extContext.setResponseContentType("text/xml");
-             extContext.addResponseHeader("Cache-Control", "no-cache");
+             if (!extContext.isResponseCommitted()) {
+                 extContext.setResponseContentType("text/xml");
+                 extContext.addResponseHeader("Cache-Control", "no-cache");
+             }
              PartialResponseWriter writer = context.getPartialViewContext().getPartialResponseWriter();
 
              writer.startDocument();
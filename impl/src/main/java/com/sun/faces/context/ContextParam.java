@@ -54,6 +54,15 @@ public enum ContextParam {
      * Send the "X-Powered-By" header.
      */
     SendPoweredByHeader("com.sun.faces.sendPoweredByHeader", Boolean.class, false),
+    /**
+     * Encode UTF-8 responses directly onto the response output stream.
+     * Once the output stream is in use, a later call to
+     * <code>ServletResponse.getWriter()</code>, e.g. by a filter or a
+     * component writing to the servlet response itself, throws an
+     * <code>IllegalStateException</code>.  The response writer is used
+     * instead if the output stream is not available.
+     */
+    DirectByteResponseWriting("com.sun.faces.directByteResponseWriting", Boolean.class, false),
     /**
      * The websocket endpoint port (default is the same as the HTTP port 80).
      */
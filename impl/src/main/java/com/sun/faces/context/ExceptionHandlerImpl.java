@@ -258,6 +258,13 @@ public class ExceptionHandlerImpl extends ExceptionHandler {
         boolean isDevelopment = ctx.isProjectStage(ProjectStage.Development);
         ExternalContext extContext = ctx.getExternalContext();
         Throwable wrapped = fe.getCause();
+        if (extContext.isResponseCommitted()
+              && ctx.getPartialViewContext().isPartialRequest()) {
+            // a streamed partial response can neither be reset nor
+            // replaced, so report the error within the response
+            AjaxExceptionHandlerImpl.handlePartialResponseError(ctx, fe);
+            return;
+        }
         try {
             extContext.responseReset();
         } catch (Exception e) {
@@ -42,6 +42,7 @@ package com.sun.faces.context;
 
 import com.sun.faces.RIConstants;
 import com.sun.faces.context.flash.ELFlash;
+import com.sun.faces.io.Utf8OutputStreamWriter;
 import com.sun.faces.util.FacesLogger;
 import com.sun.faces.util.MessageUtils;
 import static com.sun.faces.util.MessageUtils.NULL_PARAMETERS_ERROR_MESSAGE_ID;
@@ -111,6 +112,8 @@ public class ExternalContextImpl extends ExternalContext {
     private Map<String,String> fallbackContentTypeMap = null;
     private Flash flash;
     private boolean distributable;
+    private boolean directByteResponseWriting;
+    private Writer responseOutputWriter;
 
     private enum ALLOWABLE_COOKIE_PROPERTIES {
         domain,
@@ -147,6 +150,7 @@ public class ExternalContextImpl extends ExternalContext {
         }
 
         distributable = ContextParamUtils.getValue(servletContext, ContextParam.EnableDistributable, Boolean.class);
+        directByteResponseWriting = ContextParamUtils.getValue(servletContext, ContextParam.DirectByteResponseWriting, Boolean.class);
 
         fallbackContentTypeMap = new HashMap<>(3, 1.0f);
         fallbackContentTypeMap.put("js", "text/javascript");
@@ -255,6 +259,7 @@ public class ExternalContextImpl extends ExternalContext {
     public void setResponse(Object response) {
         if (response instanceof ServletResponse) {
             this.response = (ServletResponse) response;
+            this.responseOutputWriter = null;
         }
     }
 
@@ -917,7 +922,13 @@ public class ExternalContextImpl extends ExternalContext {
     @Override
     public Writer getResponseOutputWriter() throws IOException {
 
-        return response.getWriter();
+        if (!directByteResponseWriting) {
+            return response.getWriter();
+        }
+        if (responseOutputWriter == null) {
+            responseOutputWriter = createResponseOutputWriter();
+        }
+        return responseOutputWriter;
         
     }
 
@@ -1198,6 +1209,36 @@ public class ExternalContextImpl extends ExternalContext {
     // --------------------------------------------------------- Private Methods
 
 
+    /**
+     * <p>When the response is <code>UTF-8</code> encoded, return a writer
+     * that encodes directly onto the response output stream, which avoids
+     * the container's char to byte conversion and allows pre-encoded markup
+     * to be written as is.  Otherwise, or if the output stream is not
+     * available (e.g. the response writer has already been obtained by a
+     * filter, or a response wrapper doesn't support it), return the response
+     * writer.</p>
+     */
+    private Writer createResponseOutputWriter() throws IOException {
+
+        if (RIConstants.CHAR_ENCODING.equalsIgnoreCase(response.getCharacterEncoding())) {
+            try {
+                OutputStream out = response.getOutputStream();
+                if (out != null) {
+                    return new Utf8OutputStreamWriter(out);
+                }
+            } catch (IllegalStateException | UnsupportedOperationException | IOException e) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE,
+                               "Response output stream not available, direct byte writing disabled",
+                               e);
+                }
+            }
+        }
+        return response.getWriter();
+
+    }
+
+
     public String getFallbackMimeType(String file) {
 
         if (file == null || file.length() == 0) {
@@ -40,6 +40,8 @@
 
 package com.sun.faces.context;
 
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableStreamingPartialResponse;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.PartialResponseBufferSize;
 import static com.sun.faces.renderkit.RenderKitUtils.PredefinedPostbackParameter.PARTIAL_EXECUTE_PARAM;
 import static com.sun.faces.renderkit.RenderKitUtils.PredefinedPostbackParameter.PARTIAL_RENDER_PARAM;
 import static com.sun.faces.renderkit.RenderKitUtils.PredefinedPostbackParameter.PARTIAL_RESET_VALUES_PARAM;
@@ -78,7 +80,9 @@ import javax.faces.lifecycle.ClientWindow;
 import javax.faces.render.RenderKit;
 import javax.faces.render.RenderKitFactory;
 
+import com.sun.faces.component.ClientIdIndex;
 import com.sun.faces.component.visit.PartialVisitContext;
+import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.renderkit.RenderKitUtils.PredefinedPostbackParameter;
 import com.sun.faces.util.FacesLogger;
 import com.sun.faces.util.HtmlUtils;
@@ -420,7 +424,15 @@ import com.sun.faces.util.Util;
         VisitContext visitContext = visitContextFactory.getVisitContext(context, phaseClientIds, hints);
         PhaseAwareVisitCallback visitCallback =
             new PhaseAwareVisitCallback(ctx, phaseId);
-        component.visitTree(visitContext, visitCallback);
+
+        // If the client id index can resolve all of the ids, visit the
+        // targets directly rather than walking the tree to find them.
+        ClientIdIndex index = (component instanceof UIViewRoot)
+                                ? ClientIdIndex.getIndex(context, (UIViewRoot) component)
+                                : null;
+        if (index == null || !index.visitTree(visitContext, phaseClientIds, visitCallback)) {
+            component.visitTree(visitContext, visitCallback);
+        }
 
         PartialVisitContext partialVisitContext = unwrapPartialVisitContext(visitContext);
         if (partialVisitContext != null) {
@@ -668,11 +680,39 @@ import com.sun.faces.util.Util;
      /**
       * Delays the actual construction of the PartialResponseWriter <em>until</em>
       * content is going to actually be written.
+      *
+      * <p>When <code>com.sun.faces.enableStreamingPartialResponse</code> is
+      * set, the response buffer is bounded by
+      * <code>com.sun.faces.partialResponseBufferSize</code> and the response
+      * is flushed to the client each time an <code>update</code>,
+      * <code>insert</code>, <code>eval</code> or <code>extension</code>
+      * element has been completed, so large partial responses are not held
+      * in memory until the end of the request.  CDATA sections are still
+      * closed by the wrapped writer per element, so a flush never leaves a
+      * section that spans two elements.  Note that once the first element
+      * has been flushed the response is committed, and headers or cookies
+      * (e.g. the flash cookie) can no longer be added.</p>
+      *
+      * <p>A committed response can neither be reset nor replaced by an
+      * error document.  If an error is reported once the response has been
+      * committed, a second {@link #startDocument()} is therefore ignored,
+      * the CDATA section and the element of the change being rendered are
+      * closed, and the <code>error</code> element is written into the
+      * current <code>changes</code> element, which is closed along with the
+      * document by {@link #endDocument()}.  The client applies the changes
+      * preceding the error and then reports the error.</p>
       */
     private static final class DelayedInitPartialResponseWriter extends PartialResponseWriter {
 
         private ResponseWriter writer;
         private PartialViewContextImpl ctx;
+        private boolean streaming;
+
+        // the state of the document, used to complete a streamed document
+        // that is already committed when an error is reported
+        private boolean documentStarted;
+        private boolean inChanges;
+        private String openChange;
 
         // -------------------------------------------------------- Constructors
 
@@ -684,7 +724,14 @@ import com.sun.faces.util.Util;
             ExternalContext extCtx = ctx.ctx.getExternalContext();
             extCtx.setResponseContentType("text/xml");
             extCtx.setResponseCharacterEncoding(extCtx.getRequestCharacterEncoding());
-            extCtx.setResponseBufferSize(ctx.ctx.getExternalContext().getResponseBufferSize());
+            WebConfiguration webConfig = WebConfiguration.getInstance(extCtx);
+            streaming = webConfig != null
+                          && webConfig.isOptionEnabled(EnableStreamingPartialResponse);
+            if (streaming) {
+                extCtx.setResponseBufferSize(getStreamingBufferSize(webConfig));
+            } else {
+                extCtx.setResponseBufferSize(ctx.ctx.getExternalContext().getResponseBufferSize());
+            }
         }
 
 
@@ -695,6 +742,121 @@ import com.sun.faces.util.Util;
             HtmlUtils.writeUnescapedTextForXML(getWrapped(), text);
         }
 
+        @Override
+        public void startDocument() throws IOException {
+            if (documentStarted && isCommitted()) {
+                // the partial-response element is already on its way to
+                // the client, e.g. an error reported while streaming
+                return;
+            }
+            super.startDocument();
+            documentStarted = true;
+        }
+
+        @Override
+        public void startUpdate(String targetId) throws IOException {
+            super.startUpdate(targetId);
+            startChange("update");
+        }
+
+        @Override
+        public void endUpdate() throws IOException {
+            super.endUpdate();
+            openChange = null;
+            flushIfStreaming();
+        }
+
+        @Override
+        public void startInsertBefore(String targetId) throws IOException {
+            super.startInsertBefore(targetId);
+            startChange("insert");
+        }
+
+        @Override
+        public void startInsertAfter(String targetId) throws IOException {
+            super.startInsertAfter(targetId);
+            startChange("insert");
+        }
+
+        @Override
+        public void endInsert() throws IOException {
+            super.endInsert();
+            openChange = null;
+            flushIfStreaming();
+        }
+
+        @Override
+        public void startEval() throws IOException {
+            super.startEval();
+            startChange("eval");
+        }
+
+        @Override
+        public void endEval() throws IOException {
+            super.endEval();
+            openChange = null;
+            flushIfStreaming();
+        }
+
+        @Override
+        public void startExtension(Map<String, String> attributes) throws IOException {
+            super.startExtension(attributes);
+            startChange("extension");
+        }
+
+        @Override
+        public void endExtension() throws IOException {
+            super.endExtension();
+            openChange = null;
+            flushIfStreaming();
+        }
+
+        @Override
+        public void updateAttributes(String targetId, Map<String, String> attributes)
+              throws IOException {
+            super.updateAttributes(targetId, attributes);
+            inChanges = true;
+        }
+
+        @Override
+        public void delete(String targetId) throws IOException {
+            super.delete(targetId);
+            inChanges = true;
+        }
+
+        @Override
+        public void redirect(String url) throws IOException {
+            super.redirect(url);
+            inChanges = false;
+        }
+
+        @Override
+        public void startError(String errorName) throws IOException {
+            if (inChanges && isCommitted()) {
+                // the changes written so far can't be taken back, so close
+                // the change being rendered and report the error within
+                // the changes, endDocument() closes them
+                endOpenChange();
+                ResponseWriter writer = getWrapped();
+                writer.startElement("error", null);
+                writer.startElement("error-name", null);
+                writer.write(errorName);
+                writer.endElement("error-name");
+                writer.startElement("error-message", null);
+                writer.startCDATA();
+            } else {
+                super.startError(errorName);
+                inChanges = false;
+                openChange = null;
+            }
+        }
+
+        @Override
+        public void endDocument() throws IOException {
+            super.endDocument();
+            inChanges = false;
+        }
+
         @Override
         public ResponseWriter getWrapped() {
 
@@ -704,6 +866,82 @@ import com.sun.faces.util.Util;
             return writer;
 
         }
+
+
+        // ----------------------------------------------------- Private Methods
+
+
+        private void startChange(String name) {
+
+            inChanges = true;
+            openChange = name;
+
+        }
+
+
+        /**
+         * Closes the CDATA section and the element of the change being
+         * rendered, if any.
+         */
+        private void endOpenChange() throws IOException {
+
+            if (openChange != null) {
+                switch (openChange) {
+                    case "update":
+                        super.endUpdate();
+                        break;
+                    case "insert":
+                        super.endInsert();
+                        break;
+                    case "eval":
+                        super.endEval();
+                        break;
+                    default:
+                        super.endExtension();
+                        break;
+                }
+                openChange = null;
+            }
+
+        }
+
+
+        private boolean isCommitted() {
+
+            return ctx.ctx.getExternalContext().isResponseCommitted();
+
+        }
+
+
+        private void flushIfStreaming() throws IOException {
+
+            if (streaming) {
+                // close any pending start tag, then push everything written
+                // so far past the container's buffer
+                getWrapped().flush();
+                ctx.ctx.getExternalContext().responseFlushBuffer();
+            }
+
+        }
+
+
+        private static int getStreamingBufferSize(WebConfiguration webConfig) {
+
+            String size = webConfig.getOptionValue(PartialResponseBufferSize);
+            try {
+                return Integer.parseInt(size);
+            } catch (NumberFormatException nfe) {
+                if (LOGGER.isLoggable(Level.WARNING)) {
+                    LOGGER.log(Level.WARNING,
+                               "Invalid value ''{0}'' for {1}, using {2}",
+                               new Object[] { size,
+                                              PartialResponseBufferSize.getQualifiedName(),
+                                              PartialResponseBufferSize.getDefaultValue() });
+                }
+                return Integer.parseInt(PartialResponseBufferSize.getDefaultValue());
+            }
+
+        }
          
     } // END DelayedInitPartialResponseWriter
 
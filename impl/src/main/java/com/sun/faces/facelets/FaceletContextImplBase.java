@@ -40,6 +40,8 @@
 
 package com.sun.faces.facelets;
 
+import com.sun.faces.facelets.el.ExpressionCache;
+
 import javax.el.ELException;
 import javax.faces.FacesException;
 import javax.faces.component.UIComponent;
@@ -83,6 +85,15 @@ public abstract class FaceletContextImplBase extends FaceletContext {
      * @throws ELException
      */
     public abstract boolean includeDefinition(UIComponent parent, String name) throws IOException, FaceletException, FacesException, ELException ;
+
+    /**
+     * Return the cache for the expressions created with this context
+     * @return the cache, or null if expressions are not cached
+     * @see ExpressionCache
+     */
+    public ExpressionCache getExpressionCache() {
+        return null;
+    }
     
 
 }
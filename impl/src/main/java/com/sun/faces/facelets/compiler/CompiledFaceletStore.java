@@ -0,0 +1,270 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.facelets.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.FacesException;
+
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * Persists the recorded SAX events of compiled Facelets in a work directory, so
+ * the documents don't need to be parsed again after a restart.  See {@link SAXEventLog}.
+ * </p>
+ *
+ * <p>
+ * An entry is keyed by the URL of the document and the settings affecting the
+ * parse, and holds the digest of the document it was recorded from.  An entry
+ * whose digest doesn't match the current content of the document is ignored
+ * and replaced by the next compilation.  Entries are written to a temporary
+ * file first and then renamed, so concurrent compilations of the same document
+ * (e.g. by another node sharing the directory) never see a partial entry.
+ * </p>
+ */
+public final class CompiledFaceletStore {
+
+    private static final Logger LOGGER = FacesLogger.FACELETS_COMPILER.getLogger();
+
+    private static final int MAGIC = 0x4A534643;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".fcache";
+
+    private final File directory;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param directory the work directory, created if it doesn't exist yet
+     */
+    public CompiledFaceletStore(File directory) {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new FacesException("Unable to create Facelets compilation cache directory "
+                                     + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    public File getDirectory() {
+
+        return directory;
+
+    }
+
+
+    // ------------------------------------------------ Package Private Methods
+
+
+    /**
+     * @return the content of <code>src</code>
+     */
+    static byte[] readSource(URL src) throws IOException {
+
+        try (InputStream is = src.openStream()) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(8192);
+            byte[] buf = new byte[8192];
+            for (int n = is.read(buf); n != -1; n = is.read(buf)) {
+                baos.write(buf, 0, n);
+            }
+            return baos.toByteArray();
+        }
+
+    }
+
+
+    /**
+     * @param key the settings affecting the parse of <code>src</code>
+     * @param content the current content of <code>src</code>
+     * @return the recording of <code>content</code>, or <code>null</code>
+     *  if there is none
+     */
+    byte[] load(URL src, String key, byte[] content) {
+
+        File file = getFile(src, key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] digest = new byte[in.readUnsignedByte()];
+            in.readFully(digest);
+            if (!Arrays.equals(digest, digest(content))) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Compiled Facelet for {0} is stale", src);
+                }
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > file.length()) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Compiled Facelet {0} is corrupt", file);
+                }
+                return null;
+            }
+            byte[] recording = new byte[length];
+            in.readFully(recording);
+            return recording;
+        } catch (EOFException eofe) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Compiled Facelet " + file + " is truncated", eofe);
+            }
+            return null;
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING, "Unable to read compiled Facelet " + file, ioe);
+            }
+            return null;
+        }
+
+    }
+
+
+    /**
+     * Stores the <code>recording</code> of <code>content</code>.  Failures are
+     * logged, as the document can always be parsed again.
+     */
+    void store(URL src, String key, byte[] content, byte[] recording) {
+
+        File file = getFile(src, key);
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("facelet", ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                byte[] digest = digest(content);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeByte(digest.length);
+                out.write(digest);
+                out.writeInt(recording.length);
+                out.write(recording);
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tmp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING, "Unable to write compiled Facelet " + file, ioe);
+            }
+        } finally {
+            if (tmp != null && !tmp.delete() && LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Unable to delete {0}", tmp);
+            }
+        }
+
+    }
+
+
+    /**
+     * Removes the entry of <code>src</code>, e.g. because it couldn't be replayed.
+     */
+    void remove(URL src, String key) {
+
+        File file = getFile(src, key);
+        if (file.isFile() && !file.delete() && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Unable to delete {0}", file);
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private File getFile(URL src, String key) {
+
+        byte[] digest = digest((src.toExternalForm() + '\n' + key).getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16));
+            name.append(Character.forDigit(b & 0xF, 16));
+        }
+        return new File(directory, name.append(SUFFIX).toString());
+
+    }
+
+
+    private static byte[] digest(byte[] bytes) {
+
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new FacesException(nsae);
+        }
+
+    }
+
+}
@@ -109,6 +109,8 @@ public abstract class Compiler {
 
     private final Map features = new HashMap();
 
+    private CompiledFaceletStore compiledFaceletStore;
+
 
     /**
      * 
@@ -229,6 +231,18 @@ public abstract class Compiler {
         this.trimmingWhitespace = trimmingWhitespace;
     }
 
+    /**
+     * @return the store for compiled Facelets, or <code>null</code> if
+     *  compiled Facelets aren't persisted
+     */
+    public final CompiledFaceletStore getCompiledFaceletStore() {
+        return this.compiledFaceletStore;
+    }
+
+    public final void setCompiledFaceletStore(CompiledFaceletStore compiledFaceletStore) {
+        this.compiledFaceletStore = compiledFaceletStore;
+    }
+
     public final boolean isValidating() {
         return this.validating;
     }
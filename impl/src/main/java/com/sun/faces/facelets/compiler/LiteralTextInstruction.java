@@ -59,24 +59,34 @@
 package com.sun.faces.facelets.compiler;
 
 import com.sun.faces.config.FaceletsConfiguration;
+import com.sun.faces.io.EncodedText;
+import com.sun.faces.renderkit.html_basic.HtmlResponseWriter;
 import javax.faces.context.FacesContext;
+import javax.faces.context.ResponseWriter;
 import java.io.IOException;
 import javax.el.ELContext;
 import javax.el.ExpressionFactory;
 
 final class LiteralTextInstruction implements Instruction {
-    private final String text;
+    private final EncodedText text;
 
     public LiteralTextInstruction(String text) {
-        this.text = text;
+        this.text = new EncodedText(text);
     }
 
     @Override
     public void write(FacesContext context) throws IOException {
+        ResponseWriter out = context.getResponseWriter();
         if (FaceletsConfiguration.getInstance(context).isEscapeInlineText(context)) {
-            context.getResponseWriter().writeText(this.text, null);
+            // subclasses may redefine writeText, so only the exact class
+            // gets the pre-encoded text
+            if (out.getClass() == HtmlResponseWriter.class) {
+                ((HtmlResponseWriter) out).writeText(this.text);
+            } else {
+                out.writeText(this.text.getText(), null);
+            }
         } else {
-            context.getResponseWriter().write(this.text);
+            this.text.writeTo(out);
         }
     }
 
@@ -58,6 +58,8 @@
 
 package com.sun.faces.facelets.compiler;
 
+import com.sun.faces.io.EncodedText;
+
 import javax.el.ELContext;
 import javax.el.ExpressionFactory;
 import javax.faces.context.FacesContext;
@@ -68,19 +70,17 @@ final class LiteralXMLInstruction implements Instruction {
 
     private final static char[] STOP = new char[0];
     
-    private final char[] instruction;
-    private final int len;
+    private final EncodedText instruction;
     
     public LiteralXMLInstruction(String literal) {
-        this.instruction = literal.toCharArray();
-        this.len = this.instruction.length;
+        this.instruction = new EncodedText(literal);
     }
 
     @Override
     public void write(FacesContext context) throws IOException {
         ResponseWriter rw = context.getResponseWriter();
         rw.writeText(STOP, 0, 0); // hack to get closing elements
-        rw.write(this.instruction, 0, this.len);
+        this.instruction.writeTo(rw);
     }
 
     @Override
@@ -76,6 +76,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -96,7 +97,7 @@ public final class SAXCompiler extends Compiler {
     
     private final static Pattern XmlDeclaration = Pattern.compile("^<\\?xml.+?version=['\"](.+?)['\"](.+?encoding=['\"]((.+?))['\"])?.*?\\?>");
 
-    private static class CompilationHandler extends DefaultHandler implements
+    static class CompilationHandler extends DefaultHandler implements
             LexicalHandler {
 
         protected final String alias;
@@ -477,28 +478,81 @@ public final class SAXCompiler extends Compiler {
     throws IOException {
 
         String encoding = getEncoding();
-        try (InputStream is = new BufferedInputStream(src.openStream(), 1024);) {
-            
-            writeXmlDecl(is, encoding, mngr);
-            SAXParser parser = this.createSAXParser(handler);
-            parser.parse(is, handler);
+        CompiledFaceletStore store = getCompiledFaceletStore();
+        if (store != null) {
+            compile(mngr, handler, src, alias, encoding, store);
+        } else {
+            try (InputStream is = new BufferedInputStream(src.openStream(), 1024);) {
+
+                writeXmlDecl(is, encoding, mngr);
+                SAXParser parser = this.createSAXParser(handler, handler);
+                parser.parse(is, handler);
+            } catch (SAXException e) {
+                throw new FaceletException("Error Parsing " + alias + ": "
+                        + e.getMessage(), e.getCause());
+            } catch (ParserConfigurationException e) {
+                throw new FaceletException("Error Configuring Parser " + alias
+                        + ": " + e.getMessage(), e.getCause());
+            } catch (FaceletException e) {
+                throw e;
+            }
+        }
+        FaceletHandler result = new EncodingHandler(mngr.createFaceletHandler(), encoding,
+                mngr.getCompilationMessageHolder());
+        mngr.setCompilationMessageHolder(null);
+
+        return result;
+
+    }
+    
+    /**
+     * Replays the SAX events recorded for the current content of <code>src</code>
+     * if the <code>store</code> has them.  Otherwise parses <code>src</code>
+     * and records the events in the <code>store</code>.
+     */
+    private void compile(CompilationManager mngr,
+                         CompilationHandler handler,
+                         URL src,
+                         String alias,
+                         String encoding,
+                         CompiledFaceletStore store)
+    throws IOException {
+
+        byte[] content = CompiledFaceletStore.readSource(src);
+        String key = encoding + ',' + isValidating() + ','
+                     + (handler.isDisallowDoctypeDeclSet() && handler.isDisallowDoctypeDecl());
+        byte[] recording = store.load(src, key, content);
+        try {
+            if (recording != null) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.log(Level.FINE, "Replaying compiled Facelet for {0}", src);
+                }
+                saveXmlDecl(SAXEventLog.replay(recording, handler), mngr);
+            } else {
+                InputStream is = new ByteArrayInputStream(content);
+                String xmlDecl = findXmlDecl(is, encoding);
+                saveXmlDecl(xmlDecl, mngr);
+                SAXEventLog.Recorder<CompilationHandler> recorder = new SAXEventLog.Recorder<>(handler, xmlDecl);
+                SAXParser parser = this.createSAXParser(handler, recorder);
+                parser.parse(is, recorder);
+                store.store(src, key, content, recorder.toByteArray());
+            }
         } catch (SAXException e) {
             throw new FaceletException("Error Parsing " + alias + ": "
                     + e.getMessage(), e.getCause());
         } catch (ParserConfigurationException e) {
             throw new FaceletException("Error Configuring Parser " + alias
                     + ": " + e.getMessage(), e.getCause());
-        } catch (FaceletException e) {
+        } catch (IOException e) {
+            if (recording != null) {
+                // the recording is corrupt, parse the document again next time
+                store.remove(src, key);
+            }
             throw e;
         }
-        FaceletHandler result = new EncodingHandler(mngr.createFaceletHandler(), encoding,
-                mngr.getCompilationMessageHolder());
-        mngr.setCompilationMessageHolder(null);
-
-        return result;
 
     }
-    
+
     private String getEncoding() {
         String result;
         String encodingFromRequest = null;
@@ -514,6 +568,14 @@ public final class SAXCompiler extends Compiler {
 
     protected static void writeXmlDecl(InputStream is, String encoding, CompilationManager mngr)
             throws IOException {
+        saveXmlDecl(findXmlDecl(is, encoding), mngr);
+    }
+
+    /**
+     * @return the XML declaration at the start of <code>is</code>, or <code>null</code>
+     */
+    private static String findXmlDecl(InputStream is, String encoding)
+            throws IOException {
         is.mark(128);
         try {
             byte[] b = new byte[128];
@@ -521,24 +583,32 @@ public final class SAXCompiler extends Compiler {
                 String r = new String(b, encoding);
                 Matcher m = XmlDeclaration.matcher(r);
                 if (m.find()) {
-                    WebConfiguration config = mngr.getWebConfiguration();
-                    FaceletsConfiguration faceletsConfig = config.getFaceletsConfiguration();
-                    boolean currentModeIsXhtml = faceletsConfig.isProcessCurrentDocumentAsFaceletsXhtml(mngr.getAlias());
-
-                    // We want to write the XML declaration if and only if
-                    // the file extension for the current file has a mapping
-                    // with the value of XHTML
-                    if (currentModeIsXhtml) {
-                        Util.saveXMLDECLToFacesContextAttributes(m.group(0) + "\n");
-                    }
+                    return m.group(0);
                 }
             }
+            return null;
         } finally {
             is.reset();
         }
     }
 
-    private SAXParser createSAXParser(CompilationHandler handler)
+    private static void saveXmlDecl(String xmlDecl, CompilationManager mngr) {
+        if (xmlDecl != null) {
+            WebConfiguration config = mngr.getWebConfiguration();
+            FaceletsConfiguration faceletsConfig = config.getFaceletsConfiguration();
+            boolean currentModeIsXhtml = faceletsConfig.isProcessCurrentDocumentAsFaceletsXhtml(mngr.getAlias());
+
+            // We want to write the XML declaration if and only if
+            // the file extension for the current file has a mapping
+            // with the value of XHTML
+            if (currentModeIsXhtml) {
+                Util.saveXMLDECLToFacesContextAttributes(xmlDecl + "\n");
+            }
+        }
+    }
+
+    private <H extends DefaultHandler & LexicalHandler> SAXParser createSAXParser(CompilationHandler handler,
+                                                                                   H target)
             throws SAXException, ParserConfigurationException {
         SAXParserFactory factory = Util.createSAXParserFactory();
         factory.setNamespaceAware(true);
@@ -553,9 +623,9 @@ public final class SAXCompiler extends Compiler {
         SAXParser parser = factory.newSAXParser();
         XMLReader reader = parser.getXMLReader();
         reader.setProperty("http://xml.org/sax/properties/lexical-handler",
-                handler);
-        reader.setErrorHandler(handler);
-        reader.setEntityResolver(handler);
+                target);
+        reader.setErrorHandler(target);
+        reader.setEntityResolver(target);
         return parser;
     }
 
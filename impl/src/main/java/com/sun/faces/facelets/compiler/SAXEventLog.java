@@ -0,0 +1,468 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.facelets.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * <p>
+ * A compact binary recording of the SAX events of a Facelet document, used by
+ * {@link SAXCompiler} together with {@link CompiledFaceletStore}.
+ * </p>
+ *
+ * <p>
+ * The compiled <code>FaceletHandler</code> tree references tag handlers,
+ * tag libraries and the <code>ExpressionFactory</code> of the running
+ * application, so it can't be persisted itself.  The events the compiler builds
+ * it from can be: replaying them into a <code>CompilationManager</code> produces
+ * the same tree (including locations for error messages) without running the
+ * XML parser.  The raw events are recorded, so a recording serves both the full
+ * and the metadata compilation of a document.
+ * </p>
+ */
+final class SAXEventLog {
+
+    private static final byte START_DOCUMENT = 1;
+    private static final byte END_DOCUMENT = 2;
+    private static final byte START_DTD = 3;
+    private static final byte END_DTD = 4;
+    private static final byte START_ELEMENT = 5;
+    private static final byte END_ELEMENT = 6;
+    private static final byte START_PREFIX_MAPPING = 7;
+    private static final byte END_PREFIX_MAPPING = 8;
+    private static final byte CHARACTERS = 9;
+    private static final byte IGNORABLE_WHITESPACE = 10;
+    private static final byte COMMENT = 11;
+    private static final byte START_CDATA = 12;
+    private static final byte END_CDATA = 13;
+    private static final byte PROCESSING_INSTRUCTION = 14;
+    private static final byte END = 0;
+
+    private static final int NULL_STRING = -1;
+    private static final int NEW_STRING = -2;
+
+
+    private SAXEventLog() { }
+
+
+    // ------------------------------------------------ Package Private Methods
+
+
+    /**
+     * Replays <code>recording</code> into <code>handler</code>.
+     *
+     * @return the XML declaration of the recorded document, or <code>null</code>
+     */
+    static <H extends DefaultHandler & LexicalHandler> String replay(byte[] recording, H handler)
+    throws IOException, SAXException {
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(recording));
+        List<String> strings = new ArrayList<>();
+        LocatorImpl locator = new LocatorImpl();
+        handler.setDocumentLocator(locator);
+
+        String xmlDecl = readString(in, strings);
+        for (byte op = in.readByte(); op != END; op = in.readByte()) {
+            switch (op) {
+                case START_DOCUMENT:
+                    handler.startDocument();
+                    break;
+                case END_DOCUMENT:
+                    handler.endDocument();
+                    break;
+                case START_DTD:
+                    handler.startDTD(readString(in, strings),
+                                     readString(in, strings),
+                                     readString(in, strings));
+                    break;
+                case END_DTD:
+                    handler.endDTD();
+                    break;
+                case START_ELEMENT: {
+                    locator.setLineNumber(in.readInt());
+                    locator.setColumnNumber(in.readInt());
+                    String uri = readString(in, strings);
+                    String localName = readString(in, strings);
+                    String qName = readString(in, strings);
+                    AttributesImpl attrs = new AttributesImpl();
+                    for (int i = 0, len = in.readInt(); i < len; i++) {
+                        attrs.addAttribute(readString(in, strings),
+                                           readString(in, strings),
+                                           readString(in, strings),
+                                           "CDATA",
+                                           readString(in, strings));
+                    }
+                    handler.startElement(uri, localName, qName, attrs);
+                    break;
+                }
+                case END_ELEMENT:
+                    locator.setLineNumber(in.readInt());
+                    locator.setColumnNumber(in.readInt());
+                    handler.endElement(readString(in, strings),
+                                       readString(in, strings),
+                                       readString(in, strings));
+                    break;
+                case START_PREFIX_MAPPING:
+                    handler.startPrefixMapping(readString(in, strings),
+                                               readString(in, strings));
+                    break;
+                case END_PREFIX_MAPPING:
+                    handler.endPrefixMapping(readString(in, strings));
+                    break;
+                case CHARACTERS: {
+                    char[] ch = readString(in, strings).toCharArray();
+                    handler.characters(ch, 0, ch.length);
+                    break;
+                }
+                case IGNORABLE_WHITESPACE: {
+                    char[] ch = readString(in, strings).toCharArray();
+                    handler.ignorableWhitespace(ch, 0, ch.length);
+                    break;
+                }
+                case COMMENT: {
+                    char[] ch = readString(in, strings).toCharArray();
+                    handler.comment(ch, 0, ch.length);
+                    break;
+                }
+                case START_CDATA:
+                    handler.startCDATA();
+                    break;
+                case END_CDATA:
+                    handler.endCDATA();
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    handler.processingInstruction(readString(in, strings),
+                                                  readString(in, strings));
+                    break;
+                default:
+                    throw new IOException("Unknown SAX event " + op);
+            }
+        }
+        return xmlDecl;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static String readString(DataInputStream in, List<String> strings)
+    throws IOException {
+
+        int idx = in.readInt();
+        if (idx == NULL_STRING) {
+            return null;
+        }
+        if (idx == NEW_STRING) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(s);
+            return s;
+        }
+        return strings.get(idx);
+
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * Passes all events on to a handler (usually a <code>CompilationHandler</code>)
+     * while recording them.
+     */
+    static final class Recorder<H extends DefaultHandler & LexicalHandler>
+          extends DefaultHandler implements LexicalHandler {
+
+        private final H handler;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String,Integer> strings = new HashMap<>();
+        private Locator locator;
+
+
+        // ---------------------------------------------------- Constructors
+
+
+        Recorder(H handler, String xmlDecl) throws IOException {
+
+            this.handler = handler;
+            writeString(xmlDecl);
+
+        }
+
+
+        // -------------------------------------------------- Public Methods
+
+
+        /**
+         * @return the recording of the events received so far
+         */
+        byte[] toByteArray() throws IOException {
+
+            out.writeByte(END);
+            out.flush();
+            return bytes.toByteArray();
+
+        }
+
+
+        // --------------------------------------- Methods from DefaultHandler
+
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+            handler.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            write(START_DOCUMENT);
+            handler.startDocument();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            write(END_DOCUMENT);
+            handler.endDocument();
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        throws SAXException {
+            try {
+                out.writeByte(START_ELEMENT);
+                writeLocation();
+                writeString(uri);
+                writeString(localName);
+                writeString(qName);
+                out.writeInt(attributes.getLength());
+                for (int i = 0, len = attributes.getLength(); i < len; i++) {
+                    writeString(attributes.getURI(i));
+                    writeString(attributes.getLocalName(i));
+                    writeString(attributes.getQName(i));
+                    writeString(attributes.getValue(i));
+                }
+            } catch (IOException ioe) {
+                throw new SAXException(ioe);
+            }
+            handler.startElement(uri, localName, qName, attributes);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        throws SAXException {
+            try {
+                out.writeByte(END_ELEMENT);
+                writeLocation();
+                writeString(uri);
+                writeString(localName);
+                writeString(qName);
+            } catch (IOException ioe) {
+                throw new SAXException(ioe);
+            }
+            handler.endElement(uri, localName, qName);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            write(START_PREFIX_MAPPING, prefix, uri);
+            handler.startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            write(END_PREFIX_MAPPING, prefix);
+            handler.endPrefixMapping(prefix);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            write(CHARACTERS, new String(ch, start, length));
+            handler.characters(ch, start, length);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            write(IGNORABLE_WHITESPACE, new String(ch, start, length));
+            handler.ignorableWhitespace(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            write(PROCESSING_INSTRUCTION, target, data);
+            handler.processingInstruction(target, data);
+        }
+
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId)
+        throws IOException, SAXException {
+            return handler.resolveEntity(publicId, systemId);
+        }
+
+        @Override
+        public void warning(SAXParseException e) throws SAXException {
+            handler.warning(e);
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            handler.error(e);
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            handler.fatalError(e);
+        }
+
+
+        // ---------------------------------------- Methods from LexicalHandler
+
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) throws SAXException {
+            write(START_DTD, name, publicId, systemId);
+            handler.startDTD(name, publicId, systemId);
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+            write(END_DTD);
+            handler.endDTD();
+        }
+
+        @Override
+        public void startEntity(String name) throws SAXException {
+            handler.startEntity(name);
+        }
+
+        @Override
+        public void endEntity(String name) throws SAXException {
+            handler.endEntity(name);
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            write(START_CDATA);
+            handler.startCDATA();
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            write(END_CDATA);
+            handler.endCDATA();
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) throws SAXException {
+            write(COMMENT, new String(ch, start, length));
+            handler.comment(ch, start, length);
+        }
+
+
+        // ------------------------------------------------- Private Methods
+
+
+        private void write(byte op, String... values) throws SAXException {
+
+            try {
+                out.writeByte(op);
+                for (String value : values) {
+                    writeString(value);
+                }
+            } catch (IOException ioe) {
+                throw new SAXException(ioe);
+            }
+
+        }
+
+
+        private void writeLocation() throws IOException {
+
+            out.writeInt((locator != null) ? locator.getLineNumber() : -1);
+            out.writeInt((locator != null) ? locator.getColumnNumber() : -1);
+
+        }
+
+
+        private void writeString(String value) throws IOException {
+
+            if (value == null) {
+                out.writeInt(NULL_STRING);
+                return;
+            }
+            Integer idx = strings.get(value);
+            if (idx != null) {
+                out.writeInt(idx);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(NEW_STRING);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+
+        }
+
+    }
+
+}
@@ -70,7 +70,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.el.ValueExpression;
 import javax.faces.FacesException;
@@ -95,11 +94,14 @@ import javax.faces.event.PreValidateEvent;
 import javax.faces.model.ArrayDataModel;
 import javax.faces.model.DataModel;
 import javax.faces.model.IterableDataModel;
+import javax.faces.model.LazyDataModel;
 import javax.faces.model.ListDataModel;
 import javax.faces.model.ResultSetDataModel;
 import javax.faces.model.ScalarDataModel;
 import javax.faces.render.Renderer;
 
+import com.sun.faces.component.RowClientIdCache;
+import com.sun.faces.component.RowStateTable;
 import com.sun.faces.facelets.tag.IterationStatus;
 
 
@@ -129,8 +131,7 @@ public class UIRepeat extends UINamingContainer {
     private Integer step;
     private Integer size;
     
-    private Map<String, SavedState> initialChildState;
-    private String initialClientId;
+    private RowStateTable initialChildState;
 
     public UIRepeat() {
         this.setRendererType("facelets.ui.Repeat");
@@ -325,23 +326,16 @@ public class UIRepeat extends UINamingContainer {
         this.value = value;
     }
 
-    private transient StringBuffer buffer;
-
-    private StringBuffer getBuffer() {
-        if (this.buffer == null) {
-            this.buffer = new StringBuffer();
-        }
-        this.buffer.setLength(0);
-        return this.buffer;
-    }
+    private transient RowClientIdCache rowClientIds;
 
     @Override
     public String getClientId(FacesContext faces) {
         String id = super.getClientId(faces);
         if (this.index >= 0) {
-            id = this.getBuffer().append(id).append(
-                    getSeparatorChar(faces)).append(this.index)
-                    .toString();
+            if (this.rowClientIds == null) {
+                this.rowClientIds = new RowClientIdCache();
+            }
+            id = this.rowClientIds.getRowClientId(id, getSeparatorChar(faces), this.index);
         }
         return id;
     }
@@ -381,9 +375,9 @@ public class UIRepeat extends UINamingContainer {
         }
     }
 
-    private Map<String,SavedState> childState;
+    private Map<String,RowStateTable> childState;
 
-    private Map<String,SavedState> getChildState() {
+    private Map<String,RowStateTable> getChildState() {
         if (this.childState == null) {
             this.childState = new HashMap<>();
         }
@@ -394,11 +388,31 @@ public class UIRepeat extends UINamingContainer {
     	this.childState = null;
     }
 
+    /**
+     * The per-row state is kept per client id of this component without any row index, so that a
+     * repeat nested in another iterating component keeps separate state for each row of its parent.
+     */
+    private String getBaseClientId(FacesContext ctx) {
+        return super.getClientId(ctx);
+    }
+
     private void saveChildState(FacesContext ctx) {
         if (this.getChildCount() > 0) {
+            String clientId = this.getBaseClientId(ctx);
+            RowStateTable state = this.getChildState().get(clientId);
+            boolean stored = (state != null);
+            if (!stored) {
+                state = (this.initialChildState != null) ? new RowStateTable(this.initialChildState) : new RowStateTable();
+            }
 
+            state.beginRow();
             for (UIComponent uiComponent : this.getChildren()) {
-                this.saveChildState(ctx, uiComponent);
+                this.saveChildState(ctx, uiComponent, state);
+            }
+            state.endRow(this.index);
+
+            if (!stored && !state.isEmpty()) {
+                this.getChildState().put(clientId, state);
             }
         }
     }
@@ -411,7 +425,10 @@ public class UIRepeat extends UINamingContainer {
             }
             
             if (this.childState != null) {
-                this.childState.remove(this.getClientId(ctx));
+                RowStateTable state = this.childState.get(this.getBaseClientId(ctx));
+                if (state != null) {
+                    state.removeRow(this.index);
+                }
             }
         }
     }
@@ -424,40 +441,41 @@ public class UIRepeat extends UINamingContainer {
         while (itr.hasNext()) {
             removeChildState(faces, (UIComponent) itr.next());
         }
-        if (this.childState != null) {
-            this.childState.remove(c.getClientId(faces));
-        }
     }
     
-    private void saveChildState(FacesContext faces, UIComponent c) {
+    private void saveChildState(FacesContext faces, UIComponent c, RowStateTable state) {
 
         if (c instanceof EditableValueHolder && !c.isTransient()) {
-            String clientId = c.getClientId(faces);
-            SavedState ss = this.getChildState().get(clientId);
-            if (ss == null) {
-                ss = new SavedState();
-                this.getChildState().put(clientId, ss);
-            }
-            ss.populate((EditableValueHolder) c);
+            EditableValueHolder evh = (EditableValueHolder) c;
+            int flags = (evh.isValid() ? 0 : RowStateTable.INVALID)
+                    | (evh.isLocalValueSet() ? RowStateTable.LOCAL_VALUE_SET : 0);
+            state.save(c.getId(), evh.getLocalValue(), evh.getSubmittedValue(), flags);
         }
 
         // continue hack
         Iterator itr = c.getFacetsAndChildren();
         while (itr.hasNext()) {
-            saveChildState(faces, (UIComponent) itr.next());
+            saveChildState(faces, (UIComponent) itr.next(), state);
         }
     }
 
     private void restoreChildState(FacesContext ctx) {
         if (this.getChildCount() > 0) {
+            RowStateTable state = (this.childState != null) ? this.childState.get(this.getBaseClientId(ctx)) : null;
+            if (state == null) {
+                state = this.initialChildState;
+            }
+            if (state != null) {
+                state.beginRestore(this.index);
+            }
 
             for (UIComponent uiComponent : this.getChildren()) {
-                this.restoreChildState(ctx, uiComponent);
+                this.restoreChildState(ctx, uiComponent, state);
             }
         }
     }
 
-    private void restoreChildState(FacesContext faces, UIComponent c) {
+    private void restoreChildState(FacesContext faces, UIComponent c, RowStateTable state) {
         // reset id
         String id = c.getId();
         c.setId(id);
@@ -465,30 +483,27 @@ public class UIRepeat extends UINamingContainer {
         // hack
         if (c instanceof EditableValueHolder) {
             EditableValueHolder evh = (EditableValueHolder) c;
-            String clientId = c.getClientId(faces);
-            SavedState ss = this.getChildState().get(clientId);
-            if (ss != null) {
-                ss.apply(evh);
+            if (!c.isTransient() && state != null && state.restore(id)) {
+                applyState(evh, state.getValue(), state.getSubmittedValue(), state.getFlags());
             } else {
-                String childId = clientId.substring(initialClientId.length() + 1);
-                childId = childId.substring(childId.indexOf(getSeparatorChar(faces)) + 1);
-                childId = initialClientId + getSeparatorChar(faces) + childId;
-                if (initialChildState.containsKey(childId)) {
-                    SavedState initialState = initialChildState.get(childId);
-                    initialState.apply(evh);
-                } else {
-                    NULL_STATE.apply(evh);
-                }
+                applyState(evh, null, null, 0);
             }
         }
 
         // continue hack
         Iterator itr = c.getFacetsAndChildren();
         while (itr.hasNext()) {
-            restoreChildState(faces, (UIComponent) itr.next());
+            restoreChildState(faces, (UIComponent) itr.next(), state);
         }
     }
 
+    private static void applyState(EditableValueHolder evh, Object value, Object submittedValue, int flags) {
+        evh.setValue(value);
+        evh.setValid((flags & RowStateTable.INVALID) == 0);
+        evh.setSubmittedValue(submittedValue);
+        evh.setLocalValueSet((flags & RowStateTable.LOCAL_VALUE_SET) != 0);
+    }
+
     private boolean keepSaved(FacesContext context) {
 
         return (hasErrorMessages(context) || isNestedInIterator());
@@ -528,34 +543,14 @@ public class UIRepeat extends UINamingContainer {
      */
     private void saveInitialChildState(FacesContext facesContext) {
         index = -1;
-        initialChildState = new ConcurrentHashMap<>();
-        initialClientId = getClientId(facesContext);
+        initialChildState = new RowStateTable();
+        initialChildState.beginRow();
         if (getChildCount() > 0) {
             for (UIComponent child : getChildren()) {
-                saveInitialChildState(facesContext, child);
+                saveChildState(facesContext, child, initialChildState);
             }
         }
-    }
-
-    /**
-     * Recursively create the initial state for the given component.
-     * 
-     * @param facesContext the Faces context.
-     * @param component the UI component to save the state for.
-     * @see #saveInitialChildState(javax.faces.context.FacesContext) 
-     */
-    private void saveInitialChildState(FacesContext facesContext, UIComponent component) {
-        if (component instanceof EditableValueHolder && !component.isTransient()) {
-            String clientId = component.getClientId(facesContext);
-            SavedState state = new SavedState();
-            initialChildState.put(clientId, state);
-            state.populate((EditableValueHolder) component);
-        }
-
-        Iterator<UIComponent> iterator = component.getFacetsAndChildren();
-        while (iterator.hasNext()) {
-            saveChildState(facesContext, iterator.next());
-        }
+        initialChildState.endInitialRow();
     }
 
     private void setIndex(FacesContext ctx, int index) {
@@ -652,6 +647,11 @@ public class UIRepeat extends UINamingContainer {
                     e = size - 1;
                 }
 
+                // let a lazy model load the iterated rows at once
+                if (null != end && e >= i && getDataModel() instanceof LazyDataModel) {
+                    ((LazyDataModel) getDataModel()).setPageSize(e - i + 1);
+                }
+
                 this.setIndex(faces, i);
                 this.updateIterationStatus(faces, new IterationStatus(true, (i + s > e || rowCount == 1), i, begin, end, step));
                 while (i <= e && this.isIndexAvailable()) {
@@ -939,75 +939,6 @@ public class UIRepeat extends UINamingContainer {
         app.publishEvent(faces, PostValidateEvent.class, this);
     }
 
-    private final static SavedState NULL_STATE = new SavedState();
-
-    // from RI
-    private final static class SavedState implements Serializable {
-
-        private Object submittedValue;
-
-        private static final long serialVersionUID = 2920252657338389849L;
-
-        Object getSubmittedValue() {
-            return (this.submittedValue);
-        }
-
-        void setSubmittedValue(Object submittedValue) {
-            this.submittedValue = submittedValue;
-        }
-
-        private boolean valid = true;
-
-        boolean isValid() {
-            return (this.valid);
-        }
-
-        void setValid(boolean valid) {
-            this.valid = valid;
-        }
-
-        private Object value;
-
-        Object getValue() {
-            return (this.value);
-        }
-
-        public void setValue(Object value) {
-            this.value = value;
-        }
-
-        private boolean localValueSet;
-
-        boolean isLocalValueSet() {
-            return (this.localValueSet);
-        }
-
-        public void setLocalValueSet(boolean localValueSet) {
-            this.localValueSet = localValueSet;
-        }
-
-        @Override
-        public String toString() {
-            return ("submittedValue: " + submittedValue + " value: " + value
-                    + " localValueSet: " + localValueSet);
-        }
-
-        public void populate(EditableValueHolder evh) {
-            this.value = evh.getLocalValue();
-            this.valid = evh.isValid();
-            this.submittedValue = evh.getSubmittedValue();
-            this.localValueSet = evh.isLocalValueSet();
-        }
-
-        public void apply(EditableValueHolder evh) {
-            evh.setValue(this.value);
-            evh.setValid(this.valid);
-            evh.setSubmittedValue(this.submittedValue);
-            evh.setLocalValueSet(this.localValueSet);
-        }
-
-    }
-
     private static final class IndexedEvent extends FacesEvent {
 
         private static final long serialVersionUID = 1L;
@@ -1130,7 +1061,7 @@ public class UIRepeat extends UINamingContainer {
         Object[] state = (Object[]) object;
         super.restoreState(faces, state[0]);
         //noinspection unchecked
-        this.childState = (Map<String,SavedState>) state[1];
+        this.childState = (Map<String,RowStateTable>) state[1];
         this.begin = (Integer) state[2];
         this.end = (Integer) state[3];
         this.step = (Integer) state[4];
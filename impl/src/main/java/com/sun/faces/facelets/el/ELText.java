@@ -73,6 +73,7 @@ import com.sun.faces.util.HtmlUtils;
 import com.sun.faces.util.MessageUtils;
 import javax.faces.context.FacesContext;
 import javax.faces.view.Location;
+import javax.faces.view.facelets.FaceletContext;
 
 /**
  * Handles parsing EL Strings in accordance with the EL-API Specification. The
@@ -225,8 +226,14 @@ public class ELText {
             if (this.ve instanceof ContextualCompositeValueExpression) {
                 result = new ELTextVariable(ve);
             } else {
-                result = new ELTextVariable(factory.createValueExpression(ctx,
-                    this.ve.getExpressionString(), String.class));
+                ExpressionCache cache = ExpressionCache.getInstance(ctx);
+                if (cache != null) {
+                    result = new ELTextVariable(cache.createValueExpression(factory,
+                        (FaceletContext) ctx, this.ve.getExpressionString(), String.class));
+                } else {
+                    result = new ELTextVariable(factory.createValueExpression(ctx,
+                        this.ve.getExpressionString(), String.class));
+                }
             }
             
             return result;
@@ -0,0 +1,517 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.facelets.el;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.el.ELContext;
+import javax.el.ExpressionFactory;
+import javax.el.FunctionMapper;
+import javax.el.MethodExpression;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import javax.faces.context.FacesContext;
+import javax.faces.event.PreDestroyApplicationEvent;
+import javax.faces.event.SystemEvent;
+import javax.faces.event.SystemEventListener;
+import javax.faces.view.facelets.FaceletContext;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.faces.facelets.FaceletContextImplBase;
+import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.LRUMap;
+
+/**
+ * <p>
+ * Application wide cache of the <code>ValueExpression</code> and
+ * <code>MethodExpression</code> instances created for tag attributes and
+ * template text while Facelets build the component tree.
+ * </p>
+ *
+ * <p>
+ * The expressions returned by an <code>ExpressionFactory</code> are
+ * immutable, but they capture the variables and functions the
+ * <code>ELContext</code> mapped when they were created.  While an expression
+ * is created, the mappers of the <code>FaceletContext</code> are therefore
+ * replaced by recording ones.  An expression is only cached if none of its
+ * identifiers was mapped to a variable, and it is only reused if none of
+ * them is mapped in the current context either and all of its functions
+ * still resolve to the same methods.  Expressions referring to variables
+ * set by <code>ui:param</code>, <code>c:set</code> or similar tags are
+ * always created anew.
+ * </p>
+ *
+ * <p>
+ * The entries are spread over a fixed number of segments, each an access
+ * ordered {@link LRUMap} guarded by its own monitor, so both lookups and
+ * evictions take constant time.  The least recently used entry is evicted
+ * per segment, not across the whole cache.
+ * </p>
+ */
+public final class ExpressionCache implements ExpressionCacheMBean {
+
+    private static final Logger LOGGER = FacesLogger.FACELETS_FACTORY.getLogger();
+
+    /**
+     * The number of segments of caches with at least as many entries.
+     */
+    private static final int SEGMENTS = 16;
+
+    private final LRUMap<Key, Entry>[] segments;
+    private final int maxEntries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong uncacheable = new AtomicLong();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    public ExpressionCache(int maxEntries) {
+
+        this(maxEntries, Math.min(SEGMENTS, maxEntries));
+
+    }
+
+
+    @SuppressWarnings("unchecked")
+    ExpressionCache(int maxEntries, int segmentCount) {
+
+        int count = Math.max(1, segmentCount);
+        this.segments = new LRUMap[count];
+        for (int i = 0; i < count; i++) {
+            // spread the remainder over the first segments
+            segments[i] = new LRUMap<>(maxEntries / count + ((i < maxEntries % count) ? 1 : 0));
+        }
+        this.maxEntries = maxEntries;
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @param ctx the current <code>ELContext</code>
+     * @return the cache of the application building the view with
+     *  <code>ctx</code>, or <code>null</code> if it has none
+     */
+    public static ExpressionCache getInstance(ELContext ctx) {
+
+        return ((ctx instanceof FaceletContextImplBase)
+                ? ((FaceletContextImplBase) ctx).getExpressionCache()
+                : null);
+
+    }
+
+
+    /**
+     * Returns the <code>ValueExpression</code> that
+     * {@link ExpressionFactory#createValueExpression(ELContext, String, Class)}
+     * would create, reusing a cached instance where possible.
+     */
+    public ValueExpression createValueExpression(ExpressionFactory factory,
+                                                 FaceletContext ctx,
+                                                 String expression,
+                                                 Class<?> expectedType) {
+
+        Key key = new Key(factory, expression, expectedType, null);
+        Entry entry = get(key);
+        if (entry != null && entry.isValid(ctx)) {
+            hits.incrementAndGet();
+            return (ValueExpression) entry.expression;
+        }
+        misses.incrementAndGet();
+
+        Recorder recorder = new Recorder(ctx);
+        ValueExpression result;
+        try {
+            result = factory.createValueExpression(ctx, expression, expectedType);
+        } finally {
+            recorder.restore();
+        }
+        store(key, recorder, result);
+        return result;
+
+    }
+
+
+    /**
+     * Returns the <code>MethodExpression</code> that
+     * {@link ExpressionFactory#createMethodExpression(ELContext, String, Class, Class[])}
+     * would create, reusing a cached instance where possible.
+     */
+    public MethodExpression createMethodExpression(ExpressionFactory factory,
+                                                   FaceletContext ctx,
+                                                   String expression,
+                                                   Class<?> expectedReturnType,
+                                                   Class<?>[] expectedParamTypes) {
+
+        Key key = new Key(factory, expression, expectedReturnType,
+                          (expectedParamTypes != null) ? expectedParamTypes : new Class<?>[0]);
+        Entry entry = get(key);
+        if (entry != null && entry.isValid(ctx)) {
+            hits.incrementAndGet();
+            return (MethodExpression) entry.expression;
+        }
+        misses.incrementAndGet();
+
+        Recorder recorder = new Recorder(ctx);
+        MethodExpression result;
+        try {
+            result = factory.createMethodExpression(ctx, expression, expectedReturnType,
+                                                    expectedParamTypes);
+        } finally {
+            recorder.restore();
+        }
+        store(key, recorder, result);
+        return result;
+
+    }
+
+
+    /**
+     * Registers this cache as an MBean with the platform
+     * <code>MBeanServer</code>.  It is unregistered when the application is
+     * destroyed.
+     */
+    public void registerStatistics(FacesContext context) {
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name;
+        try {
+            name = server.registerMBean(this, new ObjectName(
+                  "com.sun.faces:type=ExpressionCache,application="
+                  + ObjectName.quote(context.getExternalContext().getApplicationContextPath())
+                  + ",cache=" + Integer.toHexString(System.identityHashCode(this)))).getObjectName();
+        } catch (JMException | SecurityException e) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING, "Unable to register expression cache statistics", e);
+            }
+            return;
+        }
+
+        context.getApplication().subscribeToEvent(PreDestroyApplicationEvent.class, new SystemEventListener() {
+            @Override
+            public boolean isListenerForSource(Object source) {
+                return true;
+            }
+
+            @Override
+            public void processEvent(SystemEvent event) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (JMException e) {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE, "Unable to unregister " + name, e);
+                    }
+                }
+            }
+        });
+
+    }
+
+
+    // ---------------------------------------------- Methods from ExpressionCacheMBean
+
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (LRUMap<Key, Entry> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public long getUncacheableCount() {
+        return uncacheable.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long requests = hitCount + misses.get();
+        return ((requests == 0) ? Double.NaN : ((double) hitCount / requests));
+    }
+
+    @Override
+    public void clear() {
+        for (LRUMap<Key, Entry> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private LRUMap<Key, Entry> segmentFor(Key key) {
+
+        int h = key.hash ^ (key.hash >>> 16);
+        return segments[(h & 0x7fffffff) % segments.length];
+
+    }
+
+
+    private Entry get(Key key) {
+
+        LRUMap<Key, Entry> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+
+    }
+
+
+    private void store(Key key, Recorder recorder, Object expression) {
+
+        if (recorder.variableBound) {
+            uncacheable.incrementAndGet();
+        } else {
+            Entry entry = new Entry(expression, recorder.variables, recorder.functions);
+            LRUMap<Key, Entry> segment = segmentFor(key);
+            synchronized (segment) {
+                segment.put(key, entry);
+            }
+        }
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    private static final class Key {
+
+        private final ExpressionFactory factory;
+        private final String expression;
+        private final Class<?> expectedType;
+        private final Class<?>[] paramTypes;
+        private final int hash;
+
+        Key(ExpressionFactory factory, String expression, Class<?> expectedType, Class<?>[] paramTypes) {
+            this.factory = factory;
+            this.expression = expression;
+            this.expectedType = expectedType;
+            this.paramTypes = paramTypes;
+            int h = expression.hashCode();
+            h = 31 * h + System.identityHashCode(factory);
+            h = 31 * h + ((expectedType != null) ? expectedType.hashCode() : 0);
+            h = 31 * h + ((paramTypes != null) ? Arrays.hashCode(paramTypes) + 1 : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                   && factory == other.factory
+                   && expression.equals(other.expression)
+                   && expectedType == other.expectedType
+                   && Arrays.equals(paramTypes, other.paramTypes);
+        }
+
+    }
+
+
+    /**
+     * A cached expression along with the identifiers and functions it was
+     * created with.
+     */
+    private static final class Entry {
+
+        private final Object expression;
+        private final String[] variables;
+        private final Object[] functions;
+
+        Entry(Object expression, List<String> variables, List<Object> functions) {
+            this.expression = expression;
+            this.variables = variables.toArray(new String[variables.size()]);
+            this.functions = functions.toArray();
+        }
+
+        boolean isValid(ELContext ctx) {
+
+            if (variables.length > 0) {
+                VariableMapper variableMapper = ctx.getVariableMapper();
+                if (variableMapper != null) {
+                    for (String variable : variables) {
+                        if (variableMapper.resolveVariable(variable) != null) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            if (functions.length > 0) {
+                FunctionMapper functionMapper = ctx.getFunctionMapper();
+                if (functionMapper == null) {
+                    return false;
+                }
+                for (int i = 0; i < functions.length; i += 3) {
+                    Method method = functionMapper.resolveFunction((String) functions[i],
+                                                                   (String) functions[i + 1]);
+                    if (method == null || !method.equals(functions[i + 2])) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+
+        }
+
+    }
+
+
+    /**
+     * Installs recording mappers on a <code>FaceletContext</code> while an
+     * expression is created.
+     */
+    private static final class Recorder {
+
+        private final FaceletContext ctx;
+        private final VariableMapper variableMapper;
+        private final FunctionMapper functionMapper;
+        private List<String> variables = Collections.emptyList();
+        private List<Object> functions = Collections.emptyList();
+        private boolean variableBound;
+
+        Recorder(FaceletContext ctx) {
+
+            this.ctx = ctx;
+            this.variableMapper = ctx.getVariableMapper();
+            this.functionMapper = ctx.getFunctionMapper();
+            ctx.setVariableMapper(new VariableMapper() {
+                @Override
+                public ValueExpression resolveVariable(String variable) {
+                    ValueExpression result = (variableMapper != null)
+                                             ? variableMapper.resolveVariable(variable)
+                                             : null;
+                    if (result != null) {
+                        variableBound = true;
+                    } else {
+                        if (variables.isEmpty()) {
+                            variables = new ArrayList<>(4);
+                        }
+                        variables.add(variable);
+                    }
+                    return result;
+                }
+
+                @Override
+                public ValueExpression setVariable(String variable, ValueExpression expression) {
+                    variableBound = true;
+                    return (variableMapper != null)
+                           ? variableMapper.setVariable(variable, expression)
+                           : null;
+                }
+            });
+            // Without a FunctionMapper no expression using functions can
+            // be created, so there is nothing to record
+            if (functionMapper != null) {
+                ctx.setFunctionMapper(new FunctionMapper() {
+                    @Override
+                    public Method resolveFunction(String prefix, String localName) {
+                        Method result = functionMapper.resolveFunction(prefix, localName);
+                        if (functions.isEmpty()) {
+                            functions = new ArrayList<>(3);
+                        }
+                        functions.add(prefix);
+                        functions.add(localName);
+                        functions.add(result);
+                        return result;
+                    }
+                });
+            }
+
+        }
+
+        void restore() {
+
+            ctx.setVariableMapper(variableMapper);
+            ctx.setFunctionMapper(functionMapper);
+
+        }
+
+    }
+
+}
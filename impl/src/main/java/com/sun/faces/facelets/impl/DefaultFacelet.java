@@ -59,6 +59,7 @@
 package com.sun.faces.facelets.impl;
 
 import javax.faces.view.facelets.Facelet;
+import com.sun.faces.facelets.el.ExpressionCache;
 import com.sun.faces.facelets.tag.jsf.ComponentSupport;
 import com.sun.faces.util.FacesLogger;
 import com.sun.faces.util.Util;
@@ -261,6 +262,15 @@ final class DefaultFacelet extends Facelet implements XMLFrontMatterSaver {
         return this.elFactory;
     }
 
+    /**
+     * Return the expression cache of the factory that created this Facelet
+     *
+     * @return the expression cache, or <code>null</code> if disabled
+     */
+    public ExpressionCache getExpressionCache() {
+        return this.factory.getExpressionCache();
+    }
+
     /**
      * The time when this Facelet was created, NOT the URL source code
      * 
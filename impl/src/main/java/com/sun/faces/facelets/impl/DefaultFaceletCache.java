@@ -42,18 +42,39 @@ package com.sun.faces.facelets.impl;
 
 
 import javax.faces.view.facelets.FaceletCache;
+import com.sun.faces.config.InitFacesContext;
 import com.sun.faces.util.ConcurrentCache;
 import com.sun.faces.util.ExpiringConcurrentCache;
 import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.MojarraThreadFactory;
 import com.sun.faces.util.Util;
 
 import javax.faces.FacesException;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.ExternalContextWrapper;
+import javax.faces.context.FacesContext;
+import javax.faces.event.PreDestroyApplicationEvent;
+import javax.faces.event.SystemEvent;
+import javax.faces.event.SystemEventListener;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
 import java.io.IOException;
 
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.net.URLConnection;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -71,11 +92,46 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
      */
     DefaultFaceletCache(final long refreshPeriod) {
 
+        this(refreshPeriod, null);
+
+    }
+
+    /**
+     *Constructor
+     * @param refreshPeriod cache refresh period (in milliseconds).
+     * 0 means 'always refresh', negative value means 'never refresh'
+     * @param servletContext if not <code>null</code> and <code>refreshPeriod</code> is
+     * positive, expired Facelets are detected and recompiled by a background task, while
+     * requests keep getting the current version
+     */
+    DefaultFaceletCache(final long refreshPeriod, ServletContext servletContext) {
+
+        this(refreshPeriod, servletContext, -1, -1);
+
+    }
+
+    /**
+     *Constructor
+     * @param refreshPeriod cache refresh period (in milliseconds).
+     * 0 means 'always refresh', negative value means 'never refresh'
+     * @param servletContext if not <code>null</code> and <code>refreshPeriod</code> is
+     * positive, expired Facelets are detected and recompiled by a background task, while
+     * requests keep getting the current version
+     * @param maxEntries the maximum number of Facelets per cache, not bounded if not positive
+     * @param maxWeight the maximum total size of the Facelet documents per cache in bytes,
+     * not bounded if not positive
+     */
+    DefaultFaceletCache(final long refreshPeriod, ServletContext servletContext,
+                        int maxEntries, final long maxWeight) {
+
         // We will be delegating object storage to the ExpiringCocurrentCache
         // Create Factory objects here for the cache. The objects will be delegating to our
         // own instance factories
         
         final boolean checkExpiry = (refreshPeriod > 0);
+        // the background refresh recompiles Facelets with the encoding of the
+        // request they were first compiled for
+        final boolean refreshInBackground = (checkExpiry && servletContext != null);
 
         ConcurrentCache.Factory<URL, Record> faceletFactory =
             new ConcurrentCache.Factory<URL, Record>() {
@@ -84,8 +140,16 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
                 // Make sure that the expensive timestamp retrieval is not done
                 // if no expiry check is going to be performed
                 long lastModified = checkExpiry ? Util.getLastModified(key) : 0;
-                return new Record(System.currentTimeMillis(), lastModified,
-                                  getMemberFactory().newInstance(key), refreshPeriod);
+                long size = (maxWeight > 0) ? getSourceSize(key) : 0;
+                String encoding = refreshInBackground ? getRequestCharacterEncoding() : null;
+                Record record = new Record(System.currentTimeMillis(), lastModified,
+                                           getMemberFactory().newInstance(key), refreshPeriod, size,
+                                           encoding);
+                FaceletCacheStatistics statistics = _faceletStatistics;
+                if (statistics != null) {
+                    statistics.recordLoad(key);
+                }
+                return record;
             }
         };
 
@@ -96,8 +160,16 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
                 // Make sure that the expensive timestamp retrieval is not done
                 // if no expiry check is going to be performed
                 long lastModified = checkExpiry ? Util.getLastModified(key) : 0;
-                return new Record(System.currentTimeMillis(), lastModified,
-                                  getMetadataMemberFactory().newInstance(key), refreshPeriod);
+                long size = (maxWeight > 0) ? getSourceSize(key) : 0;
+                String encoding = refreshInBackground ? getRequestCharacterEncoding() : null;
+                Record record = new Record(System.currentTimeMillis(), lastModified,
+                                           getMetadataMemberFactory().newInstance(key), refreshPeriod, size,
+                                           encoding);
+                FaceletCacheStatistics statistics = _metadataStatistics;
+                if (statistics != null) {
+                    statistics.recordLoad(key);
+                }
+                return record;
             }
         };
 
@@ -105,15 +177,28 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         if (refreshPeriod == 0) {
             _faceletCache = new NoCache(faceletFactory);
             _metadataFaceletCache = new NoCache(metadataFaceletFactory);
+        } else if (refreshInBackground) {
+            ExpiringConcurrentCache.ExpiryChecker<URL, Record> checker = new LastModifiedChecker();
+            SizeWeigher weigher = new SizeWeigher();
+            _faceletCache =
+                    new ExpiringConcurrentCache<>(faceletFactory, checker, false,
+                                                  maxEntries, maxWeight, weigher);
+            _metadataFaceletCache =
+                    new ExpiringConcurrentCache<>(metadataFaceletFactory, checker, false,
+                                                  maxEntries, maxWeight, weigher);
+            RefreshTask.schedule(this, servletContext, refreshPeriod);
         } else {
             ExpiringConcurrentCache.ExpiryChecker<URL, Record> checker = 
                 (refreshPeriod > 0) ? new ExpiryChecker() : new NeverExpired();
+            SizeWeigher weigher = new SizeWeigher();
             _faceletCache =
                     new ExpiringConcurrentCache<>(faceletFactory,
-                                                             checker);
+                                                             checker, true,
+                                                             maxEntries, maxWeight, weigher);
             _metadataFaceletCache =
                     new ExpiringConcurrentCache<>(metadataFaceletFactory,
-                                                             checker);
+                                                             checker, true,
+                                                             maxEntries, maxWeight, weigher);
         }
     }
 
@@ -159,6 +244,89 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         return _metadataFaceletCache.containsKey(url);
     }
 
+    /**
+     * Registers a {@link FaceletCacheStatistics} MBean for each of the caches with
+     * the platform <code>MBeanServer</code>.  They are unregistered when the
+     * application is destroyed.
+     */
+    void registerStatistics(FacesContext context) {
+        if (!(_faceletCache instanceof ExpiringConcurrentCache)) {
+            return;
+        }
+
+        _faceletStatistics =
+              new FaceletCacheStatistics((ExpiringConcurrentCache<URL, Record>) _faceletCache);
+        _metadataStatistics =
+              new FaceletCacheStatistics((ExpiringConcurrentCache<URL, Record>) _metadataFaceletCache);
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final List<ObjectName> names = new ArrayList<>(2);
+        String prefix = "com.sun.faces:type=FaceletCache,application="
+                        + ObjectName.quote(context.getExternalContext().getApplicationContextPath())
+                        + ",cache=" + Integer.toHexString(System.identityHashCode(this))
+                        + ",name=";
+        try {
+            names.add(server.registerMBean(_faceletStatistics,
+                                           new ObjectName(prefix + "facelets")).getObjectName());
+            names.add(server.registerMBean(_metadataStatistics,
+                                           new ObjectName(prefix + "metadata")).getObjectName());
+        } catch (JMException | SecurityException e) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING, "Unable to register Facelet cache statistics", e);
+            }
+        }
+
+        context.getApplication().subscribeToEvent(PreDestroyApplicationEvent.class, new SystemEventListener() {
+            @Override
+            public boolean isListenerForSource(Object source) {
+                return true;
+            }
+
+            @Override
+            public void processEvent(SystemEvent event) {
+                for (ObjectName name : names) {
+                    try {
+                        server.unregisterMBean(name);
+                    } catch (JMException e) {
+                        if (LOGGER.isLoggable(Level.FINE)) {
+                            LOGGER.log(Level.FINE, "Unable to unregister " + name, e);
+                        }
+                    }
+                }
+                names.clear();
+            }
+        });
+    }
+
+    private static long getSourceSize(URL url) {
+        try {
+            URLConnection conn = url.openConnection();
+            conn.setUseCaches(false);
+            long size = conn.getContentLengthLong();
+            conn.getInputStream().close();
+            return Math.max(size, 0);
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Unable to determine the size of " + url, ioe);
+            }
+            return 0;
+        }
+    }
+
+    private static String getRequestCharacterEncoding() {
+        FacesContext context = FacesContext.getCurrentInstance();
+        return (context != null) ? context.getExternalContext().getRequestCharacterEncoding() : null;
+    }
+
+    private void _revalidate() {
+        if (_faceletCache instanceof ExpiringConcurrentCache) {
+            ((ExpiringConcurrentCache<URL, Record>) _faceletCache).revalidate();
+        }
+        if (_metadataFaceletCache instanceof ExpiringConcurrentCache) {
+            ((ExpiringConcurrentCache<URL, Record>) _metadataFaceletCache).revalidate();
+        }
+    }
+
     private void _unwrapIOException(ExecutionException e) throws IOException {
         Throwable t = e.getCause();
         if (t instanceof IOException) {
@@ -175,6 +343,8 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
     
     private final ConcurrentCache<URL, Record> _faceletCache;
     private final ConcurrentCache<URL, Record> _metadataFaceletCache;
+    private volatile FaceletCacheStatistics _faceletStatistics;
+    private volatile FaceletCacheStatistics _metadataStatistics;
 
     /**
      * This class holds the Facelet instance and its original URL's last modified time. It also produces
@@ -182,7 +352,14 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
      */
     private static class Record {
         Record(long creationTime, long lastModified, DefaultFacelet facelet, long refreshInterval) {
+            this(creationTime, lastModified, facelet, refreshInterval, 0, null);
+        }
+
+        Record(long creationTime, long lastModified, DefaultFacelet facelet, long refreshInterval,
+               long size, String encoding) {
             _facelet = facelet;
+            _size = size;
+            _encoding = encoding;
             _creationTime = creationTime;
             _lastModified = lastModified;
             _refreshInterval = refreshInterval;
@@ -198,6 +375,14 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         long getLastModified() {
             return _lastModified;
         }
+
+        long getSize() {
+            return _size;
+        }
+
+        String getEncoding() {
+            return _encoding;
+        }
         
         long getNextRefreshTime() {
             // There is no point in calculating the next refresh time if we are refreshing always/never
@@ -210,6 +395,8 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         }
         
         private final long _lastModified;
+        private final long _size;
+        private final String _encoding;
         private final long _refreshInterval;
         private final long _creationTime;
         private final AtomicLong _nextRefreshTime;
@@ -231,6 +418,153 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         }
     }
     
+    /**
+     * Used by the background refresh: the checks are done at the refresh period
+     * already, so only the last modified time needs to be compared.  An expired
+     * Facelet is recompiled right after the check, so the {@link RefreshFacesContext}
+     * is prepared for it here.
+     */
+    private static class LastModifiedChecker implements ExpiringConcurrentCache.ExpiryChecker<URL, Record> {
+
+        @Override
+        public boolean isExpired(URL url, Record record) {
+            if (Util.getLastModified(url) > record.getLastModified()) {
+                FacesContext context = FacesContext.getCurrentInstance();
+                if (context instanceof RefreshFacesContext) {
+                    ((RefreshFacesContext) context).prepare(record.getEncoding());
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Revalidates the Facelets of a <code>DefaultFaceletCache</code> at a fixed delay.
+     * Facelets are recompiled with a {@link RefreshFacesContext}.  The executor is shut down when the application is destroyed, or by the
+     * task itself once the cache has been garbage collected.
+     */
+    private static final class RefreshTask implements Runnable {
+
+        private final WeakReference<DefaultFaceletCache> cacheRef;
+        private final ServletContext servletContext;
+        private final ClassLoader classLoader;
+        private final ScheduledExecutorService executor;
+
+        private RefreshTask(DefaultFaceletCache cache,
+                            ServletContext servletContext,
+                            ScheduledExecutorService executor) {
+            this.cacheRef = new WeakReference<>(cache);
+            this.servletContext = servletContext;
+            this.classLoader = Thread.currentThread().getContextClassLoader();
+            this.executor = executor;
+        }
+
+        static void schedule(DefaultFaceletCache cache, ServletContext servletContext, long refreshPeriod) {
+            final ScheduledExecutorService executor =
+                  Executors.newSingleThreadScheduledExecutor(new MojarraThreadFactory("FaceletRefresh"));
+            executor.scheduleWithFixedDelay(new RefreshTask(cache, servletContext, executor),
+                                            refreshPeriod,
+                                            refreshPeriod,
+                                            TimeUnit.MILLISECONDS);
+
+            FacesContext context = FacesContext.getCurrentInstance();
+            if (context != null) {
+                context.getApplication().subscribeToEvent(PreDestroyApplicationEvent.class,
+                                                          new SystemEventListener() {
+                    @Override
+                    public boolean isListenerForSource(Object source) {
+                        return true;
+                    }
+
+                    @Override
+                    public void processEvent(SystemEvent event) {
+                        executor.shutdownNow();
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void run() {
+            DefaultFaceletCache cache = cacheRef.get();
+            if (cache == null) {
+                executor.shutdown();
+                return;
+            }
+
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            RefreshFacesContext context = new RefreshFacesContext(servletContext);
+            try {
+                cache._revalidate();
+            } catch (RuntimeException re) {
+                // don't let the exception cancel the task
+                if (LOGGER.isLoggable(Level.WARNING)) {
+                    LOGGER.log(Level.WARNING, "Unable to refresh Facelets", re);
+                }
+            } finally {
+                context.release();
+                thread.setContextClassLoader(previous);
+            }
+        }
+    }
+
+    /**
+     * The <code>FacesContext</code> of the refresh thread.  Unlike an
+     * <code>InitFacesContext</code> created at startup, it is only current for
+     * the refresh thread and isn't published to the <code>ServletContext</code>.
+     * Each Facelet is compiled with the request character encoding it was first
+     * compiled with, and without the DOCTYPE and XML declaration of the Facelet
+     * compiled before it.
+     */
+    private static final class RefreshFacesContext extends InitFacesContext {
+
+        private ExternalContext externalContext;
+        private String requestCharacterEncoding;
+
+        RefreshFacesContext(ServletContext servletContext) {
+            super(servletContext, false);
+            setCurrentInstance(this);
+        }
+
+        void prepare(String requestCharacterEncoding) {
+            this.requestCharacterEncoding = requestCharacterEncoding;
+            Util.removeDOCTYPEAndXMLDECLFromFacesContextAttributes(this);
+        }
+
+        @Override
+        public ExternalContext getExternalContext() {
+            if (externalContext == null) {
+                externalContext = new ExternalContextWrapper(super.getExternalContext()) {
+                    @Override
+                    public String getRequestCharacterEncoding() {
+                        return requestCharacterEncoding;
+                    }
+                };
+            }
+            return externalContext;
+        }
+
+        @Override
+        public void release() {
+            externalContext = null;
+            super.release();
+        }
+    }
+
+    /**
+     * Estimates the weight of a Facelet by the size of its document
+     */
+    private static class SizeWeigher implements ExpiringConcurrentCache.Weigher<URL, Record> {
+
+        @Override
+        public long weigh(URL url, Record record) {
+            return record.getSize();
+        }
+    }
+
     private static class NeverExpired implements ExpiringConcurrentCache.ExpiryChecker<URL, Record> {
         @Override
         public boolean isExpired(URL key, Record value) {
@@ -62,6 +62,7 @@ import javax.faces.view.facelets.Facelet;
 import com.sun.faces.facelets.FaceletContextImplBase;
 import com.sun.faces.facelets.TemplateClient;
 import com.sun.faces.facelets.el.DefaultVariableMapper;
+import com.sun.faces.facelets.el.ExpressionCache;
 
 import javax.el.ELContext;
 import javax.el.ELException;
@@ -170,6 +171,16 @@ final class DefaultFaceletContext extends FaceletContextImplBase {
         return this.facelet.getExpressionFactory();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sun.faces.facelets.FaceletContextImplBase#getExpressionCache()
+     */
+    @Override
+    public ExpressionCache getExpressionCache() {
+        return this.facelet.getExpressionCache();
+    }
+
     /*
      * (non-Javadoc)
      * 
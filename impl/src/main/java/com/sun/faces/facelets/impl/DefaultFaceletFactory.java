@@ -66,6 +66,7 @@ import javax.faces.component.UIComponent;
 import javax.faces.view.facelets.Facelet;
 import javax.faces.view.facelets.FaceletCache;
 import com.sun.faces.facelets.compiler.Compiler;
+import com.sun.faces.facelets.el.ExpressionCache;
 import com.sun.faces.util.Cache;
 import com.sun.faces.util.FacesLogger;
 import com.sun.faces.util.Util;
@@ -82,6 +83,7 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -89,6 +91,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import javax.el.ELException;
 import javax.faces.FacesException;
 import javax.faces.application.Application;
@@ -123,6 +126,8 @@ public class DefaultFaceletFactory {
 
     private ConcurrentMap<String, FaceletCache<DefaultFacelet>> cachePerContract;
 
+    private ExpressionCache expressionCache;
+
     Cache<String,IdMapper> idMappers;
     
 
@@ -310,6 +315,52 @@ public class DefaultFaceletFactory {
         return getCache(context).getViewMetadataFacelet(url);
     }
 
+    /**
+     * Compiles all views found by {@link javax.faces.application.ResourceHandler#getViewResources(FacesContext, String, javax.faces.application.ResourceVisitOption...)},
+     * so they are cached (and, if a
+     * {@link com.sun.faces.facelets.compiler.CompiledFaceletStore} is configured,
+     * persisted) before the first request.  Views that fail to compile are
+     * logged and skipped; the error will surface when the view is requested.
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     */
+    public void warmup(FacesContext context) {
+
+        long start = System.currentTimeMillis();
+        int compiled = 0;
+        String docType = Util.getDOCTYPEFromFacesContextAttributes(context);
+        String xmlDecl = Util.getXMLDECLFromFacesContextAttributes(context);
+        try (Stream<String> views = context.getApplication().getResourceHandler().getViewResources(context, "/")) {
+            for (Iterator<String> i = views.iterator(); i.hasNext(); ) {
+                String view = i.next();
+                // the DOCTYPE and XML declaration of the previous view would
+                // otherwise end up in a view that has none of its own
+                Util.removeDOCTYPEAndXMLDECLFromFacesContextAttributes(context);
+                try {
+                    getFacelet(context, view);
+                    compiled++;
+                } catch (IOException | FacesException | ELException e) {
+                    if (log.isLoggable(Level.FINE)) {
+                        log.log(Level.FINE, "Unable to compile " + view + " during warmup", e);
+                    }
+                }
+            }
+        } finally {
+            Util.removeDOCTYPEAndXMLDECLFromFacesContextAttributes(context);
+            if (null != docType) {
+                Util.saveDOCTYPEToFacesContextAttributes(docType);
+            }
+            if (null != xmlDecl) {
+                Util.saveXMLDECLToFacesContextAttributes(xmlDecl);
+            }
+        }
+        if (log.isLoggable(Level.INFO)) {
+            log.log(Level.INFO, "Compiled {0} Facelets in {1} ms",
+                    new Object[] { compiled, System.currentTimeMillis() - start });
+        }
+
+    }
+
     public boolean needsToBeRefreshed(URL url) {
         if(!cache.isFaceletCached(url)) {
             return true;
@@ -515,6 +566,20 @@ public class DefaultFaceletFactory {
     }
 
 
+    /**
+     * @return the cache shared by the Facelets of this factory for the
+     *  expressions they create, or <code>null</code> if disabled
+     */
+    public ExpressionCache getExpressionCache() {
+        return this.expressionCache;
+    }
+
+
+    public void setExpressionCache(ExpressionCache expressionCache) {
+        this.expressionCache = expressionCache;
+    }
+
+
     // ---------------------------------------------------------- Nested Classes
 
 
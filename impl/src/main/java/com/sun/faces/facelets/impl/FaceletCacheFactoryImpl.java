@@ -40,16 +40,30 @@
 
 package com.sun.faces.facelets.impl;
 
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.FaceletsBackgroundRefresh;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.FaceletsCacheStatistics;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsCacheMaxEntries;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsCacheMaxWeight;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.context.FacesContext;
 import javax.faces.view.facelets.FaceletCache;
 import javax.faces.view.facelets.FaceletCacheFactory;
+import javax.servlet.ServletContext;
 
 import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.util.FacesLogger;
 
 /**
  * Default implementation of {@link FaceletCacheFactory}.
  */
 public class FaceletCacheFactoryImpl extends FaceletCacheFactory {
 
+    private static final Logger LOGGER = FacesLogger.FACELETS_FACTORY.getLogger();
+
     public FaceletCacheFactoryImpl() {
         super(null);
     }
@@ -59,11 +73,40 @@ public class FaceletCacheFactoryImpl extends FaceletCacheFactory {
         WebConfiguration webConfig = WebConfiguration.getInstance();
         String refreshPeriod = webConfig.getOptionValue(WebConfiguration.WebContextInitParameter.FaceletsDefaultRefreshPeriod);
         long period = Long.parseLong(refreshPeriod) * 1000;
-        FaceletCache<DefaultFacelet> result = new DefaultFaceletCache(period);
+        FacesContext context = FacesContext.getCurrentInstance();
+        ServletContext servletContext = null;
+        if (webConfig.isOptionEnabled(FaceletsBackgroundRefresh)) {
+            Object ctx = context.getExternalContext().getContext();
+            if (ctx instanceof ServletContext) {
+                servletContext = (ServletContext) ctx;
+            }
+        }
+        int maxEntries = (int) getLongOptionValue(webConfig, FaceletsCacheMaxEntries);
+        long maxWeight = getLongOptionValue(webConfig, FaceletsCacheMaxWeight);
+        DefaultFaceletCache result = new DefaultFaceletCache(period, servletContext, maxEntries, maxWeight);
+        if (webConfig.isOptionEnabled(FaceletsCacheStatistics)) {
+            result.registerStatistics(context);
+        }
         return result;
 
     }
 
 
+    private static long getLongOptionValue(WebConfiguration webConfig, WebContextInitParameter param) {
+        String value = webConfig.getOptionValue(param);
+        if (value == null || value.length() == 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "jsf.state.server.cannot.parse.int.option",
+                           new Object[] { param.getQualifiedName(), -1 });
+            }
+            return -1;
+        }
+    }
 
 }
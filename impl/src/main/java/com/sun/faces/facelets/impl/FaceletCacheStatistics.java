@@ -0,0 +1,185 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.facelets.impl;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.faces.util.ConcurrentLRUMap;
+import com.sun.faces.util.ExpiringConcurrentCache;
+
+/**
+ * Exposes the counters of one of the caches of a {@link DefaultFaceletCache}
+ * through JMX, along with how often each Facelet was compiled.  Frequent
+ * compilations of the same Facelet hint at a cache that is too small or at
+ * a refresh period that is too short.
+ */
+public final class FaceletCacheStatistics implements FaceletCacheStatisticsMBean {
+
+    /**
+     * The number of Facelets whose compilations are counted.
+     */
+    private static final int MAX_TRACKED = 512;
+
+    private static final int MOST_LOADED = 10;
+
+    private final ExpiringConcurrentCache<URL, ?> cache;
+    private final Map<String, AtomicLong> loads = new ConcurrentLRUMap<>(MAX_TRACKED);
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    FaceletCacheStatistics(ExpiringConcurrentCache<URL, ?> cache) {
+
+        this.cache = cache;
+
+    }
+
+
+    // ----------------------------------------------------- Package Private Methods
+
+
+    /**
+     * Counts a compilation of the Facelet at <code>url</code>.
+     */
+    void recordLoad(URL url) {
+
+        String key = url.toExternalForm();
+        AtomicLong count = loads.get(key);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = loads.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+
+    }
+
+
+    // ------------------------------------- Methods from FaceletCacheStatisticsMBean
+
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public long getWeight() {
+        return cache.getWeight();
+    }
+
+    @Override
+    public int getMaxEntries() {
+        return cache.getMaxEntries();
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return cache.getMaxWeight();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = cache.getHitCount();
+        long requests = hits + cache.getMissCount();
+        return ((requests == 0) ? Double.NaN : ((double) hits / requests));
+    }
+
+    @Override
+    public long getLoadCount() {
+        return cache.getLoadCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return cache.getLoadFailureCount();
+    }
+
+    @Override
+    public double getAverageLoadTimeMillis() {
+        long count = cache.getLoadCount() + cache.getLoadFailureCount();
+        return ((count == 0) ? 0 : (cache.getTotalLoadTime() / 1e6d / count));
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    @Override
+    public String[] getMostLoaded() {
+
+        List<Map.Entry<String, AtomicLong>> entries = new ArrayList<>(loads.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, AtomicLong>>() {
+            @Override
+            public int compare(Map.Entry<String, AtomicLong> e1, Map.Entry<String, AtomicLong> e2) {
+                return Long.compare(e2.getValue().get(), e1.getValue().get());
+            }
+        });
+        int size = Math.min(MOST_LOADED, entries.size());
+        String[] result = new String[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = entries.get(i).getValue().get() + " " + entries.get(i).getKey();
+        }
+        return result;
+
+    }
+
+}
@@ -61,6 +61,7 @@ package com.sun.faces.facelets.tag;
 import com.sun.faces.el.ELUtils;
 import com.sun.faces.facelets.el.ContextualCompositeMethodExpression;
 import com.sun.faces.facelets.el.ELText;
+import com.sun.faces.facelets.el.ExpressionCache;
 import com.sun.faces.facelets.el.TagMethodExpression;
 import com.sun.faces.facelets.el.TagValueExpression;
 import com.sun.faces.facelets.el.ContextualCompositeValueExpression;
@@ -232,17 +233,17 @@ public class TagAttributeImpl extends TagAttribute {
                 result = new AttributeLookupMethodExpression(getValueExpression(ctx, MethodExpression.class));
             } else if (ELUtils.isCompositeComponentExpr(this.value)) {
                 MethodExpression delegate = new TagMethodExpression(this,
-                                                 f.createMethodExpression(ctx,
-                                                                          this.value,
-                                                                          type,
-                                                                          paramTypes));
+                                                 createMethodExpression(ctx,
+                                                                        f,
+                                                                        type,
+                                                                        paramTypes));
                 result = new ContextualCompositeMethodExpression(getLocation(), delegate);
             } else {
                 result = new TagMethodExpression(this,
-                                                 f.createMethodExpression(ctx,
-                                                                          this.value,
-                                                                          type,
-                                                                          paramTypes));
+                                                 createMethodExpression(ctx,
+                                                                        f,
+                                                                        type,
+                                                                        paramTypes));
             }
         } catch (Exception e) {
             if (e instanceof TagAttributeException) {
@@ -411,9 +412,10 @@ public class TagAttributeImpl extends TagAttribute {
     public ValueExpression getValueExpression(FaceletContext ctx, String expr, Class type) {
         try {
             ExpressionFactory f = ctx.getExpressionFactory();
-            ValueExpression delegate = f.createValueExpression(ctx,
-                                                               expr,
-                                                               type);
+            ExpressionCache cache = ExpressionCache.getInstance(ctx);
+            ValueExpression delegate = (cache != null)
+                                       ? cache.createValueExpression(f, ctx, expr, type)
+                                       : f.createValueExpression(ctx, expr, type);
             if (ELUtils.isCompositeComponentExpr(expr)) {
                 if (ELUtils.isCompositeComponentLookupWithArgs(expr)) {
                     String message =
@@ -432,6 +434,18 @@ public class TagAttributeImpl extends TagAttribute {
     }
 
 
+    private MethodExpression createMethodExpression(FaceletContext ctx,
+                                                    ExpressionFactory f,
+                                                    Class type,
+                                                    Class[] paramTypes) {
+        ExpressionCache cache = ExpressionCache.getInstance(ctx);
+        if (cache != null) {
+            return cache.createMethodExpression(f, ctx, this.value, type, paramTypes);
+        }
+        return f.createMethodExpression(ctx, this.value, type, paramTypes);
+    }
+
+
     // ---------------------------------------------------------- Nested Classes
 
 
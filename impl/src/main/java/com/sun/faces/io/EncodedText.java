@@ -0,0 +1,160 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Markup that doesn't change between renders, together with its
+ * <code>UTF-8</code> encoding.  When written to a {@link Writer} that
+ * implements {@link EncodedTextWriter} the encoded bytes are written as is,
+ * otherwise the text is written as usual.</p>
+ */
+public final class EncodedText {
+
+    private final String text;
+    private final byte[] bytes;
+    private volatile Derived derived;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param text the text
+     */
+    public EncodedText(String text) {
+
+        this.text = text;
+        this.bytes = text.getBytes(StandardCharsets.UTF_8);
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @return the text
+     */
+    public String getText() {
+        return text;
+    }
+
+
+    /**
+     * @return the <code>UTF-8</code> encoding of the text.  The returned
+     *  array must not be modified.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+
+    /**
+     * Write this text to the specified writer.
+     *
+     * @param out the target
+     * @throws IOException if an error occurs writing
+     */
+    public void writeTo(Writer out) throws IOException {
+
+        if (out instanceof EncodedTextWriter) {
+            ((EncodedTextWriter) out).write(this);
+        } else {
+            out.write(text);
+        }
+
+    }
+
+
+    /**
+     * <p>Returns a variant of this text, such as an escaped form, that was
+     * previously stored with {@link #setDerived(int, EncodedText)} under the
+     * same <code>key</code>.  Only one variant is kept, as in practice the
+     * key depends on settings that are the same for the whole
+     * application.</p>
+     *
+     * @param key identifies the variant
+     * @return the variant, or <code>null</code>
+     */
+    public EncodedText getDerived(int key) {
+
+        Derived d = derived;
+        return (d != null && d.key == key) ? d.text : null;
+
+    }
+
+
+    /**
+     * @param key identifies the variant
+     * @param text the variant
+     * @see #getDerived(int)
+     */
+    public void setDerived(int key, EncodedText text) {
+        derived = new Derived(key, text);
+    }
+
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    private static final class Derived {
+
+        private final int key;
+        private final EncodedText text;
+
+        Derived(int key, EncodedText text) {
+            this.key = key;
+            this.text = text;
+        }
+
+    } // END Derived
+
+}
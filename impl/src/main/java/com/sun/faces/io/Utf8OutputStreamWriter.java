@@ -0,0 +1,278 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * <p>A {@link Writer} that encodes characters as <code>UTF-8</code> directly
+ * onto an {@link OutputStream}.</p>
+ *
+ * <p>Each write is encoded into a per-thread scratch buffer and passed to
+ * the stream with a single call, so no bytes are held by this writer between
+ * calls; buffering is left to the underlying stream (for a servlet response,
+ * the container's response buffer).  {@link EncodedText} is written without
+ * encoding at all.</p>
+ *
+ * <p>Unpaired surrogates are written as <code>?</code>, matching the
+ * behavior of the JDK encoder.</p>
+ */
+public final class Utf8OutputStreamWriter extends Writer implements EncodedTextWriter {
+
+    private static final int SCRATCH_SIZE = 8192;
+
+    private static final ThreadLocal<byte[]> SCRATCH =
+          ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+
+    private final OutputStream out;
+
+    /**
+     * A high surrogate that ended the previous write.
+     */
+    private char pendingHighSurrogate;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param out the stream to write the encoded characters to
+     */
+    public Utf8OutputStreamWriter(OutputStream out) {
+        this.out = out;
+    }
+
+
+    // ------------------------------------------------- Methods from Writer
+
+
+    @Override
+    public void write(int c) throws IOException {
+
+        if (c < 0x80 && pendingHighSurrogate == 0) {
+            out.write(c);
+        } else {
+            write(new char[] { (char) c }, 0, 1);
+        }
+
+    }
+
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+
+        byte[] buf = SCRATCH.get();
+        int pos = 0;
+        int end = off + len;
+        int i = off;
+        if (pendingHighSurrogate != 0 && i < end) {
+            pos = encodeSurrogatePair(pendingHighSurrogate, cbuf[i], buf, pos);
+            if (pos == 4) {
+                i++;
+            }
+            pendingHighSurrogate = 0;
+        }
+        for (; i < end; i++) {
+            if (pos > SCRATCH_SIZE - 4) {
+                out.write(buf, 0, pos);
+                pos = 0;
+            }
+            char c = cbuf[i];
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (Character.isHighSurrogate(c)) {
+                if (i + 1 < end) {
+                    int written = encodeSurrogatePair(c, cbuf[i + 1], buf, pos);
+                    if (written - pos == 4) {
+                        i++;
+                    }
+                    pos = written;
+                } else {
+                    pendingHighSurrogate = c;
+                }
+            } else {
+                pos = encode(c, buf, pos);
+            }
+        }
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+        }
+
+    }
+
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+
+        byte[] buf = SCRATCH.get();
+        int pos = 0;
+        int end = off + len;
+        int i = off;
+        if (pendingHighSurrogate != 0 && i < end) {
+            pos = encodeSurrogatePair(pendingHighSurrogate, str.charAt(i), buf, pos);
+            if (pos == 4) {
+                i++;
+            }
+            pendingHighSurrogate = 0;
+        }
+        for (; i < end; i++) {
+            if (pos > SCRATCH_SIZE - 4) {
+                out.write(buf, 0, pos);
+                pos = 0;
+            }
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (Character.isHighSurrogate(c)) {
+                if (i + 1 < end) {
+                    int written = encodeSurrogatePair(c, str.charAt(i + 1), buf, pos);
+                    if (written - pos == 4) {
+                        i++;
+                    }
+                    pos = written;
+                } else {
+                    pendingHighSurrogate = c;
+                }
+            } else {
+                pos = encode(c, buf, pos);
+            }
+        }
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+        }
+
+    }
+
+
+    @Override
+    public void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+
+        out.flush();
+
+    }
+
+
+    @Override
+    public void close() throws IOException {
+
+        writePendingHighSurrogate();
+        out.close();
+
+    }
+
+
+    // ---------------------------------------- Methods from EncodedTextWriter
+
+
+    @Override
+    public void write(EncodedText text) throws IOException {
+
+        writePendingHighSurrogate();
+        byte[] bytes = text.getBytes();
+        out.write(bytes, 0, bytes.length);
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void writePendingHighSurrogate() throws IOException {
+
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            out.write('?');
+        }
+
+    }
+
+
+    /**
+     * Encode a character outside of the ASCII range that is not a high
+     * surrogate.
+     */
+    private static int encode(char c, byte[] buf, int pos) {
+
+        if (c < 0x800) {
+            buf[pos++] = (byte) (0xC0 | (c >> 6));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isLowSurrogate(c)) {
+            buf[pos++] = '?';
+        } else {
+            buf[pos++] = (byte) (0xE0 | (c >> 12));
+            buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return pos;
+
+    }
+
+
+    /**
+     * Encode a high surrogate and the character following it.  If they
+     * form a pair, four bytes are written; otherwise only a replacement for
+     * the high surrogate is written and <code>low</code> is left for the
+     * caller to encode.
+     */
+    private static int encodeSurrogatePair(char high, char low, byte[] buf, int pos) {
+
+        if (!Character.isLowSurrogate(low)) {
+            buf[pos++] = '?';
+            return pos;
+        }
+        int cp = Character.toCodePoint(high, low);
+        buf[pos++] = (byte) (0xF0 | (cp >> 18));
+        buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+        return pos;
+
+    }
+
+}
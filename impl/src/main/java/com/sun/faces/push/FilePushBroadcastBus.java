@@ -0,0 +1,382 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.push;
+
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.PushBroadcastDirectory;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.PushBroadcastPollInterval;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.context.ExternalContext;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.renderkit.ApplicationObjectInputStream;
+import com.sun.faces.spi.PushBroadcast;
+import com.sun.faces.spi.PushBroadcastBus;
+
+/**
+ * <p class="changed_added_2_3">
+ * This is a {@link PushBroadcastBus} which exchanges broadcasts through a directory shared by all nodes of the
+ * cluster, e.g. a network file system mount. It needs no infrastructure besides the shared directory, which makes it
+ * suitable for small clusters and as an example for implementations on top of a real message broker.
+ * <p>
+ * Each broadcast is serialized to its own file, which is written under a temporary name and then atomically renamed,
+ * so that other nodes never see a partial file. Every node polls the directory for files it hasn't seen before. Files
+ * are deleted once they are older than the retention period. The directory is configured with the
+ * <code>com.sun.faces.pushBroadcastDirectory</code> context parameter and defaults to <code>jsf-push-broadcast</code>
+ * in the temporary directory. It should only be writable by the nodes of the cluster.
+ * <p>
+ * Deserialization is restricted to {@link PushBroadcast}, strings, boxed primitives, big numbers, the standard
+ * collections of <code>java.util</code> and arrays of these. Broadcasts of messages consisting of other classes are
+ * rejected by the receiving nodes with a warning. Broadcasts are delivered once per id, also when a file is copied.
+ *
+ * @see PushBroadcastBus
+ * @since 2.3
+ */
+public class FilePushBroadcastBus implements PushBroadcastBus {
+
+    // Constants ------------------------------------------------------------------------------------------------------
+
+    private static final Logger logger = Logger.getLogger(FilePushBroadcastBus.class.getName());
+    private static final String DEFAULT_DIRECTORY = "jsf-push-broadcast";
+    private static final String SUFFIX = ".push";
+    private static final long RETENTION = SECONDS.toMillis(30);
+    private static final String WARNING_PUBLISH = "FilePushBroadcastBus: Cannot publish broadcast to {0}.";
+    private static final String WARNING_RECEIVE = "FilePushBroadcastBus: Cannot receive broadcast from {0}.";
+    private static final Set<String> ALLOWED_CLASSES = new HashSet<>(Arrays.asList(
+        PushBroadcast.class.getName(),
+        String.class.getName(),
+        Boolean.class.getName(),
+        Character.class.getName(),
+        Number.class.getName(),
+        Byte.class.getName(),
+        Short.class.getName(),
+        Integer.class.getName(),
+        Long.class.getName(),
+        Float.class.getName(),
+        Double.class.getName(),
+        BigInteger.class.getName(),
+        BigDecimal.class.getName(),
+        ArrayList.class.getName(),
+        LinkedList.class.getName(),
+        HashMap.class.getName(),
+        LinkedHashMap.class.getName(),
+        TreeMap.class.getName(),
+        HashSet.class.getName(),
+        LinkedHashSet.class.getName(),
+        TreeSet.class.getName(),
+        "java.util.Arrays$ArrayList",
+        "java.util.Collections$EmptyList",
+        "java.util.Collections$EmptyMap",
+        "java.util.Collections$EmptySet",
+        "java.util.Collections$SingletonList",
+        "java.util.Collections$SingletonMap",
+        "java.util.Collections$SingletonSet",
+        "java.util.Collections$UnmodifiableCollection",
+        "java.util.Collections$UnmodifiableList",
+        "java.util.Collections$UnmodifiableRandomAccessList",
+        "java.util.Collections$UnmodifiableMap",
+        "java.util.Collections$UnmodifiableSet",
+        "java.util.Collections$UnmodifiableSortedMap",
+        "java.util.Collections$UnmodifiableSortedSet"
+    ));
+
+    // Properties -----------------------------------------------------------------------------------------------------
+
+    private Path directory;
+    private long pollInterval;
+    private Consumer<PushBroadcast> receiver;
+    private ClassLoader classLoader;
+    private ScheduledExecutorService poller;
+    private final Set<Path> seen = new HashSet<>();
+    private final Map<String, Long> received = new HashMap<>();
+    private final Set<Path> published = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+    // Constructors ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a bus which reads its directory and poll interval from the web configuration on {@link #start}.
+     */
+    public FilePushBroadcastBus() {
+        // NOOP.
+    }
+
+    /**
+     * Creates a bus with the given directory and poll interval.
+     * @param directory The directory shared by all nodes.
+     * @param pollInterval The time in milliseconds between two polls of the directory.
+     */
+    public FilePushBroadcastBus(Path directory, long pollInterval) {
+        this.directory = directory;
+        this.pollInterval = pollInterval;
+    }
+
+    // Actions --------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start(ExternalContext extContext, Consumer<PushBroadcast> receiver) {
+        if (directory == null) {
+            WebConfiguration config = WebConfiguration.getInstance(extContext);
+            String path = config.getOptionValue(PushBroadcastDirectory);
+            directory = (path == null || path.isEmpty()) ? Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY) : Paths.get(path);
+            pollInterval = Long.parseLong(config.getOptionValue(PushBroadcastPollInterval));
+        }
+
+        try {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.receiver = receiver;
+        classLoader = Thread.currentThread().getContextClassLoader();
+
+        // Broadcasts which were published before this node started are not meant for it.
+        seen.addAll(list());
+
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jsf-push-broadcast-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, MILLISECONDS);
+    }
+
+    @Override
+    public void publish(PushBroadcast broadcast) {
+        Path file = directory.resolve(UUID.randomUUID() + SUFFIX);
+        Path temp = null;
+
+        try {
+            temp = Files.createTempFile(directory, null, ".tmp");
+
+            try (OutputStream output = Files.newOutputStream(temp); ObjectOutputStream objectOutput = new ObjectOutputStream(output)) {
+                objectOutput.writeObject(broadcast);
+            }
+
+            published.add(file);
+
+            try {
+                Files.move(temp, file, ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file);
+            }
+        }
+        catch (IOException e) {
+            published.remove(file);
+            logger.log(Level.WARNING, WARNING_PUBLISH, directory);
+            logger.log(Level.FINE, "", e);
+
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                }
+                catch (IOException ignore) {
+                    // Will be left behind in the directory, it is not picked up by other nodes.
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    // Helpers --------------------------------------------------------------------------------------------------------
+
+    /**
+     * Deliver all broadcast files which haven't been seen before and delete those which are expired. This runs on the
+     * poller thread only, so {@link #seen} and {@link #received} need no synchronization.
+     */
+    private void poll() {
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+
+        try {
+            Set<Path> files = list();
+            seen.retainAll(files);
+            long expired = System.currentTimeMillis() - RETENTION;
+            received.values().removeIf(time -> time < expired);
+
+            for (Path file : files) {
+                if (seen.add(file) && !published.remove(file)) {
+                    receive(file);
+                }
+
+                expire(file, expired);
+            }
+        }
+        catch (RuntimeException e) {
+            // Don't let the scheduler cancel the poller.
+            logger.log(Level.WARNING, WARNING_RECEIVE, directory);
+            logger.log(Level.FINE, "", e);
+        }
+        finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+
+    private Set<Path> list() {
+        Set<Path> files = new HashSet<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, WARNING_RECEIVE, directory);
+            logger.log(Level.FINE, "", e);
+        }
+
+        return files;
+    }
+
+    private void receive(Path file) {
+        PushBroadcast broadcast;
+
+        try (InputStream input = Files.newInputStream(file); ObjectInputStream objectInput = new BroadcastInputStream(input)) {
+            broadcast = (PushBroadcast) objectInput.readObject();
+        }
+        catch (NoSuchFileException ignore) {
+            return; // Expired and deleted by another node.
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.log(Level.WARNING, WARNING_RECEIVE, file);
+            logger.log(Level.FINE, "", e);
+            return;
+        }
+
+        if (received.put(broadcast.getId(), System.currentTimeMillis()) == null) {
+            receiver.accept(broadcast);
+        }
+    }
+
+    private static void expire(Path file, long expired) {
+        try {
+            if (Files.getLastModifiedTime(file).toMillis() < expired) {
+                Files.deleteIfExists(file);
+            }
+        }
+        catch (IOException ignore) {
+            // Already deleted by another node.
+        }
+    }
+
+    // Nested classes -------------------------------------------------------------------------------------------------
+
+    /**
+     * Resolves only the classes a {@link PushBroadcast} of plain data consists of, so that a file placed in the
+     * directory cannot instantiate arbitrary serializable classes.
+     */
+    private static final class BroadcastInputStream extends ApplicationObjectInputStream {
+
+        BroadcastInputStream(InputStream input) throws IOException {
+            super(input);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            String component = name;
+
+            if (name.startsWith("[")) {
+                component = name.substring(name.lastIndexOf('[') + 1);
+
+                if (component.length() == 1) {
+                    return super.resolveClass(desc); // Array of primitives.
+                }
+
+                component = component.substring(1, component.length() - 1); // Strip "L" and ";".
+            }
+
+            if (!ALLOWED_CLASSES.contains(component)) {
+                throw new InvalidClassException(name, "Class not allowed in a push broadcast");
+            }
+
+            return super.resolveClass(desc);
+        }
+
+    }
+
+}
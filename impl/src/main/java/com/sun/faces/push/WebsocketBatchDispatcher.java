@@ -0,0 +1,391 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.push;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.push.Push;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import com.sun.faces.util.Json;
+
+/**
+ * <p>
+ * This web socket batch dispatcher delivers push messages in batches. All messages sent to a channel within the batch
+ * window are collected, equal messages are coalesced into one, and the batch is encoded as JSON only once and written
+ * to every open web socket session of the channel as a single frame. A batch holding a single message is encoded
+ * exactly like an unbatched message.
+ * <p>
+ * Each web socket session has at most one frame in flight. Batches arriving while a session is still busy writing the
+ * previous frame are merged into one pending batch for that session, which is written as soon as the session is done.
+ * When a lagging session accumulates more pending messages than allowed, the oldest ones are dropped and their futures
+ * fail with an {@link IOException}.
+ *
+ * @see WebsocketSessionManager
+ * @see Push
+ */
+final class WebsocketBatchDispatcher {
+
+    // Constants ------------------------------------------------------------------------------------------------------
+
+    private static final Logger logger = Logger.getLogger(WebsocketBatchDispatcher.class.getName());
+    private static final String ERROR_SESSION_CLOSED = "Web socket session was closed before the message could be sent.";
+    private static final String ERROR_MESSAGE_DROPPED = "Message was dropped because web socket session lags behind.";
+    private static final String LOG_MESSAGES_DROPPED = "WebsocketBatchDispatcher: Dropped {0} messages for lagging web socket session {1}.";
+
+    // Properties -----------------------------------------------------------------------------------------------------
+
+    private final long batchWindow;
+    private final int maxPendingMessages;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, ChannelBatch> channelBatches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Session, SessionSender> sessionSenders = new ConcurrentHashMap<>();
+
+    // Constructors ---------------------------------------------------------------------------------------------------
+
+    /**
+     * @param batchWindow The time in milliseconds during which messages sent to a channel are collected in one batch.
+     * @param maxPendingMessages The maximum amount of messages queued for a session which is still busy.
+     */
+    WebsocketBatchDispatcher(long batchWindow, int maxPendingMessages) {
+        this.batchWindow = batchWindow;
+        this.maxPendingMessages = maxPendingMessages;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jsf-websocket-batch-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Actions --------------------------------------------------------------------------------------------------------
+
+    /**
+     * Queue the given message for all given sessions of the given channel. It will be sent with the next batch.
+     * @param channelId The web socket channel identifier.
+     * @param sessions The web socket sessions associated with the channel.
+     * @param message The push message object.
+     * @return One future per open session, which completes once the batch holding the message is delivered.
+     */
+    Set<Future<Void>> send(String channelId, Collection<Session> sessions, Object message) {
+        return channelBatches.computeIfAbsent(channelId, id -> new ChannelBatch()).add(message, sessions);
+    }
+
+    /**
+     * Forget about the given channel. Messages already queued for it will still be flushed.
+     * @param channelId The web socket channel identifier.
+     */
+    void deregister(String channelId) {
+        channelBatches.remove(channelId);
+    }
+
+    /**
+     * Forget about the given closed session. Messages still queued for it fail.
+     * @param session The closed web socket session.
+     */
+    void remove(Session session) {
+        SessionSender sender = sessionSenders.remove(session);
+
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    /**
+     * Stop dispatching. Queued messages are not delivered anymore.
+     */
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Helpers --------------------------------------------------------------------------------------------------------
+
+    private static String encode(List<Object> messages) {
+        return (messages.size() == 1) ? Json.encode(messages.get(0)) : Json.encodeBatch(messages);
+    }
+
+    private static void fail(List<CompletableFuture<Void>> futures, Throwable cause) {
+        for (CompletableFuture<Void> future : futures) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    private SessionSender getSender(Session session) {
+        SessionSender sender = sessionSenders.computeIfAbsent(session, SessionSender::new);
+
+        if (!session.isOpen()) {
+            // The session may have been closed, and thus removed, in the meanwhile.
+            sessionSenders.remove(session);
+        }
+
+        return sender;
+    }
+
+    // Nested classes -------------------------------------------------------------------------------------------------
+
+    /**
+     * The messages of a single channel collected during the current batch window, each with the futures of the
+     * sessions it is to be delivered to.
+     */
+    private final class ChannelBatch implements Runnable {
+
+        private Map<Object, Map<Session, CompletableFuture<Void>>> pending = new LinkedHashMap<>();
+
+        synchronized Set<Future<Void>> add(Object message, Collection<Session> sessions) {
+            if (pending.isEmpty()) {
+                scheduler.schedule(this, batchWindow, MILLISECONDS);
+            }
+
+            Map<Session, CompletableFuture<Void>> futures = pending.computeIfAbsent(message, m -> new HashMap<>());
+            Set<Future<Void>> results = new HashSet<>(sessions.size());
+
+            for (Session session : sessions) {
+                if (session.isOpen()) {
+                    results.add(futures.computeIfAbsent(session, s -> new CompletableFuture<>()));
+                }
+            }
+
+            return results;
+        }
+
+        @Override
+        public void run() {
+            Map<Object, Map<Session, CompletableFuture<Void>>> batch;
+
+            synchronized (this) {
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+
+            Map<Session, Delivery> deliveries = new LinkedHashMap<>();
+
+            for (Entry<Object, Map<Session, CompletableFuture<Void>>> message : batch.entrySet()) {
+                for (Entry<Session, CompletableFuture<Void>> target : message.getValue().entrySet()) {
+                    deliveries.computeIfAbsent(target.getKey(), session -> new Delivery()).add(message.getKey(), target.getValue());
+                }
+            }
+
+            // Sessions which were open during the whole batch window share one encoded frame.
+            List<Object> messages = new ArrayList<>(batch.keySet());
+            String frame = null;
+
+            for (Entry<Session, Delivery> delivery : deliveries.entrySet()) {
+                try {
+                    if (delivery.getValue().messages.size() == messages.size()) {
+                        if (frame == null) {
+                            frame = encode(messages);
+                        }
+
+                        delivery.getValue().frame = frame;
+                    }
+
+                    getSender(delivery.getKey()).deliver(delivery.getValue());
+                }
+                catch (RuntimeException e) {
+                    fail(delivery.getValue().futures, e);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The messages to write to a single session, with their futures.
+     */
+    private static final class Delivery {
+
+        private final List<Object> messages = new ArrayList<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private String frame;
+
+        void add(Object message, CompletableFuture<Void> future) {
+            messages.add(message);
+            futures.add(future);
+        }
+
+        String getFrame() {
+            if (frame == null) {
+                frame = encode(messages);
+            }
+
+            return frame;
+        }
+
+    }
+
+    /**
+     * Writes the frames of a single session one at a time, and keeps the messages arriving in the meanwhile as backlog.
+     */
+    private final class SessionSender implements SendHandler {
+
+        private final Session session;
+        private Delivery inFlight;
+        private Map<Object, List<CompletableFuture<Void>>> backlog = new LinkedHashMap<>();
+
+        SessionSender(Session session) {
+            this.session = session;
+        }
+
+        synchronized void deliver(Delivery delivery) {
+            if (inFlight == null) {
+                write(delivery);
+                return;
+            }
+
+            for (int i = 0; i < delivery.messages.size(); i++) {
+                backlog.computeIfAbsent(delivery.messages.get(i), m -> new ArrayList<>(1)).add(delivery.futures.get(i));
+            }
+
+            int dropped = 0;
+
+            for (Iterator<List<CompletableFuture<Void>>> oldest = backlog.values().iterator(); backlog.size() > maxPendingMessages;) {
+                fail(oldest.next(), new IOException(ERROR_MESSAGE_DROPPED));
+                oldest.remove();
+                dropped++;
+            }
+
+            if (dropped > 0 && logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, LOG_MESSAGES_DROPPED, new Object[] { dropped, session.getId() });
+            }
+        }
+
+        @Override
+        public void onResult(SendResult result) {
+            Delivery completed;
+
+            synchronized (this) {
+                completed = inFlight;
+                inFlight = null;
+
+                if (!backlog.isEmpty()) {
+                    Delivery next = new Delivery();
+
+                    for (Entry<Object, List<CompletableFuture<Void>>> message : backlog.entrySet()) {
+                        next.messages.add(message.getKey());
+                        next.futures.add(combine(message.getValue()));
+                    }
+
+                    backlog = new LinkedHashMap<>();
+                    write(next);
+                }
+            }
+
+            if (completed != null) {
+                if (result.isOK()) {
+                    for (CompletableFuture<Void> future : completed.futures) {
+                        future.complete(null);
+                    }
+                }
+                else {
+                    fail(completed.futures, result.getException());
+                }
+            }
+        }
+
+        synchronized void close() {
+            for (List<CompletableFuture<Void>> futures : backlog.values()) {
+                fail(futures, new IOException(ERROR_SESSION_CLOSED));
+            }
+
+            backlog.clear();
+        }
+
+        private void write(Delivery delivery) {
+            if (!session.isOpen()) {
+                fail(delivery.futures, new IOException(ERROR_SESSION_CLOSED));
+                return;
+            }
+
+            inFlight = delivery;
+
+            try {
+                session.getAsyncRemote().sendText(delivery.getFrame(), this);
+            }
+            catch (RuntimeException e) {
+                inFlight = null;
+                fail(delivery.futures, e);
+            }
+        }
+
+        private CompletableFuture<Void> combine(List<CompletableFuture<Void>> futures) {
+            if (futures.size() == 1) {
+                return futures.get(0);
+            }
+
+            CompletableFuture<Void> combined = new CompletableFuture<>();
+            combined.whenComplete((result, exception) -> {
+                for (CompletableFuture<Void> future : futures) {
+                    if (exception == null) {
+                        future.complete(null);
+                    }
+                    else {
+                        future.completeExceptionally(exception);
+                    }
+                }
+            });
+
+            return combined;
+        }
+
+    }
+
+}
@@ -252,6 +252,14 @@ public class WebsocketChannelManager implements Serializable {
         return channelId;
     }
 
+    /**
+     * For internal usage only. This makes it possible to resolve the application scope channel ID of this node when
+     * a push message to an application scope channel is received from another node.
+     */
+    static String getApplicationChannelId(String channel) {
+        return APPLICATION_SCOPE.get(channel);
+    }
+
     // Serialization --------------------------------------------------------------------------------------------------
 
     private void writeObject(ObjectOutputStream output) throws IOException {
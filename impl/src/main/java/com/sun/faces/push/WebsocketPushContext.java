@@ -103,7 +103,10 @@ public class WebsocketPushContext implements PushContext {
 
     @Override
     public Set<Future<Void>> send(Object message) {
-        return socketSessions.send(getChannelId(channel, sessionScope, viewScope), message);
+        String channelId = getChannelId(channel, sessionScope, viewScope);
+        Set<Future<Void>> results = socketSessions.send(channelId, message);
+        socketSessions.broadcast(channel, channelId, null, message);
+        return results;
     }
 
     @Override
@@ -126,6 +129,7 @@ public class WebsocketPushContext implements PushContext {
             resultsByUser.put(user, results);
         }
 
+        socketSessions.broadcast(channel, null, users, message);
         return resultsByUser;
     }
 
@@ -40,7 +40,12 @@
 package com.sun.faces.push;
 
 import static com.sun.faces.cdi.CdiUtils.getBeanReference;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.WebsocketBatchWindow;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.WebsocketMaxPendingMessages;
+import static com.sun.faces.push.WebsocketChannelManager.getApplicationChannelId;
 import static com.sun.faces.push.WebsocketEndpoint.PARAM_CHANNEL;
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.synchronizedMap;
 import static java.util.Collections.emptySet;
 import static javax.websocket.CloseReason.CloseCodes.NORMAL_CLOSURE;
 
@@ -48,13 +53,21 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.util.AnnotationLiteral;
 import javax.faces.context.FacesContext;
@@ -66,6 +79,11 @@ import javax.inject.Inject;
 import javax.websocket.CloseReason;
 import javax.websocket.Session;
 
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.spi.PushBroadcast;
+import com.sun.faces.spi.PushBroadcastBus;
+import com.sun.faces.spi.PushBroadcastBusFactory;
 import com.sun.faces.util.Json;
 import com.sun.faces.util.Util;
 
@@ -82,7 +100,12 @@ public class WebsocketSessionManager {
 
     // Constants ------------------------------------------------------------------------------------------------------
 
+    private static final Logger logger = Logger.getLogger(WebsocketSessionManager.class.getName());
     private static final CloseReason REASON_EXPIRED = new CloseReason(NORMAL_CLOSURE, "Expired");
+    private static final String WARNING_INVALID_PARAM = "WebsocketSessionManager: Invalid value ''{0}'' for {1}, using {2}.";
+    private static final String WARNING_BROADCAST_FAILED = "WebsocketSessionManager: Cannot broadcast push message on channel {0}.";
+    private static final String WARNING_NOT_SERIALIZABLE = "WebsocketSessionManager: Push message on channel {0} is not Serializable and is not broadcast to other nodes.";
+    private static final int MAX_RECEIVED_BROADCASTS = 10000;
     private static final AnnotationLiteral<Opened> SESSION_OPENED = new AnnotationLiteral<Opened>() {
         private static final long serialVersionUID = 1L;
     };
@@ -97,6 +120,62 @@ public class WebsocketSessionManager {
     @Inject
     private WebsocketUserManager socketUsers;
 
+    private WebsocketBatchDispatcher batchDispatcher;
+    private PushBroadcastBus broadcastBus;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong broadcastCounter = new AtomicLong();
+    private final Set<String> receivedBroadcasts = newSetFromMap(synchronizedMap(new LinkedHashMap<String, Boolean>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_RECEIVED_BROADCASTS;
+        }
+    }));
+
+    // Init -----------------------------------------------------------------------------------------------------------
+
+    /**
+     * If a batch window is configured, deliver push messages in batches via {@link WebsocketBatchDispatcher}.
+     * If a {@link PushBroadcastBus} is configured, exchange push messages with the other nodes of the cluster via it.
+     * The configuration is read from the current faces context, which is normally available since this bean is first
+     * used while registering a channel. Without one, messages are sent immediately and to this node only.
+     */
+    @PostConstruct
+    protected void init() {
+        FacesContext context = FacesContext.getCurrentInstance();
+
+        if (context != null) {
+            WebConfiguration config = WebConfiguration.getInstance(context.getExternalContext());
+            int batchWindow = getIntOption(config, WebsocketBatchWindow);
+
+            if (batchWindow > 0) {
+                batchDispatcher = new WebsocketBatchDispatcher(batchWindow, Math.max(1, getIntOption(config, WebsocketMaxPendingMessages)));
+            }
+
+            PushBroadcastBus bus = PushBroadcastBusFactory.createInstance(context.getExternalContext());
+
+            if (bus != null) {
+                bus.start(context.getExternalContext(), this::receive);
+                broadcastBus = bus;
+            }
+        }
+    }
+
+    /**
+     * Stop the batch dispatcher and the broadcast bus, if any.
+     */
+    @PreDestroy
+    protected void destroy() {
+        if (broadcastBus != null) {
+            broadcastBus.stop();
+        }
+
+        if (batchDispatcher != null) {
+            batchDispatcher.shutdown();
+        }
+    }
+
     // Actions --------------------------------------------------------------------------------------------------------
 
     /**
@@ -146,7 +225,8 @@ public class WebsocketSessionManager {
 
     /**
      * Encode the given message object as JSON and send it to all open web socket sessions associated with given web
-     * socket channel identifier.
+     * socket channel identifier. When batching is enabled, the message is queued and sent with the next batch of the
+     * channel instead.
      * @param channelId The web socket channel identifier.
      * @param message The push message object.
      * @return The results of the send operation. If it returns an empty set, then there was no open session associated
@@ -157,6 +237,10 @@ public class WebsocketSessionManager {
         Collection<Session> sessions = (channelId != null) ? socketSessions.get(channelId) : null;
 
         if (sessions != null && !sessions.isEmpty()) {
+            if (batchDispatcher != null) {
+                return batchDispatcher.send(channelId, sessions, message);
+            }
+
             Set<Future<Void>> results = new HashSet<>(sessions.size());
             String json = Json.encode(message);
 
@@ -172,6 +256,76 @@ public class WebsocketSessionManager {
         return emptySet();
     }
 
+    /**
+     * If a {@link PushBroadcastBus} is configured, publish the given message to the other nodes of the cluster, so they
+     * can send it to their own web socket sessions of the given channel identifier or users. Application scope channel
+     * identifiers differ per node, so those are resolved again by the receiving node. Only {@link Serializable}
+     * messages can be broadcast.
+     * @param channel The web socket channel name.
+     * @param channelId The web socket channel identifier resolved on this node, or <code>null</code>.
+     * @param users The users to send the message to, or <code>null</code> to send it to the channel identifier.
+     * @param message The push message object.
+     */
+    protected void broadcast(String channel, String channelId, Collection<? extends Serializable> users, Object message) {
+        if (broadcastBus == null) {
+            return;
+        }
+
+        if (!(message instanceof Serializable)) {
+            logger.log(Level.WARNING, WARNING_NOT_SERIALIZABLE, channel);
+            return;
+        }
+
+        boolean applicationScope = users == null && (channelId == null || channelId.equals(getApplicationChannelId(channel)));
+        String id = nodeId + ":" + broadcastCounter.incrementAndGet();
+        receivedBroadcasts.add(id);
+
+        try {
+            broadcastBus.publish(new PushBroadcast(id, channel, channelId, applicationScope, users, (Serializable) message));
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.WARNING, WARNING_BROADCAST_FAILED, channel);
+            logger.log(Level.FINE, "", e);
+        }
+    }
+
+    /**
+     * Send the given broadcast from another node to the web socket sessions of this node, unless it has been received
+     * before.
+     */
+    private void receive(PushBroadcast broadcast) {
+        if (!receivedBroadcasts.add(broadcast.getId())) {
+            return;
+        }
+
+        String channel = broadcast.getChannel();
+        Object message = broadcast.getMessage();
+
+        if (broadcast.getUsers() != null) {
+            for (Serializable user : broadcast.getUsers()) {
+                for (String channelId : socketUsers.getChannelIds(user, channel)) {
+                    send(channelId, message);
+                }
+            }
+
+            return;
+        }
+
+        String channelId = broadcast.getChannelId();
+
+        if (channelId != null) {
+            send(channelId, message);
+        }
+
+        if (broadcast.isApplicationScope()) {
+            String applicationChannelId = getApplicationChannelId(channel);
+
+            if (applicationChannelId != null && !applicationChannelId.equals(channelId)) {
+                send(applicationChannelId, message);
+            }
+        }
+    }
+
     private void send(Session session, String text, Set<Future<Void>> results) {
         if (session.isOpen()) {
             try {
@@ -201,6 +355,10 @@ public class WebsocketSessionManager {
         Collection<Session> sessions = socketSessions.get(getChannelId(session));
 
         if (sessions != null && sessions.remove(session)) {
+            if (batchDispatcher != null) {
+                batchDispatcher.remove(session);
+            }
+
             fireEvent(session, reason, SESSION_CLOSED);
         }
     }
@@ -211,6 +369,10 @@ public class WebsocketSessionManager {
      */
     protected void deregister(Iterable<String> channelIds) {
         for (String channelId : channelIds) {
+            if (batchDispatcher != null) {
+                batchDispatcher.deregister(channelId);
+            }
+
             Collection<Session> sessions = socketSessions.get(channelId);
 
             if (sessions != null) {
@@ -253,6 +415,18 @@ public class WebsocketSessionManager {
         return session.getQueryString();
     }
 
+    private static int getIntOption(WebConfiguration config, WebContextInitParameter param) {
+        String value = config.getOptionValue(param);
+
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            logger.log(Level.WARNING, WARNING_INVALID_PARAM, new Object[] { value, param.getQualifiedName(), param.getDefaultValue() });
+            return Integer.parseInt(param.getDefaultValue());
+        }
+    }
+
     private static void fireEvent(Session session, CloseReason reason, AnnotationLiteral<?> qualifier) {
         Serializable user = (Serializable) session.getUserProperties().get("user");
         Util.getCdiBeanManager(FacesContext.getCurrentInstance()).fireEvent(new WebsocketEvent(getChannel(session), user, (reason != null) ? reason.getCloseCode() : null), qualifier);
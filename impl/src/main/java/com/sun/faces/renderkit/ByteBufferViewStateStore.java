@@ -0,0 +1,673 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.renderkit;
+
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.NumberOfLogicalViews;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.NumberOfViews;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateStoreMaxBytes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.FacesException;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.spi.SerializationProvider;
+import com.sun.faces.spi.SerializationProviderFactory;
+import com.sun.faces.spi.ViewStateStore;
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * A {@link ViewStateStore} keeping the serialized views outside of the Java
+ * heap.  The views are copied into fixed size blocks sliced from a few large
+ * direct <code>ByteBuffer</code> regions.  The regions are allocated on demand
+ * until {@link WebConfiguration.WebContextInitParameter#ViewStateStoreMaxBytes}
+ * is reached and are never freed, the blocks of a released view are reused by
+ * the views stored afterwards.  Only the view ids are kept on the heap.
+ * </p>
+ *
+ * <p>
+ * The views of a session are keyed by a random token held by a small marker
+ * stored in the session, not by the session id, so they are still found after
+ * the id of the session has been changed (e.g. by
+ * <code>HttpServletRequest.changeSessionId()</code> on login).  The marker
+ * releases the views of the session once the session is invalidated.
+ * </p>
+ *
+ * <p>
+ * Besides honoring {@link WebConfiguration.WebContextInitParameter#NumberOfLogicalViews}
+ * and {@link WebConfiguration.WebContextInitParameter#NumberOfViews} per session,
+ * the least recently used views of all sessions are evicted as soon as no
+ * free block is left.  A view exceeding the whole budget isn't stored at all
+ * and will expire.
+ * </p>
+ *
+ * <p>
+ * The views of each session are guarded by a lock of their own.  Only the
+ * least recently used order and the free blocks are shared by all sessions,
+ * and the views are serialized and copied outside of these locks.
+ * </p>
+ *
+ * <p>
+ * As the views are neither kept in the session nor replicated, they will
+ * not survive a fail over to another node.
+ * </p>
+ */
+public class ByteBufferViewStateStore implements ViewStateStore {
+
+    private static final Logger LOGGER = FacesLogger.APPLICATION.getLogger();
+
+    /**
+     * The session attribute name of the marker holding the token of the
+     * session and releasing its views once it is invalidated.  There is one
+     * store per application (see {@link com.sun.faces.spi.ViewStateStoreFactory#getInstance}),
+     * so one marker per session.
+     */
+    private static final String SESSION_RELEASER =
+          ByteBufferViewStateStore.class.getName() + ".SessionReleaser";
+
+    /**
+     * The size of the blocks the views are stored in.
+     */
+    static final int BLOCK_SIZE = 1024;
+
+    /**
+     * The number of blocks sliced from each direct buffer region.
+     */
+    private static final int BLOCKS_PER_REGION = 1024;
+
+    private final int numberOfLogicalViews;
+    private final int numberOfViews;
+    private final SerializationProvider serialProvider;
+    private final BlockPool pool;
+
+    /**
+     * The views of each session, keyed by the token of the session.
+     */
+    private final ConcurrentMap<String, SessionViews> sessions =
+          new ConcurrentHashMap<>();
+
+    /**
+     * All stored views in least recently used order.  This is used to
+     * reclaim blocks across sessions.  Guarded by itself.
+     */
+    private final LinkedHashMap<Slot, Slot> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Construct a new <code>ByteBufferViewStateStore</code> instance.
+     */
+    public ByteBufferViewStateStore() {
+
+        FacesContext ctx = FacesContext.getCurrentInstance();
+        WebConfiguration webConfig = WebConfiguration.getInstance(ctx.getExternalContext());
+        numberOfLogicalViews = ServerSideStateHelper.getIntegerConfigValue(webConfig, NumberOfLogicalViews);
+        numberOfViews = ServerSideStateHelper.getIntegerConfigValue(webConfig, NumberOfViews);
+        long maxBlocks = Math.max(1L, getLongConfigValue(webConfig) / BLOCK_SIZE);
+        pool = new BlockPool((int) Math.min(Integer.MAX_VALUE, maxBlocks));
+        serialProvider = SerializationProviderFactory.createInstance(ctx.getExternalContext());
+
+    }
+
+
+    // --------------------------------------------- Methods from ViewStateStore
+
+
+    @Override
+    public void saveState(FacesContext context,
+                          String idInLogicalMap,
+                          String idInActualMap,
+                          Object structure,
+                          Object savedState) {
+
+        SessionViews views = getSessionViews(context.getExternalContext(), true);
+
+        byte[] bytes = serialize(new Object[] { structure, savedState });
+        int[] blocks = allocate(bytes.length);
+        if (blocks == null) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "View {0}:{1} of {2} bytes doesn''t fit into the view state store of {3} bytes",
+                           new Object[] { idInLogicalMap, idInActualMap, bytes.length, pool.getMaxBytes() });
+            }
+            return;
+        }
+        pool.write(blocks, bytes);
+        Slot slot = new Slot(idInLogicalMap, idInActualMap, bytes.length, blocks);
+
+        // make the slot known to the eviction before publishing it, so a
+        // slot found in the views of a session is always released through
+        // discard()
+        synchronized (lru) {
+            lru.put(slot, slot);
+        }
+
+        List<Slot> evicted = new ArrayList<>(2);
+        synchronized (views) {
+            if (views.destroyed) {
+                evicted.add(slot);
+            } else {
+                views.put(slot, numberOfLogicalViews, numberOfViews, evicted);
+            }
+        }
+        for (Slot s : evicted) {
+            discard(s);
+        }
+
+    }
+
+
+    @Override
+    public Object[] restoreState(FacesContext context,
+                                 String idInLogicalMap,
+                                 String idInActualMap) {
+
+        SessionViews views = getSessionViews(context.getExternalContext(), false);
+        if (views == null) {
+            return null;
+        }
+
+        Slot slot;
+        synchronized (views) {
+            Map<String, Slot> actualMap = views.logicalMap.get(idInLogicalMap);
+            if (actualMap == null) {
+                return null;
+            }
+            slot = actualMap.get(idInActualMap);
+        }
+        if (slot == null) {
+            return new Object[2];
+        }
+
+        synchronized (lru) {
+            // update the access order
+            lru.get(slot);
+        }
+        byte[] bytes = slot.read(pool);
+        if (bytes == null) {
+            // evicted in the meantime
+            return new Object[2];
+        }
+        return (Object[]) deserialize(bytes);
+
+    }
+
+
+    // ------------------------------------------------- Package Private Methods
+
+
+    /**
+     * @return the number of bytes occupied by the stored views, rounded up
+     *  to whole blocks
+     */
+    long getUsedBytes() {
+
+        return pool.getUsedBytes();
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    /**
+     * Obtains the views of the current session, keyed by the token of the
+     * marker stored in the session.
+     */
+    private SessionViews getSessionViews(ExternalContext externalContext,
+                                         boolean create) {
+
+        Object session = externalContext.getSession(create);
+        if (session == null) {
+            return null;
+        }
+
+        Map<String, Object> sessionMap = externalContext.getSessionMap();
+        SessionReleaser releaser = getReleaser(sessionMap);
+        if (releaser == null) {
+            if (!create) {
+                return null;
+            }
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (session) {
+                releaser = getReleaser(sessionMap);
+                if (releaser == null) {
+                    releaser = new SessionReleaser(this, UUID.randomUUID().toString());
+                    sessionMap.put(SESSION_RELEASER, releaser);
+                }
+            }
+        }
+
+        SessionViews views = sessions.get(releaser.token);
+        if (views == null && create) {
+            views = new SessionViews();
+            SessionViews existing = sessions.putIfAbsent(releaser.token, views);
+            if (existing != null) {
+                views = existing;
+            }
+        }
+        return views;
+
+    }
+
+
+    /**
+     * @return the marker of the session, ignoring markers of other stores
+     *  and passivated markers which lost their store
+     */
+    private SessionReleaser getReleaser(Map<String, Object> sessionMap) {
+
+        Object releaser = sessionMap.get(SESSION_RELEASER);
+        if (releaser instanceof SessionReleaser
+              && ((SessionReleaser) releaser).store == this) {
+            return (SessionReleaser) releaser;
+        }
+        return null;
+
+    }
+
+
+    /**
+     * Allocates the blocks for a view of the specified length, evicting the
+     * least recently used views of all sessions if necessary.
+     *
+     * @return the allocated blocks or <code>null</code> if they can't be
+     *  allocated
+     */
+    private int[] allocate(int length) {
+
+        int count = Math.max(1, (length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        if (count > pool.capacity) {
+            return null;
+        }
+        int[] blocks;
+        while ((blocks = pool.allocate(count)) == null) {
+            Slot evicted;
+            synchronized (lru) {
+                Iterator<Slot> eldest = lru.keySet().iterator();
+                if (!eldest.hasNext()) {
+                    // the remaining blocks are being written by other requests
+                    return null;
+                }
+                evicted = eldest.next();
+                eldest.remove();
+            }
+            evicted.release(pool);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                           "Evicting view {0}:{1} as the view state store exceeds {2} bytes",
+                           new Object[] { evicted.idInLogicalMap, evicted.idInActualMap, pool.getMaxBytes() });
+            }
+        }
+        return blocks;
+
+    }
+
+
+    /**
+     * Removes the slot from the least recently used order and returns its
+     * blocks to the pool.
+     */
+    private void discard(Slot slot) {
+
+        synchronized (lru) {
+            lru.remove(slot);
+        }
+        slot.release(pool);
+
+    }
+
+
+    /**
+     * Releases all views stored for the session with the specified token.
+     */
+    private void sessionDestroyed(String token) {
+
+        SessionViews views = sessions.remove(token);
+        if (views == null) {
+            return;
+        }
+        List<Slot> released = new ArrayList<>();
+        synchronized (views) {
+            views.destroyed = true;
+            for (Map<String, Slot> actualMap : views.logicalMap.values()) {
+                released.addAll(actualMap.values());
+            }
+            views.logicalMap.clear();
+        }
+        for (Slot slot : released) {
+            discard(slot);
+        }
+
+    }
+
+
+    private byte[] serialize(Object state) {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream oos = serialProvider.createObjectOutputStream(baos)) {
+            //noinspection NonSerializableObjectPassedToObjectStream
+            oos.writeObject(state);
+            oos.flush();
+        } catch (IOException e) {
+            throw new FacesException(e);
+        }
+        return baos.toByteArray();
+
+    }
+
+
+    private Object deserialize(byte[] bytes) {
+
+        try (ObjectInputStream ois = serialProvider
+              .createObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new FacesException(e);
+        }
+
+    }
+
+
+    private static long getLongConfigValue(WebConfiguration webConfig) {
+
+        String value = webConfig.getOptionValue(ViewStateStoreMaxBytes);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "jsf.state.server.cannot.parse.int.option",
+                           new Object[] { ViewStateStoreMaxBytes.getQualifiedName(),
+                                          ViewStateStoreMaxBytes.getDefaultValue() });
+            }
+            return Long.parseLong(ViewStateStoreMaxBytes.getDefaultValue());
+        }
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * The fixed size blocks the views are stored in.  Blocks are numbered
+     * consecutively across the regions; a region is allocated once its first
+     * block is handed out.
+     */
+    private static final class BlockPool {
+
+        private final int capacity;
+        private final ByteBuffer[] regions;
+
+        // guarded by this
+        private int[] free = new int[64];
+        private int freeCount;
+        private int reserved;
+
+        BlockPool(int capacity) {
+            this.capacity = capacity;
+            regions = new ByteBuffer[(capacity + BLOCKS_PER_REGION - 1) / BLOCKS_PER_REGION];
+        }
+
+        /**
+         * @return the requested number of blocks or <code>null</code> if not
+         *  enough blocks are free
+         */
+        synchronized int[] allocate(int count) {
+
+            if (count > freeCount + (capacity - reserved)) {
+                return null;
+            }
+            int[] blocks = new int[count];
+            int i = 0;
+            while (i < count && freeCount > 0) {
+                blocks[i++] = free[--freeCount];
+            }
+            while (i < count) {
+                int block = reserved++;
+                if (block % BLOCKS_PER_REGION == 0) {
+                    int size = Math.min(BLOCKS_PER_REGION, capacity - block);
+                    regions[block / BLOCKS_PER_REGION] = ByteBuffer.allocateDirect(size * BLOCK_SIZE);
+                }
+                blocks[i++] = block;
+            }
+            return blocks;
+
+        }
+
+        synchronized void free(int[] blocks) {
+
+            if (freeCount + blocks.length > free.length) {
+                free = Arrays.copyOf(free, Math.max(free.length * 2, freeCount + blocks.length));
+            }
+            System.arraycopy(blocks, 0, free, freeCount, blocks.length);
+            freeCount += blocks.length;
+
+        }
+
+        void write(int[] blocks, byte[] bytes) {
+
+            for (int i = 0, offset = 0; i < blocks.length; i++, offset += BLOCK_SIZE) {
+                slice(blocks[i]).put(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset));
+            }
+
+        }
+
+        void read(int[] blocks, byte[] bytes) {
+
+            for (int i = 0, offset = 0; i < blocks.length; i++, offset += BLOCK_SIZE) {
+                slice(blocks[i]).get(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset));
+            }
+
+        }
+
+        synchronized long getUsedBytes() {
+            return (long) (reserved - freeCount) * BLOCK_SIZE;
+        }
+
+        long getMaxBytes() {
+            return (long) capacity * BLOCK_SIZE;
+        }
+
+        private ByteBuffer slice(int block) {
+
+            ByteBuffer region;
+            synchronized (this) {
+                region = regions[block / BLOCKS_PER_REGION];
+            }
+            ByteBuffer slice = region.duplicate();
+            slice.position((block % BLOCKS_PER_REGION) * BLOCK_SIZE);
+            return slice;
+
+        }
+
+    }
+
+
+    /**
+     * The views of a session, keyed by logical view id and actual view id.
+     * Both maps are access ordered.  Guarded by the instance itself.
+     */
+    private static final class SessionViews {
+
+        private final LinkedHashMap<String, LinkedHashMap<String, Slot>> logicalMap =
+              new LinkedHashMap<>(16, 0.75f, true);
+        private boolean destroyed;
+
+        /**
+         * Stores the slot, adding the slots to be discarded due to the
+         * limits of the session to <code>evicted</code>.
+         */
+        void put(Slot slot,
+                 int numberOfLogicalViews,
+                 int numberOfViews,
+                 List<Slot> evicted) {
+
+            LinkedHashMap<String, Slot> actualMap = logicalMap.get(slot.idInLogicalMap);
+            if (actualMap == null) {
+                actualMap = new LinkedHashMap<>(16, 0.75f, true);
+                logicalMap.put(slot.idInLogicalMap, actualMap);
+                if (logicalMap.size() > numberOfLogicalViews) {
+                    Iterator<LinkedHashMap<String, Slot>> eldest = logicalMap.values().iterator();
+                    evicted.addAll(eldest.next().values());
+                    eldest.remove();
+                }
+            }
+
+            Slot previous = actualMap.put(slot.idInActualMap, slot);
+            if (previous != null) {
+                evicted.add(previous);
+            } else if (actualMap.size() > numberOfViews) {
+                Iterator<Slot> eldest = actualMap.values().iterator();
+                evicted.add(eldest.next());
+                eldest.remove();
+            }
+
+        }
+
+    }
+
+
+    /**
+     * A single stored view.  Identity is used for equality.  A slot may
+     * still be referenced by the views of its session after it has been
+     * evicted to reclaim its blocks, it then reads as <code>null</code>.
+     */
+    private static final class Slot {
+
+        private final String idInLogicalMap;
+        private final String idInActualMap;
+        private final int length;
+
+        // guarded by this, null once released
+        private int[] blocks;
+
+        Slot(String idInLogicalMap,
+             String idInActualMap,
+             int length,
+             int[] blocks) {
+
+            this.idInLogicalMap = idInLogicalMap;
+            this.idInActualMap = idInActualMap;
+            this.length = length;
+            this.blocks = blocks;
+
+        }
+
+        synchronized byte[] read(BlockPool pool) {
+
+            if (blocks == null) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            pool.read(blocks, bytes);
+            return bytes;
+
+        }
+
+        synchronized void release(BlockPool pool) {
+
+            if (blocks != null) {
+                pool.free(blocks);
+                blocks = null;
+            }
+
+        }
+
+    }
+
+
+    /**
+     * Stored in the session to key its views and to release them once the
+     * session is invalidated.  The store isn't serialized with the session,
+     * a replicated or passivated session simply loses its views.
+     */
+    private static final class SessionReleaser
+          implements HttpSessionBindingListener, Serializable {
+
+        private static final long serialVersionUID = 2389346512063284158L;
+
+        private final transient ByteBufferViewStateStore store;
+        private final String token;
+
+        SessionReleaser(ByteBufferViewStateStore store, String token) {
+            this.store = store;
+            this.token = token;
+        }
+
+        @Override
+        public void valueBound(HttpSessionBindingEvent event) {
+        }
+
+        @Override
+        public void valueUnbound(HttpSessionBindingEvent event) {
+            if (store != null) {
+                store.sessionDestroyed(token);
+            }
+        }
+
+    }
+
+}
@@ -54,13 +54,10 @@ import java.io.InputStream;
 import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.faces.FacesException;
 import javax.faces.context.FacesContext;
@@ -89,7 +86,7 @@ public class ClientSideStateHelper extends StateHelper {
      * Enabled encryption of view state.  Encryption is disabled by default.
      * </p>
      */
-    private ByteArrayGuard guard;
+    protected ByteArrayGuard guard;
 
     /**
      * <p>
@@ -247,22 +244,33 @@ public class ClientSideStateHelper extends StateHelper {
         ObjectInputStream ois = null;
         InputStream bis = new Base64InputStream(stateString);
         try {
-            if (guard != null) {
+            if (guard != null || compressor != null) {
                 byte[] bytes = stateString.getBytes(RIConstants.CHAR_ENCODING);
                 int numRead = bis.read(bytes, 0, bytes.length);
                 byte[] decodedBytes = new byte[numRead];
                 bis.reset();
                 bis.read(decodedBytes, 0, decodedBytes.length);
+                bytes = decodedBytes;
 
-                bytes = guard.decrypt(ctx, decodedBytes);
-                if (bytes == null) return null;
+                if (guard != null) {
+                    bytes = guard.decrypt(ctx, bytes);
+                    if (bytes == null) return null;
+                }
+                if (compressor != null) {
+                    try {
+                        bytes = compressor.decompress(bytes);
+                    } catch (IOException ioe) {
+                        // the state is corrupt, oversized or was compressed by
+                        // a previous version.  Return null to cause a
+                        // ViewExpiredException
+                        if (LOGGER.isLoggable(Level.FINE)) {
+                            LOGGER.log(Level.FINE, "Unable to decompress client side state", ioe);
+                        }
+                        return null;
+                    }
+                }
                 bis = new ByteArrayInputStream(bytes);
             }
-
-
-            if (compressViewState) {
-                bis = new GZIPInputStream(bis);
-            }
             
             ois = serialProvider.createObjectInputStream(bis);
 
@@ -348,19 +356,13 @@ public class ClientSideStateHelper extends StateHelper {
             return;
         }
         
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        OutputStream base = null;
-        if (compressViewState) {
-            base = new GZIPOutputStream(baos, csBuffSize);
-        } else {
-            base = baos;
-        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(csBuffSize);
 
         ObjectOutputStream oos = null;
 
         try {
             oos = serialProvider
-                .createObjectOutputStream(new BufferedOutputStream(base));
+                .createObjectOutputStream(new BufferedOutputStream(baos));
 
             if (stateTimeoutEnabled) {
                 oos.writeLong(System.currentTimeMillis());
@@ -410,9 +412,13 @@ public class ClientSideStateHelper extends StateHelper {
             oos.close();
             oos = null;
 
-            // get bytes for encrypting
+            // get bytes for compressing and encrypting
             byte[] bytes = baos.toByteArray();
 
+            if (compressor != null) {
+                bytes = compressor.compress(bytes);
+            }
+
             if (guard != null) {
                 // this will MAC
                 bytes = guard.encrypt(facesContext, bytes);
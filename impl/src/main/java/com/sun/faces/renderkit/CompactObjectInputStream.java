@@ -0,0 +1,469 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.renderkit;
+
+import static com.sun.faces.renderkit.CompactObjectOutputStream.ARRAY_LIST;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.ENUM;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.FALSE;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.HASH_MAP;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.INTEGER;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.LONG;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.MAGIC;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.NULL;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.OBJECT_ARRAY;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.SERIALIZED;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.STRING;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.STRING_REF;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.TRUE;
+import static com.sun.faces.renderkit.CompactObjectOutputStream.VERSION;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * <p>The <code>ObjectInputStream</code> of the
+ * {@link CompactSerializationProvider}, reading the content written by
+ * {@link CompactObjectOutputStream}.</p>
+ */
+public class CompactObjectInputStream extends ObjectInputStream {
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+    private final List<String> strings = new ArrayList<>();
+    private ObjectInputStream serialized;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    public CompactObjectInputStream(InputStream source) throws IOException {
+
+        super();
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream(1024);
+            byte[] buf = new byte[1024];
+            for (int n = source.read(buf); n != -1; n = source.read(buf)) {
+                content.write(buf, 0, n);
+            }
+            data = content.toByteArray();
+        } finally {
+            source.close();
+        }
+
+        if (data.length < 6
+              || (data[0] & 0xFF) != MAGIC
+              || (data[1] & 0xFF) != VERSION) {
+            throw new StreamCorruptedException("Not a compact serialization stream");
+        }
+        int length = ((data[2] & 0xFF) << 24)
+                     | ((data[3] & 0xFF) << 16)
+                     | ((data[4] & 0xFF) << 8)
+                     | (data[5] & 0xFF);
+        pos = 6;
+        end = pos + length;
+        if (length < 0 || end > data.length) {
+            throw new StreamCorruptedException("Invalid compact serialization stream length");
+        }
+
+    }
+
+
+    // ----------------------------------------- Methods from ObjectInputStream
+
+
+    @Override
+    protected Object readObjectOverride()
+    throws IOException, ClassNotFoundException {
+
+        return readValue();
+
+    }
+
+
+    @Override
+    public Object readUnshared() throws IOException, ClassNotFoundException {
+
+        return readValue();
+
+    }
+
+
+    @Override
+    public int read() throws IOException {
+
+        return ((pos < end) ? (data[pos++] & 0xFF) : -1);
+
+    }
+
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+        int count = Math.min(len, end - pos);
+        if (count <= 0) {
+            return -1;
+        }
+        System.arraycopy(data, pos, buf, off, count);
+        pos += count;
+        return count;
+
+    }
+
+
+    @Override
+    public int available() throws IOException {
+
+        return end - pos;
+
+    }
+
+
+    @Override
+    public void readFully(byte[] buf) throws IOException {
+
+        readFully(buf, 0, buf.length);
+
+    }
+
+
+    @Override
+    public void readFully(byte[] buf, int off, int len) throws IOException {
+
+        ensureAvailable(len);
+        System.arraycopy(data, pos, buf, off, len);
+        pos += len;
+
+    }
+
+
+    @Override
+    public int skipBytes(int len) throws IOException {
+
+        int count = Math.max(0, Math.min(len, end - pos));
+        pos += count;
+        return count;
+
+    }
+
+
+    @Override
+    public boolean readBoolean() throws IOException {
+
+        return readByte() != 0;
+
+    }
+
+
+    @Override
+    public byte readByte() throws IOException {
+
+        ensureAvailable(1);
+        return data[pos++];
+
+    }
+
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+
+        return readByte() & 0xFF;
+
+    }
+
+
+    @Override
+    public short readShort() throws IOException {
+
+        return (short) readVarLong();
+
+    }
+
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+
+        return readShort() & 0xFFFF;
+
+    }
+
+
+    @Override
+    public char readChar() throws IOException {
+
+        return (char) readVarLong();
+
+    }
+
+
+    @Override
+    public int readInt() throws IOException {
+
+        return (int) readVarLong();
+
+    }
+
+
+    @Override
+    public long readLong() throws IOException {
+
+        return readVarLong();
+
+    }
+
+
+    @Override
+    public float readFloat() throws IOException {
+
+        return Float.intBitsToFloat(readInt());
+
+    }
+
+
+    @Override
+    public double readDouble() throws IOException {
+
+        return Double.longBitsToDouble(readLong());
+
+    }
+
+
+    @Override
+    public String readUTF() throws IOException {
+
+        return readRawString();
+
+    }
+
+
+    @Override
+    public void close() throws IOException {
+
+        if (serialized != null) {
+            serialized.close();
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private Object readValue() throws IOException, ClassNotFoundException {
+
+        int tag = readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+            case STRING_REF:
+                return readString(tag);
+            case INTEGER:
+                return (int) readVarLong();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case OBJECT_ARRAY: {
+                Object[] array = new Object[readCount(1)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readValue();
+                }
+                return array;
+            }
+            case LONG:
+                return readVarLong();
+            case ENUM: {
+                String className = readString(readUnsignedByte());
+                String name = readString(readUnsignedByte());
+                return readEnum(className, name);
+            }
+            case HASH_MAP: {
+                int size = readCount(2);
+                HashMap<Object,Object> map = new HashMap<>((int) (size / 0.75f) + 1);
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue();
+                    map.put(key, readValue());
+                }
+                return map;
+            }
+            case ARRAY_LIST: {
+                int size = readCount(1);
+                ArrayList<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue());
+                }
+                return list;
+            }
+            case SERIALIZED:
+                if (serialized == null) {
+                    serialized = new ApplicationObjectInputStream(
+                          new ByteArrayInputStream(data, end, data.length - end));
+                }
+                return serialized.readObject();
+            default:
+                throw new StreamCorruptedException("Unknown type tag " + tag);
+        }
+
+    }
+
+
+    private String readString(int tag) throws IOException {
+
+        if (tag == STRING_REF) {
+            int index = readLength();
+            if (index >= strings.size()) {
+                throw new StreamCorruptedException("Invalid string reference " + index);
+            }
+            return strings.get(index);
+        } else if (tag == STRING) {
+            String str = readRawString();
+            strings.add(str);
+            return str;
+        }
+        throw new StreamCorruptedException("Expected a string, found type tag " + tag);
+
+    }
+
+
+    private String readRawString() throws IOException {
+
+        int length = readLength();
+        ensureAvailable(length);
+        String str = new String(data, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return str;
+
+    }
+
+
+    /**
+     * Loads <code>className</code> without initializing it, so a crafted
+     * stream can't run the static initializer of an arbitrary class.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(String className, String name)
+    throws IOException, ClassNotFoundException {
+
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = CompactObjectInputStream.class.getClassLoader();
+        }
+        Class<?> clazz = Class.forName(className, false, loader);
+        if (!clazz.isEnum()) {
+            throw new InvalidClassException(className, "Not an enum type");
+        }
+        try {
+            return Enum.valueOf((Class<? extends Enum>) clazz, name);
+        } catch (IllegalArgumentException iae) {
+            throw new InvalidObjectException("Unknown enum constant " + className + '.' + name);
+        }
+
+    }
+
+
+    /**
+     * Reads the number of elements of a collection, each taking at least
+     * <code>minBytes</code> of the remaining input, so a crafted length can't
+     * make us allocate more than the input justifies.
+     */
+    private int readCount(int minBytes) throws IOException {
+
+        int count = readLength();
+        if ((long) count * minBytes > end - pos) {
+            throw new StreamCorruptedException("Length " + count + " exceeds the remaining input");
+        }
+        return count;
+
+    }
+
+
+    private int readLength() throws IOException {
+
+        long length = readVarLong();
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Invalid length " + length);
+        }
+        return (int) length;
+
+    }
+
+
+    private long readVarLong() throws IOException {
+
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            ensureAvailable(1);
+            byte b = data[pos++];
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length number");
+
+    }
+
+
+    private void ensureAvailable(int len) throws IOException {
+
+        if (len > end - pos) {
+            throw new EOFException();
+        }
+
+    }
+
+}
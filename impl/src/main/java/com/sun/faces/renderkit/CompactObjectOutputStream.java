@@ -0,0 +1,379 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.renderkit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * <p>The <code>ObjectOutputStream</code> of the
+ * {@link CompactSerializationProvider}.</p>
+ *
+ * <p>The tagged values and the primitives written to this stream are
+ * collected in one buffer, objects of any other type are written to a single
+ * nested <code>ObjectOutputStream</code> so class descriptors are shared
+ * between them.  Both are written to the destination once this stream is
+ * closed.</p>
+ *
+ * <p>Identity of arrays, lists and maps is not preserved, an instance
+ * referenced twice will be read as two equal instances.</p>
+ */
+public class CompactObjectOutputStream extends ObjectOutputStream {
+
+    static final int MAGIC = 0xCF;
+    static final int VERSION = 1;
+
+    static final int NULL = 0;
+    static final int STRING = 1;
+    static final int STRING_REF = 2;
+    static final int INTEGER = 3;
+    static final int TRUE = 4;
+    static final int FALSE = 5;
+    static final int OBJECT_ARRAY = 6;
+    static final int LONG = 7;
+    static final int ENUM = 8;
+    static final int HASH_MAP = 9;
+    static final int ARRAY_LIST = 10;
+    static final int SERIALIZED = 11;
+
+    private final OutputStream destination;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private final Map<String,Integer> strings = new HashMap<>();
+    private ByteArrayOutputStream serializedBuffer;
+    private ObjectOutputStream serialized;
+    private boolean closed;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    public CompactObjectOutputStream(OutputStream destination) throws IOException {
+
+        super();
+        this.destination = destination;
+
+    }
+
+
+    // ---------------------------------------- Methods from ObjectOutputStream
+
+
+    @Override
+    protected void writeObjectOverride(Object obj) throws IOException {
+
+        writeValue(obj);
+
+    }
+
+
+    @Override
+    public void writeUnshared(Object obj) throws IOException {
+
+        writeValue(obj);
+
+    }
+
+
+    @Override
+    public void write(int val) throws IOException {
+
+        buffer.write(val);
+
+    }
+
+
+    @Override
+    public void write(byte[] buf) throws IOException {
+
+        buffer.write(buf, 0, buf.length);
+
+    }
+
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws IOException {
+
+        buffer.write(buf, off, len);
+
+    }
+
+
+    @Override
+    public void writeBoolean(boolean val) throws IOException {
+
+        buffer.write(val ? 1 : 0);
+
+    }
+
+
+    @Override
+    public void writeByte(int val) throws IOException {
+
+        buffer.write(val);
+
+    }
+
+
+    @Override
+    public void writeShort(int val) throws IOException {
+
+        writeVarLong(val);
+
+    }
+
+
+    @Override
+    public void writeChar(int val) throws IOException {
+
+        writeVarLong((char) val);
+
+    }
+
+
+    @Override
+    public void writeInt(int val) throws IOException {
+
+        writeVarLong(val);
+
+    }
+
+
+    @Override
+    public void writeLong(long val) throws IOException {
+
+        writeVarLong(val);
+
+    }
+
+
+    @Override
+    public void writeFloat(float val) throws IOException {
+
+        writeInt(Float.floatToIntBits(val));
+
+    }
+
+
+    @Override
+    public void writeDouble(double val) throws IOException {
+
+        writeLong(Double.doubleToLongBits(val));
+
+    }
+
+
+    @Override
+    public void writeBytes(String str) throws IOException {
+
+        for (int i = 0, len = str.length(); i < len; i++) {
+            buffer.write(str.charAt(i));
+        }
+
+    }
+
+
+    @Override
+    public void writeChars(String str) throws IOException {
+
+        for (int i = 0, len = str.length(); i < len; i++) {
+            writeChar(str.charAt(i));
+        }
+
+    }
+
+
+    @Override
+    public void writeUTF(String str) throws IOException {
+
+        writeRawString(str);
+
+    }
+
+
+    /**
+     * <p>Does nothing, the content is written once this stream is closed.</p>
+     */
+    @Override
+    public void flush() throws IOException {
+    }
+
+
+    /**
+     * <p>Writes the content of this stream to the destination and closes
+     * it.</p>
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            destination.write(MAGIC);
+            destination.write(VERSION);
+            int length = buffer.size();
+            for (int i = 0; i < 4; i++) {
+                destination.write(length >>> (24 - i * 8));
+            }
+            buffer.writeTo(destination);
+            if (serialized != null) {
+                serialized.close();
+                serializedBuffer.writeTo(destination);
+            }
+            destination.flush();
+        } finally {
+            destination.close();
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void writeValue(Object obj) throws IOException {
+
+        if (obj == null) {
+            buffer.write(NULL);
+            return;
+        }
+
+        Class<?> type = obj.getClass();
+        if (type == String.class) {
+            writeString((String) obj);
+        } else if (type == Integer.class) {
+            buffer.write(INTEGER);
+            writeVarLong((Integer) obj);
+        } else if (type == Boolean.class) {
+            buffer.write(((Boolean) obj) ? TRUE : FALSE);
+        } else if (type == Object[].class) {
+            Object[] array = (Object[]) obj;
+            buffer.write(OBJECT_ARRAY);
+            writeVarLong(array.length);
+            for (Object element : array) {
+                writeValue(element);
+            }
+        } else if (type == Long.class) {
+            buffer.write(LONG);
+            writeVarLong((Long) obj);
+        } else if (obj instanceof Enum) {
+            Enum<?> e = (Enum<?>) obj;
+            buffer.write(ENUM);
+            writeString(e.getDeclaringClass().getName());
+            writeString(e.name());
+        } else if (type == HashMap.class) {
+            Map<?,?> map = (Map<?,?>) obj;
+            buffer.write(HASH_MAP);
+            writeVarLong(map.size());
+            for (Map.Entry<?,?> entry : map.entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        } else if (type == ArrayList.class) {
+            List<?> list = (List<?>) obj;
+            buffer.write(ARRAY_LIST);
+            writeVarLong(list.size());
+            for (Object element : list) {
+                writeValue(element);
+            }
+        } else {
+            buffer.write(SERIALIZED);
+            if (serialized == null) {
+                serializedBuffer = new ByteArrayOutputStream(1024);
+                serialized = new ObjectOutputStream(serializedBuffer);
+            }
+            //noinspection NonSerializableObjectPassedToObjectStream
+            serialized.writeObject(obj);
+        }
+
+    }
+
+
+    private void writeString(String str) throws IOException {
+
+        Integer index = strings.get(str);
+        if (index != null) {
+            buffer.write(STRING_REF);
+            writeVarLong(index);
+        } else {
+            strings.put(str, strings.size());
+            buffer.write(STRING);
+            writeRawString(str);
+        }
+
+    }
+
+
+    private void writeRawString(String str) throws IOException {
+
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        buffer.write(bytes, 0, bytes.length);
+
+    }
+
+
+    /**
+     * Writes <code>val</code> zig-zag encoded, seven bits per byte, so
+     * small positive and negative numbers take a single byte.
+     */
+    private void writeVarLong(long val) {
+
+        long v = (val << 1) ^ (val >> 63);
+        while ((v & ~0x7FL) != 0) {
+            buffer.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.write((int) v);
+
+    }
+
+}
@@ -0,0 +1,514 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.renderkit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.FacesException;
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.RIConstants;
+import com.sun.faces.io.Base64InputStream;
+import com.sun.faces.io.Base64OutputStreamWriter;
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * A <code>ClientSideStateHelper</code> splitting the view state into chunks so
+ * the partial response of an Ajax request only contains the chunks that changed.
+ * This helper is used if
+ * {@link com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter#IncrementalClientState}
+ * is enabled.
+ * </p>
+ *
+ * <p>
+ * The state field has the form <code>I|manifest|digest=chunk|digest=chunk...</code>.
+ * The manifest holds the tree structure, the time the state was written and the
+ * digests of all chunks.  With partial state saving, the entries of the state map
+ * are distributed over a fixed number of chunks by the hash of their client id,
+ * so a change to one component only changes one chunk.  The manifest and every
+ * chunk are compressed, encrypted and Base64 encoded just like the state written
+ * by <code>ClientSideStateHelper</code>.  Each chunk also carries its digest, which
+ * is checked against the manifest on restore.  As the manifest is protected by the
+ * MAC of the <code>ByteArrayGuard</code>, the chunks can't be taken from another state.
+ * </p>
+ *
+ * <p>
+ * When writing the state for the partial response, a chunk whose digest was part of
+ * the submitted state is written as <code>digest=*</code>.  <code>jsf.js</code>
+ * replaces these references with the chunks of the state it submitted.  The full
+ * state is still submitted with each request, as the server doesn't keep any chunks.
+ * </p>
+ */
+public class IncrementalClientSideStateHelper extends ClientSideStateHelper {
+
+    private static final Logger LOGGER = FacesLogger.APPLICATION.getLogger();
+
+    /**
+     * Prefix of the incremental state field.
+     */
+    static final String STATE_PREFIX = "I|";
+
+    private static final char CHUNK_SEPARATOR = '|';
+    private static final char DIGEST_SEPARATOR = '=';
+    private static final String CHUNK_REFERENCE = "*";
+
+    /**
+     * The number of chunks the state map is distributed over.  Changing this
+     * value changes the chunk of every component.
+     */
+    private static final int CHUNK_COUNT = 16;
+
+    private static final int DIGEST_LENGTH = 12;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Salt of the chunk digests, so the digests don't tell anything about the
+     * (encrypted) content of a chunk.  Digests written by another node don't
+     * match, which only means unchanged chunks will be written again.
+     */
+    private final byte[] digestSalt;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Construct a new <code>IncrementalClientSideStateHelper</code> instance.
+     */
+    public IncrementalClientSideStateHelper() {
+
+        digestSalt = new byte[16];
+        new SecureRandom().nextBytes(digestSalt);
+
+    }
+
+
+    // ------------------------------------------------ Methods from StateHelper
+
+
+    /**
+     * <p>If the state is written for the partial response of an Ajax request,
+     * chunks that were submitted unchanged are written as references.
+     * Otherwise, behaves like {@link ClientSideStateHelper#writeState(FacesContext, Object, StringBuilder)}.</p>
+     */
+    @Override
+    public void writeState(FacesContext ctx,
+                           Object state,
+                           StringBuilder stateCapture) throws IOException {
+
+        if (stateCapture != null && ctx.getPartialViewContext().isAjaxRequest()) {
+            doWriteState(ctx,
+                         state,
+                         new StringBuilderWriter(stateCapture),
+                         getSubmittedDigests(ctx));
+        } else {
+            super.writeState(ctx, state, stateCapture);
+        }
+
+    }
+
+
+    // ------------------------------------------------------- Protected Methods
+
+
+    @Override
+    protected void doWriteState(FacesContext facesContext, Object state, Writer writer)
+    throws IOException {
+
+        doWriteState(facesContext, state, writer, Collections.<String>emptySet());
+
+    }
+
+
+    /**
+     * Writes the manifest and the chunks of the provided <code>state</code>
+     * to the provided <code>writer</code>.
+     *
+     * @param facesContext the Faces context.
+     * @param state view state
+     * @param writer the <code>Writer</code> to write the content to
+     * @param submittedDigests the digests of the chunks the client already has
+     * @throws IOException if an error occurs writing the state to the client
+     */
+    protected void doWriteState(FacesContext facesContext,
+                                Object state,
+                                Writer writer,
+                                Set<String> submittedDigests)
+    throws IOException {
+
+        if (facesContext.getViewRoot().isTransient()) {
+            super.doWriteState(facesContext, state, writer);
+            return;
+        }
+
+        Object[] stateToWrite = (Object[]) state;
+        boolean isMap = (stateToWrite[1] instanceof Map);
+        List<Object> chunks = ((isMap)
+                               ? split((Map<?,?>) stateToWrite[1])
+                               : Collections.singletonList(stateToWrite[1]));
+
+        String[] digests = new String[chunks.size()];
+        byte[][] payloads = new byte[chunks.size()][];
+        for (int i = 0, len = chunks.size(); i < len; i++) {
+            byte[] bytes = serialize(chunks.get(i));
+            byte[] digest = digest(bytes);
+            digests[i] = toHex(digest);
+            if (!submittedDigests.contains(digests[i])) {
+                byte[] payload = new byte[DIGEST_LENGTH + bytes.length];
+                System.arraycopy(digest, 0, payload, 0, DIGEST_LENGTH);
+                System.arraycopy(bytes, 0, payload, DIGEST_LENGTH, bytes.length);
+                payloads[i] = payload;
+            }
+        }
+
+        byte[] manifest = serialize(new Object[] {
+              System.currentTimeMillis(), stateToWrite[0], digests, isMap });
+
+        writer.write(STATE_PREFIX);
+        encode(facesContext, manifest, writer);
+        for (int i = 0; i < digests.length; i++) {
+            writer.write(CHUNK_SEPARATOR);
+            writer.write(digests[i]);
+            writer.write(DIGEST_SEPARATOR);
+            if (payloads[i] != null) {
+                encode(facesContext, payloads[i], writer);
+            } else {
+                writer.write(CHUNK_REFERENCE);
+            }
+        }
+        writer.flush();
+
+    }
+
+
+    @Override
+    protected Object doGetState(FacesContext ctx, String stateString) {
+
+        if (!stateString.startsWith(STATE_PREFIX)) {
+            return super.doGetState(ctx, stateString);
+        }
+
+        List<String> segments = splitSegments(stateString);
+        try {
+            byte[] manifestBytes = decode(ctx, segments.get(0));
+            if (manifestBytes == null) {
+                return null;
+            }
+            Object[] manifest = (Object[]) deserialize(manifestBytes, 0);
+            if (hasStateExpired((Long) manifest[0])) {
+                // return null if state has expired.  This should cause
+                // a ViewExpiredException to be thrown
+                return null;
+            }
+            String[] digests = (String[]) manifest[2];
+            boolean isMap = (Boolean) manifest[3];
+
+            Map<String,String> chunks = new HashMap<>();
+            for (int i = 1, len = segments.size(); i < len; i++) {
+                String segment = segments.get(i);
+                int sep = segment.indexOf(DIGEST_SEPARATOR);
+                if (sep != -1) {
+                    chunks.put(segment.substring(0, sep), segment.substring(sep + 1));
+                }
+            }
+
+            Map<Object,Object> stateMap = ((isMap) ? new HashMap<>() : null);
+            Object state = null;
+            for (String digest : digests) {
+                String chunk = chunks.get(digest);
+                if (chunk == null || CHUNK_REFERENCE.equals(chunk)) {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE,
+                                   "Incremental client state is missing chunk {0}",
+                                   digest);
+                    }
+                    return null;
+                }
+                byte[] bytes = decode(ctx, chunk);
+                if (bytes == null) {
+                    return null;
+                }
+                if (bytes.length < DIGEST_LENGTH
+                      || !digest.equals(toHex(Arrays.copyOf(bytes, DIGEST_LENGTH)))) {
+                    if (LOGGER.isLoggable(Level.WARNING)) {
+                        LOGGER.log(Level.WARNING,
+                                   "Incremental client state chunk {0} doesn''t match the manifest",
+                                   digest);
+                    }
+                    return null;
+                }
+                Object value = deserialize(bytes, DIGEST_LENGTH);
+                if (isMap) {
+                    Object[] entries = (Object[]) value;
+                    for (int i = 0; i < entries.length; i += 2) {
+                        stateMap.put(entries[i], entries[i + 1]);
+                    }
+                } else {
+                    state = value;
+                }
+            }
+
+            return new Object[] { manifest[1], ((isMap) ? stateMap : state) };
+
+        } catch (InvalidClassException ice) {
+            /*
+             * Thrown when the JSF runtime is trying to deserialize a client-side
+             * state that has been saved with a previous version of Mojarra. Instead
+             * of blowing up, force a ViewExpiredException.
+             */
+            return null;
+        } catch (IOException | ClassNotFoundException e) {
+            if (LOGGER.isLoggable(Level.SEVERE)) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            }
+            throw new FacesException(e);
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    /**
+     * Distributes the entries of the state map over the chunks.  The entries
+     * of each chunk are sorted by key, so equal chunks serialize equally.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> split(Map<?,?> state) {
+
+        List<Map.Entry<?,?>>[] buckets = new List[CHUNK_COUNT];
+        for (Map.Entry<?,?> entry : state.entrySet()) {
+            int bucket = (String.valueOf(entry.getKey()).hashCode() & 0x7FFFFFFF) % CHUNK_COUNT;
+            if (buckets[bucket] == null) {
+                buckets[bucket] = new ArrayList<>();
+            }
+            buckets[bucket].add(entry);
+        }
+
+        List<Object> chunks = new ArrayList<>(CHUNK_COUNT);
+        for (List<Map.Entry<?,?>> bucket : buckets) {
+            if (bucket == null) {
+                continue;
+            }
+            Collections.sort(bucket, (e1, e2) -> String.valueOf(e1.getKey()).compareTo(String.valueOf(e2.getKey())));
+            Object[] entries = new Object[bucket.size() * 2];
+            for (int i = 0, len = bucket.size(); i < len; i++) {
+                entries[i * 2] = bucket.get(i).getKey();
+                entries[i * 2 + 1] = bucket.get(i).getValue();
+            }
+            chunks.add(entries);
+        }
+        return chunks;
+
+    }
+
+
+    /**
+     * @return the digests of the chunks included with the submitted
+     *  incremental state, if any
+     */
+    private static Set<String> getSubmittedDigests(FacesContext ctx) {
+
+        String submitted = getStateParamValue(ctx);
+        if (submitted == null || !submitted.startsWith(STATE_PREFIX)) {
+            return Collections.emptySet();
+        }
+
+        Set<String> digests = new HashSet<>();
+        List<String> segments = splitSegments(submitted);
+        for (int i = 1, len = segments.size(); i < len; i++) {
+            String segment = segments.get(i);
+            int sep = segment.indexOf(DIGEST_SEPARATOR);
+            if (sep != -1 && !CHUNK_REFERENCE.equals(segment.substring(sep + 1))) {
+                digests.add(segment.substring(0, sep));
+            }
+        }
+        return digests;
+
+    }
+
+
+    /**
+     * @return the manifest followed by the chunks of the state field
+     */
+    private static List<String> splitSegments(String stateString) {
+
+        List<String> segments = new ArrayList<>(CHUNK_COUNT + 1);
+        int start = STATE_PREFIX.length();
+        for (int sep = stateString.indexOf(CHUNK_SEPARATOR, start);
+             sep != -1;
+             sep = stateString.indexOf(CHUNK_SEPARATOR, start)) {
+            segments.add(stateString.substring(start, sep));
+            start = sep + 1;
+        }
+        segments.add(stateString.substring(start));
+        return segments;
+
+    }
+
+
+    private byte[] serialize(Object value) throws IOException {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream oos = serialProvider.createObjectOutputStream(baos)) {
+            //noinspection NonSerializableObjectPassedToObjectStream
+            oos.writeObject(value);
+            oos.flush();
+        }
+        return baos.toByteArray();
+
+    }
+
+
+    private Object deserialize(byte[] bytes, int offset)
+    throws IOException, ClassNotFoundException {
+
+        try (ObjectInputStream ois = serialProvider.createObjectInputStream(
+              new ByteArrayInputStream(bytes, offset, bytes.length - offset))) {
+            return ois.readObject();
+        }
+
+    }
+
+
+    private byte[] digest(byte[] bytes) {
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(digestSalt);
+            md.update(bytes);
+            return Arrays.copyOf(md.digest(), DIGEST_LENGTH);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new FacesException(nsae);
+        }
+
+    }
+
+
+    /**
+     * Compresses, encrypts and Base64 encodes <code>bytes</code>.
+     */
+    private void encode(FacesContext ctx, byte[] bytes, Writer writer)
+    throws IOException {
+
+        if (compressor != null) {
+            bytes = compressor.compress(bytes);
+        }
+        if (guard != null) {
+            // this will MAC
+            bytes = guard.encrypt(ctx, bytes);
+        }
+        Base64OutputStreamWriter bos =
+              new Base64OutputStreamWriter(bytes.length, writer);
+        bos.write(bytes, 0, bytes.length);
+        bos.finish();
+
+    }
+
+
+    /**
+     * Reverts {@link #encode(FacesContext, byte[], Writer)}.
+     *
+     * @return the decoded bytes or <code>null</code> if the MAC didn't match
+     *  or the bytes can't be decompressed
+     */
+    private byte[] decode(FacesContext ctx, String encoded) throws IOException {
+
+        Base64InputStream bis = new Base64InputStream(encoded);
+        byte[] bytes = encoded.getBytes(RIConstants.CHAR_ENCODING);
+        int numRead = bis.read(bytes, 0, bytes.length);
+        bytes = Arrays.copyOf(bytes, Math.max(numRead, 0));
+
+        if (guard != null) {
+            bytes = guard.decrypt(ctx, bytes);
+            if (bytes == null) {
+                return null;
+            }
+        }
+        if (compressor != null) {
+            try {
+                bytes = compressor.decompress(bytes);
+            } catch (IOException ioe) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Unable to decompress incremental client state", ioe);
+                }
+                return null;
+            }
+        }
+        return bytes;
+
+    }
+
+
+    private static String toHex(byte[] bytes) {
+
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+
+    }
+
+}
@@ -40,6 +40,7 @@
 
 package com.sun.faces.renderkit;
 
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.IncrementalClientState;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.StateSavingMethod;
 
 import java.io.IOException;
@@ -67,9 +68,13 @@ public class ResponseStateManagerImpl extends ResponseStateManager {
         WebConfiguration webConfig = WebConfiguration.getInstance();
         String stateMode =
               webConfig.getOptionValue(StateSavingMethod);
-        helper = ((StateManager.STATE_SAVING_METHOD_CLIENT.equalsIgnoreCase(stateMode)
-                   ? new ClientSideStateHelper()
-                   : new ServerSideStateHelper()));
+        if (StateManager.STATE_SAVING_METHOD_CLIENT.equalsIgnoreCase(stateMode)) {
+            helper = ((webConfig.isOptionEnabled(IncrementalClientState))
+                      ? new IncrementalClientSideStateHelper()
+                      : new ClientSideStateHelper());
+        } else {
+            helper = new ServerSideStateHelper();
+        }
 
     }
 
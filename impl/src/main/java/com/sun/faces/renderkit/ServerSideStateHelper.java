@@ -54,27 +54,23 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.Collections;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.faces.FacesException;
 import javax.faces.component.UIViewRoot;
-import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
 import javax.faces.context.ResponseWriter;
 
 import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.spi.ViewStateStore;
+import com.sun.faces.spi.ViewStateStoreFactory;
 import com.sun.faces.util.FacesLogger;
-import com.sun.faces.util.LRUMap;
 import com.sun.faces.util.RequestStateManager;
-import com.sun.faces.util.TypedCollections;
 import com.sun.faces.util.Util;
 
 /**
@@ -125,6 +121,12 @@ public class ServerSideStateHelper extends StateHelper {
     protected final Random random;
 
 
+    /**
+     * The store holding the saved views.
+     */
+    protected final ViewStateStore viewStateStore;
+
+
     // ------------------------------------------------------------ Constructors
 
 
@@ -143,6 +145,8 @@ public class ServerSideStateHelper extends StateHelper {
         } else {
             random = null;
         }
+        viewStateStore = ViewStateStoreFactory.getInstance(
+              FacesContext.getCurrentInstance().getExternalContext());
 
     }
 
@@ -152,8 +156,8 @@ public class ServerSideStateHelper extends StateHelper {
 
     /**
      * <p>
-     * Stores the provided state within the session obtained from the provided
-     * <code>FacesContext</code>
+     * Stores the provided state within the configured {@link ViewStateStore},
+     * by default the session obtained from the provided <code>FacesContext</code>
      * </p>
      *
      * <p>If <code>stateCapture</code> is <code>null</code>, the composite
@@ -181,63 +185,36 @@ public class ServerSideStateHelper extends StateHelper {
             if (!ctx.getAttributes().containsKey("com.sun.faces.ViewStateValue")) {
                 Util.notNull("state", state);
                 Object[] stateToWrite = (Object[]) state;
-                ExternalContext externalContext = ctx.getExternalContext();
-                Object sessionObj = externalContext.getSession(true);
-                Map<String, Object> sessionMap = externalContext.getSessionMap();
-
-                //noinspection SynchronizationOnLocalVariableOrMethodParameter
-                synchronized (sessionObj) {
-                    Map<String, Map> logicalMap = TypedCollections.dynamicallyCastMap(
-                          (Map) sessionMap
-                                .get(LOGICAL_VIEW_MAP), String.class, Map.class);
-                    if (logicalMap == null) {
-                        logicalMap = Collections.synchronizedMap(new LRUMap<String, Map>(numberOfLogicalViews));
-                        sessionMap.put(LOGICAL_VIEW_MAP, logicalMap);
-                    }
 
-                    Object structure = stateToWrite[0];
-                    Object savedState = handleSaveState(stateToWrite[1]);
-
-                    String idInLogicalMap = (String)
-                              RequestStateManager.get(ctx, RequestStateManager.LOGICAL_VIEW_MAP);
-                    if (idInLogicalMap == null) {
-                        idInLogicalMap = ((generateUniqueStateIds)
-                                              ? createRandomId()
-                                              : createIncrementalRequestId(ctx));
-                    }
-                    String idInActualMap = null;
-                    if(ctx.getPartialViewContext().isPartialRequest()){
-                        // If partial request, do not change actual view Id, because page not actually changed.
-                        // Otherwise partial requests will soon overflow cache with values that would be never used.
-                        idInActualMap = (String) RequestStateManager.get(ctx, RequestStateManager.ACTUAL_VIEW_MAP);
-                    }
-                    if (null == idInActualMap) {
-                            idInActualMap = ((generateUniqueStateIds) ? createRandomId()
-                                                        : createIncrementalRequestId(ctx));
-                    }
-                    Map<String, Object[]> actualMap =
-                          TypedCollections.dynamicallyCastMap(
-                                logicalMap.get(idInLogicalMap), String.class, Object[].class);
-                    if (actualMap == null) {
-                        actualMap = new LRUMap<>(numberOfViews);
-                        logicalMap.put(idInLogicalMap, actualMap);
-                    }
+                Object structure = stateToWrite[0];
+                Object savedState = handleSaveState(stateToWrite[1]);
 
-                    id = idInLogicalMap + ':' + idInActualMap;
+                String idInLogicalMap = (String)
+                          RequestStateManager.get(ctx, RequestStateManager.LOGICAL_VIEW_MAP);
+                if (idInLogicalMap == null) {
+                    idInLogicalMap = ((generateUniqueStateIds)
+                                          ? createRandomId()
+                                          : createIncrementalRequestId(ctx));
+                }
+                String idInActualMap = null;
+                if(ctx.getPartialViewContext().isPartialRequest()){
+                    // If partial request, do not change actual view Id, because page not actually changed.
+                    // Otherwise partial requests will soon overflow cache with values that would be never used.
+                    idInActualMap = (String) RequestStateManager.get(ctx, RequestStateManager.ACTUAL_VIEW_MAP);
+                }
+                if (null == idInActualMap) {
+                        idInActualMap = ((generateUniqueStateIds) ? createRandomId()
+                                                    : createIncrementalRequestId(ctx));
+                }
 
-                    Object[] stateArray = actualMap.get(idInActualMap);
-                    // reuse the array if possible
-                    if (stateArray != null) {
-                        stateArray[0] = structure;
-                        stateArray[1] = savedState;
-                    } else {
-                        actualMap.put(idInActualMap, new Object[]{ structure, savedState });
-                    }
+                viewStateStore.saveState(ctx,
+                                         idInLogicalMap,
+                                         idInActualMap,
+                                         structure,
+                                         savedState);
 
-                    // always call put/setAttribute as we may be in a clustered environment.
-                    sessionMap.put(LOGICAL_VIEW_MAP, logicalMap);
-                    ctx.getAttributes().put("com.sun.faces.ViewStateValue", id);
-                }
+                id = idInLogicalMap + ':' + idInActualMap;
+                ctx.getAttributes().put("com.sun.faces.ViewStateValue", id);
             } else {
                 id = (String) ctx.getAttributes().get("com.sun.faces.ViewStateValue");
             }
@@ -275,7 +252,8 @@ public class ServerSideStateHelper extends StateHelper {
      * ID generated by ServerSideStateHelper#writeState(FacesContext, Object, StringBuilder).</p>
      *
      * <p>The composite key will be used to find the appropriate view within the
-     * session obtained from the provided <code>FacesContext</code>
+     * configured {@link ViewStateStore}, by default the session obtained from
+     * the provided <code>FacesContext</code>
      */
     @Override
     public Object getState(FacesContext ctx, String viewId) {
@@ -297,50 +275,38 @@ public class ServerSideStateHelper extends StateHelper {
         String idInLogicalMap = compoundId.substring(0, sep);
         String idInActualMap = compoundId.substring(sep + 1);
 
-        ExternalContext externalCtx = ctx.getExternalContext();
-        Object sessionObj = externalCtx.getSession(false);
-
-        // stop evaluating if the session is not available
-        if (sessionObj == null) {
+        Object[] state = viewStateStore.restoreState(ctx, idInLogicalMap, idInActualMap);
+        if (state == null) {
             if (LOGGER.isLoggable(Level.FINE)) {
                 LOGGER.log(Level.FINE,
-                           "Unable to restore server side state for view ID {0} as no session is available",
+                           "Unable to restore server side state for view ID {0} as no stored view is available",
                            viewId);
             }
             return null;
         }
 
-        //noinspection SynchronizationOnLocalVariableOrMethodParameter
-        synchronized (sessionObj) {
-            Map logicalMap = (Map) externalCtx.getSessionMap() .get(LOGICAL_VIEW_MAP);
-            if (logicalMap != null) {
-                Map actualMap = (Map) logicalMap.get(idInLogicalMap);
-                if (actualMap != null) {
-                    RequestStateManager.set(ctx,
-                                            RequestStateManager.LOGICAL_VIEW_MAP,
-                                            idInLogicalMap);
-                    
-                    Object[] restoredState = new Object[2];
-                    Object[] state = (Object[]) actualMap.get(idInActualMap);
-                    if(state != null){
-                        restoredState[0] = state[0];
-                        restoredState[1] = state[1];
-                        
-                        RequestStateManager.set(ctx,
-                                                RequestStateManager.ACTUAL_VIEW_MAP,
-                                                idInActualMap);
-                        if (state.length == 2 && state[1] != null) {
-                            restoredState[1] = handleRestoreState(state[1]);
-                        }
-                    }
-
-                    return restoredState;
+        RequestStateManager.set(ctx,
+                                RequestStateManager.LOGICAL_VIEW_MAP,
+                                idInLogicalMap);
+
+        Object[] restoredState = new Object[2];
+        if (state[0] != null || state[1] != null) {
+            restoredState[0] = state[0];
+            restoredState[1] = state[1];
+
+            RequestStateManager.set(ctx,
+                                    RequestStateManager.ACTUAL_VIEW_MAP,
+                                    idInActualMap);
+            if (state[1] != null) {
+                restoredState[1] = handleRestoreState(state[1]);
+                if (restoredState[1] == null) {
+                    return null;
                 }
             }
         }
 
-        return null;
-        
+        return restoredState;
+
     }
 
    
@@ -355,6 +321,22 @@ public class ServerSideStateHelper extends StateHelper {
      */
     protected Integer getIntegerConfigValue(WebContextInitParameter param) {
 
+        return getIntegerConfigValue(webConfig, param);
+
+    }
+
+
+    /**
+     * <p>Parses the <code>Integer</code> based configuration value of
+     * <code>param</code>, falling back to the default value of the
+     * parameter if it cannot be parsed.</p>
+     * @param webConfig the configuration of the current application
+     * @param param the paramter to parse
+     * @return the Integer representation of the parameter value
+     */
+    static Integer getIntegerConfigValue(WebConfiguration webConfig,
+                                         WebContextInitParameter param) {
+
         String noOfViewsStr = webConfig.getOptionValue(param);
         Integer value = null;
         try {
@@ -393,10 +375,7 @@ public class ServerSideStateHelper extends StateHelper {
             ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
             ObjectOutputStream oas = null;
             try {
-                oas = serialProvider
-                      .createObjectOutputStream(((compressViewState)
-                                                 ? new GZIPOutputStream(baos, 1024)
-                                                 : baos));
+                oas = serialProvider.createObjectOutputStream(baos);
                 //noinspection NonSerializableObjectPassedToObjectStream
                 oas.writeObject(state);
                 oas.flush();
@@ -413,7 +392,8 @@ public class ServerSideStateHelper extends StateHelper {
                     }
                 }
             }
-            return baos.toByteArray();
+            byte[] bytes = baos.toByteArray();
+            return ((compressor != null) ? compressor.compress(bytes) : bytes);
         } else {
             return state;
         }
@@ -426,16 +406,29 @@ public class ServerSideStateHelper extends StateHelper {
      * @return an object that can be passed to <code>UIViewRoot.processRestoreState</code>.
      *  If {@link com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter#SerializeServerStateDeprecated} de-serialize the
      *  state prior to returning it, otherwise return <code>state</code> as is.
+     *  Returns <code>null</code> if the state can't be decompressed.
      */
     protected Object handleRestoreState(Object state) {
 
         if (webConfig.isOptionEnabled(SerializeServerStateDeprecated) || webConfig.isOptionEnabled(SerializeServerState)) {
-            try (ByteArrayInputStream bais = new ByteArrayInputStream((byte[]) state);
-                 ObjectInputStream ois = serialProvider
-                      .createObjectInputStream(((compressViewState)
-                                                ? new GZIPInputStream(bais, 1024)
-                                                : bais));) {
-                return ois.readObject();
+            try {
+                byte[] bytes = (byte[]) state;
+                if (compressor != null) {
+                    try {
+                        bytes = compressor.decompress(bytes);
+                    } catch (IOException ioe) {
+                        // e.g. state of a previous version restored with the
+                        // session, causes a ViewExpiredException
+                        if (LOGGER.isLoggable(Level.FINE)) {
+                            LOGGER.log(Level.FINE, "Unable to decompress server side state", ioe);
+                        }
+                        return null;
+                    }
+                }
+                try (ObjectInputStream ois = serialProvider
+                      .createObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return ois.readObject();
+                }
             } catch (Exception e) {
                 throw new FacesException(e);
             }
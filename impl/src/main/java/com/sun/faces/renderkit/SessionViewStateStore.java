@@ -0,0 +1,180 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.renderkit;
+
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.NumberOfLogicalViews;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.NumberOfViews;
+import static com.sun.faces.renderkit.ServerSideStateHelper.LOGICAL_VIEW_MAP;
+
+import java.util.Map;
+
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.spi.ViewStateStore;
+import com.sun.faces.util.ConcurrentLRUMap;
+import com.sun.faces.util.TypedCollections;
+
+/**
+ * <p>
+ * The default {@link ViewStateStore}.  Views are kept in an LRU map of logical
+ * views, each holding an LRU map of actual views, stored within the session.
+ * </p>
+ *
+ * <p>
+ * Both maps are {@link ConcurrentLRUMap}s, so concurrent requests of the same
+ * session (e.g. Ajax requests from several tabs) don't contend on the session.
+ * </p>
+ */
+public class SessionViewStateStore implements ViewStateStore {
+
+    /**
+     * The number of logical views as configured by the user.
+     */
+    private final Integer numberOfLogicalViews;
+
+
+    /**
+     * The number of views as configured by the user.
+     */
+    private final Integer numberOfViews;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Construct a new <code>SessionViewStateStore</code> instance.
+     */
+    public SessionViewStateStore() {
+
+        WebConfiguration webConfig = WebConfiguration.getInstance();
+        numberOfLogicalViews = ServerSideStateHelper.getIntegerConfigValue(webConfig, NumberOfLogicalViews);
+        numberOfViews = ServerSideStateHelper.getIntegerConfigValue(webConfig, NumberOfViews);
+
+    }
+
+
+    // --------------------------------------------- Methods from ViewStateStore
+
+
+    @Override
+    public void saveState(FacesContext context,
+                          String idInLogicalMap,
+                          String idInActualMap,
+                          Object structure,
+                          Object savedState) {
+
+        ExternalContext externalContext = context.getExternalContext();
+        Object sessionObj = externalContext.getSession(true);
+        Map<String, Object> sessionMap = externalContext.getSessionMap();
+
+        Map<String, Map> logicalMap = TypedCollections.dynamicallyCastMap(
+              (Map) sessionMap.get(LOGICAL_VIEW_MAP), String.class, Map.class);
+        if (logicalMap == null) {
+            // only the creation of the logical map needs to be guarded,
+            // access to the maps themselves doesn't require any locking
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (sessionObj) {
+                logicalMap = TypedCollections.dynamicallyCastMap(
+                      (Map) sessionMap.get(LOGICAL_VIEW_MAP), String.class, Map.class);
+                if (logicalMap == null) {
+                    logicalMap = new ConcurrentLRUMap<>(numberOfLogicalViews);
+                    sessionMap.put(LOGICAL_VIEW_MAP, logicalMap);
+                }
+            }
+        }
+
+        Map<String, Object[]> actualMap =
+              TypedCollections.dynamicallyCastMap(
+                    logicalMap.get(idInLogicalMap), String.class, Object[].class);
+        if (actualMap == null) {
+            actualMap = new ConcurrentLRUMap<>(numberOfViews);
+            Map<String, Object[]> existing = TypedCollections.dynamicallyCastMap(
+                  logicalMap.putIfAbsent(idInLogicalMap, actualMap),
+                  String.class, Object[].class);
+            if (existing != null) {
+                actualMap = existing;
+            }
+        }
+
+        // never reuse a stored array, concurrent requests may be reading it
+        actualMap.put(idInActualMap, new Object[]{ structure, savedState });
+
+        // always call put/setAttribute as we may be in a clustered environment.
+        sessionMap.put(LOGICAL_VIEW_MAP, logicalMap);
+
+    }
+
+
+    @Override
+    public Object[] restoreState(FacesContext context,
+                                 String idInLogicalMap,
+                                 String idInActualMap) {
+
+        ExternalContext externalCtx = context.getExternalContext();
+        Object sessionObj = externalCtx.getSession(false);
+
+        // stop evaluating if the session is not available
+        if (sessionObj == null) {
+            return null;
+        }
+
+        Map logicalMap = (Map) externalCtx.getSessionMap().get(LOGICAL_VIEW_MAP);
+        if (logicalMap != null) {
+            Map actualMap = (Map) logicalMap.get(idInLogicalMap);
+            if (actualMap != null) {
+                Object[] restoredState = new Object[2];
+                Object[] state = (Object[]) actualMap.get(idInActualMap);
+                if (state != null) {
+                    restoredState[0] = state[0];
+                    restoredState[1] = state[1];
+                }
+                return restoredState;
+            }
+        }
+
+        return null;
+
+    }
+
+}
@@ -43,6 +43,9 @@ package com.sun.faces.renderkit;
 
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.AutoCompleteOffOnViewState;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.CompressViewState;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateCompressionLevel;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateCompressionThreshold;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateMaxInflationRatio;
 import static com.sun.faces.renderkit.RenderKitUtils.PredefinedPostbackParameter.CLIENT_WINDOW_PARAM;
 import static com.sun.faces.renderkit.RenderKitUtils.PredefinedPostbackParameter.RENDER_KIT_ID_PARAM;
 import static com.sun.faces.renderkit.RenderKitUtils.PredefinedPostbackParameter.VIEW_STATE_PARAM;
@@ -52,6 +55,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 import javax.faces.context.FacesContext;
 import javax.faces.context.ResponseWriter;
@@ -62,6 +66,7 @@ import javax.servlet.http.HttpSession;
 
 import com.sun.faces.RIConstants;
 import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
 import com.sun.faces.spi.SerializationProvider;
 import com.sun.faces.spi.SerializationProviderFactory;
 import com.sun.faces.util.ByteArrayGuardAESCTR;
@@ -102,6 +107,15 @@ public abstract class StateHelper {
     protected boolean compressViewState;
 
 
+    /**
+     * <p>
+     * Compresses the serialized view state if <code>compressViewState</code>
+     * is <code>true</code>, otherwise <code>null</code>.
+     * </p>
+     */
+    protected ViewStateCompressor compressor;
+
+
     /**
      * This will be used the by the different <code>StateHelper</code> implementations
      * when writing the start of the state field.
@@ -137,6 +151,16 @@ public abstract class StateHelper {
               .createInstance(ctx.getExternalContext());
         webConfig = WebConfiguration.getInstance(ctx.getExternalContext());
         compressViewState = webConfig.isOptionEnabled(CompressViewState);
+        if (compressViewState) {
+            int level = getIntegerOptionValue(ViewStateCompressionLevel);
+            if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+                level = Integer.parseInt(ViewStateCompressionLevel.getDefaultValue());
+            }
+            compressor = new ViewStateCompressor(
+                  level,
+                  getIntegerOptionValue(ViewStateCompressionThreshold),
+                  Math.max(1, getIntegerOptionValue(ViewStateMaxInflationRatio)));
+        }
 
         if (serialProvider == null) {
             serialProvider = SerializationProviderFactory
@@ -208,6 +232,29 @@ public abstract class StateHelper {
     // ------------------------------------------------------- Protected Methods
 
 
+    /**
+     * @param param the integer context parameter to obtain
+     * @return the value of <code>param</code>, or its default value if the
+     *  value cannot be parsed
+     */
+    protected int getIntegerOptionValue(WebContextInitParameter param) {
+
+        String value = webConfig.getOptionValue(param);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "jsf.state.server.cannot.parse.int.option",
+                           new Object[] { param.getQualifiedName(),
+                                          param.getDefaultValue() });
+            }
+            return Integer.parseInt(param.getDefaultValue());
+        }
+
+    }
+
+
     /**
      * <p>Get our view state from this request</p>
      *
@@ -0,0 +1,243 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.renderkit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * <p>
+ * Compresses serialized view state for both client and server side state
+ * saving.
+ * </p>
+ *
+ * <p>
+ * State is deflated with a preset dictionary made of the class names, property
+ * keys and class names of serialized types found in almost every view, so even the state
+ * of small views compresses well.  State smaller than the configured threshold
+ * is stored as is, as compressing it would cost more than it saves.  The first
+ * byte of the result tells which of the two was done.
+ * </p>
+ *
+ * <p>
+ * Client side state is untrusted input, so inflating stops with an
+ * <code>IOException</code> once the output exceeds the configured multiple of
+ * the compressed size.  Callers treat any <code>IOException</code> from
+ * {@link #decompress(byte[])} as an unreadable view state, which surfaces as
+ * a <code>ViewExpiredException</code>; this includes GZIP compressed state
+ * written by previous versions.
+ * </p>
+ */
+public class ViewStateCompressor {
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 1;
+    private static final int GZIP_MAGIC_0 = 0x1f;
+    private static final int GZIP_MAGIC_1 = 0x8b;
+
+    /**
+     * The preset dictionary.  Deflate favors matches close to the data, so
+     * the most common tokens come last.  Changing the dictionary makes state
+     * written by previous versions unreadable.
+     */
+    private static final byte[] DICTIONARY = (
+          "javax.faces.component.html.HtmlOutputLabel"
+          + "javax.faces.component.html.HtmlOutputText"
+          + "javax.faces.component.html.HtmlCommandButton"
+          + "javax.faces.component.html.HtmlCommandLink"
+          + "javax.faces.component.html.HtmlSelectOneMenu"
+          + "javax.faces.component.html.HtmlSelectBooleanCheckbox"
+          + "javax.faces.component.html.HtmlInputText"
+          + "javax.faces.component.html.HtmlPanelGroup"
+          + "javax.faces.component.html.HtmlPanelGrid"
+          + "javax.faces.component.html.HtmlDataTable"
+          + "javax.faces.component.html.HtmlForm"
+          + "javax.faces.component.UISelectItems"
+          + "javax.faces.component.UIColumn"
+          + "javax.faces.component.UIViewRoot"
+          + "javax.faces.component.UIComponentBase"
+          + "javax.faces.component.UIComponent$PropertyKeys"
+          + "javax.faces.component.UIOutput$PropertyKeys"
+          + "javax.faces.component.UIInput$PropertyKeys"
+          + "javax.faces.component.UIData$PropertyKeys"
+          + "javax.faces.component.StateHolderSaver"
+          + "javax.faces.component.behavior.AjaxBehavior"
+          + "com.sun.faces.facelets.compiler.UIInstructions"
+          + "com.sun.faces.facelets.el.TagValueExpression"
+          + "com.sun.faces.facelets.el.TagMethodExpression"
+          + "com.sun.el.ValueExpressionImpl"
+          + "com.sun.el.MethodExpressionImpl"
+          + "javax.faces.component.SavedStateclassNamesavedStatesubmittedValuevalidlocalValueSet"
+          + "styleClassstyledisabledreadonlyrequiredrenderedlabelconverterbindingattributes"
+          + "valueChangeListenersvalidatorsbehaviorsactionListenersfacesListenersvalue"
+          + "java.util.ArrayListsizejava.util.HashMaploadFactorthreshold"
+          + "java.lang.Integerjava.lang.Numberjava.lang.Booleanjava.lang.Enum"
+          + "java.lang.String[Ljava.lang.Object;"
+          + "j_idtj_id").getBytes(StandardCharsets.ISO_8859_1);
+
+    private final int level;
+    private final int threshold;
+    private final int maxInflationRatio;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param level the compression level, see {@link Deflater#setLevel(int)}
+     * @param threshold the minimum size in bytes of state to be compressed
+     * @param maxInflationRatio the maximum size of inflated state as a
+     *  multiple of its compressed size
+     */
+    public ViewStateCompressor(int level, int threshold, int maxInflationRatio) {
+
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+        if (maxInflationRatio < 1) {
+            throw new IllegalArgumentException("Invalid inflation ratio " + maxInflationRatio);
+        }
+        this.level = level;
+        this.threshold = threshold;
+        this.maxInflationRatio = maxInflationRatio;
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @param data the serialized state
+     * @return the compressed state, or the state as is if smaller than the
+     *  configured threshold, prefixed by the compression marker
+     */
+    public byte[] compress(byte[] data) {
+
+        if (data.length < threshold) {
+            byte[] result = new byte[data.length + 1];
+            result[0] = STORED;
+            System.arraycopy(data, 0, result, 1, data.length);
+            return result;
+        }
+
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            out.write(DEFLATED);
+            byte[] buf = new byte[Math.min(8192, Math.max(512, data.length))];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+
+    }
+
+
+    /**
+     * @param data state returned by {@link #compress(byte[])}
+     * @return the serialized state
+     * @throws IOException if <code>data</code> isn't valid, wasn't written by
+     *  this class, or inflates to more than the configured multiple of its size
+     */
+    public byte[] decompress(byte[] data) throws IOException {
+
+        if (data.length == 0) {
+            throw new IOException("Empty view state");
+        }
+
+        if (data[0] == STORED) {
+            byte[] result = new byte[data.length - 1];
+            System.arraycopy(data, 1, result, 0, result.length);
+            return result;
+        } else if (data.length > 1
+                   && (data[0] & 0xFF) == GZIP_MAGIC_0
+                   && (data[1] & 0xFF) == GZIP_MAGIC_1) {
+            throw new IOException("GZIP compressed view state of a previous version");
+        } else if (data[0] != DEFLATED) {
+            throw new IOException("Unknown view state compression " + data[0]);
+        }
+
+        long maxSize = (long) maxInflationRatio * (data.length - 1);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream out =
+                  new ByteArrayOutputStream((int) Math.min(maxSize, data.length * 4L));
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Truncated view state");
+                    }
+                }
+                if (out.size() + (long) n > maxSize) {
+                    throw new IOException("View state inflates to more than "
+                                          + maxSize + " bytes");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+
+    }
+
+}
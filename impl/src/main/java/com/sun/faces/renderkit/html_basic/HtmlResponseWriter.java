@@ -42,6 +42,7 @@ package com.sun.faces.renderkit.html_basic;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -54,6 +55,8 @@ import javax.faces.context.ResponseWriter;
 import com.sun.faces.RIConstants;
 import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter;
+import com.sun.faces.io.EncodedText;
+import com.sun.faces.io.EncodedTextWriter;
 import com.sun.faces.io.FastStringWriter;
 import com.sun.faces.util.HtmlUtils;
 import com.sun.faces.util.MessageUtils;
@@ -69,7 +72,7 @@ import javax.faces.render.Renderer;
  * of the <code>ResponseWriter</code> abstract class.
  * Kudos to Adam Winer (Oracle) for much of this code.
  */
-public class HtmlResponseWriter extends ResponseWriter {
+public class HtmlResponseWriter extends ResponseWriter implements EncodedTextWriter {
 
 
     // Content Type for this Writer.
@@ -197,6 +200,11 @@ public class HtmlResponseWriter extends ResponseWriter {
 
     static final Pattern CDATA_END_SLASH_STAR;
 
+    // Pre-encoded start and end tags for frequently rendered elements
+    private static final Map<String, EncodedText> START_TAGS;
+
+    private static final Map<String, EncodedText> END_TAGS;
+
     static {
         // At the beginning of a line, match // followed by any amount of
         // whitespace, followed by <![CDATA[
@@ -215,6 +223,20 @@ public class HtmlResponseWriter extends ResponseWriter {
         // followed by ]]> followed by any amount of whitespace, followed by */
         CDATA_END_SLASH_STAR = Pattern.compile("/\\*\\s*\\Q]]>\\E\\s*\\*/$");
 
+        String[] commonElements = {
+              "a", "body", "br", "button", "div", "fieldset", "form", "head",
+              "html", "img", "input", "label", "li", "link", "meta", "ol",
+              "option", "p", "script", "select", "span", "style", "table",
+              "tbody", "td", "textarea", "tfoot", "th", "thead", "title",
+              "tr", "ul"
+        };
+        START_TAGS = new HashMap<>(commonElements.length * 2);
+        END_TAGS = new HashMap<>(commonElements.length * 2);
+        for (String element : commonElements) {
+            START_TAGS.put(element, new EncodedText('<' + element));
+            END_TAGS.put(element, new EncodedText("</" + element + '>'));
+        }
+
     }
 
     // ------------------------------------------------------------ Constructors
@@ -596,9 +618,15 @@ public class HtmlResponseWriter extends ResponseWriter {
             closeStart = false;
         }
 
-        writer.write("</");
-        writer.write(popElementName(name));
-        writer.write('>');
+        String elementName = popElementName(name);
+        EncodedText endTag = END_TAGS.get(elementName);
+        if (endTag != null) {
+            endTag.writeTo(writer);
+        } else {
+            writer.write("</");
+            writer.write(elementName);
+            writer.write('>');
+        }
 
     }
 
@@ -685,9 +713,14 @@ public class HtmlResponseWriter extends ResponseWriter {
             }
         }
 
-        writer.write('<');
         String elementName = pushElementName(name);
-        writer.write(elementName);
+        EncodedText startTag = START_TAGS.get(elementName);
+        if (startTag != null) {
+            startTag.writeTo(writer);
+        } else {
+            writer.write('<');
+            writer.write(elementName);
+        }
         
         closeStart = true;
 
@@ -758,6 +791,60 @@ public class HtmlResponseWriter extends ResponseWriter {
     }
 
 
+    /**
+     * <p>Write pre-encoded markup without escaping.  If the underlying
+     * writer can accept encoded bytes they are written as is.</p>
+     *
+     * @param text the text to write
+     * @throws IOException if an input/output error occurs
+     */
+    @Override
+    public void write(EncodedText text) throws IOException {
+        closeStartIfNecessary();
+        text.writeTo(writer);
+    }
+
+
+    /**
+     * <p>Write properly escaped text that doesn't change between renders,
+     * such as literal text from a Facelet.  The escaped form is computed
+     * once and cached by <code>text</code>, so subsequent renders only
+     * copy it, as bytes if the underlying writer allows.</p>
+     *
+     * @param text the text to write
+     * @throws IOException if an input/output error occurs
+     */
+    public void writeText(EncodedText text) throws IOException {
+
+        if (dontEscape) {
+            write(text);
+            return;
+        }
+        if (!isPartial && writingCdata) {
+            writeText(text.getText(), null);
+            return;
+        }
+        closeStartIfNecessary();
+        int escapeKey = (escapeUnicode ? 1 : 0) | (escapeIso ? 2 : 0);
+        EncodedText escaped = text.getDerived(escapeKey);
+        if (escaped == null) {
+            String textStr = text.getText();
+            FastStringWriter escapedWriter = new FastStringWriter(textStr.length() + 16);
+            ensureTextBufferCapacity(textStr);
+            HtmlUtils.writeText(escapedWriter,
+                                escapeUnicode,
+                                escapeIso,
+                                buffer,
+                                textStr,
+                                textBuffer);
+            escaped = new EncodedText(escapedWriter.toString());
+            text.setDerived(escapeKey, escaped);
+        }
+        escaped.writeTo(writer);
+
+    }
+
+
     /**
      * <p>Write a properly escaped attribute name and the corresponding
      * value.  The value text will be converted to a String if
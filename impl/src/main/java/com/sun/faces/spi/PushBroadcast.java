@@ -0,0 +1,154 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.spi;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>A push message travelling over a {@link PushBroadcastBus} from the
+ * node where <code>PushContext.send</code> was invoked to all nodes of
+ * the cluster.</p>
+ *
+ * <p>The message is addressed the way the sender resolved it: either to
+ * a set of users of a channel, or to a channel identifier.  Channel
+ * identifiers of application scoped channels differ per node, so those
+ * are flagged as such and every node also delivers the message to its own
+ * identifier for the channel name.</p>
+ */
+public final class PushBroadcast implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final String channel;
+    private final String channelId;
+    private final boolean applicationScope;
+    private final Set<Serializable> users;
+    private final Serializable message;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param id the cluster wide unique id of this broadcast
+     * @param channel the channel name
+     * @param channelId the channel identifier resolved by the sender, if any
+     * @param applicationScope whether the channel is application scoped
+     * @param users the users to deliver the message to, or <code>null</code>
+     *  to deliver it to the channel
+     * @param message the push message
+     */
+    public PushBroadcast(String id,
+                         String channel,
+                         String channelId,
+                         boolean applicationScope,
+                         Collection<? extends Serializable> users,
+                         Serializable message) {
+
+        this.id = id;
+        this.channel = channel;
+        this.channelId = channelId;
+        this.applicationScope = applicationScope;
+        this.users = (users == null) ? null : Collections.unmodifiableSet(new HashSet<Serializable>(users));
+        this.message = message;
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @return the cluster wide unique id of this broadcast, which nodes
+     *  use to ignore broadcasts they have already delivered
+     */
+    public String getId() {
+        return id;
+    }
+
+
+    /**
+     * @return the channel name
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+
+    /**
+     * @return the channel identifier resolved by the sender, or
+     *  <code>null</code>
+     */
+    public String getChannelId() {
+        return channelId;
+    }
+
+
+    /**
+     * @return <code>true</code> if the channel is application scoped
+     */
+    public boolean isApplicationScope() {
+        return applicationScope;
+    }
+
+
+    /**
+     * @return the users to deliver the message to, or <code>null</code>
+     *  if the message is addressed to the channel
+     */
+    public Set<Serializable> getUsers() {
+        return users;
+    }
+
+
+    /**
+     * @return the push message
+     */
+    public Serializable getMessage() {
+        return message;
+    }
+
+} // END PushBroadcast
@@ -0,0 +1,88 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.spi;
+
+import java.util.function.Consumer;
+
+import javax.faces.context.ExternalContext;
+
+/**
+ * <p>This interface provides a mechanism to distribute the messages sent
+ * through <code>PushContext</code> to all nodes of a cluster, so that
+ * every node can deliver them to the web sockets connected to it.</p>
+ *
+ * <p>A bus delivers each published {@link PushBroadcast} to the receivers
+ * of all nodes, possibly including the node that published it and possibly
+ * more than once.  Receivers ignore broadcasts whose id they have already
+ * seen.</p>
+ *
+ * <p>The implementation of this interface *must* be thread-safe and must
+ * have a no-arg constructor.</p>
+ */
+public interface PushBroadcastBus {
+
+    /**
+     * <p>Starts receiving broadcasts.</p>
+     *
+     * @param extContext the <code>ExternalContext</code> of the application,
+     *  which may be used to read configuration
+     * @param receiver invoked for each received broadcast, from any thread
+     */
+    public void start(ExternalContext extContext,
+                      Consumer<PushBroadcast> receiver);
+
+
+    /**
+     * <p>Publishes the given broadcast to all nodes.  This must not block
+     * for long and must not throw when other nodes are unreachable.</p>
+     *
+     * @param broadcast the broadcast to publish
+     */
+    public void publish(PushBroadcast broadcast);
+
+
+    /**
+     * <p>Stops receiving broadcasts and releases any resources.</p>
+     */
+    public void stop();
+
+
+} // END PushBroadcastBus
@@ -0,0 +1,161 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.spi;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.context.ExternalContext;
+
+import com.sun.faces.RIConstants;
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.Util;
+
+/**
+ * <p>A factory for creating <code>PushBroadcastBus</code>
+ * instances.</p>
+ */
+public class PushBroadcastBusFactory {
+
+    /**
+     * <p>The system property that will be checked for alternate
+     * <code>PushBroadcastBus</code> implementations.</p>
+     */
+    private static final String PUSH_BROADCAST_BUS_PROPERTY =
+          RIConstants.FACES_PREFIX + "PushBroadcastBus";
+
+    private static final Logger LOGGER = FacesLogger.APPLICATION.getLogger();
+
+
+    /**
+     * <p>Creates a new instance of the class specified by the
+     * <code>com.sun.faces.pushBroadcastBus</code> context parameter or
+     * system property.  If neither is defined, or the class cannot be
+     * instantiated, then <code>null</code> will be returned and push
+     * messages are only delivered to the web sockets connected to the
+     * local node.</p>
+     *
+     * @param extContext the ExternalContext for this application
+     * @return an implementation of the <code>PushBroadcastBus</code>
+     *  interface, or <code>null</code>
+     */
+    public static PushBroadcastBus createInstance(ExternalContext extContext) {
+
+        String busClass = findBusClass(extContext);
+        PushBroadcastBus bus = getBusInstance(busClass);
+
+        if (bus != null) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                           "PushBroadcastBus {0} configured",
+                           bus.getClass().getName());
+            }
+        }
+        return bus;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static PushBroadcastBus getBusInstance(String className) {
+
+        if (className != null && className.length() > 0) {
+            try {
+                Class<?> clazz = Util.loadClass(className, PushBroadcastBusFactory.class);
+                if (PushBroadcastBus.class.isAssignableFrom(clazz)) {
+                    return (PushBroadcastBus) clazz.newInstance();
+                } else {
+                    if (LOGGER.isLoggable(Level.SEVERE)) {
+                        LOGGER.log(Level.SEVERE,
+                                   "The specified PushBroadcastBus implementation ''{0}'' does not implement the PushBroadcastBus interface",
+                                   className);
+                    }
+                }
+            } catch (ClassNotFoundException cnfe) {
+                if (LOGGER.isLoggable(Level.SEVERE)) {
+                    LOGGER.log(Level.SEVERE,
+                               "The specified PushBroadcastBus implementation ''{0}'' cannot be loaded",
+                               className);
+                }
+            } catch (InstantiationException | IllegalAccessException ie) {
+                if (LOGGER.isLoggable(Level.SEVERE)) {
+                    LOGGER.log(Level.SEVERE,
+                               "The specified PushBroadcastBus implementation ''{0}'' cannot be instantiated",
+                               className);
+                    LOGGER.log(Level.SEVERE, "", ie);
+                }
+            }
+        }
+
+        return null;
+
+    }
+
+
+    /**
+     * Tries to find a bus class in a web context parameter.  If not
+     * present it tries to find it as a System property.  If still not found
+     * returns null.
+     *
+     * @param extContext The ExternalContext for this application
+     * @return The bus class name specified in the container configuration,
+     *         or <code>null</code> if not found.
+     */
+    private static String findBusClass(ExternalContext extContext) {
+
+        WebConfiguration webConfig = WebConfiguration.getInstance(extContext);
+
+        String bus = webConfig.getOptionValue(
+              WebContextInitParameter.PushBroadcastBusClass);
+
+        if (bus != null && bus.length() > 0) {
+            return bus;
+        } else {
+            return System.getProperty(PUSH_BROADCAST_BUS_PROPERTY);
+        }
+
+    }
+
+} // END PushBroadcastBusFactory
@@ -0,0 +1,91 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.spi;
+
+import javax.faces.context.FacesContext;
+
+/**
+ * <p>This interface provides a mechanism to allow the use of alternate
+ * storage for the views saved by server side state saving.</p>
+ *
+ * <p>A view is identified by the pair of ids written to the client
+ * by <code>ServerSideStateHelper</code>: the id of the logical view (one
+ * per browser window or tab) and the id of the actual view within that
+ * logical view.</p>
+ *
+ * <p>The implementation of this interface *must* be thread-safe and must
+ * have a no-arg constructor.</p>
+ */
+public interface ViewStateStore {
+
+    /**
+     * <p>Stores the provided state for the current session.</p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param idInLogicalMap the id of the logical view
+     * @param idInActualMap the id of the actual view
+     * @param structure the tree structure of the view
+     * @param savedState the saved state of the view
+     */
+    public void saveState(FacesContext context,
+                          String idInLogicalMap,
+                          String idInActualMap,
+                          Object structure,
+                          Object savedState);
+
+
+    /**
+     * <p>Obtains the state previously stored for the current session.</p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param idInLogicalMap the id of the logical view
+     * @param idInActualMap the id of the actual view
+     * @return <code>null</code> if no session is available or the logical
+     *  view is unknown, otherwise a two element array containing the
+     *  structure and the saved state of the view.  Both elements will be
+     *  <code>null</code> if the actual view is no longer available.
+     */
+    public Object[] restoreState(FacesContext context,
+                                 String idInLogicalMap,
+                                 String idInActualMap);
+
+
+} // END ViewStateStore
@@ -0,0 +1,197 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.spi;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.context.ExternalContext;
+
+import com.sun.faces.RIConstants;
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.renderkit.SessionViewStateStore;
+import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.Util;
+
+/**
+ * <p>A factory for creating <code>ViewStateStore</code>
+ * instances.</p>
+ */
+public class ViewStateStoreFactory {
+
+    /**
+     * <p>The system property that will be checked for alternate
+     * <code>ViewStateStore</code> implementations.</p>
+     */
+    private static final String VIEW_STATE_STORE_PROPERTY =
+          RIConstants.FACES_PREFIX + "ViewStateStore";
+
+    /**
+     * <p>The application scoped attribute holding the
+     * <code>ViewStateStore</code> of the application.</p>
+     */
+    private static final String VIEW_STATE_STORE_KEY =
+          ViewStateStoreFactory.class.getName() + ".ViewStateStore";
+
+    private static final Logger LOGGER = FacesLogger.APPLICATION.getLogger();
+
+
+    /**
+     * <p>Returns the <code>ViewStateStore</code> of the application, creating
+     * it by {@link #createInstance(ExternalContext)} on the first call.  All
+     * state helpers of an application, one for each render kit, share this
+     * store, so a store bounding its size does so for the whole
+     * application.</p>
+     *
+     * @param extContext the ExternalContext for this application
+     * @return the <code>ViewStateStore</code> of the application
+     */
+    public static ViewStateStore getInstance(ExternalContext extContext) {
+
+        Map<String, Object> appMap = extContext.getApplicationMap();
+        ViewStateStore store = (ViewStateStore) appMap.get(VIEW_STATE_STORE_KEY);
+        if (store == null) {
+            synchronized (ViewStateStoreFactory.class) {
+                store = (ViewStateStore) appMap.get(VIEW_STATE_STORE_KEY);
+                if (store == null) {
+                    store = createInstance(extContext);
+                    appMap.put(VIEW_STATE_STORE_KEY, store);
+                }
+            }
+        }
+        return store;
+
+    }
+
+
+    /**
+     * <p>Creates a new instance of the class specified by the
+     * <code>com.sun.faces.viewStateStore</code> context parameter or, if
+     * it is not set, the <code>com.sun.faces.ViewStateStore</code> system
+     * property.  If neither is defined, then a
+     * {@link SessionViewStateStore} will be returned.</p>
+     *
+     * @param extContext the ExternalContext for this application
+     * @return an implementation of the <code>ViewStateStore</code>
+     *  interface
+     */
+    public static ViewStateStore createInstance(ExternalContext extContext) {
+
+        String storeClass = findStoreClass(extContext);
+        ViewStateStore store = getStoreInstance(storeClass);
+
+        if (store.getClass() != SessionViewStateStore.class) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                           "ViewStateStore {0} configured",
+                           store.getClass().getName());
+            }
+        }
+        return store;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static ViewStateStore getStoreInstance(String className) {
+
+        if (className != null && className.length() > 0) {
+            try {
+                Class<?> clazz = Util.loadClass(className, ViewStateStoreFactory.class);
+                if (ViewStateStore.class.isAssignableFrom(clazz)) {
+                    return (ViewStateStore) clazz.newInstance();
+                } else {
+                    if (LOGGER.isLoggable(Level.SEVERE)) {
+                        LOGGER.log(Level.SEVERE,
+                                   "The specified ViewStateStore implementation ''{0}'' does not implement the ViewStateStore interface",
+                                   className);
+                    }
+                }
+            } catch (ClassNotFoundException cnfe) {
+                if (LOGGER.isLoggable(Level.SEVERE)) {
+                    LOGGER.log(Level.SEVERE,
+                               "The specified ViewStateStore implementation ''{0}'' cannot be loaded",
+                               className);
+                }
+            } catch (InstantiationException | IllegalAccessException ie) {
+                if (LOGGER.isLoggable(Level.SEVERE)) {
+                    LOGGER.log(Level.SEVERE,
+                               "The specified ViewStateStore implementation ''{0}'' cannot be instantiated",
+                               className);
+                    LOGGER.log(Level.SEVERE, "", ie);
+                }
+            }
+        }
+
+        return new SessionViewStateStore();
+
+    }
+
+
+    /**
+     * Tries to find a store class in a web context parameter.  If not
+     * present it tries to find it as a System property.  If still not found
+     * returns null.
+     *
+     * @param extContext The ExternalContext for this request
+     * @return The store class name specified in the container configuration,
+     *         or <code>null</code> if not found.
+     */
+    private static String findStoreClass(ExternalContext extContext) {
+
+        WebConfiguration webConfig = WebConfiguration.getInstance(extContext);
+
+        String store = webConfig.getOptionValue(
+              WebContextInitParameter.ViewStateStoreClass);
+
+        if (store != null && store.length() > 0) {
+            return store;
+        } else {
+            return System.getProperty(VIEW_STATE_STORE_PROPERTY);
+        }
+
+    }
+
+} // END ViewStateStoreFactory
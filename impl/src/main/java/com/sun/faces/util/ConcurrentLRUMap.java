@@ -0,0 +1,239 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * <p>
+ * A bounded, thread-safe <code>Map</code> providing the same LRU
+ * functionality as {@link LRUMap} without locking.
+ * </p>
+ *
+ * <p>
+ * Each entry records a stamp taken from a shared counter whenever it is read
+ * or written.  Once a put exceeds the maximum capacity the entry with the
+ * lowest stamp, i.e. the least recently used one, is removed.  Eviction scans
+ * all entries, so this map is meant for the small capacities used for
+ * state saving.
+ * </p>
+ *
+ * <p>
+ * Iteration order is not defined.
+ * </p>
+ */
+public class ConcurrentLRUMap<K,V> extends AbstractMap<K,V> implements Serializable {
+
+    private static final long serialVersionUID = 6235871839126735126L;
+
+    private final ConcurrentHashMap<K,Node<V>> map;
+    private final AtomicLong clock = new AtomicLong();
+    private final int maxCapacity;
+
+    private transient Set<Map.Entry<K,V>> entrySet;
+
+    // ------------------------------------------------------------ Constructors
+
+    public ConcurrentLRUMap(int maxCapacity) {
+        this.map = new ConcurrentHashMap<>(maxCapacity + 1, 1.0f);
+        this.maxCapacity = maxCapacity;
+    }
+
+    // -------------------------------------------------- Methods from AbstractMap
+
+    @Override
+    public V get(Object key) {
+        Node<V> node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        node.stamp = clock.incrementAndGet();
+        return node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Node<V> previous = map.put(key, new Node<>(value, clock.incrementAndGet()));
+        if (previous == null) {
+            evictIfNecessary();
+            return null;
+        }
+        return previous.value;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Node<V> node = new Node<>(value, clock.incrementAndGet());
+        Node<V> previous = map.putIfAbsent(key, node);
+        if (previous == null) {
+            evictIfNecessary();
+            return null;
+        }
+        previous.stamp = node.stamp;
+        return previous.value;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<V> node = map.remove(key);
+        return ((node != null) ? node.value : null);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    // --------------------------------------------------------- Private Methods
+
+    private void evictIfNecessary() {
+        while (map.size() > maxCapacity) {
+            if (!evictEldest()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entry unless another thread removed
+     * or updated it concurrently.
+     *
+     * @return <code>true</code> if the map may still be scanned for an
+     *  entry to evict
+     */
+    private boolean evictEldest() {
+        K eldestKey = null;
+        Node<V> eldest = null;
+        for (Map.Entry<K,Node<V>> entry : map.entrySet()) {
+            Node<V> node = entry.getValue();
+            if (eldest == null || node.stamp < eldest.stamp) {
+                eldestKey = entry.getKey();
+                eldest = node;
+            }
+        }
+        if (eldest == null) {
+            return false;
+        }
+        map.remove(eldestKey, eldest);
+        return true;
+    }
+
+    // ----------------------------------------------------------- Inner Classes
+
+    private static final class Node<V> implements Serializable {
+
+        private static final long serialVersionUID = -2938472360318720534L;
+
+        private final V value;
+        private volatile long stamp;
+
+        Node(V value, long stamp) {
+            this.value = value;
+            this.stamp = stamp;
+        }
+
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+
+        @Override
+        public Iterator<Map.Entry<K,V>> iterator() {
+            final Iterator<Map.Entry<K,Node<V>>> it = map.entrySet().iterator();
+            return new Iterator<Map.Entry<K,V>>() {
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Map.Entry<K,V> next() {
+                    Map.Entry<K,Node<V>> entry = it.next();
+                    return new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().value);
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+    }
+
+    // TEST: com.sun.faces.util.TestConcurrentLRUMap
+}
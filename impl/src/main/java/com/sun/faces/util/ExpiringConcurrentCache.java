@@ -40,15 +40,17 @@
 
 package com.sun.faces.util;
 
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,6 +60,10 @@ import javax.faces.FacesException;
  * This class implements an abstract ConcurrentCache with  objects in the cache potentially expiring.
  * Only non-expired objects will be returned from the cache or considered to be contained in the cache
  * The cache is self-managing, so no remove() method is defined
+ *
+ * The cache may be bounded by a maximum number of entries and/or a maximum total weight.  Once a
+ * newly created object exceeds a bound, the least recently used objects are evicted.  The cache
+ * keeps hit, miss, load and eviction counters.
  */
 public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
     
@@ -73,6 +79,18 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
          */
         public boolean isExpired(K key, V value);
     }
+
+    /**
+     * Interface for estimating the weight of a cached object
+     */
+    public interface Weigher<K, V> {
+        /**
+         * @param key cache key
+         * @param value cached value
+         * @return the estimated weight of the value, at least 0
+         */
+        public long weigh(K key, V value);
+    }
     
     /**
      * Public constructor.
@@ -80,8 +98,46 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
      * @param checker used to check whether an object in the cache has expired
      */
     public ExpiringConcurrentCache(Factory<K, V> f, ExpiryChecker<K, V> checker) {
+        this(f, checker, true);
+    }
+
+    /**
+     * Public constructor.
+     * @param f used to create new instances of objects that are not already available
+     * @param checker used to check whether an object in the cache has expired
+     * @param checkOnAccess if <code>false</code>, {@link #get(Object)} and {@link #containsKey(Object)}
+     *  don't check for expiry; expired objects are replaced by {@link #revalidate()} instead
+     */
+    public ExpiringConcurrentCache(Factory<K, V> f, ExpiryChecker<K, V> checker, boolean checkOnAccess) {
+        this(f, checker, checkOnAccess, -1, -1, null);
+    }
+
+    /**
+     * Public constructor.
+     * @param f used to create new instances of objects that are not already available
+     * @param checker used to check whether an object in the cache has expired
+     * @param checkOnAccess if <code>false</code>, {@link #get(Object)} and {@link #containsKey(Object)}
+     *  don't check for expiry; expired objects are replaced by {@link #revalidate()} instead
+     * @param maxEntries the maximum number of cached objects, not bounded if not positive
+     * @param maxWeight the maximum total weight of the cached objects, not bounded if not positive
+     * @param weigher used to estimate the weight of an object, required if <code>maxWeight</code>
+     *  is positive
+     */
+    public ExpiringConcurrentCache(Factory<K, V> f,
+                                   ExpiryChecker<K, V> checker,
+                                   boolean checkOnAccess,
+                                   int maxEntries,
+                                   long maxWeight,
+                                   Weigher<K, V> weigher) {
         super(f);
+        if (maxWeight > 0) {
+            Util.notNull("weigher", weigher);
+        }
         _checker = checker;
+        _checkOnAccess = checkOnAccess;
+        _maxEntries = maxEntries;
+        _maxWeight = maxWeight;
+        _weigher = (maxWeight > 0) ? weigher : null;
     }
     
     @Override
@@ -92,7 +148,7 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
         while (true) {
             boolean newlyCached = false;
             
-            Future<V> f = _cache.get(key);
+            Entry f = _cache.get(key);
             if (f == null) {
                 Callable<V> callable = new Callable<V>() {
                     @Override
@@ -100,7 +156,7 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
                         return getFactory().newInstance(key);
                     }
                 };
-                FutureTask<V> ft = new FutureTask<>(callable);
+                Entry ft = new Entry(key, callable);
                 // here is the real beauty of the concurrent utilities.
                 // 1.  putIfAbsent() is atomic
                 // 2.  putIfAbsent() will return the value already associated
@@ -112,19 +168,25 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
                 f = _cache.putIfAbsent(key, ft);
                 if (f == null) {
                     f = ft;
-                    ft.run();
+                    _load(key, ft);
                     newlyCached = true;
                 }
             }
             try {
                 V obj = f.get();
-                if (!newlyCached && _getExpiryChecker().isExpired(key, obj)) {
+                if (!newlyCached && _checkOnAccess && _getExpiryChecker().isExpired(key, obj)) {
                     
                     // Note that we are using both key and value in remove() call to ensure
                     // that we are not removing the Future added after expiry check by a different thread
-                    _cache.remove(key, f);
+                    _remove(key, f);
                 }
                 else {
+                    if (newlyCached) {
+                        _misses.increment();
+                    } else {
+                        _hits.increment();
+                    }
+                    f.stamp = _clock.incrementAndGet();
                     return obj;
                 }
             } catch (CancellationException ce) {
@@ -133,9 +195,9 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
                                ce.toString(),
                                ce);
                 }
-                _cache.remove(key, f);
+                _remove(key, f);
             } catch (ExecutionException ee) {
-                _cache.remove(key, f);
+                _remove(key, f);
                 throw ee;
             } catch (InterruptedException ie) {                 
                 throw new FacesException(ie); 
@@ -147,18 +209,18 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
     @Override
     public boolean containsKey(final K key) {
         
-        Future<V> f = _cache.get(key);
+        Entry f = _cache.get(key);
 
         if (f != null && f.isDone() && !f.isCancelled()) {
 
             try {
                 // Call get() with a 0 timeout to avoid any wait
                 V obj = f.get(0, TimeUnit.MILLISECONDS);
-                if (_getExpiryChecker().isExpired(key, obj)) {
+                if (_checkOnAccess && _getExpiryChecker().isExpired(key, obj)) {
 
                     // Note that we are using both key and value in remove() call to ensure
                     // that we are not removing the Future added after expiry check by a different thread
-                    _cache.remove(key, f);
+                    _remove(key, f);
                 } else {
                     
                     return true;
@@ -177,7 +239,190 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
         return false;
     }
 
-    
+    /**
+     * Checks all objects in the cache for expiry and replaces the expired ones
+     * by new instances.  Until an object has been replaced, {@link #get(Object)}
+     * keeps returning it, so the expiry checks and the creation of new instances
+     * can be done by a background task instead of the threads reading the cache.
+     * If a new instance can't be created, the expired object is removed, so the
+     * next call to {@link #get(Object)} reports the failure.
+     */
+    public void revalidate() {
+
+        for (Map.Entry<K, Entry> entry : _cache.entrySet()) {
+            final K key = entry.getKey();
+            Entry f = entry.getValue();
+            if (!f.isDone() || f.isCancelled()) {
+                continue;
+            }
+
+            try {
+                V obj = f.get();
+                if (!_getExpiryChecker().isExpired(key, obj)) {
+                    continue;
+                }
+            } catch (ExecutionException | CancellationException e) {
+                continue;
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            Entry ft = new Entry(key, new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return getFactory().newInstance(key);
+                }
+            });
+            ft.stamp = f.stamp;
+            _load(key, ft);
+            try {
+                ft.get();
+                if (_cache.replace(key, f, ft)) {
+                    _weight.addAndGet(ft.weight - f.weight);
+                    _evictIfNecessary();
+                }
+            } catch (ExecutionException e) {
+                if (_LOGGER.isLoggable(Level.FINE)) {
+                    _LOGGER.log(Level.FINE, "Unable to revalidate " + key, e.getCause());
+                }
+                _remove(key, f);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+    }
+
+    /**
+     * @return the number of objects in the cache, including the ones being created
+     */
+    public int size() {
+        return _cache.size();
+    }
+
+    /**
+     * @return the total weight of the cached objects, 0 if the cache isn't bounded by weight
+     */
+    public long getWeight() {
+        return _weight.get();
+    }
+
+    public int getMaxEntries() {
+        return _maxEntries;
+    }
+
+    public long getMaxWeight() {
+        return _maxWeight;
+    }
+
+    /**
+     * @return the number of calls to {@link #get(Object)} that returned a cached object
+     */
+    public long getHitCount() {
+        return _hits.sum();
+    }
+
+    /**
+     * @return the number of calls to {@link #get(Object)} that created a new object
+     */
+    public long getMissCount() {
+        return _misses.sum();
+    }
+
+    /**
+     * @return the number of objects created successfully, including the ones replaced by {@link #revalidate()}
+     */
+    public long getLoadCount() {
+        return _loads.sum();
+    }
+
+    /**
+     * @return the number of objects that couldn't be created
+     */
+    public long getLoadFailureCount() {
+        return _loadFailures.sum();
+    }
+
+    /**
+     * @return the total time spent creating objects, in nanoseconds
+     */
+    public long getTotalLoadTime() {
+        return _loadTime.sum();
+    }
+
+    /**
+     * @return the number of objects evicted because a bound was exceeded
+     */
+    public long getEvictionCount() {
+        return _evictions.sum();
+    }
+
+
+    /**
+     * Creates the object of <code>ft</code> and updates the counters.  If <code>ft</code>
+     * is in the cache, the least recently used objects are evicted if a bound is exceeded.
+     */
+    private void _load(K key, Entry ft) {
+        long start = System.nanoTime();
+        ft.run();
+        _loadTime.add(System.nanoTime() - start);
+        try {
+            ft.get();
+            _loads.increment();
+            ft.stamp = _clock.incrementAndGet();
+            if (_cache.get(key) == ft) {
+                _evictIfNecessary();
+            }
+        } catch (ExecutionException | CancellationException e) {
+            _loadFailures.increment();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean _remove(K key, Entry f) {
+        if (_cache.remove(key, f)) {
+            _weight.addAndGet(-f.weight);
+            return true;
+        }
+        return false;
+    }
+
+    private void _evictIfNecessary() {
+        while ((_maxEntries > 0 && _cache.size() > _maxEntries)
+                || (_maxWeight > 0 && _weight.get() > _maxWeight)) {
+            if (!_evictEldest()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used object that has been created.  Eviction scans
+     * all entries, which is fine for the sizes caches like the Facelet cache have.
+     *
+     * @return <code>true</code> if the cache may still be scanned for an object to evict
+     */
+    private boolean _evictEldest() {
+        K eldestKey = null;
+        Entry eldest = null;
+        for (Map.Entry<K, Entry> entry : _cache.entrySet()) {
+            Entry f = entry.getValue();
+            if (f.isDone() && (eldest == null || f.stamp < eldest.stamp)) {
+                eldestKey = entry.getKey();
+                eldest = f;
+            }
+        }
+        if (eldest == null) {
+            return false;
+        }
+        if (_remove(eldestKey, eldest)) {
+            _evictions.increment();
+        }
+        return true;
+    }
 
 
     private ExpiryChecker<K, V> _getExpiryChecker() {
@@ -185,7 +430,53 @@ public final class ExpiringConcurrentCache<K, V> extends ConcurrentCache<K, V> {
     }
     
     private final ExpiryChecker<K, V> _checker;
-    private final ConcurrentMap<K, Future<V>> _cache = new ConcurrentHashMap<>();
+    private final boolean _checkOnAccess;
+    private final int _maxEntries;
+    private final long _maxWeight;
+    private final Weigher<K, V> _weigher;
+    private final ConcurrentMap<K, Entry> _cache = new ConcurrentHashMap<>();
+
+    private final AtomicLong _clock = new AtomicLong();
+    private final AtomicLong _weight = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _loads = new LongAdder();
+    private final LongAdder _loadFailures = new LongAdder();
+    private final LongAdder _loadTime = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
     
     private static final Logger _LOGGER = FacesLogger.UTIL.getLogger();
+
+    /**
+     * The <code>Future</code> of a cached object, with its last access stamp and weight
+     */
+    private final class Entry extends FutureTask<V> {
+        Entry(K key, Callable<V> callable) {
+            super(callable);
+            this.key = key;
+        }
+
+        @Override
+        protected void set(V v) {
+            // weigh before the object is visible, so removals always see the weight
+            if (_weigher != null) {
+                try {
+                    weight = Math.max(0, _weigher.weigh(key, v));
+                } catch (RuntimeException re) {
+                    // must not keep the task from completing
+                    if (_LOGGER.isLoggable(Level.FINE)) {
+                        _LOGGER.log(Level.FINE, "Unable to weigh " + key, re);
+                    }
+                }
+                if (_cache.get(key) == this) {
+                    _weight.addAndGet(weight);
+                }
+            }
+            super.set(v);
+        }
+
+        private final K key;
+        volatile long stamp;
+        volatile long weight;
+    }
 }
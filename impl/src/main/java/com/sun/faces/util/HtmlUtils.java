@@ -67,6 +67,12 @@ public class HtmlUtils {
     //-------------------------------------------------
     // The following methods include the handling of
     // escape characters....
+    //
+    // Escaping is table driven: each method scans ahead for the
+    // next character that has to be replaced or dropped, and writes
+    // the clean run before it with a single call to the Writer.  Text
+    // that needs no escaping at all is written with one call and
+    // without being copied.
     //-------------------------------------------------
 
     static public void writeText(Writer out,
@@ -86,15 +92,25 @@ public class HtmlUtils {
                                  char[] text,
                                  int start,
                                  int length) throws IOException {
-        int buffLength = buff.length;
-        int buffIndex = 0;
 
         int end = start + length;
+        int runStart = start;
         for (int i = start; i < end; i++) {
-            buffIndex = writeTextChar(out, escapeUnicode, escapeIsocode, text[i], buffIndex, buff, buffLength);
+            char ch = text[i];
+            char[] escape = getEscape(TEXT_ESCAPES, ch, escapeUnicode, escapeIsocode);
+            if (escape == null) {
+                continue;
+            }
+            if (i > runStart) {
+                out.write(text, runStart, i - runStart);
+            }
+            runStart = i + 1;
+            writeEscape(out, buff, escape, ch);
+        }
+        if (end > runStart) {
+            out.write(text, runStart, end - runStart);
         }
 
-        flushBuffer(out, buff, buffIndex);
     }
 
 
@@ -108,105 +124,23 @@ public class HtmlUtils {
                                  char[] textBuff) throws IOException {
 
         int length = text.length();
-
-        if (length >= 16) {
-            text.getChars(0, length, textBuff, 0);
-            writeText(out, escapeUnicode, escapeIsocode, buff, textBuff, 0, length);
-        } else {
-            int buffLength = buff.length;
-            int buffIndex = 0;
-            for (int i = 0; i < length; i++) {
-                char ch = text.charAt(i);
-                buffIndex = writeTextChar(out, escapeUnicode, escapeIsocode, ch, buffIndex, buff, buffLength);
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            char[] escape = getEscape(TEXT_ESCAPES, ch, escapeUnicode, escapeIsocode);
+            if (escape == null) {
+                continue;
             }
-            flushBuffer(out, buff, buffIndex);
-        }
-
-        
-    }
-
-    private static int writeTextChar(Writer out,
-                                     boolean escapeUnicode,
-                                     boolean escapeIsocode,
-                                     char ch,
-                                     int buffIndex,
-                                     char[] buff,
-                                     int buffLength) throws IOException {
-        int nextIndex;
-        if (ch <= 0x1f) {
-            if (!isPrintableControlChar(ch)) {
-                return buffIndex;
+            if (i > runStart) {
+                out.write(text, runStart, i - runStart);
             }
+            runStart = i + 1;
+            writeEscape(out, buff, escape, ch);
         }
-        if (ch < 0xA0) {
-            // If "?" or over, no escaping is needed (this covers
-            // most of the Latin alphabet)
-            if (ch >= 0x3f) {
-                nextIndex = addToBuffer(out, buff, buffIndex,
-                                        buffLength, ch);
-            } else if (ch >= 0x27) {  // If above "'"...
-                // If between "'" and ";", no escaping is needed
-                if (ch < 0x3c) {
-                    nextIndex = addToBuffer(out, buff, buffIndex,
-                                            buffLength, ch);
-                } else if (ch == '<') {
-                    nextIndex = addToBuffer(out,
-                                            buff,
-                                            buffIndex,
-                                            buffLength,
-                                            LT_CHARS);
-                } else if (ch == '>') {
-                    nextIndex = addToBuffer(out,
-                                            buff,
-                                            buffIndex,
-                                            buffLength,
-                                            GT_CHARS);
-                } else {
-                    nextIndex = addToBuffer(out, buff, buffIndex,
-                                            buffLength, ch);
-                }
-            } else {
-                if (ch == '&') {
-                    nextIndex = addToBuffer(out,
-                                            buff,
-                                            buffIndex,
-                                            buffLength,
-                                            AMP_CHARS);
-                } else if (ch == '"') {
-                        nextIndex = addToBuffer(out,
-                             buff,
-                             buffIndex,
-                             buffLength,
-                             "\"".toCharArray());
-                } else {
-                    nextIndex = addToBuffer(out, buff, buffIndex,
-                                            buffLength, ch);
-                }
-            }
-        } else if (ch <= 0xff) {
-            if (escapeIsocode) {
-                // ISO-8859-1 entities: encode as needed
-                nextIndex = addToBuffer(out,
-                                        buff,
-                                        buffIndex,
-                                        buffLength,
-                                        sISO8859_1_Entities[ch - 0xA0]);
-            }
-            else {
-                nextIndex = addToBuffer(out, buff, buffIndex,
-                        buffLength, ch);
-            }
-        } else {
-            if(escapeUnicode) {
-                // UNICODE entities: encode as needed
-                nextIndex =
-                      _writeDecRef(out, buff, buffIndex, buffLength, ch);
-            } else {
-                nextIndex = addToBuffer(out, buff, buffIndex,
-                        buffLength, ch);
-            }
+        if (length > runStart) {
+            out.write(text, runStart, length - runStart);
         }
-        return nextIndex;
+        
     }
 
 
@@ -223,127 +157,35 @@ public class HtmlUtils {
                                       char[] textBuff,
                                       boolean isScriptInAttributeValueEnabled) throws IOException {
 
+        // If putting scripts in attribute values has been disabled
+        // (the default), don't write values containing script:
+        if (!isScriptInAttributeValueEnabled && text.contains(SCRIPT_PREFIX)) {
+            return;
+        }
+
         int length = text.length();
-        if (length >= 16) {
-            if (length > textBuff.length) {
-                // resize our buffer
-                textBuff = new char[length * 2];
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            char[] escape = getEscape(ATTRIBUTE_ESCAPES, ch, escapeUnicode, escapeIsocode);
+            if (escape == null) {
+                continue;
             }
-            text.getChars(0, length, textBuff, 0);
-            writeAttribute(out, escapeUnicode, escapeIsocode, buff, textBuff, 0, length,
-                    isScriptInAttributeValueEnabled);
-        } else {
-            int buffLength = buff.length;
-            int buffIndex = 0;
-            for (int i = 0; i < length; i++) {
-                char ch = text.charAt(i);
-
-                if (ch <= 0x1f) {
-                    if (!isPrintableControlChar(ch)) {
-                        continue;
-                    }
-                }
-                // Tilde or less...
-                if (ch < 0xA0) {
-                    // If "?" or over, no escaping is needed (this covers
-                    // most of the Latin alphabet)
-                    if (ch >= 0x3f) {
-                        if (ch == 's') {
-                            // If putting scripts in attribute values
-                            // has been disabled (the defualt), look for
-                            // script: in the attribute value.
-                            // ensure the attribute value is long enough
-                            // to accomodate "script:"
-                            if (!isScriptInAttributeValueEnabled &&
-                                    ((i + 6) < text.length())) {
-                                if ('c' == text.charAt(i + 1) &&
-                                    'r' == text.charAt(i + 2) &&
-                                    'i' == text.charAt(i + 3) &&
-                                    'p' == text.charAt(i + 4) &&
-                                    't' == text.charAt(i + 5) &&
-                                    ':' == text.charAt(i + 6)) {
-                                    return;
-                                }
-                            }
-                        }
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);
-                    } else if (ch >= 0x27) { // If above "'"...
-                        // If between "'" and ";", no escaping is needed
-                        if (ch < 0x3c) {
-                            buffIndex = addToBuffer(out, buff, buffIndex,
-                                                    buffLength, ch);
-                        } else if (ch == '<') {
-                            buffIndex = addToBuffer(out,
-                                                    buff,
-                                                    buffIndex,
-                                                    buffLength,
-                                                    LT_CHARS);
-                        } else if (ch == '>') {
-                            buffIndex = addToBuffer(out,
-                                                    buff,
-                                                    buffIndex,
-                                                    buffLength,
-                                                    GT_CHARS);
-                        } else {
-                            buffIndex = addToBuffer(out, buff, buffIndex,
-                                                    buffLength, ch);
-                        }
-                    } else {
-                        if (ch == '&') {
-                            // HTML 4.0, section B.7.1: ampersands followed by
-                            // an open brace don't get escaped
-                            if ((i + 1 < length) && (text.charAt(i + 1)
-                                                     == '{')) {
-                                buffIndex = addToBuffer(out,
-                                                        buff,
-                                                        buffIndex,
-                                                        buffLength,
-                                                        ch);
-                            } else {
-                                buffIndex = addToBuffer(out,
-                                                        buff,
-                                                        buffIndex,
-                                                        buffLength,
-                                                        AMP_CHARS);
-                            }
-                        } else if (ch == '"') {
-                            buffIndex = addToBuffer(out,
-                                                    buff,
-                                                    buffIndex,
-                                                    buffLength,
-                                                    QUOT_CHARS);
-                        } else {
-                            buffIndex = addToBuffer(out, buff, buffIndex,
-                                                    buffLength, ch);
-                        }
-                    }
-                } else if (ch <= 0xff) {
-                    if (escapeIsocode) {
-                        // ISO-8859-1 entities: encode as needed
-                        buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                sISO8859_1_Entities[ch - 0xA0]);
-                    } else {
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);
-                    }
-                } else {
-                    if(escapeUnicode) {
-                        // UNICODE entities: encode as needed
-                        buffIndex =
-                              _writeDecRef(out, buff, buffIndex, buffLength, ch);
-                    } else {
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                buffLength, ch);
-                    }
-                }
+            // HTML 4.0, section B.7.1: ampersands followed by
+            // an open brace don't get escaped
+            if (escape == AMP_CHARS && (i + 1 < length) && (text.charAt(i + 1) == '{')) {
+                continue;
             }
-
-            flushBuffer(out, buff, buffIndex);
+            if (i > runStart) {
+                out.write(text, runStart, i - runStart);
+            }
+            runStart = i + 1;
+            writeEscape(out, buff, escape, ch);
+        }
+        if (length > runStart) {
+            out.write(text, runStart, length - runStart);
         }
+
     }
 
 
@@ -370,243 +212,128 @@ public class HtmlUtils {
                                       int start,
                                       int length,
                                       boolean isScriptInAttributeValueEnabled) throws IOException {
-        int buffLength = buff.length;
-        int buffIndex = 0;
 
         int end = start + length;
+
+        // If putting scripts in attribute values has been disabled
+        // (the default), don't write values containing script:
+        if (!isScriptInAttributeValueEnabled && containsScriptPrefix(text, start, end)) {
+            return;
+        }
+
+        int runStart = start;
         for (int i = start; i < end; i++) {
             char ch = text[i];
-
-            // "Application Program Command" or less...
-            if (ch <= 0x1f) {
-                if (!isPrintableControlChar(ch)) {
-                    continue;
-                }
+            char[] escape = getEscape(ATTRIBUTE_ESCAPES, ch, escapeUnicode, escapeIsocode);
+            if (escape == null) {
+                continue;
             }
-            if (ch < 0xA0) {
-                // If "?" or over, no escaping is needed (this covers
-                // most of the Latin alphabet)
-                if (ch >= 0x3f) {
-                    if (ch == 's') {
-                        // If putting scripts in attribute values
-                        // has been disabled (the defualt), look for
-                        // script: in the attribute value.  
-                        // ensure the attribute value is long enough
-                        // to accomodate "script:"
-                        if (!isScriptInAttributeValueEnabled &&
-                                ((i + 6) < text.length)) {
-                            if ('c' == text[i + 1] &&
-                                'r' == text[i + 2] &&
-                                'i' == text[i + 3] &&
-                                'p' == text[i + 4] &&
-                                't' == text[i + 5] &&
-                                ':' == text[i + 6]) {
-                                return;
-                            }
-                        }
-                    }
-                    
-                    buffIndex = addToBuffer(out, buff, buffIndex,
-                                            buffLength, ch);
-                } else if (ch >= 0x27) { // If above "'"...
-                    if (ch < 0x3c) {
-                        // If between "'" and ";", no escaping is needed
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);                       
-                    } else if (ch == '<') {
-                        buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                LT_CHARS);
-                    } else if (ch == '>') {
-                        buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                GT_CHARS);
-                    } else {
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);
-                    }
-                } else {
-                    if (ch == '&') {
-                        // HTML 4.0, section B.7.1: ampersands followed by
-                        // an open brace don't get escaped
-                        if ((i + 1 < end) && (text[i + 1] == '{')) {
-                            buffIndex = addToBuffer(out,
-                                                    buff,
-                                                    buffIndex,
-                                                    buffLength,
-                                                    ch);
-                        } else {
-                            buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                AMP_CHARS);
-                        }
-                    } else if (ch == '"') {
-                        buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                QUOT_CHARS);
-                    } else {
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);
-                    }
-                }
-            } else if (ch <= 0xff) {
-                if (escapeIsocode) {
-                    // ISO-8859-1 entities: encode as needed
-                    buffIndex = addToBuffer(out,
-                                            buff,
-                                            buffIndex,
-                                            buffLength,
-                                            sISO8859_1_Entities[ch - 0xA0]);
-                }
-                else {
-                    buffIndex = addToBuffer(out, buff, buffIndex,
-                            buffLength, ch);
-                }
-            } else {
-                if(escapeUnicode) {
-                    // UNICODE entities: encode as needed
-                    buffIndex = _writeDecRef(out, buff, buffIndex, buffLength, ch);
-                } else {
-                    buffIndex = addToBuffer(out, buff, buffIndex,
-                            buffLength, ch);
-                }
+            // HTML 4.0, section B.7.1: ampersands followed by
+            // an open brace don't get escaped
+            if (escape == AMP_CHARS && (i + 1 < end) && (text[i + 1] == '{')) {
+                continue;
+            }
+            if (i > runStart) {
+                out.write(text, runStart, i - runStart);
             }
+            runStart = i + 1;
+            writeEscape(out, buff, escape, ch);
+        }
+        if (end > runStart) {
+            out.write(text, runStart, end - runStart);
         }
 
-        flushBuffer(out, buff, buffIndex);
     }
 
 
-    static private boolean isPrintableControlChar(int ch) {
+    /**
+     * @return the replacement for <code>ch</code>: <code>null</code> if
+     *  it is written as is, {@link #DROP} if it is not written at all, or
+     *  {@link #DEC_REF} if it is written as a decimal reference
+     */
+    static private char[] getEscape(char[][] escapes,
+                                    char ch,
+                                    boolean escapeUnicode,
+                                    boolean escapeIsocode) {
 
-        return (ch == 0x09 || ch == 0x0A || ch == 0x0C || ch == 0x0D);
+        if (ch < 0xA0) {
+            return escapes[ch];
+        }
+        if (ch <= 0xff) {
+            // ISO-8859-1 entities: encode as needed
+            return escapeIsocode ? sISO8859_1_Entities[ch - 0xA0] : null;
+        }
+        // UNICODE entities: encode as needed
+        return escapeUnicode ? DEC_REF : null;
 
     }
 
 
-    /**
-     * Writes a character as a decimal escape.  Hex escapes are smaller than
-     * the decimal version, but Netscape didn't support hex escapes until
-     * 4.7.4.
-     */
-    static private int _writeDecRef(Writer out,
-                                    char[] buffer,
-                                    int bufferIndex,
-                                    int bufferLength,
+    static private void writeEscape(Writer out,
+                                    char[] buff,
+                                    char[] escape,
                                     char ch) throws IOException {
-        if (ch == '\u20ac') {
-            bufferIndex = addToBuffer(out,
-                                      buffer,
-                                      bufferIndex,
-                                      bufferLength,
-                                      EURO_CHARS);
-            return bufferIndex;
-        }
-        bufferIndex = addToBuffer(out,
-                                  buffer,
-                                  bufferIndex,
-                                  bufferLength,
-                                  DEC_REF_START);
-        // Formerly used String.valueOf().  This version tests out
-        // about 40% faster in a microbenchmark (and on systems where GC is
-        // going gonzo, it should be even better)
-        int i = (int) ch;
-        if (i > 10000) {
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 10000))));
-            i = i % 10000;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 1000))));
-            i = i % 1000;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 100))));
-            i = i % 100;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 10))));
-            i = i % 10;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + i)));
-        } else if (i > 1000) {
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 1000))));
-            i = i % 1000;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 100))));
-            i = i % 100;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 10))));
-            i = i % 10;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + i)));
-        } else {
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 100))));
-            i = i % 100;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 10))));
-            i = i % 10;
-            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + i)));
+
+        if (escape == DEC_REF) {
+            writeDecRef(out, buff, ch);
+        } else if (escape.length != 0) {
+            out.write(escape);
         }
 
-        return addToBuffer(out, buffer, bufferIndex, bufferLength, ';');
-        
     }
 
-    // 
-    // Buffering scheme: we use a tremendously simple buffering
-    // scheme that greatly reduces the number of calls into the
-    // Writer/PrintWriter.  In practice this has produced significant
-    // measured performance gains (at least in JDK 1.3.1).
-    //
 
-    /**
-     * Add a character to the buffer, flushing the buffer if the buffer is
-     * full, and returning the new buffer index
-     */
-    private static int addToBuffer(Writer out,
-                                   char[] buffer,
-                                   int bufferIndex,
-                                   int bufferLength,
-                                   char ch) throws IOException {
-        if (bufferIndex >= bufferLength) {
-            out.write(buffer, 0, bufferIndex);
-            bufferIndex = 0;
-        }
+    static private boolean containsScriptPrefix(char[] text, int start, int end) {
 
-        buffer[bufferIndex] = ch;
+        int prefixLength = SCRIPT_PREFIX.length();
+        int last = end - prefixLength;
+        outer:
+        for (int i = start; i <= last; i++) {
+            for (int j = 0; j < prefixLength; j++) {
+                if (text[i + j] != SCRIPT_PREFIX.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
 
-        return bufferIndex + 1;
     }
 
-    /**
-     * Add an array of characters to the buffer, flushing the buffer
-     * if the buffer is full, and returning the new buffer index. 
-     */
-    private static int addToBuffer(Writer out,
-                                   char[] buffer,
-                                   int bufferIndex,
-                                   int bufferLength,
-                                   char[] toAdd) throws IOException {
-
-        if (bufferIndex >= bufferLength
-            || (toAdd.length + bufferIndex >= bufferLength)) {
-            out.write(buffer, 0, bufferIndex);
-            bufferIndex = 0;
-        }
-        System.arraycopy(toAdd, 0, buffer, bufferIndex, toAdd.length);
-        return bufferIndex + toAdd.length;
+
+    static private boolean isPrintableControlChar(int ch) {
+
+        return (ch == 0x09 || ch == 0x0A || ch == 0x0C || ch == 0x0D);
 
     }
 
 
     /**
-     * Flush the contents of the buffer to the output stream
-     * and return the reset buffer index
+     * Writes a character as a decimal escape.  Hex escapes are smaller than
+     * the decimal version, but Netscape didn't support hex escapes until
+     * 4.7.4.
      */
-    private static int flushBuffer(Writer out,
-                                   char[] buffer,
-                                   int bufferIndex) throws IOException {
-        if (bufferIndex > 0)
-            out.write(buffer, 0, bufferIndex);
+    static private void writeDecRef(Writer out,
+                                     char[] buffer,
+                                     char ch) throws IOException {
+
+        if (ch == '\u20ac') {
+            out.write(EURO_CHARS);
+            return;
+        }
+        // "&#65535;" is the longest reference
+        char[] b = (buffer != null && buffer.length >= 8) ? buffer : new char[8];
+        int pos = 8;
+        b[--pos] = ';';
+        int i = (int) ch;
+        do {
+            b[--pos] = (char) ('0' + (i % 10));
+            i /= 10;
+        } while (i != 0);
+        b[--pos] = '#';
+        b[--pos] = '&';
+        out.write(b, pos, 8 - pos);
 
-        return 0;
     }
 
 
@@ -962,7 +689,44 @@ public class HtmlUtils {
     static private final char[] GT_CHARS = "&gt;".toCharArray();
     static private final char[] LT_CHARS = "&lt;".toCharArray();
     static private final char[] EURO_CHARS = "&euro;".toCharArray();
-    static private final char[] DEC_REF_START = "&#".toCharArray();
+    static private final String SCRIPT_PREFIX = "script:";
+
+    /**
+     * Marks characters that are not written at all.
+     */
+    static private final char[] DROP = new char[0];
+
+    /**
+     * Marks characters that are written as a decimal reference.
+     */
+    static private final char[] DEC_REF = new char[0];
+
+    /**
+     * Replacements for characters below 0xA0 in text, see
+     * {@link #getEscape(char[][], char, boolean, boolean)}.
+     */
+    static private final char[][] TEXT_ESCAPES = new char[0xA0][];
+
+    /**
+     * Replacements for characters below 0xA0 in attribute values.
+     */
+    static private final char[][] ATTRIBUTE_ESCAPES = new char[0xA0][];
+
+    static {
+        for (int ch = 0; ch <= 0x1f; ch++) {
+            if (!isPrintableControlChar(ch)) {
+                TEXT_ESCAPES[ch] = DROP;
+                ATTRIBUTE_ESCAPES[ch] = DROP;
+            }
+        }
+        TEXT_ESCAPES['<'] = LT_CHARS;
+        TEXT_ESCAPES['>'] = GT_CHARS;
+        TEXT_ESCAPES['&'] = AMP_CHARS;
+        ATTRIBUTE_ESCAPES['<'] = LT_CHARS;
+        ATTRIBUTE_ESCAPES['>'] = GT_CHARS;
+        ATTRIBUTE_ESCAPES['&'] = AMP_CHARS;
+        ATTRIBUTE_ESCAPES['"'] = QUOT_CHARS;
+    }
     static private final int MAX_BYTES_PER_CHAR = 10;
     static private final BitSet DONT_ENCODE_SET = new BitSet(256);
 
@@ -142,6 +142,28 @@ public class Json {
         }
     }
 
+    /**
+     * Encodes the given objects as one JSON array and returns a string in JSON format.
+     * The encoded array will be available as <code>batch</code> property of the JS object in the returned JSON string.
+     *
+     * @param objects The objects to be encoded as JSON.
+     * @param options The encoding options.
+     * @return The JSON-encoded representation of the given objects.
+     * @throws IllegalArgumentException When one of the given objects or their properties cannot be inspected as a
+     * JavaBean.
+     */
+    public static String encodeBatch(Collection<?> objects, Option... options) {
+        StringWriter writer = new StringWriter();
+
+        try (JsonGenerator generator = javax.json.Json.createGenerator(writer)) {
+            generator.writeStartObject();
+            encode("batch", objects, generator, options.length == 0 ? noneOf(Option.class) : copyOf(asList(options)));
+            generator.writeEnd();
+        }
+
+        return writer.toString();
+    }
+
     private static void encode(String name, Object object, JsonGenerator generator, EnumSet<Option> options) {
         if (object == null) {
             encodeNull(name, generator);
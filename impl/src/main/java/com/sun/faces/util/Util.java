@@ -1424,6 +1424,19 @@ public class Util {
         Map<Object, Object> attrs = context.getAttributes();
         return (String) attrs.get(FACES_CONTEXT_ATTRIBUTES_XMLDECL_KEY);
     }
+
+    /**
+     * Removes the DOCTYPE and XML declaration saved by a previous compilation, so
+     * that a Facelet compiled next doesn't pick them up.
+     */
+    public static void removeDOCTYPEAndXMLDECLFromFacesContextAttributes(FacesContext context) {
+        if (null == context) {
+            return;
+        }
+        Map<Object, Object> attrs = context.getAttributes();
+        attrs.remove(FACES_CONTEXT_ATTRIBUTES_DOCTYPE_KEY);
+        attrs.remove(FACES_CONTEXT_ATTRIBUTES_XMLDECL_KEY);
+    }
     
     public static long getLastModified(URL url) {
         long lastModified;
@@ -75,8 +75,8 @@ class ComponentStateHelper implements StateHelper, TransientStateHelper {
 
     public ComponentStateHelper(UIComponent component) {
         this.component = component;
-        this.deltaMap = new HashMap<>();
-        this.defaultMap = new HashMap<>();
+        this.deltaMap = new ComponentStateMap();
+        this.defaultMap = new ComponentStateMap();
         this.transientState = null;
     }
     
@@ -0,0 +1,363 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.faces.component;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact map used by {@link ComponentStateHelper} to hold the properties of a single component.
+ *
+ * <p>
+ * Components typically store a handful of properties keyed by the constants of their
+ * <code>PropertyKeys</code> enum. Instead of a <code>HashMap</code> with an entry object per
+ * mapping, keys and values are stored next to each other in one array using open addressing with
+ * linear probing. An empty map shares a single empty table, so components that never set a property
+ * do not allocate any storage for it.
+ * </p>
+ *
+ * <p>
+ * <code>null</code> keys and values are permitted, as with <code>HashMap</code>. Removal through
+ * the iterators of the collection views is not supported. This map is not thread safe.
+ * </p>
+ */
+final class ComponentStateMap extends AbstractMap<Serializable, Object> {
+
+    private static final Object[] EMPTY_TABLE = {};
+
+    /**
+     * Number of slots allocated on the first put. Enough for the properties of most components
+     * without a resize.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final Object NULL_KEY = new Object();
+
+    /**
+     * Keys are stored at even indices and their values at the following odd index. An unused slot
+     * has a <code>null</code> key.
+     */
+    private Object[] table = EMPTY_TABLE;
+    private int size;
+    private int modCount;
+    private Set<Map.Entry<Serializable, Object>> entrySet;
+
+
+    // ---------------------------------------------------------- Public Methods
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(mask(key)) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(mask(key));
+        return index < 0 ? null : table[index + 1];
+    }
+
+    @Override
+    public Object put(Serializable key, Object value) {
+        Object k = mask(key);
+        int index = indexOf(k);
+        if (index >= 0) {
+            Object old = table[index + 1];
+            table[index + 1] = value;
+            return old;
+        }
+
+        if ((size + 1) * 4 > slots() * 3) {
+            resize(table.length == 0 ? INITIAL_CAPACITY : slots() * 2);
+        }
+        insert(k, value);
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = indexOf(mask(key));
+        if (index < 0) {
+            return null;
+        }
+
+        Object old = table[index + 1];
+        delete(index);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            table = EMPTY_TABLE;
+            size = 0;
+            modCount++;
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Serializable, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+
+        return entrySet;
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+    private static Object mask(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private static Object unmask(Object key) {
+        return key == NULL_KEY ? null : key;
+    }
+
+    private int slots() {
+        return table.length >> 1;
+    }
+
+    private int slotFor(Object key, int slots) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (slots - 1);
+    }
+
+    /**
+     * @return the table index of the given (masked) key, or <code>-1</code> if it is not present.
+     */
+    private int indexOf(Object key) {
+        if (size == 0) {
+            return -1;
+        }
+
+        int slots = slots();
+        int slot = slotFor(key, slots);
+        while (true) {
+            Object k = table[slot << 1];
+            if (k == null) {
+                return -1;
+            }
+            if (k == key || k.equals(key)) {
+                return slot << 1;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+
+    private void insert(Object key, Object value) {
+        int slots = slots();
+        int slot = slotFor(key, slots);
+        while (table[slot << 1] != null) {
+            slot = (slot + 1) & (slots - 1);
+        }
+        table[slot << 1] = key;
+        table[(slot << 1) + 1] = value;
+    }
+
+    private void resize(int slots) {
+        Object[] old = table;
+        table = new Object[slots << 1];
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != null) {
+                insert(old[i], old[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping at the given table index and shifts back the entries of the same probe
+     * sequence, so that lookups never need tombstones.
+     */
+    private void delete(int index) {
+        int slots = slots();
+        int hole = index >> 1;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & (slots - 1);
+            Object k = table[slot << 1];
+            if (k == null) {
+                break;
+            }
+            int home = slotFor(k, slots);
+            boolean reachable = hole <= slot ? hole < home && home <= slot : hole < home || home <= slot;
+            if (!reachable) {
+                table[hole << 1] = k;
+                table[(hole << 1) + 1] = table[(slot << 1) + 1];
+                hole = slot;
+            }
+        }
+        table[hole << 1] = null;
+        table[(hole << 1) + 1] = null;
+        size--;
+        modCount++;
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+    private final class EntrySet extends AbstractSet<Map.Entry<Serializable, Object>> {
+
+        @Override
+        public Iterator<Map.Entry<Serializable, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            ComponentStateMap.this.clear();
+        }
+
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<Serializable, Object>> {
+
+        private int next = advance(0);
+        private final int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < table.length;
+        }
+
+        @Override
+        public Map.Entry<Serializable, Object> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= table.length) {
+                throw new NoSuchElementException();
+            }
+
+            int index = next;
+            next = advance(next + 2);
+            return new Entry(index);
+        }
+
+        private int advance(int index) {
+            while (index < table.length && table[index] == null) {
+                index += 2;
+            }
+            return index;
+        }
+
+    }
+
+    private final class Entry implements Map.Entry<Serializable, Object> {
+
+        private final Object key;
+        private Object value;
+
+        Entry(int index) {
+            key = table[index];
+            value = table[index + 1];
+        }
+
+        @Override
+        public Serializable getKey() {
+            return (Serializable) unmask(key);
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object old = this.value;
+            this.value = value;
+            int index = indexOf(key);
+            if (index >= 0) {
+                table[index + 1] = value;
+            }
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return eq(getKey(), e.getKey()) && eq(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return (key == NULL_KEY ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + value;
+        }
+
+        private boolean eq(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+    }
+
+}
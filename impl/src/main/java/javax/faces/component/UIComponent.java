@@ -65,6 +65,7 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Objects;
 import java.util.PropertyResourceBundle;
+import java.util.RandomAccess;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -1483,18 +1484,9 @@ public abstract class UIComponent implements PartialStateHolder, TransientStateH
                 return true;
             }
 
-            // Visit children if necessary
-            if (result == ACCEPT) {
-                Iterator<UIComponent> kids = getFacetsAndChildren();
-
-                while (kids.hasNext()) {
-                    boolean done = kids.next().visitTree(visitContext, callback);
-
-                    // If any kid visit returns true, we are done.
-                    if (done) {
-                        return true;
-                    }
-                }
+            // Visit children if necessary. If any kid visit returns true, we are done.
+            if (result == ACCEPT && visitFacetsAndChildren(visitContext, callback)) {
+                return true;
             }
         } finally {
             // Pop ourselves off the EL stack
@@ -1505,6 +1497,22 @@ public abstract class UIComponent implements PartialStateHolder, TransientStateH
         return false;
     }
 
+    /*
+     * Visits the facets and children of this component in getFacetsAndChildren()
+     * order and returns true as soon as one of them completes the visit.
+     * UIComponentBase overrides this to traverse its children by index.
+     */
+    boolean visitFacetsAndChildren(VisitContext visitContext, VisitCallback callback) {
+        Iterator<UIComponent> kids = getFacetsAndChildren();
+        while (kids.hasNext()) {
+            if (kids.next().visitTree(visitContext, callback)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * <p class="changed_added_2_0">
      * Return <code>true</code> if this component should be visited, <code>false</code>
@@ -1669,8 +1677,16 @@ public abstract class UIComponent implements PartialStateHolder, TransientStateH
         if (getRendersChildren()) {
             encodeChildren(context);
         } else if (getChildCount() > 0) {
-            for (UIComponent kid : getChildren()) {
-                kid.encodeAll(context);
+            List<UIComponent> kids = getChildren();
+            if (kids instanceof RandomAccess) {
+                // Avoid an iterator per component during rendering
+                for (int i = 0; i < kids.size(); i++) {
+                    kids.get(i).encodeAll(context);
+                }
+            } else {
+                for (UIComponent kid : kids) {
+                    kid.encodeAll(context);
+                }
             }
         }
 
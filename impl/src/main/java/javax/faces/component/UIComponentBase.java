@@ -44,6 +44,7 @@ import static com.sun.faces.util.Util.isAllNull;
 import static com.sun.faces.util.Util.isAnyNull;
 import static com.sun.faces.util.Util.isEmpty;
 import static java.beans.Introspector.getBeanInfo;
+import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static java.lang.Character.isDigit;
 import static java.lang.Character.isLetter;
@@ -88,6 +89,8 @@ import javax.faces.application.Application;
 import javax.faces.component.behavior.Behavior;
 import javax.faces.component.behavior.ClientBehavior;
 import javax.faces.component.behavior.ClientBehaviorHolder;
+import javax.faces.component.visit.VisitCallback;
+import javax.faces.component.visit.VisitContext;
 import javax.faces.context.FacesContext;
 import javax.faces.el.ValueBinding;
 import javax.faces.event.AbortProcessingException;
@@ -95,6 +98,7 @@ import javax.faces.event.BehaviorEvent;
 import javax.faces.event.ComponentSystemEventListener;
 import javax.faces.event.FacesEvent;
 import javax.faces.event.FacesListener;
+import javax.faces.event.PhaseId;
 import javax.faces.event.PostAddToViewEvent;
 import javax.faces.event.PostValidateEvent;
 import javax.faces.event.PreRemoveFromViewEvent;
@@ -106,6 +110,8 @@ import javax.faces.render.Renderer;
 
 import com.sun.faces.application.ValueBindingValueExpressionAdapter;
 import com.sun.faces.application.ValueExpressionValueBindingAdapter;
+import com.sun.faces.component.ClientIdIndex;
+import com.sun.faces.component.ParallelSubtreeProcessor;
 
 /**
  * <p>
@@ -135,6 +141,15 @@ public abstract class UIComponentBase extends UIComponent {
     private static final int MY_STATE = 0;
     private static final int CHILD_STATE = 1;
 
+    private static final UIComponent[] EMPTY_COMPONENT_ARRAY = new UIComponent[0];
+
+    /**
+     * Whether the facets and children of a concrete component class may be traversed by index,
+     * keyed by class. This is the case when the class does not redefine how its facets and
+     * children are obtained.
+     */
+    private static final ConcurrentMap<Class<?>, Boolean> INDEXED_TRAVERSAL = new ConcurrentHashMap<>();
+
     /**
      * <p>
      * Each entry is an map of <code>PropertyDescriptor</code>s describing the properties of a
@@ -410,6 +425,19 @@ public abstract class UIComponentBase extends UIComponent {
             expression = expression.substring(1);
         }
 
+        // Expressions relative to the view root may be resolvable without
+        // searching the tree
+        if (base instanceof UIViewRoot && !expression.isEmpty()) {
+            FacesContext context = FacesContext.getCurrentInstance();
+            ClientIdIndex index = ClientIdIndex.getIndex(context, (UIViewRoot) base);
+            if (index != null) {
+                UIComponent found = index.findComponent(context, expression, sepChar);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+
         // Evaluate the search expression (now guaranteed to be relative)
         return evaluateSearchExpression(base, expression, String.valueOf(sepChar));
     }
@@ -483,6 +511,97 @@ public abstract class UIComponentBase extends UIComponent {
         // If there are both children and facets
         return new FacetsAndChildrenIterator(this);
     }
+
+    /**
+     * Processes the facets and children of this component for the given execute phase, in
+     * {@link #getFacetsAndChildren()} order. Unless the subclass redefines how its facets and
+     * children are obtained, they are traversed by index without creating iterators.
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param phaseId one of the apply request values, process validations or update model values
+     *            phases
+     */
+    void processFacetsAndChildren(FacesContext context, PhaseId phaseId) {
+        if (ParallelSubtreeProcessor.processChildren(context, this, phaseId)) {
+            return;
+        }
+
+        if (!isIndexedTraversal()) {
+            Iterator<UIComponent> kids = getFacetsAndChildren();
+            while (kids.hasNext()) {
+                processKid(kids.next(), context, phaseId);
+            }
+            return;
+        }
+
+        for (UIComponent facet : getFacetArray()) {
+            processKid(facet, context, phaseId);
+        }
+        for (int i = 0; i < getChildCount(); i++) {
+            processKid(children.get(i), context, phaseId);
+        }
+    }
+
+    @Override
+    boolean visitFacetsAndChildren(VisitContext visitContext, VisitCallback callback) {
+        if (!isIndexedTraversal()) {
+            return super.visitFacetsAndChildren(visitContext, callback);
+        }
+
+        for (UIComponent facet : getFacetArray()) {
+            if (facet.visitTree(visitContext, callback)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < getChildCount(); i++) {
+            if (children.get(i).visitTree(visitContext, callback)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void processKid(UIComponent kid, FacesContext context, PhaseId phaseId) {
+        if (phaseId == PhaseId.APPLY_REQUEST_VALUES) {
+            kid.processDecodes(context);
+        } else if (phaseId == PhaseId.PROCESS_VALIDATIONS) {
+            kid.processValidators(context);
+        } else if (phaseId == PhaseId.UPDATE_MODEL_VALUES) {
+            kid.processUpdates(context);
+        } else {
+            throw new IllegalArgumentException(phaseId.toString());
+        }
+    }
+
+    private UIComponent[] getFacetArray() {
+        if (facets == null || facets.isEmpty()) {
+            return EMPTY_COMPONENT_ARRAY;
+        }
+
+        return ((FacetsMap) facets).valueArray();
+    }
+
+    private boolean isIndexedTraversal() {
+        Class<?> type = getClass();
+        Boolean indexed = INDEXED_TRAVERSAL.get(type);
+        if (indexed == null) {
+            indexed = TRUE;
+            try {
+                for (String name : new String[] { "getFacetsAndChildren", "getChildren", "getChildCount", "getFacets", "getFacetCount" }) {
+                    if (type.getMethod(name).getDeclaringClass() != UIComponentBase.class) {
+                        indexed = FALSE;
+                        break;
+                    }
+                }
+            } catch (NoSuchMethodException | SecurityException e) {
+                indexed = FALSE;
+            }
+            INDEXED_TRAVERSAL.putIfAbsent(type, indexed);
+        }
+
+        return indexed;
+    }
     
 
     // -------------------------------------------- Lifecycle Processing Methods
@@ -899,11 +1018,7 @@ public abstract class UIComponentBase extends UIComponent {
 
         try {
             // Process all facets and children of this component
-            Iterator<UIComponent> kids = getFacetsAndChildren();
-            while (kids.hasNext()) {
-                UIComponent kid = (UIComponent) kids.next();
-                kid.processDecodes(context);
-            }
+            processFacetsAndChildren(context, PhaseId.APPLY_REQUEST_VALUES);
 
             // Process this component itself
             try {
@@ -939,11 +1054,7 @@ public abstract class UIComponentBase extends UIComponent {
             application.publishEvent(context, PreValidateEvent.class, this);
             
             // Process all the facets and children of this component
-            Iterator<UIComponent> kids = getFacetsAndChildren();
-            while (kids.hasNext()) {
-                UIComponent kid = (UIComponent) kids.next();
-                kid.processValidators(context);
-            }
+            processFacetsAndChildren(context, PhaseId.PROCESS_VALIDATIONS);
             
             application.publishEvent(context, PostValidateEvent.class, this);
         } finally {
@@ -970,11 +1081,7 @@ public abstract class UIComponentBase extends UIComponent {
 
         try {
             // Process all facets and children of this component
-            Iterator<UIComponent> kids = getFacetsAndChildren();
-            while (kids.hasNext()) {
-                UIComponent kid = (UIComponent) kids.next();
-                kid.processUpdates(context);
-            }
+            processFacetsAndChildren(context, PhaseId.UPDATE_MODEL_VALUES);
         } finally {
             popComponentFromEL(context);
         }
@@ -2284,7 +2391,10 @@ public abstract class UIComponentBase extends UIComponent {
         private UIComponent component;
 
         public ChildrenList(UIComponent component) {
-            super(6);
+            // Most lists stay empty or hold a single child, so start without
+            // a backing array and only make room for more once a second child
+            // is added.
+            super(0);
             this.component = component;
         }
 
@@ -2296,6 +2406,7 @@ public abstract class UIComponentBase extends UIComponent {
                 throw new IndexOutOfBoundsException();
             } else {
                 eraseParent(element);
+                ensureRoom();
                 super.add(index, element);
                 element.setParent(component);
 
@@ -2308,6 +2419,7 @@ public abstract class UIComponentBase extends UIComponent {
                 throw new NullPointerException();
             } else {
                 eraseParent(element);
+                ensureRoom();
                 boolean result = super.add(element);
                 element.setParent(component);
                 return result;
@@ -2438,6 +2550,12 @@ public abstract class UIComponentBase extends UIComponent {
                 return (previous);
             }
         }
+
+        private void ensureRoom() {
+            if (size() == 1) {
+                ensureCapacity(6);
+            }
+        }
     }
 
     // Private implementation of ListIterator for ChildrenList
@@ -2588,16 +2706,66 @@ public abstract class UIComponentBase extends UIComponent {
     }
 
     // Private implementation of Map that supports the functionality
-    // required by UIComponent.getFacets()
-    private static class FacetsMap extends HashMap<String, UIComponent> {
+    // required by UIComponent.getFacets().  Most components have no facet or
+    // a single one, so these are held in fields; a HashMap is only created
+    // once a second facet is added.  From then on the facets are iterated in
+    // the same order as before.
+    private static class FacetsMap extends AbstractMap<String, UIComponent> implements Serializable {
+
+        private static final long serialVersionUID = 1L;
 
         private UIComponent component;
 
+        /**
+         * The only facet, while {@link #table} is <code>null</code>.
+         */
+        private String singleKey;
+        private UIComponent singleValue;
+
+        /**
+         * The facets once a second one has been added.
+         */
+        private HashMap<String, UIComponent> table;
+
+        /**
+         * The facets in iteration order, built on demand for index based
+         * traversal and discarded on every modification.
+         */
+        private transient UIComponent[] valueArray;
+
         public FacetsMap(UIComponent component) {
-            super(3, 1.0f);
             this.component = component;
         }
 
+        @Override
+        public int size() {
+            if (table != null) {
+                return table.size();
+            }
+            return (singleKey != null) ? 1 : 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return (size() == 0);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (table != null) {
+                return table.containsKey(key);
+            }
+            return (singleKey != null && singleKey.equals(key));
+        }
+
+        @Override
+        public UIComponent get(Object key) {
+            if (table != null) {
+                return table.get(key);
+            }
+            return (singleKey != null && singleKey.equals(key)) ? singleValue : null;
+        }
+
         @Override
         public void clear() {
             Iterator<String> keys = keySet().iterator();
@@ -2605,7 +2773,10 @@ public abstract class UIComponentBase extends UIComponent {
                 keys.next();
                 keys.remove();
             }
-            super.clear();
+            singleKey = null;
+            singleValue = null;
+            table = null;
+            valueArray = null;
         }
 
         @Override
@@ -2626,12 +2797,26 @@ public abstract class UIComponentBase extends UIComponent {
             if (!(key instanceof String) || !(value instanceof UIComponent)) {
                 throw new ClassCastException();
             }
-            UIComponent previous = super.get(key);
+            UIComponent previous = get(key);
             if (previous != null) {
                 previous.setParent(null);
             }
             eraseParent(value);
-            UIComponent result = super.put(key, value);
+            valueArray = null;
+            UIComponent result;
+            if (table != null) {
+                result = table.put(key, value);
+            } else if (singleKey == null || singleKey.equals(key)) {
+                result = singleValue;
+                singleKey = key;
+                singleValue = value;
+            } else {
+                table = new HashMap<>(3, 1.0f);
+                table.put(singleKey, singleValue);
+                result = table.put(key, value);
+                singleKey = null;
+                singleValue = null;
+            }
             value.setParent(component);
 
             return (result);
@@ -2653,7 +2838,13 @@ public abstract class UIComponentBase extends UIComponent {
             if (previous != null) {
                 previous.setParent(null);
             }
-            super.remove(key);
+            valueArray = null;
+            if (table != null) {
+                table.remove(key);
+            } else if (previous != null) {
+                singleKey = null;
+                singleValue = null;
+            }
             return (previous);
         }
 
@@ -2663,7 +2854,28 @@ public abstract class UIComponentBase extends UIComponent {
         }
 
         Iterator<String> keySetIterator() {
-            return ((new ArrayList<>(super.keySet())).iterator());
+            if (table != null) {
+                return ((new ArrayList<>(table.keySet())).iterator());
+            }
+            if (singleKey != null) {
+                return Collections.singletonList(singleKey).iterator();
+            }
+            return Collections.<String>emptyList().iterator();
+        }
+
+        UIComponent[] valueArray() {
+            UIComponent[] values = valueArray;
+            if (values == null || values.length != size()) {
+                if (table != null) {
+                    values = table.values().toArray(new UIComponent[table.size()]);
+                } else if (singleKey != null) {
+                    values = new UIComponent[] { singleValue };
+                } else {
+                    values = EMPTY_COMPONENT_ARRAY;
+                }
+                valueArray = values;
+            }
+            return values;
         }
 
     }
@@ -77,12 +77,16 @@ import javax.faces.model.CollectionDataModel;
 import javax.faces.model.DataModel;
 import javax.faces.model.FacesDataModel;
 import javax.faces.model.IterableDataModel;
+import javax.faces.model.LazyDataModel;
 import javax.faces.model.ListDataModel;
 import javax.faces.model.ResultDataModel;
 import javax.faces.model.ResultSetDataModel;
 import javax.faces.model.ScalarDataModel;
 import javax.servlet.jsp.jstl.sql.Result;
 
+import com.sun.faces.component.RowClientIdCache;
+import com.sun.faces.component.RowStateTable;
+
 
 // ------------------------------------------------------------- Private Classes
 // Private class to represent saved state information
@@ -159,11 +163,12 @@ public class UIData extends UIComponentBase
         rows,
 
         /**
-         * <p>This map contains <code>SavedState</code> instances for each
-         * descendant component, keyed by the client identifier of the descendant.
-         * Because descendant client identifiers will contain the
-         * <code>rowIndex</code> value of the parent, per-row state information is
-         * actually preserved.</p>
+         * <p>This map contains a <code>RowStateTable</code> holding the per-row
+         * state of the descendant components of all rows, keyed by the client
+         * identifier of this component without its own row index.  Because
+         * that client identifier will contain the <code>rowIndex</code> value
+         * of any parent iterating component, nested tables keep separate state
+         * for each row of their parent.</p>
          */
         saved,
 
@@ -216,20 +221,22 @@ public class UIData extends UIComponentBase
 
 
     /**
-     * <p> Length of the cached <code>baseClientId</code> plus one for
-     * the {@link UINamingContainer#getSeparatorChar}. </p>
+     * <p>Builds and caches the per-row client IDs, so that the descendants
+     * of a row share a single container client ID instead of building one
+     * each.</p>
      *
      * <p>This is not part of the component state.</p>
      */
-    private int baseClientIdLength;
+    private RowClientIdCache rowClientIds = null;
 
 
     /**
-     * <p>StringBuilder used to build per-row client IDs.</p>
+     * <p>An empty table to save the next row to while no row state is
+     * stored, so that rows which are not edited allocate nothing.</p>
      *
      * <p>This is not part of the component state.</p>
      */
-    private StringBuilder clientIdBuilder = null;
+    private RowStateTable unsavedRowState = null;
 
 
     /**
@@ -864,62 +871,21 @@ public class UIData extends UIComponentBase
             throw new NullPointerException();
         }
 
-        // If baseClientId and clientIdBuilder are both null, this is the
-        // first time that getClientId() has been called.
-        // If we're not nested within another UIData, then:
-        //   - create a new StringBuilder assigned to clientIdBuilder containing
-        //   our client ID.
-        //   - toString() the builder - this result will be our baseClientId
-        //     for the duration of the component
-        //   - append UINamingContainer.getSeparatorChar() to the builder
-        //  If we are nested within another UIData, then:
-        //   - create an empty StringBuilder that will be used to build
-        //     this instance's ID
-        if (baseClientId == null && clientIdBuilder == null) {
-            if (!isNestedWithinIterator()) {
-                clientIdBuilder = new StringBuilder(super.getClientId(context));
-                baseClientId = clientIdBuilder.toString();
-                baseClientIdLength = (baseClientId.length() + 1);
-                clientIdBuilder.append(UINamingContainer.getSeparatorChar(context));
-                clientIdBuilder.setLength(baseClientIdLength);
-            } else {
-                clientIdBuilder = new StringBuilder();
-            }
-        }
+        String base = getBaseClientId(context);
+
         int rowIndex = getRowIndex();
         if (rowIndex >= 0) {
-            String cid;
-            if (!isNestedWithinIterator()) {
-                // we're not nested, so the clientIdBuilder is already
-                // primed with clientID +
-                // UINamingContainer.getSeparatorChar().  Append the
-                // current rowIndex, and toString() the builder.  reset
-                // the builder to it's primed state.
-                cid = clientIdBuilder.append(rowIndex).toString();
-                clientIdBuilder.setLength(baseClientIdLength);
-            } else {
-                // we're nested, so we have to build the ID from scratch
-                // each time.  Reuse the same clientIdBuilder instance
-                // for each call by resetting the length to 0 after
-                // the ID has been computed.
-                cid = clientIdBuilder.append(super.getClientId(context))
-                      .append(UINamingContainer.getSeparatorChar(context)).append(rowIndex)
-                      .toString();
-                clientIdBuilder.setLength(0);
-            }
-            return (cid);
-        } else {
-            if (!isNestedWithinIterator()) {
-                // Not nested and no row available, so just return our baseClientId
-                return (baseClientId);
-            } else {
-                // nested and no row available, return the result of getClientId().
-                // this is necessary as the client ID will reflect the row that
-                // this table represents
-                return super.getClientId(context);
+            // Append the current rowIndex.  The result is cached until the
+            // row or the base client ID changes, as all descendants of the
+            // row ask for it.
+            if (rowClientIds == null) {
+                rowClientIds = new RowClientIdCache();
             }
+            return rowClientIds.getRowClientId(base, UINamingContainer.getSeparatorChar(context), rowIndex);
         }
 
+        return (base);
+
     }
 
     /**
@@ -1859,6 +1825,10 @@ public class UIData extends UIComponentBase
      * result is null, create an empty {@link ListDataModel} and return it.  If
      * the result is an instance of {@link DataModel}, return it.  Otherwise,
      * adapt the result as described in {@link #getValue} and return it.</p>
+     *
+     * <p>If the model is a {@link LazyDataModel} and <code>rows</code> is
+     * greater than zero, its page size is set to <code>rows</code>, so that
+     * the displayed rows are loaded at once.</p>
      * 
      * @return the data model.
      */
@@ -1898,6 +1868,12 @@ public class UIData extends UIComponentBase
                 setDataModel(new ScalarDataModel(current));
             }
         }
+        if (model instanceof LazyDataModel) {
+            int rows = getRows();
+            if (rows > 0) {
+                ((LazyDataModel) model).setPageSize(rows);
+            }
+        }
         return (model);
 
     }
@@ -2008,8 +1984,8 @@ public class UIData extends UIComponentBase
     // (ie. processDecodes()) or during a tree visit (ie. visitTree()).
     private void preDecode(FacesContext context) {
         setDataModel(null); // Re-evaluate even with server-side state saving
-        Map<String, SavedState> saved =
-              (Map<String, SavedState>) getStateHelper().get(PropertyKeys.saved);
+        Map<String, RowStateTable> saved =
+              (Map<String, RowStateTable>) getStateHelper().get(PropertyKeys.saved);
         if (null == saved || !keepSaved(context)) {
             //noinspection CollectionWithoutInitialCapacity
             getStateHelper().remove(PropertyKeys.saved);
@@ -2354,9 +2330,13 @@ public class UIData extends UIComponentBase
 
         FacesContext context = getFacesContext();
         if (getChildCount() > 0) {
+            RowStateTable state = getRowStateTable(context);
+            if (state != null) {
+                state.beginRestore(getRowIndex());
+            }
             for (UIComponent kid : getChildren()) {
                 if (kid instanceof UIColumn) {
-                    restoreDescendantState(kid, context);
+                    restoreDescendantState(kid, context, state);
                 }
             }
         }
@@ -2370,54 +2350,48 @@ public class UIData extends UIComponentBase
      *
      * @param component Component for which to restore state information
      * @param context   {@link FacesContext} for the current request
+     * @param state     the saved state of the current row, or
+     *                  <code>null</code> if there is none
      */
     private void restoreDescendantState(UIComponent component,
-                                        FacesContext context) {
+                                        FacesContext context,
+                                        RowStateTable state) {
 
         // Reset the client identifier for this component
         String id = component.getId();
         component.setId(id); // Forces client id to be reset
-        Map<String, SavedState> saved = (Map<String,SavedState>)
-            getStateHelper().get(PropertyKeys.saved);
         // Restore state for this component (if it is a EditableValueHolder)
         if (component instanceof EditableValueHolder) {
             EditableValueHolder input = (EditableValueHolder) component;
-            String clientId = component.getClientId(context);
-
-            SavedState state = (saved == null ? null : saved.get(clientId));
-            if (state == null) {
+            if (state == null || !state.restore(id)) {
                 input.resetValue();
             } else {
+                int flags = state.getFlags();
                 input.setValue(state.getValue());
-                input.setValid(state.isValid());
+                input.setValid((flags & RowStateTable.INVALID) == 0);
                 input.setSubmittedValue(state.getSubmittedValue());
                 // This *must* be set after the call to setValue(), since
                 // calling setValue() always resets "localValueSet" to true.
-                input.setLocalValueSet(state.isLocalValueSet());
+                input.setLocalValueSet((flags & RowStateTable.LOCAL_VALUE_SET) != 0);
             }
         } else if (component instanceof UIForm) {
             UIForm form = (UIForm) component;
-            String clientId = component.getClientId(context);
-            SavedState state = (saved == null ? null : saved.get(clientId));
-            if (state == null) {
-                // submitted is transient state
-                form.setSubmitted(false);
-            } else {
-                form.setSubmitted(state.getSubmitted());
-            }
+            // submitted is transient state
+            form.setSubmitted(state != null && state.restore(id)
+                              && (state.getFlags() & RowStateTable.SUBMITTED) != 0);
         }
 
         // Restore state for children of this component
         if (component.getChildCount() > 0) {
             for (UIComponent kid : component.getChildren()) {
-                restoreDescendantState(kid, context);
+                restoreDescendantState(kid, context, state);
             }
         }
 
         // Restore state for facets of this component
         if (component.getFacetCount() > 0) {
             for (UIComponent facet : component.getFacets().values()) {
-                restoreDescendantState(facet, context);
+                restoreDescendantState(facet, context, state);
             }
         }
 
@@ -2427,16 +2401,36 @@ public class UIData extends UIComponentBase
     /**
      * <p>Save state information for all descendant components, as described for
      * <code>setRowIndex()</code>.</p>
+     *
+     * <p>The state of a row is only stored if any descendant differs from its
+     * pristine state, so rows which were not edited take no space.</p>
      */
     private void saveDescendantState() {
 
         FacesContext context = getFacesContext();
         if (getChildCount() > 0) {
+            RowStateTable state = getRowStateTable(context);
+            boolean stored = (state != null);
+            if (!stored) {
+                state = (unsavedRowState != null) ? unsavedRowState : new RowStateTable();
+            }
+            state.beginRow();
             for (UIComponent kid : getChildren()) {
                 if (kid instanceof UIColumn) {
-                    saveDescendantState(kid, context);
+                    saveDescendantState(kid, context, state);
+                }
+            }
+            if (state.endRow(getRowIndex())) {
+                String clientId = getBaseClientId(context);
+                if (state.isEmpty()) {
+                    getStateHelper().remove(PropertyKeys.saved, clientId);
+                } else {
+                    getStateHelper().put(PropertyKeys.saved, clientId, state);
+                    stored = true;
                 }
             }
+            // Reuse a table which holds no rows for the next row
+            unsavedRowState = stored ? null : state;
         }
 
     }
@@ -2448,137 +2442,81 @@ public class UIData extends UIComponentBase
      *
      * @param component Component for which to save state information
      * @param context   {@link FacesContext} for the current request
+     * @param state     the table the current row is saved to
      */
     private void saveDescendantState(UIComponent component,
-                                     FacesContext context) {
+                                     FacesContext context,
+                                     RowStateTable state) {
 
         // Save state for this component (if it is a EditableValueHolder)
-        Map<String, SavedState> saved = (Map<String, SavedState>)
-              getStateHelper().get(PropertyKeys.saved);
         if (component instanceof EditableValueHolder) {
             EditableValueHolder input = (EditableValueHolder) component;
-            SavedState state = null;
-            String clientId = component.getClientId(context);
-            if (saved == null) {
-                state = new SavedState();
-            }
-            if (state == null) {
-                state = saved.get(clientId);
-                if (state == null) {
-                    state = new SavedState();
-                }
-            }
-            state.setValue(input.getLocalValue());
-            state.setValid(input.isValid());
-            state.setSubmittedValue(input.getSubmittedValue());
-            state.setLocalValueSet(input.isLocalValueSet());
-            if (state.hasDeltaState()) {
-            	getStateHelper().put(PropertyKeys.saved, clientId, state);
-            } else if (saved != null) {
-            	getStateHelper().remove(PropertyKeys.saved, clientId);
-            }
+            int flags = (input.isValid() ? 0 : RowStateTable.INVALID)
+                        | (input.isLocalValueSet() ? RowStateTable.LOCAL_VALUE_SET : 0);
+            state.save(component.getId(), input.getLocalValue(),
+                       input.getSubmittedValue(), flags);
         } else if (component instanceof UIForm) {
             UIForm form = (UIForm) component;
-            String clientId = component.getClientId(context);
-            SavedState state = null;
-            if (saved == null) {
-                state = new SavedState();
-            }
-            if (state == null) {
-                state = saved.get(clientId);
-                if (state == null) {
-                    state = new SavedState();
-                }
-            }
-            state.setSubmitted(form.isSubmitted());
-            if (state.hasDeltaState()) {
-            	getStateHelper().put(PropertyKeys.saved, clientId, state);
-            } else if (saved != null) {
-            	getStateHelper().remove(PropertyKeys.saved, clientId);
-            }
+            state.save(component.getId(), null, null,
+                       form.isSubmitted() ? RowStateTable.SUBMITTED : 0);
         }
 
         // Save state for children of this component
         if (component.getChildCount() > 0) {
             for (UIComponent uiComponent : component.getChildren()) {
-                saveDescendantState(uiComponent, context);
+                saveDescendantState(uiComponent, context, state);
             }
         }
 
         // Save state for facets of this component
         if (component.getFacetCount() > 0) {
             for (UIComponent facet : component.getFacets().values()) {
-                saveDescendantState(facet, context);
+                saveDescendantState(facet, context, state);
             }
         }
 
     }
 
-}
-@SuppressWarnings({"SerializableHasSerializationMethods",
-      "NonSerializableFieldInSerializableClass"})
-class SavedState implements Serializable {
-
-    private static final long serialVersionUID = 2920252657338389849L;
-    private Object submittedValue;
-    private boolean submitted;
 
-    Object getSubmittedValue() {
-        return (this.submittedValue);
-    }
-
-    void setSubmittedValue(Object submittedValue) {
-        this.submittedValue = submittedValue;
-    }
-
-    private boolean valid = true;
-
-    boolean isValid() {
-        return (this.valid);
-    }
-
-    void setValid(boolean valid) {
-        this.valid = valid;
-    }
-
-    private Object value;
-
-    Object getValue() {
-        return (this.value);
-    }
-
-    public void setValue(Object value) {
-        this.value = value;
-    }
+    /**
+     * <p>Return the per-row state saved for this component within the
+     * current row of any parent iterating component, or <code>null</code> if
+     * there is none.</p>
+     *
+     * @param context {@link FacesContext} for the current request
+     */
+    @SuppressWarnings("unchecked")
+    private RowStateTable getRowStateTable(FacesContext context) {
 
-    private boolean localValueSet;
+        Map<String, RowStateTable> saved = (Map<String, RowStateTable>)
+            getStateHelper().get(PropertyKeys.saved);
+        return (saved == null || saved.isEmpty()) ? null : saved.get(getBaseClientId(context));
 
-    boolean isLocalValueSet() {
-        return (this.localValueSet);
     }
 
-    public void setLocalValueSet(boolean localValueSet) {
-        this.localValueSet = localValueSet;
-    }
 
-    public boolean getSubmitted() {
-        return this.submitted;
-    }
+    /**
+     * <p>Return the client identifier of this component without the current
+     * row index, but with the row index of any parent iterating
+     * component.</p>
+     *
+     * @param context {@link FacesContext} for the current request
+     */
+    private String getBaseClientId(FacesContext context) {
 
-    public void setSubmitted(boolean submitted) {
-        this.submitted = submitted;
-    }
+        // If we're not nested within another UIData, our own client ID
+        // never changes, so compute it once and keep it as baseClientId for
+        // the duration of the component.  If we are nested, the client ID
+        // reflects the row of the outer iterator and must be obtained from
+        // getClientId() each time.
+        if (!isNestedWithinIterator()) {
+            if (baseClientId == null) {
+                baseClientId = super.getClientId(context);
+            }
+            return baseClientId;
+        }
+        return super.getClientId(context);
 
-	public boolean hasDeltaState() {
-		return submittedValue != null || value != null || localValueSet
-				|| !valid || submitted;
-	}
-    
-    @Override
-    public String toString() {
-        return ("submittedValue: " + submittedValue +
-                " value: " + value +
-                " localValueSet: " + localValueSet);
     }
 
 }
@@ -45,12 +45,12 @@ import static javax.faces.component.UIViewRoot.UNIQUE_ID_PREFIX;
 import static javax.faces.component.visit.VisitResult.COMPLETE;
 
 import java.util.Collection;
-import java.util.Iterator;
 
 import javax.faces.application.Application;
 import javax.faces.component.visit.VisitCallback;
 import javax.faces.component.visit.VisitContext;
 import javax.faces.context.FacesContext;
+import javax.faces.event.PhaseId;
 import javax.faces.event.PostValidateEvent;
 import javax.faces.event.PreValidateEvent;
 
@@ -215,10 +215,7 @@ public class UIForm extends UIComponentBase implements NamingContainer, UniqueId
         }
 
         // Process all facets and children of this component
-        Iterator<UIComponent> kids = getFacetsAndChildren();
-        while (kids.hasNext()) {
-            kids.next().processDecodes(context);
-        }
+        processFacetsAndChildren(context, PhaseId.APPLY_REQUEST_VALUES);
     }
 
     /**
@@ -248,10 +245,7 @@ public class UIForm extends UIComponentBase implements NamingContainer, UniqueId
         application.publishEvent(context, PreValidateEvent.class, this);
         
         // Process all the facets and children of this component
-        Iterator<UIComponent> kids = getFacetsAndChildren();
-        while (kids.hasNext()) {
-            kids.next().processValidators(context);
-        }
+        processFacetsAndChildren(context, PhaseId.PROCESS_VALIDATIONS);
         
         application.publishEvent(context, PostValidateEvent.class, this);
         popComponentFromEL(context);
@@ -281,10 +275,7 @@ public class UIForm extends UIComponentBase implements NamingContainer, UniqueId
 
         try {
             // Process all facets and children of this component
-            Iterator<UIComponent> kids = getFacetsAndChildren();
-            while (kids.hasNext()) {
-                kids.next().processUpdates(context);
-            }
+            processFacetsAndChildren(context, PhaseId.UPDATE_MODEL_VALUES);
         } finally {
             popComponentFromEL(context);
         }
@@ -87,6 +87,9 @@ import javax.faces.view.ViewDeclarationLanguage;
 import javax.faces.view.ViewMetadata;
 import javax.faces.webapp.FacesServlet;
 
+import com.sun.faces.component.ClientIdIndex;
+import com.sun.faces.component.ParallelSubtreeProcessor;
+
 /**
  * <p><strong class="changed_modified_2_0"><span
  * class="changed_modified_2_0_rev_a changed_modified_2_1
@@ -770,6 +773,11 @@ public class UIViewRoot extends UIComponentBase implements UniqueIdVendor {
         if (event == null) {
             throw new NullPointerException();
         }
+        // Events queued by subtrees processed in parallel are queued once
+        // their processing is complete, in order
+        if (ParallelSubtreeProcessor.queueEvent(event)) {
+            return;
+        }
         // We are a UIViewRoot, so no need to check for the ISE
         if (events == null) {
             int len = PhaseId.VALUES.size();
@@ -1168,6 +1176,29 @@ public class UIViewRoot extends UIComponentBase implements UniqueIdVendor {
         }
         return value;
     }
+
+    /**
+     * <p>If the client id index is enabled and can locate the component
+     * identified by <code>clientId</code> directly, invoke the callback on
+     * it without walking the tree.  Otherwise, or if the component cannot
+     * be located that way (e.g. because it lies within a
+     * <code>UIData</code>), defer to {@link UIComponentBase#invokeOnComponent}.</p>
+     *
+     * @throws NullPointerException {@inheritDoc}
+     * @throws FacesException {@inheritDoc}
+     */
+    @Override
+    public boolean invokeOnComponent(FacesContext context, String clientId, ContextCallback callback) throws FacesException {
+        if (context == null || clientId == null || callback == null) {
+            throw new NullPointerException();
+        }
+
+        ClientIdIndex index = ClientIdIndex.getIndex(context, this);
+        if (index != null && index.invokeOnComponent(context, clientId, callback)) {
+            return true;
+        }
+        return super.invokeOnComponent(context, clientId, callback);
+    }
     
     /**
      * <p>Utility method that notifies phaseListeners for the given
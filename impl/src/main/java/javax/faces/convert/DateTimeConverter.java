@@ -528,6 +528,11 @@ public class DateTimeConverter implements Converter, PartialStateHolder {
                 df.setTimeZone(zone);
             }
         }
+
+        private FormatWrapper copy() {
+            // DateTimeFormatter is immutable, DateFormat is not
+            return (null != df) ? new FormatWrapper((DateFormat) df.clone()) : this;
+        }
     }
 
     /**
@@ -583,7 +588,8 @@ public class DateTimeConverter implements Converter, PartialStateHolder {
 
     /**
      * <p>Return a <code>DateFormat</code> instance to use for formatting
-     * and parsing in this {@link Converter}.</p>
+     * and parsing in this {@link Converter}.  The instance is copied from
+     * a cached prototype, so it may be configured freely.</p>
      *
      * @param locale  The <code>Locale</code> used to select formatting
      *                and parsing conventions
@@ -591,7 +597,22 @@ public class DateTimeConverter implements Converter, PartialStateHolder {
      */
     private FormatWrapper getDateFormat(Locale locale) {
 
-        // PENDING(craigmcc) - Implement pooling if needed for performance?
+        FormatWrapper prototype = FormatCache.get(() -> createDateFormat(locale),
+             DateTimeConverter.class, type, pattern, dateStyle, timeStyle, locale);
+        return prototype.copy();
+
+    }
+
+
+    /**
+     * <p>Create a new <code>DateFormat</code> instance for the current
+     * property values.</p>
+     *
+     * @param locale  The <code>Locale</code> used to select formatting
+     *                and parsing conventions
+     * @throws ConverterException if no instance can be created
+     */
+    private FormatWrapper createDateFormat(Locale locale) {
 
         if (pattern == null && type == null) {
             throw new IllegalArgumentException("Either pattern or type must" +
@@ -0,0 +1,97 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.faces.convert;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * <p>Cache of the formatter prototypes built by {@link DateTimeConverter}
+ * and {@link NumberConverter}, keyed by every property that goes into
+ * their construction.  Immutable formatters may be shared as is; mutable
+ * ones must be copied by the caller before being configured or used.</p>
+ *
+ * <p>The cache is bounded; when it grows past its limit it is simply
+ * cleared and repopulated on demand.</p>
+ */
+
+final class FormatCache {
+
+    private static final int MAX_SIZE = 512;
+
+    private static final ConcurrentMap<List<Object>, Object> CACHE =
+        new ConcurrentHashMap<>();
+
+    private FormatCache() {
+    }
+
+    /**
+     * <p>Return the cached formatter for the specified key, creating it
+     * with the specified factory if there is none.  Failures of the factory
+     * are propagated and not cached.</p>
+     *
+     * @param factory creates the formatter if it is not cached yet
+     * @param key the properties identifying the formatter
+     * @return the cached formatter
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T get(Supplier<T> factory, Object... key) {
+
+        List<Object> cacheKey = Arrays.asList(key);
+        Object format = CACHE.get(cacheKey);
+        if (format == null) {
+            format = factory.get();
+            if (CACHE.size() >= MAX_SIZE) {
+                CACHE.clear();
+            }
+            Object existing = CACHE.putIfAbsent(cacheKey, format);
+            if (existing != null) {
+                format = existing;
+            }
+        }
+        return (T) format;
+
+    }
+
+}
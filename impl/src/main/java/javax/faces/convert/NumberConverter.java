@@ -894,7 +894,8 @@ public class NumberConverter implements Converter, PartialStateHolder {
 
     /**
      * <p>Return a <code>NumberFormat</code> instance to use for formatting
-     * and parsing in this {@link Converter}.</p>
+     * and parsing in this {@link Converter}.  The instance is copied from
+     * a cached prototype, so it may be configured freely.</p>
      *
      * @param locale The <code>Locale</code> used to select formatting
      *               and parsing conventions
@@ -902,13 +903,28 @@ public class NumberConverter implements Converter, PartialStateHolder {
      */
     private NumberFormat getNumberFormat(Locale locale) {
 
+        NumberFormat prototype = FormatCache.get(() -> createNumberFormat(locale),
+             NumberConverter.class, type, pattern, locale);
+        return (NumberFormat) prototype.clone();
+
+    }
+
+
+    /**
+     * <p>Create a new <code>NumberFormat</code> instance for the current
+     * property values.</p>
+     *
+     * @param locale The <code>Locale</code> used to select formatting
+     *               and parsing conventions
+     * @throws ConverterException if no instance can be created
+     */
+    private NumberFormat createNumberFormat(Locale locale) {
+
         if (pattern == null && type == null) {
             throw new IllegalArgumentException("Either pattern or type must" +
                  " be specified.");
         }
 
-        // PENDING(craigmcc) - Implement pooling if needed for performance?
-
         // If pattern is specified, type is ignored
         if (pattern != null) {
             DecimalFormatSymbols symbols = new DecimalFormatSymbols(locale);
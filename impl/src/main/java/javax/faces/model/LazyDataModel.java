@@ -0,0 +1,478 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.faces.model;
+
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * <p><strong>LazyDataModel</strong> is an abstract implementation of
+ * {@link DataModel} for row sets which are too large to be loaded as a
+ * whole, e.g. the result of a database query.  Rows are loaded on demand in
+ * windows of {@link #getPageSize} rows through {@link #load}, and only the
+ * most recently used windows are kept.</p>
+ *
+ * <p>When a row is requested which is not in any cached window, a new window
+ * is loaded starting at that row.  Iterating components such as
+ * {@link javax.faces.component.UIData} set the page size to the number of
+ * rows they display, so that a page is loaded with a single call to
+ * {@link #load}, and reused during decode, validation, model update and
+ * rendering as long as the same model instance is returned by the value
+ * expression, e.g. by holding it in a view scoped bean.</p>
+ *
+ * <p>Loaded rows are not refreshed automatically.  Applications must call
+ * {@link #reset} after the underlying data has been modified.</p>
+ *
+ * @param <E> the type of the rows
+ */
+
+public abstract class LazyDataModel<E> extends DataModel<E> {
+
+
+    /**
+     * <p>The default number of rows loaded at once.</p>
+     */
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+
+    /**
+     * <p>The default number of windows kept.</p>
+     */
+    private static final int DEFAULT_MAX_CACHED_WINDOWS = 2;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * <p>Construct a new {@link LazyDataModel} with the default page
+     * size.</p>
+     */
+    public LazyDataModel() {
+
+        this(DEFAULT_PAGE_SIZE);
+
+    }
+
+
+    /**
+     * <p>Construct a new {@link LazyDataModel} with the specified page
+     * size.</p>
+     *
+     * @param pageSize the number of rows loaded at once
+     * @throws IllegalArgumentException if <code>pageSize</code> is less than
+     *  one
+     */
+    public LazyDataModel(int pageSize) {
+
+        this(pageSize, DEFAULT_MAX_CACHED_WINDOWS);
+
+    }
+
+
+    /**
+     * <p>Construct a new {@link LazyDataModel} with the specified page size
+     * and number of cached windows.</p>
+     *
+     * @param pageSize the number of rows loaded at once
+     * @param maxCachedWindows the number of most recently used windows which
+     *  are kept
+     * @throws IllegalArgumentException if either argument is less than one
+     */
+    public LazyDataModel(int pageSize, final int maxCachedWindows) {
+
+        super();
+        if (maxCachedWindows < 1) {
+            throw new IllegalArgumentException("maxCachedWindows");
+        }
+        setPageSize(pageSize);
+        windows = new LinkedHashMap<Integer, Window<E>>(4, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Window<E>> eldest) {
+                return size() > maxCachedWindows;
+            }
+        };
+
+    }
+
+
+    // ------------------------------------------------------ Instance Variables
+
+
+    // The current row index (zero relative)
+    private int index = -1;
+
+
+    // The number of rows loaded at once
+    private int pageSize;
+
+
+    // The sort criteria passed to load()
+    private String sort;
+
+
+    // The cached row count, or null if not yet counted
+    private Integer rowCount;
+
+
+    // The most recently used windows, keyed by their first row index
+    private final Map<Integer, Window<E>> windows;
+
+
+    // The window containing the current row, if any
+    private Window<E> window;
+
+
+    // ------------------------------------------------------- Abstract Methods
+
+
+    /**
+     * <p>Load at most <code>pageSize</code> rows starting at the row with
+     * index <code>first</code>, ordered according to <code>sort</code>.
+     * Fewer rows may only be returned if there are no more rows.</p>
+     *
+     * @param first the zero relative index of the first row to load
+     * @param pageSize the maximum number of rows to load
+     * @param sort the current sort criteria, or <code>null</code>
+     * @return the loaded rows, never <code>null</code>
+     */
+    protected abstract List<E> load(int first, int pageSize, String sort);
+
+
+    /**
+     * <p>Count the total number of rows.</p>
+     *
+     * @return the total number of rows, or -1 if it is unknown
+     */
+    protected abstract int count();
+
+
+    // -------------------------------------------------------------- Properties
+
+
+    /**
+     * <p>Return the number of rows loaded at once.</p>
+     *
+     * @return the page size
+     */
+    public int getPageSize() {
+
+        return (pageSize);
+
+    }
+
+
+    /**
+     * <p>Set the number of rows loaded at once.  Windows which are already
+     * loaded are kept.</p>
+     *
+     * @param pageSize the new page size
+     * @throws IllegalArgumentException if <code>pageSize</code> is less than
+     *  one
+     */
+    public void setPageSize(int pageSize) {
+
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize");
+        }
+        this.pageSize = pageSize;
+
+    }
+
+
+    /**
+     * <p>Return the sort criteria passed to {@link #load}.</p>
+     *
+     * @return the sort criteria, or <code>null</code>
+     */
+    public String getSort() {
+
+        return (sort);
+
+    }
+
+
+    /**
+     * <p>Set the sort criteria passed to {@link #load}.  The format is up to
+     * the implementation, e.g. a property name followed by an optional
+     * direction.  Changing it discards all loaded rows.</p>
+     *
+     * @param sort the new sort criteria, or <code>null</code>
+     */
+    public void setSort(String sort) {
+
+        if (!Objects.equals(this.sort, sort)) {
+            this.sort = sort;
+            clearWindows();
+        }
+
+    }
+
+
+    /**
+     * <p>Return <code>true</code> if the current value of
+     * <code>rowIndex</code> is greater than or equal to zero and a row was
+     * loaded at that index.  This loads the window starting at the current
+     * row if necessary.</p>
+     *
+     * @throws javax.faces.FacesException if an error occurs getting the row availability
+     */
+    @Override
+    public boolean isRowAvailable() {
+
+        return (getWindow(index) != null);
+
+    }
+
+
+    /**
+     * <p>Return the total number of rows as returned by {@link #count}.  It
+     * is counted once and then cached until {@link #reset} is called.</p>
+     *
+     * @throws javax.faces.FacesException if an error occurs getting the row count
+     */
+    @Override
+    public int getRowCount() {
+
+        if (rowCount == null) {
+            rowCount = count();
+        }
+        return (rowCount);
+
+    }
+
+
+    /**
+     * <p>If row data is available, return the row at the index specified by
+     * <code>rowIndex</code>.</p>
+     *
+     * @throws javax.faces.FacesException if an error occurs getting the row data
+     * @throws NoRowAvailableException if no row data is available
+     *  at the currently specified row index
+     */
+    @Override
+    public E getRowData() {
+
+        Window<E> current = getWindow(index);
+        if (current == null) {
+            throw new NoRowAvailableException();
+        }
+        return (current.rows.get(index - current.first));
+
+    }
+
+
+    /**
+     * @throws javax.faces.FacesException {@inheritDoc}
+     */
+    @Override
+    public int getRowIndex() {
+
+        return (index);
+
+    }
+
+
+    /**
+     * @throws javax.faces.FacesException {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    @Override
+    public void setRowIndex(int rowIndex) {
+
+        if (rowIndex < -1) {
+            throw new IllegalArgumentException();
+        }
+        int old = index;
+        index = rowIndex;
+        DataModelListener [] listeners = getDataModelListeners();
+        if ((old != index) && (listeners.length > 0)) {
+            Object rowData = null;
+            if (isRowAvailable()) {
+                rowData = getRowData();
+            }
+            DataModelEvent event =
+                new DataModelEvent(this, index, rowData);
+            for (DataModelListener listener : listeners) {
+                if (null != listener) {
+                    listener.rowSelected(event);
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * <p>Return the rows of the window containing the current row, or
+     * <code>null</code> if there is no current row.</p>
+     */
+    @Override
+    public Object getWrappedData() {
+
+        Window<E> current = getWindow(index);
+        return ((current == null) ? null : current.rows);
+
+    }
+
+
+    /**
+     * <p>Lazy models load their own rows, so the only accepted value is
+     * <code>null</code>, which is equivalent to {@link #reset}.</p>
+     *
+     * @throws UnsupportedOperationException if <code>data</code> is
+     *  non-<code>null</code>
+     */
+    @Override
+    public void setWrappedData(Object data) {
+
+        if (data != null) {
+            throw new UnsupportedOperationException();
+        }
+        reset();
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * <p>Discard all loaded rows and the cached row count, so that they are
+     * loaded again when next needed.  The current row index is kept.</p>
+     */
+    public void reset() {
+
+        rowCount = null;
+        clearWindows();
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void clearWindows() {
+
+        windows.clear();
+        window = null;
+
+    }
+
+
+    /**
+     * <p>Return the window containing a row at the specified index, loading
+     * it if necessary, or <code>null</code> if there is no such row.</p>
+     */
+    private Window<E> getWindow(int rowIndex) {
+
+        if (rowIndex < 0) {
+            return (null);
+        }
+        if (window == null || !window.covers(rowIndex)) {
+            window = findWindow(rowIndex);
+            if (window == null) {
+                if (rowCount != null && rowCount >= 0 && rowIndex >= rowCount) {
+                    return (null);
+                }
+                List<E> rows = load(rowIndex, pageSize, sort);
+                window = new Window<>(rowIndex, pageSize,
+                        (rows == null) ? Collections.<E>emptyList() : rows);
+                windows.put(rowIndex, window);
+            }
+        }
+        return ((rowIndex - window.first < window.rows.size()) ? window : null);
+
+    }
+
+
+    private Window<E> findWindow(int rowIndex) {
+
+        for (Window<E> candidate : windows.values()) {
+            if (candidate.covers(rowIndex)) {
+                // Mark it as most recently used
+                return (windows.get(candidate.first));
+            }
+        }
+        return (null);
+
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * <p>A range of loaded rows.  It covers <code>size</code> rows starting
+     * at <code>first</code>, also when fewer rows were returned because there
+     * were no more.</p>
+     */
+    private static final class Window<E> {
+
+        private final int first;
+        private final int size;
+        private final List<E> rows;
+
+        Window(int first, int size, List<E> rows) {
+
+            this.first = first;
+            this.size = size;
+            this.rows = rows;
+
+        }
+
+        boolean covers(int rowIndex) {
+
+            return (rowIndex >= first && rowIndex - first < size);
+
+        }
+
+    }
+
+
+}
@@ -45,11 +45,14 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.AbstractCollection;
+import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
 import java.io.IOException;
@@ -67,6 +70,15 @@ import javax.faces.FacesException;
  * be scrollable.  In addition, if input components (that will be updating
  * model values) reference this object in value binding expressions, the
  * specified <code>ResultSet</code> <strong>MUST</strong> be updatable.</p>
+ *
+ * <p>As an exception, a <code>ResultSet</code> of type
+ * <code>TYPE_FORWARD_ONLY</code> is iterated in streaming mode, which is
+ * meant for tables that are only rendered.  Rows are reached by calling
+ * <code>next()</code>, so they can only be visited once and in ascending
+ * order.  The column metadata is resolved once, and the same
+ * <code>Map</code> instance is returned by {@link #getRowData} for every
+ * row, always reflecting the row the <code>ResultSet</code> is currently
+ * positioned on.</p>
  */
 
 public class ResultSetDataModel extends DataModel<Map<String,Object>> {
@@ -119,6 +131,23 @@ public class ResultSetDataModel extends DataModel<Map<String,Object>> {
     private boolean updated = false;
 
 
+    // Is the ResultSet we are wrapping forward only?
+    private boolean streaming = false;
+
+
+    // The zero relative index of the row the ResultSet is positioned on in
+    // streaming mode, or -1 if it is before the first row
+    private int position = -1;
+
+
+    // Has the ResultSet been moved after its last row in streaming mode?
+    private boolean exhausted = false;
+
+
+    // The row Map reused for all rows in streaming mode (lazily instantiated)
+    private StreamingRowMap streamingRow = null;
+
+
     // -------------------------------------------------------------- Properties
 
 
@@ -139,6 +168,8 @@ public class ResultSetDataModel extends DataModel<Map<String,Object>> {
 	    return (false);
         } else if (index < 0) {
             return (false);
+        } else if (streaming) {
+            return (moveTo(index));
         }
         try {
             if (resultSet.absolute(index + 1)) {
@@ -173,7 +204,8 @@ public class ResultSetDataModel extends DataModel<Map<String,Object>> {
      * <p>If row data is available, return a <code>Map</code> representing
      * the values of the columns for the row specified by <code>rowIndex</code>,
      * keyed by the corresponding column names.  If no wrapped data is
-     * available, return <code>null</code>.</p>
+     * available, return <code>null</code>.  In streaming mode the same
+     * <code>Map</code> is returned for every row.</p>
      *
      * <p>If a non-<code>null</code> <code>Map</code> is returned, its behavior
      * must correspond to the contract for a mutable <code>Map</code> as
@@ -232,6 +264,12 @@ public class ResultSetDataModel extends DataModel<Map<String,Object>> {
         } else if (!isRowAvailable()) {
             throw new NoRowAvailableException();
         }
+        if (streaming) {
+            if (streamingRow == null) {
+                streamingRow = new StreamingRowMap(this);
+            }
+            return (streamingRow);
+        }
         try {
             getMetaData();
             return (new ResultSetMap(this, String.CASE_INSENSITIVE_ORDER));
@@ -318,10 +356,12 @@ public class ResultSetDataModel extends DataModel<Map<String,Object>> {
         if (data == null) {
             metadata = null;
             resultSet = null;
+            resetStreaming(false);
             setRowIndex(-1);
         } else {
             metadata = null;
             resultSet = (ResultSet) data;
+            resetStreaming(isForwardOnly(resultSet));
             index = -1;
             setRowIndex(0);
         }
@@ -364,6 +404,71 @@ public class ResultSetDataModel extends DataModel<Map<String,Object>> {
     }
 
 
+    /**
+     * <p>Return <code>true</code> if the specified <code>ResultSet</code> is
+     * of type <code>TYPE_FORWARD_ONLY</code>.  If the type cannot be
+     * determined, it is assumed to be scrollable.</p>
+     */
+    private static boolean isForwardOnly(ResultSet resultSet) {
+
+        try {
+            return (resultSet.getType() == ResultSet.TYPE_FORWARD_ONLY);
+        } catch (SQLException e) {
+            return (false);
+        }
+
+    }
+
+
+    /**
+     * <p>Reset the streaming mode state for a new <code>ResultSet</code>.</p>
+     */
+    private void resetStreaming(boolean streaming) {
+
+        this.streaming = streaming;
+        position = -1;
+        exhausted = false;
+        streamingRow = null;
+
+    }
+
+
+    /**
+     * <p>In streaming mode, move the <code>ResultSet</code> forward to the
+     * row with the specified index, and return <code>true</code> if there
+     * is such a row.</p>
+     *
+     * @throws FacesException if the row was already passed, or if the
+     *  <code>ResultSet</code> cannot be moved
+     */
+    private boolean moveTo(int rowIndex) {
+
+        if (rowIndex == position && !exhausted) {
+            return (true);
+        }
+        if (rowIndex <= position) {
+            throw new FacesException("Forward only ResultSet cannot move back to row "
+                                     + rowIndex + " after row " + position);
+        }
+        if (exhausted) {
+            return (false);
+        }
+        try {
+            while (position < rowIndex) {
+                if (!resultSet.next()) {
+                    exhausted = true;
+                    return (false);
+                }
+                position++;
+            }
+            return (true);
+        } catch (SQLException e) {
+            throw new FacesException(e);
+        }
+
+    }
+
+
     // --------------------------------------------------------- Private Classes
 
 
@@ -500,6 +605,183 @@ public class ResultSetDataModel extends DataModel<Map<String,Object>> {
     }
 
 
+    // Private implementation of Map used in streaming mode.  A single instance
+    // serves all rows: it resolves the column names once into a
+    // case-insensitive index and delegates column get and put operations to
+    // the row the underlying ResultSet is currently positioned on.
+    // NOT SERIALIZABLE
+    private static class StreamingRowMap extends AbstractMap<String,Object> {
+
+        private final ResultSetDataModel model;
+
+        // The column indexes keyed by column name, case-insensitive
+        private final TreeMap<String,Integer> columns =
+            new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        // The column names in column order
+        private final String[] names;
+
+        private final Set<String> keys;
+        private final Set<Map.Entry<String,Object>> entries;
+
+        public StreamingRowMap(ResultSetDataModel model) {
+            this.model = model;
+            ResultSetMetaData metadata = model.getMetaData();
+            try {
+                int n = metadata.getColumnCount();
+                names = new String[n];
+                for (int i = 1; i <= n; i++) {
+                    names[i - 1] = metadata.getColumnName(i);
+                    columns.put(names[i - 1], i);
+                }
+            } catch (SQLException e) {
+                throw new FacesException(e);
+            }
+            keys = Collections.unmodifiableSet(columns.keySet());
+            entries = new StreamingRowEntries(this);
+        }
+
+        // Removing entries is not allowed
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return ((key instanceof String) && columns.containsKey(key));
+        }
+
+        @Override
+        public Set<Map.Entry<String,Object>> entrySet() {
+            return (entries);
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer column = (key instanceof String) ? columns.get(key) : null;
+            return ((column == null) ? null : getColumn(column));
+        }
+
+        Object getColumn(int column) {
+            try {
+                return (model.resultSet.getObject(column));
+            } catch (SQLException e) {
+                throw new FacesException(e);
+            }
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return (keys);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Integer column = (key != null) ? columns.get(key) : null;
+            if (column == null) {
+                throw new IllegalArgumentException();
+            }
+            return (putColumn(column, value));
+        }
+
+        Object putColumn(int column, Object value) {
+            try {
+                Object previous = model.resultSet.getObject(column);
+                if ((previous == null) ? (value == null) : previous.equals(value)) {
+                    return (previous);
+                }
+                model.resultSet.updateObject(column, value);
+                model.updated();
+                return (previous);
+            } catch (SQLException e) {
+                throw new FacesException(e);
+            }
+        }
+
+        // Removing entries is not allowed
+        @Override
+        public Object remove(Object key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int size() {
+            return (names.length);
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            throw new NotSerializableException();
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException {
+            throw new NotSerializableException();
+        }
+
+    }
+
+
+    // Private implementation of Set that implements the entrySet() behavior
+    // for StreamingRowMap.  Entries read and write through to the current row.
+    private static class StreamingRowEntries extends AbstractSet<Map.Entry<String,Object>> {
+
+        public StreamingRowEntries(StreamingRowMap map) {
+            this.map = map;
+        }
+
+        private StreamingRowMap map;
+
+        @Override
+        public Iterator<Map.Entry<String,Object>> iterator() {
+            return (new Iterator<Map.Entry<String,Object>>() {
+
+                private int column = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return (column < map.names.length);
+                }
+
+                @Override
+                public Map.Entry<String,Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final int current = ++column;
+                    return (new AbstractMap.SimpleEntry<String,Object>(map.names[current - 1], null) {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        public Object getValue() {
+                            return (map.getColumn(current));
+                        }
+
+                        @Override
+                        public Object setValue(Object value) {
+                            return (map.putColumn(current, value));
+                        }
+
+                    });
+                }
+
+                // Removing entries is not allowed
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+            });
+        }
+
+        @Override
+        public int size() {
+            return (map.names.length);
+        }
+
+    }
+
+
     // Private implementation of Set that implements the entrySet() behavior
     // for ResultSetMap
     private static class ResultSetEntries extends AbstractSet<Map.Entry<String,Object>> {
@@ -1393,6 +1393,10 @@ if (!((jsf && jsf.specversion && jsf.specversion >= 23000 ) &&
             var state = (typeof firstChild.wholeText !== 'undefined') ? firstChild.wholeText : firstChild.nodeValue;
             var formsToUpdate = getFormsToUpdate(context);
 
+            if (hiddenStateFieldName === "javax.faces.ViewState") {
+                state = mergeIncrementalState(state, context.submittedViewState);
+            }
+
             for (var i = 0; i < formsToUpdate.length; i++) {
                 var formToUpdate = formsToUpdate[i];
                 var field = getHiddenStateField(formToUpdate, hiddenStateFieldName, context.namingContainerPrefix);
@@ -1406,6 +1410,39 @@ if (!((jsf && jsf.specversion && jsf.specversion >= 23000 ) &&
             }
         }
 
+        /**
+         * Replace the chunk references of an incremental view state (written as
+         * <code>digest=*</code>) with the chunks of the view state that was submitted.
+         * Any other view state is returned as is.
+         *
+         * @param state The view state of the partial response.
+         * @param submittedState The view state submitted with the request.
+         * @ignore
+         */
+        var mergeIncrementalState = function mergeIncrementalState(state, submittedState) {
+            if (state.indexOf("I|") !== 0 || state.indexOf("=*") === -1) {
+                return state;
+            }
+
+            var chunks = {};
+            if (submittedState && submittedState.indexOf("I|") === 0) {
+                var submitted = submittedState.split("|");
+                for (var i = 2; i < submitted.length; i++) {
+                    var sep = submitted[i].indexOf("=");
+                    chunks[submitted[i].substring(0, sep)] = submitted[i].substring(sep + 1);
+                }
+            }
+
+            var segments = state.split("|");
+            for (var j = 2; j < segments.length; j++) {
+                var digest = segments[j].substring(0, segments[j].indexOf("="));
+                if (segments[j] === digest + "=*" && chunks.hasOwnProperty(digest)) {
+                    segments[j] = digest + "=" + chunks[digest];
+                }
+            }
+            return segments.join("|");
+        };
+
         /**
          * Find hidden state field for a given form.
          * @param form The form to find hidden state field in.
@@ -2537,6 +2574,7 @@ if (!((jsf && jsf.specversion && jsf.specversion >= 23000 ) &&
                 
                 context.form = form;
                 context.formId = form.id;
+                context.submittedViewState = viewStateElement.value;
                 
                 var viewState = jsf.getViewState(form);
 
@@ -2977,18 +3015,18 @@ if (!((jsf && jsf.specversion && jsf.specversion >= 23000 ) &&
                     }
                 }
 
-                if (responseType.nodeName === "error") { // it's an error
+                var sendServerError = function sendServerError(error) {
                     var errorName = "";
                     var errorMessage = "";
                     
-                    var element = responseType.firstChild;
+                    var element = error.firstChild;
                     if (element.nodeName === "error-name") {
                         if (null != element.firstChild) {
                             errorName = element.firstChild.nodeValue;
                         }
                     }
                     
-                    element = responseType.firstChild.nextSibling;
+                    element = error.firstChild.nextSibling;
                     if (element.nodeName === "error-message") {
                         if (null != element.firstChild) {
                             errorMessage = element.firstChild.nodeValue;
@@ -2996,6 +3034,10 @@ if (!((jsf && jsf.specversion && jsf.specversion >= 23000 ) &&
                     }
                     sendError(request, context, "serverError", null, errorName, errorMessage);
                     sendEvent(request, context, "success");
+                };
+
+                if (responseType.nodeName === "error") { // it's an error
+                    sendServerError(responseType);
                     return;
                 }
 
@@ -3035,6 +3077,11 @@ if (!((jsf && jsf.specversion && jsf.specversion >= 23000 ) &&
                             case "extension":
                                 // no action
                                 break;
+                            case "error":
+                                // reported after the preceding changes have
+                                // been streamed and the response committed
+                                sendServerError(changes[i]);
+                                return;
                             default:
                                 sendError(request, context, "malformedXML", "Changes allowed are: update, delete, insert, attributes, eval, extension.  Received " + changes[i].nodeName + " instead.");
                                 return;
@@ -3374,13 +3421,18 @@ if (!((jsf && jsf.specversion && jsf.specversion >= 23000 ) &&
                 }
 
                 socket.onmessage = function(event) {
-                    var message = JSON.parse(event.data).data;
-                    onmessage(message, channel, event);
-                    var functions = behaviors[message];
+                    var json = JSON.parse(event.data);
+                    var messages = json.batch || [json.data];
 
-                    if (functions && functions.length) {
-                        for (var i = 0; i < functions.length; i++) {
-                            functions[i]();
+                    for (var m = 0; m < messages.length; m++) {
+                        var message = messages[m];
+                        onmessage(message, channel, event);
+                        var functions = behaviors[message];
+
+                        if (functions && functions.length) {
+                            for (var i = 0; i < functions.length; i++) {
+                                functions[i]();
+                            }
                         }
                     }
                 }
@@ -7,6 +7,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class ResourceCacheTest {
@@ -23,4 +24,44 @@ public class ResourceCacheTest {
         assertThat(cachedResourceInfo, is(resourceInfo));
     }
 
+    @Test
+    public void missingResourcesAreRemembered() {
+        ResourceCache cache = new ResourceCache(-1L, 100L, 60L);
+        List<String> contracts = new ArrayList<>();
+        assertThat(cache.lookup("missing.js", "lib", null, contracts), is(nullValue()));
+        assertThat(cache.getMissCount(), is(1L));
+        cache.addMissing("missing.js", "lib", null, contracts);
+        assertThat(cache.lookup("missing.js", "lib", null, contracts).isMissing(), is(true));
+        assertThat(cache.get("missing.js", "lib", null, contracts), is(nullValue()));
+        assertThat(cache.getMissingResourceHitCount(), is(2L));
+        assertThat(cache.getMissCount(), is(1L));
+
+        // the resource appears later on
+        ResourceInfo resourceInfo = new ResourceInfo(null, "missing.js", null, null);
+        resourceInfo.libraryName = "lib";
+        cache.add(resourceInfo, contracts);
+        assertThat(cache.lookup("missing.js", "lib", null, contracts).getInfo(), is(resourceInfo));
+        assertThat(cache.get("missing.js", "lib", null, contracts), is(resourceInfo));
+        assertThat(cache.getHitCount(), is(2L));
+    }
+
+    @Test
+    public void missingResourcesAreNotRememberedWhenDisabled() {
+        ResourceCache cache = new ResourceCache(-1L, 100L, 0L);
+        cache.addMissing("missing.js", null, null, null);
+        assertThat(cache.lookup("missing.js", null, null, null), is(nullValue()));
+    }
+
+    @Test
+    public void sizeIsBounded() {
+        ResourceCache cache = new ResourceCache(-1L, 10L, 60L);
+        List<String> contracts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            cache.add(new ResourceInfo(null, "r" + i + ".js", null, null), contracts);
+            cache.addMissing("m" + i + ".js", null, null, contracts);
+        }
+        assertThat(cache.size() <= 10, is(true));
+        assertThat(cache.getEvictionCount() >= 190L, is(true));
+    }
+
 }
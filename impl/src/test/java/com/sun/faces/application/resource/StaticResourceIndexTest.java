@@ -0,0 +1,69 @@
+package com.sun.faces.application.resource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StaticResourceIndexTest {
+
+    private static final byte[] CONTENT = { 1, 2, 3 };
+    private static final byte[] GZIP = { 4 };
+    private static final byte[] DEFLATE = { 5 };
+
+    private final StaticResourceIndex.Entry entry =
+            new StaticResourceIndex.Entry(CONTENT, GZIP, DEFLATE, "\"abc\"", 0L);
+
+    @Test
+    public void selectsGzipWhenAccepted() {
+        assertEquals("gzip", entry.selectEncoding("gzip, deflate, br"));
+        assertEquals(GZIP, entry.getContent("gzip"));
+    }
+
+    @Test
+    public void selectsDeflateWhenGzipRefused() {
+        assertEquals("deflate", entry.selectEncoding("gzip;q=0, deflate"));
+        assertEquals("deflate", entry.selectEncoding("gzip; q=0.0, *"));
+        assertEquals(DEFLATE, entry.getContent("deflate"));
+    }
+
+    @Test
+    public void selectsIdentityWhenNothingAcceptable() {
+        assertNull(entry.selectEncoding(null));
+        assertNull(entry.selectEncoding("identity"));
+        assertNull(entry.selectEncoding("*;q=0"));
+        assertEquals(CONTENT, entry.getContent(null));
+    }
+
+    @Test
+    public void selectsIdentityWithoutEncodedVariants() {
+        StaticResourceIndex.Entry plain = new StaticResourceIndex.Entry(CONTENT, null, null, "\"abc\"", 0L);
+        assertFalse(plain.hasEncodedVariants());
+        assertNull(plain.selectEncoding("gzip, deflate"));
+    }
+
+    @Test
+    public void matchesETags() {
+        assertTrue(entry.matches("\"abc\""));
+        assertTrue(entry.matches("\"xyz\", W/\"abc\""));
+        assertTrue(entry.matches("*"));
+        assertFalse(entry.matches("\"xyz\""));
+    }
+
+    @Test
+    public void usesETagPerEncoding() {
+        assertEquals("\"abc\"", entry.getETag(null));
+        assertEquals("\"abc-gzip\"", entry.getETag("gzip"));
+        assertEquals("\"abc-deflate\"", entry.getETag("deflate"));
+        assertTrue(entry.matches("\"abc-gzip\""));
+        assertTrue(entry.matches("W/\"abc-deflate\""));
+        assertFalse(entry.matches("\"abc-br\""));
+
+        StaticResourceIndex.Entry plain = new StaticResourceIndex.Entry(CONTENT, null, null, "\"abc\"", 0L);
+        assertEquals("\"abc\"", plain.getETag("gzip"));
+        assertFalse(plain.matches("\"abc-gzip\""));
+    }
+
+}
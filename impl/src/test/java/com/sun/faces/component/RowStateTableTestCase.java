@@ -0,0 +1,188 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+public class RowStateTableTestCase extends TestCase {
+
+    public void testDefaultRowsAreNotStored() {
+        RowStateTable table = new RowStateTable();
+
+        saveRow(table, 0, null, null, 0);
+        assertTrue(table.isEmpty());
+        assertFalse(table.beginRestore(0));
+        assertFalse(table.restore("a"));
+        assertFalse(table.restore("b"));
+    }
+
+    public void testSaveAndRestore() {
+        RowStateTable table = new RowStateTable();
+
+        saveRow(table, 5, "five", null, RowStateTable.LOCAL_VALUE_SET);
+        saveRow(table, 1, null, "one", RowStateTable.INVALID);
+        saveRow(table, 3, null, null, 0);
+        assertFalse(table.isEmpty());
+
+        assertTrue(table.beginRestore(5));
+        assertTrue(table.restore("a"));
+        assertEquals("five", table.getValue());
+        assertNull(table.getSubmittedValue());
+        assertEquals(RowStateTable.LOCAL_VALUE_SET, table.getFlags());
+        assertTrue(table.restore("b"));
+        assertEquals("b5", table.getValue());
+
+        assertTrue(table.beginRestore(1));
+        assertTrue(table.restore("a"));
+        assertEquals("one", table.getSubmittedValue());
+        assertEquals(RowStateTable.INVALID, table.getFlags());
+
+        assertFalse(table.beginRestore(3));
+        assertFalse(table.restore("a"));
+    }
+
+    public void testRevertedRowIsRemoved() {
+        RowStateTable table = new RowStateTable();
+
+        saveRow(table, 2, "edited", null, RowStateTable.LOCAL_VALUE_SET);
+        assertTrue(table.beginRestore(2));
+
+        table.beginRow();
+        table.save("a", null, null, 0);
+        table.save("b", null, null, 0);
+        assertTrue(table.endRow(2));
+        assertTrue(table.isEmpty());
+        assertFalse(table.beginRestore(2));
+
+        saveRow(table, 4, "x", null, 0);
+        table.removeRow(4);
+        assertTrue(table.isEmpty());
+    }
+
+    public void testInitialRow() {
+        RowStateTable initial = new RowStateTable();
+        initial.beginRow();
+        initial.save("a", "skeleton", null, RowStateTable.LOCAL_VALUE_SET);
+        initial.endInitialRow();
+
+        RowStateTable table = new RowStateTable(initial);
+        table.beginRow();
+        table.save("a", "skeleton", null, RowStateTable.LOCAL_VALUE_SET);
+        assertFalse(table.endRow(0));
+        assertTrue(table.isEmpty());
+
+        // rows which were not saved are restored to the initial row
+        assertFalse(table.beginRestore(0));
+        assertTrue(table.restore("a"));
+        assertEquals("skeleton", table.getValue());
+
+        table.beginRow();
+        table.save("a", null, null, 0);
+        assertTrue(table.endRow(1));
+        assertTrue(table.beginRestore(1));
+        assertTrue(table.restore("a"));
+        assertNull(table.getValue());
+    }
+
+    public void testChangedTreeDiscardsRows() {
+        RowStateTable table = new RowStateTable();
+
+        saveRow(table, 0, "zero", null, 0);
+        table.beginRow();
+        table.save("a", "one", null, 0);
+        table.save("c", "c1", null, 0);
+        assertTrue(table.endRow(1));
+
+        assertFalse(table.beginRestore(0));
+        assertTrue(table.beginRestore(1));
+        assertTrue(table.restore("a"));
+        assertFalse(table.restore("b"));
+    }
+
+    public void testManyRows() {
+        RowStateTable table = new RowStateTable();
+
+        for (int row = 999; row >= 0; row -= 2) {
+            saveRow(table, row, "v" + row, null, 0);
+        }
+        for (int row = 0; row < 1000; row++) {
+            assertEquals(row % 2 == 1, table.beginRestore(row));
+        }
+        assertTrue(table.beginRestore(501));
+        assertTrue(table.restore("a"));
+        assertEquals("v501", table.getValue());
+    }
+
+    public void testSerializable() throws Exception {
+        RowStateTable table = new RowStateTable();
+        saveRow(table, 7, "seven", null, RowStateTable.LOCAL_VALUE_SET);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(table);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            table = (RowStateTable) input.readObject();
+        }
+
+        assertTrue(table.beginRestore(7));
+        assertTrue(table.restore("a"));
+        assertEquals("seven", table.getValue());
+
+        saveRow(table, 8, "eight", null, 0);
+        assertTrue(table.beginRestore(8));
+    }
+
+    // Saves a row of two descendants "a" and "b", where "b" has a local value only if "a" has state
+    private static void saveRow(RowStateTable table, int row, Object value, Object submittedValue, int flags) {
+        table.beginRow();
+        table.save("a", value, submittedValue, flags);
+        boolean pristine = value == null && submittedValue == null && flags == 0;
+        table.save("b", pristine ? null : "b" + row, null, 0);
+        table.endRow(row);
+    }
+
+}
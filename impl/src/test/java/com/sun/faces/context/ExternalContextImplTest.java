@@ -39,6 +39,10 @@
  */
 package com.sun.faces.context;
 
+import com.sun.faces.io.Utf8OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -46,10 +50,12 @@ import java.util.Map.Entry;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 import static org.easymock.EasyMock.expect;
@@ -203,6 +209,77 @@ public class ExternalContextImplTest {
         verifySupplier(() -> requestCookieMap.remove("foo"));
     }
 
+    /**
+     * Test getResponseOutputWriter method (direct byte writing onto the
+     * output stream of a UTF-8 response).
+     */
+    @Test
+    public void testGetResponseOutputWriterDirectBytes() throws Exception {
+        ServletOutputStream out = PowerMock.createNiceMock(ServletOutputStream.class);
+        HttpServletResponse response = PowerMock.createNiceMock(HttpServletResponse.class);
+        expect(response.getCharacterEncoding()).andReturn("UTF-8").anyTimes();
+        expect(response.getOutputStream()).andReturn(out).once();
+        ExternalContextImpl externalContext = createDirectByteContext(response, out);
+
+        Writer writer = externalContext.getResponseOutputWriter();
+        assertTrue(writer instanceof Utf8OutputStreamWriter);
+        assertSame(writer, externalContext.getResponseOutputWriter());
+        verify(response);
+    }
+
+    /**
+     * Test getResponseOutputWriter method (the response writer is used if
+     * the output stream is not available).
+     */
+    @Test
+    public void testGetResponseOutputWriterFallback() throws Exception {
+        for (RuntimeException e : new RuntimeException[] {
+            new IllegalStateException(), new UnsupportedOperationException() }) {
+            PrintWriter printWriter = new PrintWriter(new StringWriter());
+            HttpServletResponse response = PowerMock.createNiceMock(HttpServletResponse.class);
+            expect(response.getCharacterEncoding()).andReturn("UTF-8").anyTimes();
+            expect(response.getOutputStream()).andThrow(e).once();
+            expect(response.getWriter()).andReturn(printWriter).once();
+            ExternalContextImpl externalContext = createDirectByteContext(response);
+
+            assertSame(printWriter, externalContext.getResponseOutputWriter());
+            verify(response);
+        }
+    }
+
+    /**
+     * Test getResponseOutputWriter method (the response writer is used if
+     * the response is not UTF-8).
+     */
+    @Test
+    public void testGetResponseOutputWriterNotUtf8() throws Exception {
+        PrintWriter printWriter = new PrintWriter(new StringWriter());
+        HttpServletResponse response = PowerMock.createNiceMock(HttpServletResponse.class);
+        expect(response.getCharacterEncoding()).andReturn("ISO-8859-1").anyTimes();
+        expect(response.getWriter()).andReturn(printWriter).once();
+        ExternalContextImpl externalContext = createDirectByteContext(response);
+
+        assertSame(printWriter, externalContext.getResponseOutputWriter());
+        verify(response);
+    }
+
+    /**
+     * Create an external context with direct byte writing enabled.
+     *
+     * @param response the response, to be replayed.
+     * @param mocks other mocks to be replayed.
+     * @return the external context.
+     */
+    private ExternalContextImpl createDirectByteContext(HttpServletResponse response, Object... mocks) {
+        ServletContext servletContext = PowerMock.createNiceMock(ServletContext.class);
+        HttpServletRequest request = PowerMock.createNiceMock(HttpServletRequest.class);
+        expect(servletContext.getInitParameter(ContextParam.DirectByteResponseWriting.getName()))
+              .andReturn("true").anyTimes();
+        replay(servletContext, request, response);
+        replay(mocks);
+        return new ExternalContextImpl(servletContext, request, response);
+    }
+
     /**
      * Verify that the passed consumer throws an UnsupportedOperationException.
      *
@@ -0,0 +1,247 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.faces.FacesException;
+import javax.faces.application.ProjectStage;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.faces.context.PartialResponseWriter;
+import javax.faces.render.RenderKit;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.easymock.PowerMock;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.mock.MockServletContext;
+import com.sun.faces.renderkit.html_basic.HtmlResponseWriter;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the streaming partial response of the
+ * PartialViewContextImpl class.
+ */
+public class PartialViewContextImplStreamingTest {
+
+    private final StringWriter out = new StringWriter();
+    private final MockServletContext servletContext = new MockServletContext();
+    private boolean committed;
+    private int flushes;
+
+    @Before
+    public void setUp() {
+        servletContext.addInitParameter("com.sun.faces.enableStreamingPartialResponse", "true");
+    }
+
+    /**
+     * Test that every completed change is flushed to the client.
+     */
+    @Test
+    public void testFlushesEachChange() throws Exception {
+        FacesContext context = createFacesContext();
+        PartialResponseWriter writer = context.getPartialViewContext().getPartialResponseWriter();
+
+        writer.startDocument();
+        writer.startUpdate("a");
+        writer.write("<div id=\"a\">a</div>");
+        writer.endUpdate();
+        assertEquals(1, flushes);
+        assertTrue(out.toString().endsWith("</update>"));
+        writer.startEval();
+        writer.write("alert('b');");
+        writer.endEval();
+        assertEquals(2, flushes);
+        writer.endDocument();
+
+        Element changes = getChanges(parse());
+        assertEquals(2, changes.getChildNodes().getLength());
+        assertEquals("update", changes.getFirstChild().getNodeName());
+        assertEquals("eval", changes.getLastChild().getNodeName());
+    }
+
+    /**
+     * Test that nothing is flushed unless streaming is enabled.
+     */
+    @Test
+    public void testDoesNotFlushByDefault() throws Exception {
+        servletContext.addInitParameter("com.sun.faces.enableStreamingPartialResponse", "false");
+        FacesContext context = createFacesContext();
+        PartialResponseWriter writer = context.getPartialViewContext().getPartialResponseWriter();
+
+        writer.startDocument();
+        writer.startUpdate("a");
+        writer.write("a");
+        writer.endUpdate();
+        writer.endDocument();
+
+        assertEquals(0, flushes);
+        assertEquals(1, getChanges(parse()).getChildNodes().getLength());
+    }
+
+    /**
+     * Test that an error reported once the response has been committed is
+     * written into the current changes, closing the change being rendered.
+     */
+    @Test
+    public void testErrorAfterCommitIsWrittenIntoChanges() throws Exception {
+        FacesContext context = createFacesContext();
+        PartialResponseWriter writer = context.getPartialViewContext().getPartialResponseWriter();
+
+        writer.startDocument();
+        writer.startUpdate("a");
+        writer.write("a");
+        writer.endUpdate();
+        writer.startUpdate("b");
+        writer.write("<div id=\"b\"><span");
+        AjaxExceptionHandlerImpl.handlePartialResponseError(context, new FacesException("boom"));
+
+        Document document = parse();
+        assertEquals(1, document.getElementsByTagName("partial-response").getLength());
+        Element changes = getChanges(document);
+        NodeList children = changes.getChildNodes();
+        assertEquals(3, children.getLength());
+        assertEquals("update", children.item(0).getNodeName());
+        assertEquals("update", children.item(1).getNodeName());
+        assertEquals("<div id=\"b\"><span", children.item(1).getTextContent());
+        Element error = (Element) children.item(2);
+        assertEquals("error", error.getNodeName());
+        assertEquals(FacesException.class.toString(),
+                     error.getElementsByTagName("error-name").item(0).getTextContent());
+        assertEquals("boom",
+                     error.getElementsByTagName("error-message").item(0).getTextContent());
+    }
+
+    /**
+     * Test that an error reported after the changes of a committed response
+     * have been completed doesn't leave an element open.
+     */
+    @Test
+    public void testErrorAfterCompletedChangeIsWrittenIntoChanges() throws Exception {
+        FacesContext context = createFacesContext();
+        PartialResponseWriter writer = context.getPartialViewContext().getPartialResponseWriter();
+
+        writer.startDocument();
+        writer.startExtension(null);
+        writer.endExtension();
+        AjaxExceptionHandlerImpl.handlePartialResponseError(context, new FacesException("boom"));
+
+        NodeList children = getChanges(parse()).getChildNodes();
+        assertEquals(2, children.getLength());
+        assertEquals("extension", children.item(0).getNodeName());
+        assertEquals("error", children.item(1).getNodeName());
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private FacesContext createFacesContext() throws Exception {
+        ExternalContext externalContext = PowerMock.createNiceMock(ExternalContext.class);
+        expect(externalContext.getContext()).andReturn(servletContext).anyTimes();
+        expect(externalContext.getApplicationMap()).andReturn(new HashMap<String, Object>()).anyTimes();
+        expect(externalContext.getRequestCharacterEncoding()).andReturn("UTF-8").anyTimes();
+        expect(externalContext.getResponseOutputWriter()).andReturn(out).anyTimes();
+        expect(externalContext.isResponseCommitted()).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+                return committed;
+            }
+        }).anyTimes();
+        externalContext.responseFlushBuffer();
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() {
+                committed = true;
+                flushes++;
+                return null;
+            }
+        }).anyTimes();
+
+        RenderKit renderKit = PowerMock.createNiceMock(RenderKit.class);
+        expect(renderKit.createResponseWriter(anyObject(Writer.class), anyString(), anyString()))
+              .andReturn(new HtmlResponseWriter(out, "text/xml", "UTF-8", false, false,
+                                                WebConfiguration.DisableUnicodeEscaping.False, true))
+              .anyTimes();
+
+        FacesContext context = PowerMock.createNiceMock(FacesContext.class);
+        final PartialViewContextImpl partialViewContext = new PartialViewContextImpl(context);
+        expect(context.getExternalContext()).andReturn(externalContext).anyTimes();
+        expect(context.getViewRoot()).andReturn(new UIViewRoot()).anyTimes();
+        expect(context.getRenderKit()).andReturn(renderKit).anyTimes();
+        expect(context.getPartialViewContext()).andReturn(partialViewContext).anyTimes();
+        expect(context.isProjectStage(ProjectStage.Production)).andReturn(false).anyTimes();
+        replay(externalContext, renderKit, context);
+        return context;
+    }
+
+
+    private Document parse() throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+              .parse(new ByteArrayInputStream(out.toString().getBytes("UTF-8")));
+    }
+
+
+    private static Element getChanges(Document document) {
+        NodeList changes = document.getElementsByTagName("changes");
+        assertEquals(1, changes.getLength());
+        return (Element) changes.item(0);
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.facelets.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>Tests {@link CompiledFaceletStore}.</p>
+ */
+public class CompiledFaceletStoreTestCase extends TestCase {
+
+    private static final String KEY = "UTF-8,false,false";
+    private static final byte[] CONTENT = "<html/>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RECORDING = { 1, 2, 3, 4, 5 };
+
+    private File directory;
+    private CompiledFaceletStore store;
+    private URL src;
+
+
+    public CompiledFaceletStoreTestCase() {
+        super("CompiledFaceletStoreTestCase");
+    }
+
+    public CompiledFaceletStoreTestCase(String name) {
+        super(name);
+    }
+
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("fcache").toFile();
+        store = new CompiledFaceletStore(new File(directory, "store"));
+        src = new File(directory, "test.xhtml").toURI().toURL();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        delete(directory);
+        super.tearDown();
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testCreatesDirectory() {
+        assertTrue(store.getDirectory().isDirectory());
+    }
+
+    public void testStoreAndLoad() {
+        assertNull(store.load(src, KEY, CONTENT));
+        store.store(src, KEY, CONTENT, RECORDING);
+        assertTrue(Arrays.equals(RECORDING, store.load(src, KEY, CONTENT)));
+    }
+
+    public void testStaleDigest() {
+        store.store(src, KEY, CONTENT, RECORDING);
+        byte[] changed = "<html></html>".getBytes(StandardCharsets.UTF_8);
+        assertNull(store.load(src, KEY, changed));
+
+        store.store(src, KEY, changed, new byte[] { 6 });
+        assertNull(store.load(src, KEY, CONTENT));
+        assertTrue(Arrays.equals(new byte[] { 6 }, store.load(src, KEY, changed)));
+        assertEquals(1, entries().length);
+    }
+
+    public void testKeyedBySettings() throws Exception {
+        store.store(src, KEY, CONTENT, RECORDING);
+        assertNull(store.load(src, "ISO-8859-1,false,false", CONTENT));
+        assertNull(store.load(new File(directory, "other.xhtml").toURI().toURL(), KEY, CONTENT));
+    }
+
+    public void testTruncatedEntry() throws Exception {
+        store.store(src, KEY, CONTENT, RECORDING);
+        File[] entries = entries();
+        assertEquals(1, entries.length);
+        try (RandomAccessFile file = new RandomAccessFile(entries[0], "rw")) {
+            file.setLength(file.length() - 2);
+        }
+        assertNull(store.load(src, KEY, CONTENT));
+    }
+
+    public void testCorruptLength() throws Exception {
+        for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+            store.store(src, KEY, CONTENT, RECORDING);
+            try (RandomAccessFile file = new RandomAccessFile(entries()[0], "rw")) {
+                file.seek(file.length() - RECORDING.length - 4);
+                file.writeInt(length);
+            }
+            assertNull(store.load(src, KEY, CONTENT));
+        }
+    }
+
+    public void testForeignFile() throws Exception {
+        store.store(src, KEY, CONTENT, RECORDING);
+        Files.write(entries()[0].toPath(), "not a compiled facelet".getBytes(StandardCharsets.UTF_8));
+        assertNull(store.load(src, KEY, CONTENT));
+    }
+
+    public void testRemove() {
+        store.store(src, KEY, CONTENT, RECORDING);
+        store.remove(src, KEY);
+        assertNull(store.load(src, KEY, CONTENT));
+        assertEquals(0, entries().length);
+    }
+
+    public void testNoTemporaryFilesLeft() {
+        store.store(src, KEY, CONTENT, RECORDING);
+        store.store(src, KEY, CONTENT, RECORDING);
+        assertEquals(1, store.getDirectory().listFiles().length);
+    }
+
+    public void testReadSource() throws Exception {
+        Files.write(new File(src.toURI()).toPath(), CONTENT);
+        assertTrue(Arrays.equals(CONTENT, CompiledFaceletStore.readSource(src)));
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private File[] entries() {
+        return store.getDirectory().listFiles((dir, name) -> name.endsWith(".fcache"));
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.facelets.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.faces.view.facelets.FaceletHandler;
+
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+import com.sun.faces.util.Util;
+
+/**
+ * <p>Tests the recording and replay of compiled Facelets by {@link SAXCompiler}.</p>
+ */
+public class SAXCompilerTestCase extends JUnitFacesTestCaseBase {
+
+    private static final String ALIAS = "/test.xhtml";
+
+    private static final String DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<!DOCTYPE html>\n"
+          + "<html xmlns=\"http://www.w3.org/1999/xhtml\" xmlns:x=\"urn:test\">\n"
+          + "<!-- a comment -->\n"
+          + "<?php echo 1; ?>\n"
+          + "<head><title>Title</title></head>\n"
+          + "<body>\n"
+          + "  <x:tag x:attr=\"1\"><p class=\"a\">text &amp; more</p></x:tag>\n"
+          + "  <script><![CDATA[ if (a < b) { c(); } ]]></script>\n"
+          + "</body>\n"
+          + "</html>\n";
+
+    private File directory;
+    private File source;
+    private URL src;
+    private CompiledFaceletStore store;
+
+
+    public SAXCompilerTestCase() {
+        super("SAXCompilerTestCase");
+    }
+
+    public SAXCompilerTestCase(String name) {
+        super(name);
+    }
+
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("fcache").toFile();
+        source = new File(directory, "test.xhtml");
+        src = source.toURI().toURL();
+        store = new CompiledFaceletStore(new File(directory, "store"));
+        write(DOCUMENT);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        delete(directory);
+        super.tearDown();
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testCompileRecordsDocument() throws Exception {
+        createCompiler(store).compile(src, ALIAS);
+        assertEquals(1, entries().length);
+    }
+
+    public void testReplayYieldsSameTree() throws Exception {
+        String parsed = dump(createCompiler(null).compile(src, ALIAS));
+        String doctype = Util.getDOCTYPEFromFacesContextAttributes(facesContext);
+        String xmlDecl = Util.getXMLDECLFromFacesContextAttributes(facesContext);
+
+        Compiler compiler = createCompiler(store);
+        facesContext.getAttributes().clear();
+        assertEquals(parsed, dump(compiler.compile(src, ALIAS)));
+        byte[] recorded = Files.readAllBytes(entries()[0].toPath());
+
+        facesContext.getAttributes().clear();
+        assertEquals(parsed, dump(compiler.compile(src, ALIAS)));
+        assertEquals(doctype, Util.getDOCTYPEFromFacesContextAttributes(facesContext));
+        assertEquals(xmlDecl, Util.getXMLDECLFromFacesContextAttributes(facesContext));
+
+        // the replay didn't rewrite the entry
+        assertTrue(Arrays.equals(recorded, Files.readAllBytes(entries()[0].toPath())));
+    }
+
+    public void testReplayYieldsSameMetadataTree() throws Exception {
+        String parsed = dump(createCompiler(null).metadataCompile(src, ALIAS));
+
+        Compiler compiler = createCompiler(store);
+        compiler.compile(src, ALIAS);
+        assertEquals(parsed, dump(compiler.metadataCompile(src, ALIAS)));
+    }
+
+    public void testStaleDigestForcesRecompile() throws Exception {
+        Compiler compiler = createCompiler(store);
+        compiler.compile(src, ALIAS);
+
+        String changed = DOCUMENT.replace("text &amp; more", "changed text");
+        write(changed);
+        String parsed = dump(createCompiler(null).compile(src, ALIAS));
+        assertEquals(parsed, dump(compiler.compile(src, ALIAS)));
+        assertEquals(parsed, dump(compiler.compile(src, ALIAS)));
+        assertEquals(1, entries().length);
+    }
+
+    public void testCorruptEntryIsRemoved() throws Exception {
+        Compiler compiler = createCompiler(store);
+        String parsed = dump(compiler.compile(src, ALIAS));
+        try (RandomAccessFile file = new RandomAccessFile(entries()[0], "rw")) {
+            // replace the end marker of the recording with an unknown event
+            file.seek(file.length() - 1);
+            file.write(99);
+        }
+
+        try {
+            compiler.compile(src, ALIAS);
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // expected
+        }
+        assertEquals(0, entries().length);
+
+        assertEquals(parsed, dump(compiler.compile(src, ALIAS)));
+        assertEquals(1, entries().length);
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static Compiler createCompiler(CompiledFaceletStore store) {
+        Compiler compiler = new SAXCompiler();
+        compiler.setCompiledFaceletStore(store);
+        return compiler;
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(source.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private File[] entries() {
+        return store.getDirectory().listFiles((dir, name) -> name.endsWith(".fcache"));
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Describes the handler tree including tags, attributes, locations and
+     * the text of instructions.
+     */
+    private static String dump(FaceletHandler handler) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        dump(handler, sb, new IdentityHashMap<>());
+        return sb.toString();
+    }
+
+    private static void dump(Object value, StringBuilder sb, Map<Object,Object> seen)
+    throws Exception {
+
+        if (value == null || value instanceof CharSequence || value instanceof Number
+              || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+            sb.append(value);
+        } else if (value instanceof Object[]) {
+            sb.append('[');
+            for (Object element : (Object[]) value) {
+                dump(element, sb, seen);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else if (value instanceof Iterable) {
+            sb.append('[');
+            for (Object element : (Iterable<?>) value) {
+                dump(element, sb, seen);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else if (isFaceletsClass(value.getClass())) {
+            if (seen.put(value, value) != null) {
+                sb.append('^').append(value.getClass().getSimpleName());
+                return;
+            }
+            sb.append(value.getClass().getSimpleName()).append('{');
+            for (Class<?> c = value.getClass(); c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())
+                          || CompilationMessageHolder.class.isAssignableFrom(field.getType())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    sb.append(field.getName()).append('=');
+                    dump(field.get(value), sb, seen);
+                    sb.append(';');
+                }
+            }
+            sb.append('}');
+        } else {
+            sb.append(value.getClass().getName());
+        }
+
+    }
+
+    private static boolean isFaceletsClass(Class<?> c) {
+        String name = c.getName();
+        return name.startsWith("com.sun.faces.facelets.") || name.startsWith("javax.faces.view.facelets.");
+    }
+
+}
@@ -0,0 +1,297 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.facelets.compiler;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * <p>Tests that replaying a {@link SAXEventLog} delivers the same events as
+ * parsing the document.</p>
+ */
+public class SAXEventLogTestCase extends TestCase {
+
+    private static final String XML_DECL = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    private static final String DOCUMENT = XML_DECL + "\n"
+          + "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\""
+          + " \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd\">\n"
+          + "<?xml-stylesheet type=\"text/xsl\" href=\"style.xsl\"?>\n"
+          + "<html xmlns=\"http://www.w3.org/1999/xhtml\"\n"
+          + "      xmlns:h=\"http://xmlns.jcp.org/jsf/html\"\n"
+          + "      xmlns:ui=\"http://xmlns.jcp.org/jsf/facelets\">\n"
+          + "<!-- a comment -->\n"
+          + "<h:head><title>Title &amp; more</title></h:head>\n"
+          + "<h:body>\n"
+          + "  <ui:repeat value=\"#{bean.items}\" var=\"item\">\n"
+          + "    <p class=\"item\" ui:type=\"x\">#{item}</p>\n"
+          + "  </ui:repeat>\n"
+          + "  <x:tag xmlns:x=\"urn:test\" x:attr=\"1\"/>\n"
+          + "  <script><![CDATA[ if (a < b) { c(); } ]]></script>\n"
+          + "  <?php echo 1; ?>\n"
+          + "  <p>caf\u00e9 \u2603</p>\n"
+          + "</h:body>\n"
+          + "</html>\n";
+
+
+    public SAXEventLogTestCase() {
+        super("SAXEventLogTestCase");
+    }
+
+    public SAXEventLogTestCase(String name) {
+        super(name);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testReplayMatchesParse() throws Exception {
+        assertReplayMatchesParse(DOCUMENT, XML_DECL);
+    }
+
+    public void testReplayWithoutXmlDeclaration() throws Exception {
+        assertReplayMatchesParse("<!DOCTYPE html>\n<html><body><p>text</p><p>text</p></body></html>",
+                                 null);
+    }
+
+    public void testReplayKeepsLocations() throws Exception {
+        Trace parsed = new Trace();
+        byte[] recording = record(DOCUMENT, XML_DECL, parsed);
+        Trace replayed = new Trace();
+        SAXEventLog.replay(recording, replayed);
+
+        for (int i = 0; i < parsed.events.size(); i++) {
+            if (parsed.events.get(i).startsWith("startElement(urn:test")) {
+                assertTrue(replayed.events.get(i), replayed.events.get(i).contains(")@13:"));
+                return;
+            }
+        }
+        fail("element not found");
+    }
+
+    public void testUnknownEventFails() throws Exception {
+        byte[] recording = record(DOCUMENT, XML_DECL, new Trace());
+        recording[recording.length - 1] = 99;
+        try {
+            SAXEventLog.replay(recording, new Trace());
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    public void testTruncatedRecordingFails() throws Exception {
+        byte[] recording = record(DOCUMENT, XML_DECL, new Trace());
+        byte[] truncated = new byte[recording.length / 2];
+        System.arraycopy(recording, 0, truncated, 0, truncated.length);
+        try {
+            SAXEventLog.replay(truncated, new Trace());
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static void assertReplayMatchesParse(String document, String xmlDecl)
+    throws Exception {
+
+        Trace parsed = new Trace();
+        byte[] recording = record(document, xmlDecl, parsed);
+        Trace replayed = new Trace();
+        assertEquals(xmlDecl, SAXEventLog.replay(recording, replayed));
+        assertEquals(parsed.events, replayed.events);
+
+    }
+
+
+    private static byte[] record(String document, String xmlDecl, Trace trace)
+    throws Exception {
+
+        SAXEventLog.Recorder<Trace> recorder = new SAXEventLog.Recorder<>(trace, xmlDecl);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        SAXParser parser = factory.newSAXParser();
+        XMLReader reader = parser.getXMLReader();
+        reader.setProperty("http://xml.org/sax/properties/lexical-handler", recorder);
+        reader.setEntityResolver(recorder);
+        parser.parse(new InputSource(new StringReader(document)), recorder);
+        assertFalse(trace.events.isEmpty());
+        return recorder.toByteArray();
+
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * Records the events relevant to the <code>CompilationHandler</code>,
+     * including the location of elements.
+     */
+    private static final class Trace extends DefaultHandler implements LexicalHandler {
+
+        private final List<String> events = new ArrayList<>();
+        private Locator locator;
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+        }
+
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) {
+            // don't fetch the DTD
+            return new InputSource(new StringReader(""));
+        }
+
+        @Override
+        public void startDocument() {
+            events.add("startDocument");
+        }
+
+        @Override
+        public void endDocument() {
+            events.add("endDocument");
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            StringBuilder sb = new StringBuilder("startElement(");
+            sb.append(uri).append(',').append(localName).append(',').append(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                sb.append(',').append(attributes.getURI(i))
+                  .append(' ').append(attributes.getLocalName(i))
+                  .append(' ').append(attributes.getQName(i))
+                  .append('=').append(attributes.getValue(i));
+            }
+            events.add(sb.append(')').append(location()).toString());
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.add("endElement(" + uri + ',' + localName + ',' + qName + ')' + location());
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            events.add("startPrefixMapping(" + prefix + ',' + uri + ')');
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) {
+            events.add("endPrefixMapping(" + prefix + ')');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.add("characters(" + new String(ch, start, length) + ')');
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            events.add("ignorableWhitespace(" + new String(ch, start, length) + ')');
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            events.add("processingInstruction(" + target + ',' + data + ')');
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) {
+            events.add("startDTD(" + name + ',' + publicId + ',' + systemId + ')');
+        }
+
+        @Override
+        public void endDTD() {
+            events.add("endDTD");
+        }
+
+        @Override
+        public void startEntity(String name) {
+            // not recorded
+        }
+
+        @Override
+        public void endEntity(String name) {
+            // not recorded
+        }
+
+        @Override
+        public void startCDATA() {
+            events.add("startCDATA");
+        }
+
+        @Override
+        public void endCDATA() {
+            events.add("endCDATA");
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) {
+            events.add("comment(" + new String(ch, start, length) + ')');
+        }
+
+        private String location() {
+            return "@" + locator.getLineNumber() + ':' + locator.getColumnNumber();
+        }
+
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.facelets.component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.faces.component.UICommand;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.FacesContext;
+import javax.faces.event.ActionEvent;
+import javax.faces.event.ActionListener;
+import javax.faces.event.PhaseId;
+
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+
+/**
+ * <p>Tests the broadcasting of events queued within {@link UIRepeat}.</p>
+ */
+public class UIRepeatEventTestCase extends JUnitFacesTestCaseBase {
+
+    public UIRepeatEventTestCase() {
+        super("UIRepeatEventTestCase");
+    }
+
+    public UIRepeatEventTestCase(String name) {
+        super(name);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testEventBroadcastBindsRow() throws Exception {
+        UIViewRoot root = facesContext.getApplication().getViewHandler().createView(facesContext, null);
+        root.setViewId("/viewId");
+        facesContext.setViewRoot(root);
+
+        UIRepeat repeat = new UIRepeat();
+        repeat.setId("repeat");
+        repeat.setVar("item");
+        repeat.setValue(Arrays.asList("row0", "row1", "row2"));
+        UICommand command = new UICommand();
+        command.setId("command");
+        command.setRendererType(null);
+        final List<Object> seen = new ArrayList<>();
+        command.addActionListener(new ActionListener() {
+            @Override
+            public void processAction(ActionEvent event) {
+                seen.add(facesContext.getExternalContext().getRequestMap().get("item"));
+            }
+        });
+        repeat.getChildren().add(command);
+        root.getChildren().add(repeat);
+
+        // Queue the events while positioned on the rows, as decoding does
+        Method setIndex = UIRepeat.class.getDeclaredMethod("setIndex", FacesContext.class, int.class);
+        setIndex.setAccessible(true);
+        setIndex.invoke(repeat, facesContext, 2);
+        command.queueEvent(new ActionEvent(command));
+        setIndex.invoke(repeat, facesContext, 1);
+        command.queueEvent(new ActionEvent(command));
+        setIndex.invoke(repeat, facesContext, -1);
+
+        root.broadcastEvents(facesContext, PhaseId.INVOKE_APPLICATION);
+
+        assertEquals(Arrays.asList("row2", "row1"), seen);
+    }
+
+}
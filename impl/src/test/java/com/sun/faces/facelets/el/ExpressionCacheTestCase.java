@@ -0,0 +1,314 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.facelets.el;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.el.ELResolver;
+import javax.el.ExpressionFactory;
+import javax.el.FunctionMapper;
+import javax.el.MethodExpression;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import javax.faces.component.UIComponent;
+import javax.faces.context.FacesContext;
+import javax.faces.view.facelets.FaceletContext;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>Tests {@link ExpressionCache}.</p>
+ */
+public class ExpressionCacheTestCase extends TestCase {
+
+    private ExpressionFactory factory;
+    private TestFaceletContext ctx;
+
+
+    public ExpressionCacheTestCase() {
+        super("ExpressionCacheTestCase");
+    }
+
+    public ExpressionCacheTestCase(String name) {
+        super(name);
+    }
+
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        factory = ExpressionFactory.newInstance();
+        ctx = new TestFaceletContext(factory);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testReusesExpressionWithoutMappedIdentifiers() {
+        ExpressionCache cache = new ExpressionCache(100);
+
+        ValueExpression first = cache.createValueExpression(factory, ctx, "#{bean.name}", String.class);
+        ValueExpression second = cache.createValueExpression(factory, ctx, "#{bean.name}", String.class);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getSize());
+    }
+
+    public void testKeysByExpectedType() {
+        ExpressionCache cache = new ExpressionCache(100);
+
+        ValueExpression string = cache.createValueExpression(factory, ctx, "#{bean.name}", String.class);
+        ValueExpression object = cache.createValueExpression(factory, ctx, "#{bean.name}", Object.class);
+
+        assertNotSame(string, object);
+        assertEquals(String.class, string.getExpectedType());
+        assertEquals(Object.class, object.getExpectedType());
+        assertEquals(2, cache.getSize());
+    }
+
+    public void testDoesNotCacheExpressionOfMappedVariable() {
+        ExpressionCache cache = new ExpressionCache(100);
+        ctx.getVariableMapper().setVariable("item",
+              factory.createValueExpression("mapped", String.class));
+
+        ValueExpression first = cache.createValueExpression(factory, ctx, "#{item.name}", Object.class);
+        ValueExpression second = cache.createValueExpression(factory, ctx, "#{item.name}", Object.class);
+
+        assertNotSame(first, second);
+        assertEquals(2, cache.getUncacheableCount());
+        assertEquals(0, cache.getSize());
+        // the mappers of the context are restored
+        assertSame(TestVariableMapper.class, ctx.getVariableMapper().getClass());
+        assertSame(TestFunctionMapper.class, ctx.getFunctionMapper().getClass());
+    }
+
+    public void testDoesNotReuseExpressionOnceVariableIsMapped() {
+        ExpressionCache cache = new ExpressionCache(100);
+
+        ValueExpression unmapped = cache.createValueExpression(factory, ctx, "#{item}", Object.class);
+        ctx.getVariableMapper().setVariable("item",
+              factory.createValueExpression("mapped", String.class));
+        ValueExpression mapped = cache.createValueExpression(factory, ctx, "#{item}", Object.class);
+
+        assertNotSame(unmapped, mapped);
+        assertEquals(0, cache.getHitCount());
+        assertEquals("mapped", mapped.getValue(ctx));
+    }
+
+    public void testDoesNotReuseExpressionOnceFunctionIsRemapped() throws Exception {
+        ExpressionCache cache = new ExpressionCache(100);
+        TestFunctionMapper functions = (TestFunctionMapper) ctx.getFunctionMapper();
+        functions.method = ExpressionCacheTestCase.class.getMethod("upper", String.class);
+
+        ValueExpression first = cache.createValueExpression(factory, ctx, "#{fn:f('a')}", String.class);
+        ValueExpression second = cache.createValueExpression(factory, ctx, "#{fn:f('a')}", String.class);
+        assertSame(first, second);
+        assertEquals("A", second.getValue(ctx));
+
+        functions.method = ExpressionCacheTestCase.class.getMethod("lower", String.class);
+        ValueExpression third = cache.createValueExpression(factory, ctx, "#{fn:f('A')}", String.class);
+        ValueExpression fourth = cache.createValueExpression(factory, ctx, "#{fn:f('a')}", String.class);
+        assertNotSame(second, fourth);
+        assertEquals("a", third.getValue(ctx));
+        assertEquals("a", fourth.getValue(ctx));
+    }
+
+    public void testReusesMethodExpressionBySignature() {
+        ExpressionCache cache = new ExpressionCache(100);
+
+        MethodExpression first = cache.createMethodExpression(factory, ctx, "#{bean.action}",
+                                                              String.class, null);
+        MethodExpression second = cache.createMethodExpression(factory, ctx, "#{bean.action}",
+                                                               String.class, new Class<?>[0]);
+        MethodExpression other = cache.createMethodExpression(factory, ctx, "#{bean.action}",
+                                                              String.class, new Class<?>[] { String.class });
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, cache.getSize());
+    }
+
+    public void testEvictsLeastRecentlyUsedEntry() {
+        ExpressionCache cache = new ExpressionCache(2, 1);
+
+        ValueExpression a = cache.createValueExpression(factory, ctx, "#{a}", Object.class);
+        ValueExpression b = cache.createValueExpression(factory, ctx, "#{b}", Object.class);
+        assertSame(a, cache.createValueExpression(factory, ctx, "#{a}", Object.class));
+        cache.createValueExpression(factory, ctx, "#{c}", Object.class);
+
+        assertEquals(2, cache.getSize());
+        assertSame(a, cache.createValueExpression(factory, ctx, "#{a}", Object.class));
+        assertNotSame(b, cache.createValueExpression(factory, ctx, "#{b}", Object.class));
+    }
+
+    public void testSizeIsBounded() {
+        ExpressionCache cache = new ExpressionCache(40);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.createValueExpression(factory, ctx, "#{bean.p" + i + "}", Object.class);
+        }
+
+        assertTrue(cache.getSize() <= 40);
+        assertTrue(cache.getSize() > 0);
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+
+    // ------------------------------------------------------- EL Functions
+
+
+    public static String upper(String value) {
+        return value.toUpperCase();
+    }
+
+    public static String lower(String value) {
+        return value.toLowerCase();
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    private static final class TestVariableMapper extends VariableMapper {
+
+        private final Map<String, ValueExpression> variables = new HashMap<>();
+
+        @Override
+        public ValueExpression resolveVariable(String variable) {
+            return variables.get(variable);
+        }
+
+        @Override
+        public ValueExpression setVariable(String variable, ValueExpression expression) {
+            return variables.put(variable, expression);
+        }
+
+    }
+
+
+    private static final class TestFunctionMapper extends FunctionMapper {
+
+        private Method method;
+
+        @Override
+        public Method resolveFunction(String prefix, String localName) {
+            return ("fn".equals(prefix) && "f".equals(localName)) ? method : null;
+        }
+
+    }
+
+
+    private static final class TestFaceletContext extends FaceletContext {
+
+        private final ExpressionFactory factory;
+        private VariableMapper variableMapper = new TestVariableMapper();
+        private FunctionMapper functionMapper = new TestFunctionMapper();
+
+        TestFaceletContext(ExpressionFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public FacesContext getFacesContext() {
+            return null;
+        }
+
+        @Override
+        public String generateUniqueId(String base) {
+            return base;
+        }
+
+        @Override
+        public ExpressionFactory getExpressionFactory() {
+            return factory;
+        }
+
+        @Override
+        public void setVariableMapper(VariableMapper varMapper) {
+            variableMapper = varMapper;
+        }
+
+        @Override
+        public void setFunctionMapper(FunctionMapper fnMapper) {
+            functionMapper = fnMapper;
+        }
+
+        @Override
+        public VariableMapper getVariableMapper() {
+            return variableMapper;
+        }
+
+        @Override
+        public FunctionMapper getFunctionMapper() {
+            return functionMapper;
+        }
+
+        @Override
+        public ELResolver getELResolver() {
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+
+        @Override
+        public void includeFacelet(UIComponent parent, String relativePath) {
+        }
+
+        @Override
+        public void includeFacelet(UIComponent parent, URL absolutePath) {
+        }
+
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.facelets.impl;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.context.FacesContext;
+import javax.faces.event.PreDestroyApplicationEvent;
+import javax.faces.view.facelets.FaceletCache;
+
+import com.sun.faces.RIConstants;
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+import com.sun.faces.util.Util;
+
+/**
+ * <p>Tests the background refresh of {@link DefaultFaceletCache}.</p>
+ */
+public class DefaultFaceletCacheTestCase extends JUnitFacesTestCaseBase {
+
+    public DefaultFaceletCacheTestCase() {
+        super("DefaultFaceletCacheTestCase");
+    }
+
+    public DefaultFaceletCacheTestCase(String name) {
+        super(name);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testRefreshStoppedOnApplicationDestroy() throws Exception {
+        List<Thread> before = getRefreshThreads();
+        new DefaultFaceletCache(60000, servletContext);
+        List<Thread> started = getRefreshThreads();
+        started.removeAll(before);
+        assertEquals(1, started.size());
+
+        application.publishEvent(facesContext, PreDestroyApplicationEvent.class, application);
+
+        Thread thread = started.get(0);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+    }
+
+    public void testNoRefreshWithoutServletContext() throws Exception {
+        List<Thread> before = getRefreshThreads();
+        new DefaultFaceletCache(60000, null);
+        List<Thread> started = getRefreshThreads();
+        started.removeAll(before);
+        assertTrue(started.isEmpty());
+    }
+
+
+    public void testRefreshUsesIsolatedContext() throws Exception {
+        File first = File.createTempFile("refresh", ".xhtml");
+        File second = File.createTempFile("refresh", ".xhtml");
+        final List<String> seen = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch refreshed = new CountDownLatch(2);
+        DefaultFaceletCache cache = new DefaultFaceletCache(50, servletContext);
+        try {
+            FaceletCache.MemberFactory<DefaultFacelet> factory = url -> {
+                FacesContext context = FacesContext.getCurrentInstance();
+                if (context != facesContext) {
+                    seen.add(context.getExternalContext().getRequestCharacterEncoding() + ","
+                             + Util.getDOCTYPEFromFacesContextAttributes(context) + ","
+                             + servletContext.getAttribute(RIConstants.FACES_PREFIX + "InitFacesContext"));
+                    refreshed.countDown();
+                }
+                // as done by SAXCompiler for a document with a DOCTYPE
+                Util.saveDOCTYPEToFacesContextAttributes("<!DOCTYPE html>");
+                return null;
+            };
+            cache.setCacheFactories(factory, factory);
+
+            URL firstUrl = first.toURI().toURL();
+            URL secondUrl = second.toURI().toURL();
+            cache.getFacelet(firstUrl);
+            cache.getFacelet(secondUrl);
+            first.setLastModified(first.lastModified() + 10000);
+            second.setLastModified(second.lastModified() + 10000);
+
+            assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+            assertEquals(Collections.nCopies(2, facesContext.getExternalContext().getRequestCharacterEncoding()
+                                                + ",null,null"),
+                         seen.subList(0, 2));
+        } finally {
+            application.publishEvent(facesContext, PreDestroyApplicationEvent.class, application);
+            first.delete();
+            second.delete();
+        }
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static List<Thread> getRefreshThreads() {
+        List<Thread> threads = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("Mojarra-FaceletRefresh-")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.facelets.impl;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import javax.faces.FacesException;
+import javax.faces.application.ResourceVisitOption;
+import javax.faces.context.FacesContext;
+import javax.faces.view.facelets.Facelet;
+
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+import com.sun.faces.mock.MockResourceHandler;
+import com.sun.faces.util.Util;
+
+/**
+ * <p>Tests {@link DefaultFaceletFactory#warmup(FacesContext)}.</p>
+ */
+public class DefaultFaceletFactoryTestCase extends JUnitFacesTestCaseBase {
+
+    private final List<String> compiled = new ArrayList<>();
+    private final Map<String, String> docTypes = new HashMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+
+    public DefaultFaceletFactoryTestCase() {
+        super("DefaultFaceletFactoryTestCase");
+    }
+
+    public DefaultFaceletFactoryTestCase(String name) {
+        super(name);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testWarmupCompilesAllViews() {
+        setViews("/index.xhtml", "/sub/page.xhtml");
+        createFactory().warmup(facesContext);
+
+        assertEquals(Arrays.asList("/index.xhtml", "/sub/page.xhtml"), compiled);
+        assertTrue(closed.get());
+    }
+
+    public void testWarmupSkipsBrokenViews() {
+        setViews("/io.xhtml", "/index.xhtml", "/faces.xhtml", "/page.xhtml");
+        createFactory().warmup(facesContext);
+
+        assertEquals(Arrays.asList("/io.xhtml", "/index.xhtml", "/faces.xhtml", "/page.xhtml"),
+                     compiled);
+        assertTrue(closed.get());
+    }
+
+    public void testWarmupWithoutViews() {
+        setViews();
+        createFactory().warmup(facesContext);
+
+        assertTrue(compiled.isEmpty());
+        assertTrue(closed.get());
+    }
+
+
+    public void testWarmupDoesNotLeakDoctype() {
+        Util.saveDOCTYPEToFacesContextAttributes("<!DOCTYPE request>");
+        setViews("/doctype.xhtml", "/plain.xhtml");
+        createFactory().warmup(facesContext);
+
+        assertEquals("<!DOCTYPE html>", docTypes.get("/doctype.xhtml"));
+        assertNull(docTypes.get("/plain.xhtml"));
+        assertNull(Util.getXMLDECLFromFacesContextAttributes(facesContext));
+        assertEquals("<!DOCTYPE request>",
+                     Util.getDOCTYPEFromFacesContextAttributes(facesContext));
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void setViews(final String... views) {
+        application.setResourceHandler(new MockResourceHandler() {
+            @Override
+            public Stream<String> getViewResources(FacesContext facesContext,
+                                                   String path,
+                                                   ResourceVisitOption... options) {
+                assertEquals("/", path);
+                return Stream.of(views).onClose(() -> closed.set(true));
+            }
+        });
+    }
+
+    private DefaultFaceletFactory createFactory() {
+        return new DefaultFaceletFactory() {
+            @Override
+            public Facelet getFacelet(FacesContext context, String uri) throws IOException {
+                compiled.add(uri);
+                if (uri.equals("/doctype.xhtml")) {
+                    // as done by SAXCompiler for a document with a DOCTYPE
+                    Util.saveDOCTYPEToFacesContextAttributes("<!DOCTYPE html>");
+                    Util.saveXMLDECLToFacesContextAttributes("<?xml version='1.0'?>\n");
+                }
+                docTypes.put(uri, Util.getDOCTYPEFromFacesContextAttributes(context));
+                if (uri.equals("/io.xhtml")) {
+                    throw new FileNotFoundException(uri);
+                }
+                if (uri.equals("/faces.xhtml")) {
+                    throw new FacesException(uri);
+                }
+                return null;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Validate that Utf8OutputStreamWriter produces the same bytes as the JDK
+ * encoder.
+ */
+public class TestUtf8OutputStreamWriter extends TestCase {
+
+    // ------------------------------------------------------------ Constructors
+    public TestUtf8OutputStreamWriter() {
+        super("TestUtf8OutputStreamWriter");
+    }
+
+    public TestUtf8OutputStreamWriter(String name) {
+        super(name);
+    }
+
+    // ------------------------------------------------------------ Test Methods
+    public void testAscii() throws IOException {
+        assertEncoded("<div class=\"x\">text</div>");
+    }
+
+    public void testMultiByte() throws IOException {
+        assertEncoded("caf\u00e9 \u20ac \u4e2d\u6587");
+    }
+
+    public void testSurrogatePairs() throws IOException {
+        assertEncoded("smile \ud83d\ude00 and \ud834\udd1e");
+    }
+
+    public void testUnpairedSurrogates() throws IOException {
+        assertEncoded("a\ud83db");
+        assertEncoded("a\ude00b");
+        assertEncoded("end\ud83d");
+    }
+
+    /**
+     * A surrogate pair split across two writes must still be encoded as
+     * a single code point.
+     */
+    public void testSurrogatePairAcrossWrites() throws IOException {
+
+        String text = "x\ud83d\ude00y";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8OutputStreamWriter writer = new Utf8OutputStreamWriter(out);
+        writer.write(text, 0, 2);
+        writer.write(text.toCharArray(), 2, 2);
+        writer.close();
+        assertTrue(Arrays.equals(text.getBytes(StandardCharsets.UTF_8), out.toByteArray()));
+
+    }
+
+    public void testLargerThanScratchBuffer() throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("\u00e9a\u20ac\ud83d\ude00");
+        }
+        assertEncoded(sb.toString());
+
+    }
+
+    public void testEncodedText() throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8OutputStreamWriter writer = new Utf8OutputStreamWriter(out);
+        writer.write("<p>");
+        new EncodedText("caf\u00e9").writeTo(writer);
+        writer.write("</p>");
+        writer.close();
+        assertTrue(Arrays.equals("<p>caf\u00e9</p>".getBytes(StandardCharsets.UTF_8), out.toByteArray()));
+
+    }
+
+    // --------------------------------------------------------- Private Methods
+    private void assertEncoded(String text) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8OutputStreamWriter writer = new Utf8OutputStreamWriter(out);
+        writer.write(text);
+        writer.close();
+        assertTrue(text, Arrays.equals(text.getBytes(StandardCharsets.UTF_8), out.toByteArray()));
+
+        out.reset();
+        writer = new Utf8OutputStreamWriter(out);
+        writer.write(text.toCharArray(), 0, text.length());
+        writer.close();
+        assertTrue(text, Arrays.equals(text.getBytes(StandardCharsets.UTF_8), out.toByteArray()));
+
+    }
+
+}
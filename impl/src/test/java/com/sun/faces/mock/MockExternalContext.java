@@ -79,7 +79,7 @@ public class MockExternalContext extends ExternalContext {
 
 
     public Object getSession(boolean create) {
-        throw new UnsupportedOperationException();
+        return ((HttpServletRequest) request).getSession(create);
     }
     
 
@@ -207,7 +207,7 @@ public class MockExternalContext extends ExternalContext {
     }
     
     public String getRequestCharacterEncoding() {
-        throw new UnsupportedOperationException();
+        return request.getCharacterEncoding();
     }
 
     
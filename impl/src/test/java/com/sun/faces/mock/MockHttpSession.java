@@ -43,6 +43,8 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
 import javax.servlet.http.HttpSessionContext;
 
 // Mock Object for HttpSession (Version 2.3)
@@ -118,7 +120,10 @@ public class MockHttpSession implements HttpSession {
 
     @Override
     public void invalidate() {
-        throw new UnsupportedOperationException();
+        Object[] names = attributes.keySet().toArray();
+        for (Object name : names) {
+            removeAttribute((String) name);
+        }
     }
 
     @Override
@@ -133,7 +138,7 @@ public class MockHttpSession implements HttpSession {
 
     @Override
     public void removeAttribute(String name) {
-        attributes.remove(name);
+        unbind(name, attributes.remove(name));
     }
 
     @Override
@@ -144,9 +149,23 @@ public class MockHttpSession implements HttpSession {
     @Override
     public void setAttribute(String name, Object value) {
         if (value == null) {
-            attributes.remove(name);
+            removeAttribute(name);
         } else {
-            attributes.put(name, value);
+            Object previous = attributes.put(name, value);
+            if (previous != value) {
+                if (value instanceof HttpSessionBindingListener) {
+                    ((HttpSessionBindingListener) value).valueBound(
+                          new HttpSessionBindingEvent(this, name, value));
+                }
+                unbind(name, previous);
+            }
+        }
+    }
+
+    private void unbind(String name, Object value) {
+        if (value instanceof HttpSessionBindingListener) {
+            ((HttpSessionBindingListener) value).valueUnbound(
+                  new HttpSessionBindingEvent(this, name, value));
         }
     }
 
@@ -53,6 +53,7 @@ import javax.faces.event.PhaseId;
 public class MockPartialViewContext extends PartialViewContext {
 
     private Map<Object, Object> attributes;
+    private boolean ajaxRequest;
 
     // ------------------------------------------------------------ Constructors
     public MockPartialViewContext() {
@@ -98,7 +99,11 @@ public class MockPartialViewContext extends PartialViewContext {
     }
 
     public boolean isAjaxRequest() {
-        return false;
+        return ajaxRequest;
+    }
+
+    public void setAjaxRequest(boolean ajaxRequest) {
+        this.ajaxRequest = ajaxRequest;
     }
 
     public boolean isPartialRequest() {
@@ -80,11 +80,24 @@ public class MockResultSet implements ResultSet {
      * @param beans Array of beans representing the content of the result set
      */
     public MockResultSet(Object beans[]) {
+        this(beans, ResultSet.TYPE_SCROLL_INSENSITIVE);
+    }
+
+    /**
+     * <p>
+     * Construct a new <code>MockResultSet</code> instance wrapping the
+     * specified array of beans, reporting the specified type.</p>
+     *
+     * @param beans Array of beans representing the content of the result set
+     * @param type The <code>ResultSet</code> type to report
+     */
+    public MockResultSet(Object beans[], int type) {
         if (beans == null) {
             throw new NullPointerException();
         }
         this.beans = beans;
         this.clazz = beans.getClass().getComponentType();
+        this.type = type;
     }
 
     // ------------------------------------------------------ Instance Variables
@@ -100,9 +113,15 @@ public class MockResultSet implements ResultSet {
     // Current row number (0 means "before the first row"
     private int row = 0;
 
+    // The ResultSet type we report
+    private int type;
+
     // ----------------------------------------------------- Implemented Methods
     @Override
     public boolean absolute(int row) throws SQLException {
+        if (type == ResultSet.TYPE_FORWARD_ONLY) {
+            throw new SQLException("Forward only ResultSet");
+        }
         if (row == 0) {
             this.row = 0;
             return (false);
@@ -178,7 +197,7 @@ public class MockResultSet implements ResultSet {
 
     @Override
     public int getType() throws SQLException {
-        return (ResultSet.TYPE_SCROLL_INSENSITIVE);
+        return (type);
     }
 
     @Override
@@ -587,7 +606,10 @@ public class MockResultSet implements ResultSet {
 
     @Override
     public boolean next() throws SQLException {
-        throw new UnsupportedOperationException();
+        if (row <= beans.length) {
+            row++;
+        }
+        return (row <= beans.length);
     }
 
     @Override
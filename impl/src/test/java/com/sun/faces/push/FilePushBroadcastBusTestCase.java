@@ -0,0 +1,220 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.push;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.faces.spi.PushBroadcast;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>Tests {@link FilePushBroadcastBus} with two nodes sharing a temporary
+ * directory.</p>
+ */
+public class FilePushBroadcastBusTestCase extends TestCase {
+
+    private static final long POLL_INTERVAL = 20;
+    private static final long TIMEOUT = 5000;
+
+    private Path directory;
+    private FilePushBroadcastBus node1;
+    private FilePushBroadcastBus node2;
+    private final List<PushBroadcast> received1 = new CopyOnWriteArrayList<>();
+    private final List<PushBroadcast> received2 = new CopyOnWriteArrayList<>();
+
+
+    public FilePushBroadcastBusTestCase() {
+        super("FilePushBroadcastBusTestCase");
+    }
+
+    public FilePushBroadcastBusTestCase(String name) {
+        super(name);
+    }
+
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("jsf-push-broadcast-test");
+        node1 = new FilePushBroadcastBus(directory, POLL_INTERVAL);
+        node2 = new FilePushBroadcastBus(directory, POLL_INTERVAL);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        node1.stop();
+        node2.stop();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+        super.tearDown();
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testDeliversToOtherNodeOnly() throws Exception {
+        node1.start(null, received1::add);
+        node2.start(null, received2::add);
+
+        node1.publish(broadcast("1", "message"));
+
+        awaitSize(received2, 1);
+        assertEquals("1", received2.get(0).getId());
+        assertEquals("message", received2.get(0).getMessage());
+        assertEquals("channel", received2.get(0).getChannel());
+
+        // the publishing node ignores its own broadcast
+        waitPolls();
+        assertTrue(received1.isEmpty());
+        assertEquals(1, received2.size());
+    }
+
+    public void testIgnoresBroadcastsPublishedBeforeStart() throws Exception {
+        node1.start(null, received1::add);
+        node1.publish(broadcast("1", "before"));
+
+        node2.start(null, received2::add);
+        node1.publish(broadcast("2", "after"));
+
+        awaitSize(received2, 1);
+        waitPolls();
+        assertEquals(1, received2.size());
+        assertEquals("2", received2.get(0).getId());
+    }
+
+    public void testDeliversOncePerId() throws Exception {
+        node2.start(null, received2::add);
+
+        write("copy1", broadcast("1", "message"));
+        awaitSize(received2, 1);
+
+        // e.g. a copy of the same broadcast
+        write("copy2", broadcast("1", "message"));
+        write("other", broadcast("2", "message"));
+        awaitSize(received2, 2);
+        waitPolls();
+
+        assertEquals(2, received2.size());
+        assertEquals("1", received2.get(0).getId());
+        assertEquals("2", received2.get(1).getId());
+    }
+
+    public void testDeserializesAllowedClassesOnly() throws Exception {
+        node2.start(null, received2::add);
+
+        Map<String, Serializable> data = new HashMap<>();
+        data.put("list", new ArrayList<>(Arrays.asList(1, 2L, 3.0)));
+        data.put("array", new String[] { "a", "b" });
+        data.put("bytes", new byte[] { 1, 2 });
+        write("disallowed", broadcast("1", new Payload()));
+        write("allowed", broadcast("2", (Serializable) data));
+
+        awaitSize(received2, 1);
+        waitPolls();
+
+        assertEquals(1, received2.size());
+        assertEquals("2", received2.get(0).getId());
+        Map<?, ?> message = (Map<?, ?>) received2.get(0).getMessage();
+        assertEquals(Arrays.asList(1, 2L, 3.0), message.get("list"));
+        assertTrue(Arrays.equals(new String[] { "a", "b" }, (Object[]) message.get("array")));
+        assertTrue(Arrays.equals(new byte[] { 1, 2 }, (byte[]) message.get("bytes")));
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static PushBroadcast broadcast(String id, Serializable message) {
+        return new PushBroadcast(id, "channel", null, true, Arrays.asList("user"), message);
+    }
+
+
+    /**
+     * Writes a broadcast the way another node would, without the bus.
+     */
+    private void write(String name, PushBroadcast broadcast) throws IOException {
+        Path temp = directory.resolve(name + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temp);
+             ObjectOutputStream objectOutput = new ObjectOutputStream(output)) {
+            objectOutput.writeObject(broadcast);
+        }
+        Files.move(temp, directory.resolve(name + ".push"));
+    }
+
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + TIMEOUT;
+        while (list.size() < size) {
+            if (System.currentTimeMillis() > timeout) {
+                fail("Expected " + size + " broadcasts, received " + list.size());
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+
+    private static void waitPolls() throws InterruptedException {
+        Thread.sleep(POLL_INTERVAL * 10);
+    }
+
+
+    private static final class Payload implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+}
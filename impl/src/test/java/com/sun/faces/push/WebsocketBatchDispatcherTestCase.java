@@ -0,0 +1,389 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.push;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import com.sun.faces.util.Json;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>Tests {@link WebsocketBatchDispatcher} with fake web socket sessions
+ * which complete their writes only when told to, and the batch handling of
+ * the <code>jsf.js</code> web socket client.</p>
+ */
+public class WebsocketBatchDispatcherTestCase extends TestCase {
+
+    private static final long WINDOW = 50;
+    private static final long TIMEOUT = 5000;
+    private static final String CHANNEL = "channel";
+
+    private WebsocketBatchDispatcher dispatcher;
+
+
+    public WebsocketBatchDispatcherTestCase() {
+        super("WebsocketBatchDispatcherTestCase");
+    }
+
+    public WebsocketBatchDispatcherTestCase(String name) {
+        super(name);
+    }
+
+
+    @Override
+    public void tearDown() throws Exception {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        super.tearDown();
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testWindowCoalescesMessages() throws Exception {
+        dispatcher = new WebsocketBatchDispatcher(WINDOW, 100);
+        FakeSession session = new FakeSession("1");
+        FakeSession other = new FakeSession("2");
+        List<Session> sessions = Arrays.asList(session.proxy, other.proxy);
+
+        Set<Future<Void>> first = send(sessions, "a");
+        Set<Future<Void>> second = send(sessions, "b");
+        Set<Future<Void>> third = send(sessions, "a");
+        assertEquals(2, first.size());
+        assertEquals(first, third);
+
+        Frame frame = session.nextFrame();
+        Frame otherFrame = other.nextFrame();
+        assertEquals("{\"batch\":[\"a\",\"b\"]}", frame.text);
+        assertEquals(frame.text, otherFrame.text);
+        assertNull(session.pollFrame());
+
+        assertPending(first);
+        frame.complete();
+        otherFrame.complete();
+        assertDone(first);
+        assertDone(second);
+    }
+
+    public void testSingleMessageEncodingIsUnchanged() throws Exception {
+        dispatcher = new WebsocketBatchDispatcher(WINDOW, 100);
+        FakeSession session = new FakeSession("1");
+        Map<String, Object> message = new HashMap<>();
+        message.put("key", "value");
+
+        Set<Future<Void>> futures = send(Collections.singletonList(session.proxy), message);
+        Frame frame = session.nextFrame();
+        assertEquals(Json.encode(message), frame.text);
+        assertEquals("{\"data\":{\"key\":\"value\"}}", frame.text);
+
+        frame.complete();
+        assertDone(futures);
+    }
+
+    public void testSeparateWindowsSendSeparateFrames() throws Exception {
+        dispatcher = new WebsocketBatchDispatcher(WINDOW, 100);
+        FakeSession session = new FakeSession("1");
+
+        send(Collections.singletonList(session.proxy), "a");
+        Frame first = session.nextFrame();
+        assertEquals(Json.encode("a"), first.text);
+        first.complete();
+
+        send(Collections.singletonList(session.proxy), "b");
+        Frame second = session.nextFrame();
+        assertEquals(Json.encode("b"), second.text);
+        second.complete();
+    }
+
+    public void testOneFrameInFlightPerSession() throws Exception {
+        dispatcher = new WebsocketBatchDispatcher(WINDOW, 100);
+        FakeSession session = new FakeSession("1");
+        List<Session> sessions = Collections.singletonList(session.proxy);
+
+        Set<Future<Void>> first = send(sessions, "a");
+        Frame frame = session.nextFrame();
+
+        Set<Future<Void>> second = send(sessions, "b");
+        Thread.sleep(WINDOW * 4);
+        Set<Future<Void>> third = send(sessions, "c");
+        Thread.sleep(WINDOW * 4);
+
+        // the frames for "b" and "c" wait until "a" is written
+        assertNull(session.pollFrame());
+        assertPending(second);
+
+        frame.complete();
+        assertDone(first);
+        Frame backlog = session.nextFrame();
+        assertEquals("{\"batch\":[\"b\",\"c\"]}", backlog.text);
+        assertPending(second);
+
+        backlog.complete();
+        assertDone(second);
+        assertDone(third);
+        assertEquals(1, session.maxInFlight.get());
+    }
+
+    public void testMaxPendingMessagesDropsOldest() throws Exception {
+        dispatcher = new WebsocketBatchDispatcher(WINDOW, 2);
+        FakeSession session = new FakeSession("1");
+        List<Session> sessions = Collections.singletonList(session.proxy);
+
+        send(sessions, "a");
+        Frame frame = session.nextFrame();
+
+        Set<Future<Void>> b = send(sessions, "b");
+        Set<Future<Void>> c = send(sessions, "c");
+        Set<Future<Void>> d = send(sessions, "d");
+
+        assertFailed(b);
+        assertPending(c);
+        assertPending(d);
+
+        frame.complete();
+        Frame backlog = session.nextFrame();
+        assertEquals("{\"batch\":[\"c\",\"d\"]}", backlog.text);
+        backlog.complete();
+        assertDone(c);
+        assertDone(d);
+    }
+
+    public void testFailedWriteFailsFutures() throws Exception {
+        dispatcher = new WebsocketBatchDispatcher(WINDOW, 100);
+        FakeSession session = new FakeSession("1");
+
+        Set<Future<Void>> futures = send(Collections.singletonList(session.proxy), "a");
+        session.nextFrame().fail(new IOException("broken pipe"));
+        assertFailed(futures);
+    }
+
+    public void testClosedSessionFailsBacklog() throws Exception {
+        dispatcher = new WebsocketBatchDispatcher(WINDOW, 100);
+        FakeSession session = new FakeSession("1");
+        List<Session> sessions = Collections.singletonList(session.proxy);
+
+        send(sessions, "a");
+        session.nextFrame();
+        Set<Future<Void>> backlog = send(sessions, "b");
+        Thread.sleep(WINDOW * 4);
+
+        session.open = false;
+        dispatcher.remove(session.proxy);
+        assertFailed(backlog);
+    }
+
+    public void testClosedSessionsGetNoFutures() throws Exception {
+        dispatcher = new WebsocketBatchDispatcher(WINDOW, 100);
+        FakeSession session = new FakeSession("1");
+        session.open = false;
+
+        assertTrue(send(Collections.singletonList(session.proxy), "a").isEmpty());
+    }
+
+    public void testClientHandlesBatches() throws Exception {
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("javascript");
+        if (engine == null) {
+            // no JavaScript engine available in this JRE
+            return;
+        }
+
+        String source = new String(Files.readAllBytes(Paths.get("src/main/js/jsf.js")),
+                                   StandardCharsets.UTF_8);
+        int start = source.indexOf("socket.onmessage = function(event) {");
+        assertTrue(start != -1);
+        int end = source.indexOf("\n                }\n", start);
+        assertTrue(end != -1);
+
+        engine.eval("var received = [];"
+                    + "var channel = 'channel';"
+                    + "var onmessage = function(message, channel, event) { received.push(message); };"
+                    + "var behaviors = { b: [ function() { received.push('behavior'); } ] };"
+                    + "var socket = {};"
+                    + source.substring(start, end) + "\n}");
+
+        engine.eval("socket.onmessage({ data: '" + Json.encode("a") + "' });");
+        assertEquals("a", engine.eval("received.join()"));
+
+        engine.eval("received = []; socket.onmessage({ data: '"
+                    + Json.encodeBatch(Arrays.asList("a", "b", "c")) + "' });");
+        assertEquals("a,b,behavior,c", engine.eval("received.join()"));
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private Set<Future<Void>> send(List<Session> sessions, Object message) {
+        return dispatcher.send(CHANNEL, sessions, message);
+    }
+
+    private static void assertPending(Set<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            assertFalse(future.isDone());
+        }
+    }
+
+    private static void assertDone(Set<Future<Void>> futures) throws Exception {
+        assertFalse(futures.isEmpty());
+        for (Future<Void> future : futures) {
+            assertNull(future.get(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static void assertFailed(Set<Future<Void>> futures) throws Exception {
+        assertFalse(futures.isEmpty());
+        for (Future<Void> future : futures) {
+            try {
+                future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+                fail("ExecutionException expected");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof IOException);
+            }
+        }
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * A web socket session whose asynchronous writes are completed by the test.
+     */
+    private static final class FakeSession {
+
+        private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final Session proxy;
+        private volatile boolean open = true;
+
+        FakeSession(final String id) {
+            final RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                  getClass().getClassLoader(),
+                  new Class<?>[] { RemoteEndpoint.Async.class },
+                  (proxy, method, args) -> {
+                      if (method.getName().equals("sendText") && args.length == 2) {
+                          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                          frames.add(new Frame(this, (String) args[0], (SendHandler) args[1]));
+                          return null;
+                      }
+                      throw new UnsupportedOperationException(method.getName());
+                  });
+            InvocationHandler handler = (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getId": return id;
+                    case "isOpen": return open;
+                    case "getAsyncRemote": return remote;
+                    case "hashCode": return System.identityHashCode(proxy);
+                    case "equals": return proxy == args[0];
+                    case "toString": return "FakeSession[" + id + "]";
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            };
+            proxy = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                     new Class<?>[] { Session.class },
+                                                     handler);
+        }
+
+        Frame nextFrame() throws InterruptedException {
+            Frame frame = frames.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertNotNull("no frame written", frame);
+            return frame;
+        }
+
+        Frame pollFrame() {
+            return frames.poll();
+        }
+
+    }
+
+
+    private static final class Frame {
+
+        private final FakeSession session;
+        private final String text;
+        private final SendHandler handler;
+
+        Frame(FakeSession session, String text, SendHandler handler) {
+            this.session = session;
+            this.text = text;
+            this.handler = handler;
+        }
+
+        void complete() {
+            session.inFlight.decrementAndGet();
+            handler.onResult(new SendResult());
+        }
+
+        void fail(Throwable cause) {
+            session.inFlight.decrementAndGet();
+            handler.onResult(new SendResult(cause));
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.renderkit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.faces.component.UIViewRoot;
+
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+
+/**
+ * <p>Tests that {@link ClientSideStateHelper} reports compressed state it
+ * can't read as expired.</p>
+ */
+public class ClientSideStateHelperTestCase extends JUnitFacesTestCaseBase {
+
+    private static final String VIEW_ID = "/test.xhtml";
+
+    private Map<String,String> params;
+
+
+    public ClientSideStateHelperTestCase() {
+        super("ClientSideStateHelperTestCase");
+    }
+
+    public ClientSideStateHelperTestCase(String name) {
+        super(name);
+    }
+
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        UIViewRoot root = new UIViewRoot();
+        root.setViewId(VIEW_ID);
+        facesContext.setViewRoot(root);
+        params = new HashMap<>();
+        externalContext.setRequestParameterMap(params);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testCompressedRoundTrip() throws Exception {
+        ClientSideStateHelper helper = new ClientSideStateHelper();
+        Object[] state = { "structure", createMap() };
+        StringBuilder capture = new StringBuilder();
+        helper.writeState(facesContext, state, capture);
+
+        params.put("javax.faces.ViewState", capture.toString());
+        Object[] restored = (Object[]) helper.getState(facesContext, VIEW_ID);
+        assertEquals(state[0], restored[0]);
+        assertEquals(state[1], restored[1]);
+    }
+
+    public void testGzipStateOfPreviousVersionExpiresView() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(bytes))) {
+            oos.writeObject("structure");
+            oos.writeObject(createMap());
+        }
+        params.put("javax.faces.ViewState", Base64.getEncoder().encodeToString(bytes.toByteArray()));
+
+        // null makes the state manager throw a ViewExpiredException
+        assertNull(new ClientSideStateHelper().getState(facesContext, VIEW_ID));
+    }
+
+    public void testOversizedStateExpiresView() throws Exception {
+        ViewStateCompressor unlimited = new ViewStateCompressor(9, 0, Integer.MAX_VALUE);
+        byte[] bomb = unlimited.compress(new byte[16 * 1024 * 1024]);
+        params.put("javax.faces.ViewState", Base64.getEncoder().encodeToString(bomb));
+
+        assertNull(new ClientSideStateHelper().getState(facesContext, VIEW_ID));
+    }
+
+    public void testConfiguredInflationRatio() throws Exception {
+        servletContext.addInitParameter("com.sun.faces.viewStateMaxInflationRatio", "2");
+        ClientSideStateHelper helper = new ClientSideStateHelper();
+        StringBuilder capture = new StringBuilder();
+        Map<String,Object> map = new HashMap<>();
+        map.put("value", new String(new char[64 * 1024]));
+        helper.writeState(facesContext, new Object[] { "structure", map }, capture);
+
+        params.put("javax.faces.ViewState", capture.toString());
+        assertNull(helper.getState(facesContext, VIEW_ID));
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static Map<String,Object> createMap() {
+        Map<String,Object> map = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            map.put("form:input" + i, "value" + i);
+        }
+        return map;
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.renderkit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class CompactSerializationProviderTest {
+
+    private static volatile boolean initialized;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Object> list = new ArrayList<>();
+        list.add("a");
+        list.add(null);
+        list.add(new BigDecimal("1.5"));
+        Map<String, Object> map = new HashMap<>();
+        map.put("form:input", new Object[] { TimeUnit.SECONDS, "value", Boolean.TRUE });
+        map.put("form:list", list);
+        Object[] state = { "/index.xhtml", map, -42, Long.MAX_VALUE, Boolean.FALSE, null, "value" };
+
+        CompactSerializationProvider provider = new CompactSerializationProvider();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = provider.createObjectOutputStream(baos);
+        oos.writeLong(1234L);
+        oos.writeObject(state);
+        oos.flush();
+        oos.close();
+
+        ObjectInputStream ois = provider.createObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(1234L, ois.readLong());
+        Object[] restored = (Object[]) ois.readObject();
+        ois.close();
+
+        assertEquals(state.length, restored.length);
+        assertEquals("/index.xhtml", restored[0]);
+        assertEquals(-42, restored[2]);
+        assertEquals(Long.MAX_VALUE, restored[3]);
+        assertEquals(Boolean.FALSE, restored[4]);
+        assertNull(restored[5]);
+        assertEquals("value", restored[6]);
+
+        Map<?, ?> restoredMap = (Map<?, ?>) restored[1];
+        assertTrue(restoredMap instanceof HashMap);
+        assertArrayEquals((Object[]) map.get("form:input"), (Object[]) restoredMap.get("form:input"));
+        assertSame(TimeUnit.SECONDS, ((Object[]) restoredMap.get("form:input"))[0]);
+        assertEquals(list, restoredMap.get("form:list"));
+        assertTrue(restoredMap.get("form:list") instanceof ArrayList);
+    }
+
+
+    @Test
+    public void testArrayLengthExceedingInput() throws Exception {
+        assertCorrupt(CompactObjectOutputStream.OBJECT_ARRAY, Integer.MAX_VALUE);
+        assertCorrupt(CompactObjectOutputStream.OBJECT_ARRAY, 3);
+    }
+
+    @Test
+    public void testMapSizeExceedingInput() throws Exception {
+        assertCorrupt(CompactObjectOutputStream.HASH_MAP, Integer.MAX_VALUE);
+        // two values take at least two bytes per entry
+        assertCorrupt(CompactObjectOutputStream.HASH_MAP, 2, CompactObjectOutputStream.NULL,
+                      CompactObjectOutputStream.NULL, CompactObjectOutputStream.NULL);
+    }
+
+    @Test
+    public void testListSizeExceedingInput() throws Exception {
+        assertCorrupt(CompactObjectOutputStream.ARRAY_LIST, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testCollectionsFillingInput() throws Exception {
+        Object[] array = (Object[]) read(stream(CompactObjectOutputStream.OBJECT_ARRAY, 2,
+                                                CompactObjectOutputStream.NULL,
+                                                CompactObjectOutputStream.TRUE));
+        assertArrayEquals(new Object[] { null, Boolean.TRUE }, array);
+
+        Map<?, ?> map = (Map<?, ?>) read(stream(CompactObjectOutputStream.HASH_MAP, 1,
+                                                 CompactObjectOutputStream.TRUE,
+                                                 CompactObjectOutputStream.FALSE));
+        assertEquals(Boolean.FALSE, map.get(Boolean.TRUE));
+    }
+
+    @Test
+    public void testEnumOfOtherClass() throws Exception {
+        byte[] stream = enumStream(Initialized.class.getName(), "VALUE");
+        try {
+            read(stream);
+            fail("InvalidClassException expected");
+        } catch (InvalidClassException expected) {
+            // expected
+        }
+        assertFalse(initialized);
+    }
+
+    @Test
+    public void testUnknownEnumConstant() throws Exception {
+        try {
+            read(enumStream(TimeUnit.class.getName(), "FORTNIGHTS"));
+            fail("InvalidObjectException expected");
+        } catch (InvalidObjectException expected) {
+            // expected
+        }
+        assertSame(TimeUnit.DAYS, read(enumStream(TimeUnit.class.getName(), "DAYS")));
+    }
+
+
+    private static void assertCorrupt(int tag, int length, int... content) throws Exception {
+        try {
+            read(stream(tag, length, content));
+            fail("StreamCorruptedException expected");
+        } catch (StreamCorruptedException expected) {
+            // expected
+        }
+    }
+
+    private static Object read(byte[] stream) throws Exception {
+        try (ObjectInputStream ois = new CompactObjectInputStream(new ByteArrayInputStream(stream))) {
+            return ois.readObject();
+        }
+    }
+
+    /**
+     * @return a stream holding a collection of the given <code>length</code>
+     *  followed by the given content
+     */
+    private static byte[] stream(int tag, int length, int... content) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(tag);
+        writeVarLong(body, length);
+        for (int b : content) {
+            body.write(b);
+        }
+        return wrap(body);
+    }
+
+    private static byte[] enumStream(String className, String name) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(CompactObjectOutputStream.ENUM);
+        writeString(body, className);
+        writeString(body, name);
+        return wrap(body);
+    }
+
+    private static byte[] wrap(ByteArrayOutputStream body) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(CompactObjectOutputStream.MAGIC);
+        stream.write(CompactObjectOutputStream.VERSION);
+        int length = body.size();
+        stream.write(length >>> 24);
+        stream.write(length >>> 16);
+        stream.write(length >>> 8);
+        stream.write(length);
+        stream.write(body.toByteArray(), 0, length);
+        return stream.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.write(CompactObjectOutputStream.STRING);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+
+    /**
+     * Records whether its static initializer ran.
+     */
+    public static final class Initialized {
+
+        public static final Object VALUE = new Object();
+
+        static {
+            initialized = true;
+        }
+
+    }
+
+}
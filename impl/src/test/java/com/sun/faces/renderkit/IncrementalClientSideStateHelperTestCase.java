@@ -0,0 +1,309 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.renderkit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.faces.component.UIViewRoot;
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+import com.sun.faces.mock.MockPartialViewContext;
+
+/**
+ * <p>Tests {@link IncrementalClientSideStateHelper} together with the
+ * <code>mergeIncrementalState</code> function of <code>jsf.js</code>.</p>
+ */
+public class IncrementalClientSideStateHelperTestCase extends JUnitFacesTestCaseBase {
+
+    private static final String VIEW_ID = "/test.xhtml";
+    private static final String STRUCTURE = "structure";
+
+    private IncrementalClientSideStateHelper helper;
+    private Map<String,String> params;
+
+
+    public IncrementalClientSideStateHelperTestCase() {
+        super("IncrementalClientSideStateHelperTestCase");
+    }
+
+    public IncrementalClientSideStateHelperTestCase(String name) {
+        super(name);
+    }
+
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        UIViewRoot root = new UIViewRoot();
+        root.setViewId(VIEW_ID);
+        facesContext.setViewRoot(root);
+        params = new HashMap<>();
+        externalContext.setRequestParameterMap(params);
+        helper = new IncrementalClientSideStateHelper();
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testRoundTrip() throws Exception {
+        Object[] state = createState(0);
+        String written = write(state, false);
+        assertTrue(written.startsWith(IncrementalClientSideStateHelper.STATE_PREFIX));
+        assertEquals(0, countReferences(written));
+
+        submit(written);
+        assertState(state, helper.getState(facesContext, VIEW_ID));
+    }
+
+    public void testAjaxResponseReferencesUnchangedChunks() throws Exception {
+        String full = write(createState(0), false);
+        int chunks = countChunks(full);
+        assertTrue(chunks > 1);
+
+        submit(full);
+        assertEquals(chunks, countReferences(write(createState(0), true)));
+
+        Object[] changed = createState(0);
+        change(changed, "form:input3");
+        String partial = write(changed, true);
+        assertEquals(chunks, countChunks(partial));
+        assertEquals(chunks - 1, countReferences(partial));
+    }
+
+    public void testMergedStateRestores() throws Exception {
+        ScriptEngine engine = getMergeEngine();
+        if (engine == null) {
+            // no JavaScript engine available in this JRE
+            return;
+        }
+
+        String full = write(createState(0), false);
+        submit(full);
+        Object[] changed = createState(0);
+        change(changed, "form:input7");
+        String partial = write(changed, true);
+        String merged = merge(engine, partial, full);
+        assertEquals(0, countReferences(merged));
+
+        submit(merged);
+        assertState(changed, helper.getState(facesContext, VIEW_ID));
+    }
+
+    public void testMergeKeepsOtherStates() throws Exception {
+        ScriptEngine engine = getMergeEngine();
+        if (engine == null) {
+            // no JavaScript engine available in this JRE
+            return;
+        }
+
+        assertEquals("1:-2:3", merge(engine, "1:-2:3", "I|abc|def=ghi"));
+        String full = write(createState(0), false);
+        assertEquals(full, merge(engine, full, null));
+    }
+
+    public void testUnmergedReferenceExpiresView() throws Exception {
+        String full = write(createState(0), false);
+        submit(full);
+        Object[] changed = createState(0);
+        change(changed, "form:input1");
+        submit(write(changed, true));
+
+        // null makes the state manager throw a ViewExpiredException
+        assertNull(helper.getState(facesContext, VIEW_ID));
+    }
+
+    public void testMissingChunkExpiresView() throws Exception {
+        List<String> segments = segments(write(createState(0), false));
+        segments.remove(segments.size() - 1);
+        submit(join(segments));
+
+        assertNull(helper.getState(facesContext, VIEW_ID));
+    }
+
+    public void testForeignChunkExpiresView() throws Exception {
+        List<String> segments = segments(write(createState(0), false));
+        String first = segments.get(2);
+        String second = segments.get(3);
+        segments.set(2, digest(first) + '=' + payload(second));
+        submit(join(segments));
+
+        assertNull(helper.getState(facesContext, VIEW_ID));
+    }
+
+    public void testRestoresFullState() throws Exception {
+        Object[] state = createState(0);
+        StringBuilder capture = new StringBuilder();
+        new ClientSideStateHelper().writeState(facesContext, state, capture);
+        assertFalse(capture.toString().startsWith(IncrementalClientSideStateHelper.STATE_PREFIX));
+
+        submit(capture.toString());
+        assertState(state, helper.getState(facesContext, VIEW_ID));
+    }
+
+    public void testNonAjaxPostbackAfterIncrementalResponses() throws Exception {
+        ScriptEngine engine = getMergeEngine();
+
+        Object[] state = createState(0);
+        String current = write(state, false);
+        for (int i = 0; i < 3; i++) {
+            submit(current);
+            state = createState(i + 1);
+            String partial = write(state, true);
+            current = ((engine != null)
+                       ? merge(engine, partial, current)
+                       : write(state, false));
+        }
+
+        submit(current);
+        assertState(state, helper.getState(facesContext, VIEW_ID));
+
+        // a non-Ajax response always carries all chunks
+        String full = write(state, false);
+        assertEquals(0, countReferences(full));
+        submit(full);
+        assertState(state, helper.getState(facesContext, VIEW_ID));
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static Object[] createState(int version) {
+        Map<String,Object> map = new HashMap<>();
+        for (int i = 0; i < 64; i++) {
+            map.put("form:input" + i, "value" + i + (i % 8 == 0 ? "-" + version : ""));
+        }
+        return new Object[] { STRUCTURE, map };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void change(Object[] state, String key) {
+        Map<String,Object> map = (Map<String,Object>) state[1];
+        map.put(key, map.get(key) + "-changed");
+    }
+
+    private String write(Object[] state, boolean ajax) throws IOException {
+        ((MockPartialViewContext) facesContext.getPartialViewContext()).setAjaxRequest(ajax);
+        StringBuilder capture = new StringBuilder();
+        helper.writeState(facesContext, state, capture);
+        return capture.toString();
+    }
+
+    private void submit(String state) {
+        params.put("javax.faces.ViewState", state);
+    }
+
+    private static void assertState(Object[] expected, Object restored) {
+        assertNotNull(restored);
+        Object[] actual = (Object[]) restored;
+        assertEquals(expected[0], actual[0]);
+        assertEquals(expected[1], actual[1]);
+    }
+
+    private static List<String> segments(String state) {
+        return new ArrayList<>(Arrays.asList(state.split("\\|", -1)));
+    }
+
+    private static String join(List<String> segments) {
+        return String.join("|", segments);
+    }
+
+    private static String digest(String segment) {
+        return segment.substring(0, segment.indexOf('='));
+    }
+
+    private static String payload(String segment) {
+        return segment.substring(segment.indexOf('=') + 1);
+    }
+
+    private static int countChunks(String state) {
+        return segments(state).size() - 2;
+    }
+
+    private static int countReferences(String state) {
+        int count = 0;
+        for (String segment : segments(state)) {
+            if (segment.endsWith("=*")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String merge(ScriptEngine engine, String state, String submitted)
+    throws Exception {
+        return (String) ((Invocable) engine).invokeFunction("mergeIncrementalState",
+                                                           state,
+                                                           submitted);
+    }
+
+    /**
+     * Evaluates the <code>mergeIncrementalState</code> function extracted from
+     * <code>jsf.js</code>, or returns <code>null</code> if the JRE doesn't
+     * provide a JavaScript engine.
+     */
+    private static ScriptEngine getMergeEngine() throws Exception {
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("javascript");
+        if (engine == null) {
+            return null;
+        }
+        String source = new String(Files.readAllBytes(Paths.get("src/main/js/jsf.js")),
+                                   StandardCharsets.UTF_8);
+        int start = source.indexOf("var mergeIncrementalState = function");
+        assertTrue(start != -1);
+        int end = source.indexOf("\n        };", start);
+        assertTrue(end != -1);
+        engine.eval(source.substring(start, end + "\n        };".length()));
+        return engine;
+    }
+
+}
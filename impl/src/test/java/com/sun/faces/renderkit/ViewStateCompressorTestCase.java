@@ -0,0 +1,210 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.renderkit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>Tests {@link ViewStateCompressor}.</p>
+ */
+public class ViewStateCompressorTestCase extends TestCase {
+
+    private static final int THRESHOLD = 256;
+    private static final int RATIO = 100;
+
+    private final ViewStateCompressor compressor = new ViewStateCompressor(6, THRESHOLD, RATIO);
+
+
+    public ViewStateCompressorTestCase() {
+        super("ViewStateCompressorTestCase");
+    }
+
+    public ViewStateCompressorTestCase(String name) {
+        super(name);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testSmallStateIsStored() throws Exception {
+        byte[] data = "small".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] compressed = compressor.compress(data);
+        assertEquals(0, compressed[0]);
+        assertEquals(data.length + 1, compressed.length);
+        assertTrue(Arrays.equals(data, compressor.decompress(compressed)));
+    }
+
+    public void testLargeStateIsDeflated() throws Exception {
+        byte[] data = createState(2000);
+        byte[] compressed = compressor.compress(data);
+        assertEquals(1, compressed[0]);
+        assertTrue(compressed.length < data.length / 4);
+        assertTrue(Arrays.equals(data, compressor.decompress(compressed)));
+    }
+
+    public void testRoundTripAllLevels() throws Exception {
+        byte[] data = createState(300);
+        for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+            ViewStateCompressor c = new ViewStateCompressor(level, 0, RATIO);
+            assertTrue(Arrays.equals(data, c.decompress(c.compress(data))));
+        }
+    }
+
+    public void testPresetDictionary() throws Exception {
+        byte[] data = ("javax.faces.component.UIViewRoot"
+                       + "javax.faces.component.UIComponent$PropertyKeys"
+                       + "javax.faces.component.html.HtmlForm"
+                       + "javax.faces.component.SavedState"
+                       + "javax.faces.component.html.HtmlInputText"
+                       + "j_idt1submittedValuevalidlocalValueSetvalue"
+                       + "java.util.ArrayListsizejava.util.HashMaploadFactorthreshold")
+              .getBytes(StandardCharsets.ISO_8859_1);
+        assertTrue(data.length >= THRESHOLD);
+        byte[] compressed = compressor.compress(data);
+
+        // the dictionary makes even the state of a tiny view compress well
+        assertTrue(compressed.length - 1 < deflate(data).length / 2);
+
+        // and is required to inflate the state
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, 1, compressed.length - 1);
+            assertEquals(0, inflater.inflate(new byte[data.length]));
+            assertTrue(inflater.needsDictionary());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public void testInflationLimit() throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        byte[] compressed = new ViewStateCompressor(9, 0, Integer.MAX_VALUE).compress(data);
+        assertTrue(compressed.length * RATIO < data.length);
+
+        try {
+            compressor.decompress(compressed);
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // expected
+        }
+        assertTrue(Arrays.equals(data,
+                                 new ViewStateCompressor(6, 0, data.length).decompress(compressed)));
+    }
+
+    public void testGzipState() {
+        byte[] gzip = { (byte) 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0 };
+        assertInvalid(gzip);
+    }
+
+    public void testInvalidState() throws Exception {
+        assertInvalid(new byte[0]);
+        assertInvalid(new byte[] { 7, 1, 2, 3 });
+        assertInvalid(new byte[] { 1, 1, 2, 3 });
+
+        byte[] compressed = compressor.compress(createState(100));
+        assertInvalid(Arrays.copyOf(compressed, compressed.length / 2));
+    }
+
+    public void testInvalidArguments() {
+        try {
+            new ViewStateCompressor(10, THRESHOLD, RATIO);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        try {
+            new ViewStateCompressor(6, THRESHOLD, 0);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void assertInvalid(byte[] data) {
+        try {
+            compressor.decompress(data);
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * @return bytes resembling the serialized state of <code>count</code> inputs
+     */
+    private static byte[] createState(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("javax.faces.component.SavedState")
+              .append("javax.faces.component.html.HtmlInputText")
+              .append("j_idt").append(i)
+              .append("submittedValuevalidlocalValueSet")
+              .append("value").append(i * 31);
+        }
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] deflate(byte[] data) throws DataFormatException {
+        Deflater deflater = new Deflater(6);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buf = new byte[data.length * 2 + 64];
+            int n = deflater.deflate(buf);
+            assertTrue(deflater.finished());
+            return Arrays.copyOf(buf, n);
+        } finally {
+            deflater.end();
+        }
+    }
+
+}
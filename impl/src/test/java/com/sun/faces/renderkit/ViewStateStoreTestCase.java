@@ -0,0 +1,274 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.renderkit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+import com.sun.faces.spi.ViewStateStore;
+
+/**
+ * <p>Tests the {@link ViewStateStore} implementations.</p>
+ */
+public class ViewStateStoreTestCase extends JUnitFacesTestCaseBase {
+
+    private static final int BLOCK_SIZE = ByteBufferViewStateStore.BLOCK_SIZE;
+
+
+    public ViewStateStoreTestCase() {
+        super("ViewStateStoreTestCase");
+    }
+
+    public ViewStateStoreTestCase(String name) {
+        super(name);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testSessionStoreSaveRestore() {
+        assertSaveRestore(new SessionViewStateStore());
+    }
+
+    public void testSessionStoreViewLimits() {
+        configureLimits();
+        assertViewLimits(new SessionViewStateStore());
+    }
+
+    public void testSessionStoreConcurrentAccess() throws Exception {
+        assertConcurrentAccess(new SessionViewStateStore());
+    }
+
+    public void testByteBufferStoreSaveRestore() {
+        assertSaveRestore(new ByteBufferViewStateStore());
+    }
+
+    public void testByteBufferStoreViewLimits() {
+        configureLimits();
+        assertViewLimits(new ByteBufferViewStateStore());
+    }
+
+    public void testByteBufferStoreConcurrentAccess() throws Exception {
+        // small enough to keep evicting while the threads are running
+        configure("com.sun.faces.viewStateStoreMaxBytes", String.valueOf(16 * BLOCK_SIZE));
+        assertConcurrentAccess(new ByteBufferViewStateStore());
+    }
+
+    public void testByteBufferStoreEvictsByByteBudget() {
+        configure("com.sun.faces.viewStateStoreMaxBytes", String.valueOf(4 * BLOCK_SIZE));
+        ByteBufferViewStateStore store = new ByteBufferViewStateStore();
+        String payload = payload(BLOCK_SIZE + BLOCK_SIZE / 2);
+
+        store.saveState(facesContext, "l1", "a1", "s1", payload);
+        store.saveState(facesContext, "l2", "a2", "s2", payload);
+        assertEquals(4 * BLOCK_SIZE, store.getUsedBytes());
+
+        // touch the first view, so the second one is the least recently used
+        assertEquals("s1", store.restoreState(facesContext, "l1", "a1")[0]);
+        store.saveState(facesContext, "l3", "a3", "s3", payload);
+
+        assertEquals(4 * BLOCK_SIZE, store.getUsedBytes());
+        assertEquals("s1", store.restoreState(facesContext, "l1", "a1")[0]);
+        assertTrue(Arrays.equals(new Object[2], store.restoreState(facesContext, "l2", "a2")));
+        assertEquals("s3", store.restoreState(facesContext, "l3", "a3")[0]);
+        assertEquals(payload, store.restoreState(facesContext, "l3", "a3")[1]);
+    }
+
+    public void testByteBufferStoreReusesBlocks() {
+        configure("com.sun.faces.numberOfViewsInSession", "1");
+        ByteBufferViewStateStore store = new ByteBufferViewStateStore();
+        String payload = payload(3 * BLOCK_SIZE);
+
+        store.saveState(facesContext, "l1", "a0", "s0", payload);
+        long used = store.getUsedBytes();
+        for (int i = 1; i < 50; i++) {
+            store.saveState(facesContext, "l1", "a" + i, "s" + i, payload);
+            assertEquals(used, store.getUsedBytes());
+        }
+        assertEquals("s49", store.restoreState(facesContext, "l1", "a49")[0]);
+    }
+
+    public void testByteBufferStoreSkipsOversizedView() {
+        configure("com.sun.faces.viewStateStoreMaxBytes", String.valueOf(BLOCK_SIZE));
+        ByteBufferViewStateStore store = new ByteBufferViewStateStore();
+
+        store.saveState(facesContext, "l1", "a1", "s1", payload(2 * BLOCK_SIZE));
+        assertEquals(0, store.getUsedBytes());
+        assertNull(store.restoreState(facesContext, "l1", "a1"));
+    }
+
+    public void testByteBufferStoreReleasesViewsOnSessionDestroy() {
+        ByteBufferViewStateStore store = new ByteBufferViewStateStore();
+
+        store.saveState(facesContext, "l1", "a1", "s1", payload(BLOCK_SIZE));
+        store.saveState(facesContext, "l2", "a2", "s2", payload(BLOCK_SIZE));
+        assertTrue(store.getUsedBytes() > 0);
+
+        session.invalidate();
+        assertEquals(0, store.getUsedBytes());
+        assertNull(store.restoreState(facesContext, "l1", "a1"));
+        assertNull(store.restoreState(facesContext, "l2", "a2"));
+    }
+
+    public void testByteBufferStoreKeysViewsBySessionAttribute() {
+        ByteBufferViewStateStore store = new ByteBufferViewStateStore();
+
+        // MockHttpSession.getId() throws, the views must not depend on the
+        // session id, which changes on HttpServletRequest.changeSessionId()
+        store.saveState(facesContext, "l1", "a1", "s1", "state");
+        assertEquals("s1", store.restoreState(facesContext, "l1", "a1")[0]);
+
+        // the marker of another store, e.g. of a previous deployment, is
+        // ignored and replaced
+        ByteBufferViewStateStore other = new ByteBufferViewStateStore();
+        assertNull(other.restoreState(facesContext, "l1", "a1"));
+        other.saveState(facesContext, "l1", "a1", "s2", "state");
+        assertEquals("s2", other.restoreState(facesContext, "l1", "a1")[0]);
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void configure(String name, String value) {
+        servletContext.addInitParameter(name, value);
+    }
+
+
+    private void configureLimits() {
+        configure("com.sun.faces.numberOfLogicalViews", "2");
+        configure("com.sun.faces.numberOfViewsInSession", "2");
+    }
+
+
+    private void assertSaveRestore(ViewStateStore store) {
+        Object structure = new Object[] { "root", new Object[] { "child" } };
+        Object state = new ArrayList<>(Arrays.asList("a", 1, Boolean.TRUE));
+
+        assertNull(store.restoreState(facesContext, "l1", "a1"));
+        store.saveState(facesContext, "l1", "a1", structure, state);
+
+        Object[] restored = store.restoreState(facesContext, "l1", "a1");
+        assertEquals(2, restored.length);
+        assertTrue(Arrays.deepEquals((Object[]) structure, (Object[]) restored[0]));
+        assertEquals(state, restored[1]);
+
+        // unknown actual view of a known logical view
+        assertTrue(Arrays.equals(new Object[2], store.restoreState(facesContext, "l1", "a2")));
+        // unknown logical view
+        assertNull(store.restoreState(facesContext, "l2", "a1"));
+
+        // the same ids replace the view
+        store.saveState(facesContext, "l1", "a1", "structure", "state");
+        assertEquals("structure", store.restoreState(facesContext, "l1", "a1")[0]);
+    }
+
+
+    private void assertViewLimits(ViewStateStore store) {
+        store.saveState(facesContext, "l1", "a1", "s1", "state");
+        store.saveState(facesContext, "l1", "a2", "s2", "state");
+        store.saveState(facesContext, "l1", "a3", "s3", "state");
+
+        assertTrue(Arrays.equals(new Object[2], store.restoreState(facesContext, "l1", "a1")));
+        assertEquals("s2", store.restoreState(facesContext, "l1", "a2")[0]);
+        assertEquals("s3", store.restoreState(facesContext, "l1", "a3")[0]);
+
+        store.saveState(facesContext, "l2", "a1", "s4", "state");
+        store.saveState(facesContext, "l3", "a1", "s5", "state");
+
+        assertNull(store.restoreState(facesContext, "l1", "a2"));
+        assertEquals("s4", store.restoreState(facesContext, "l2", "a1")[0]);
+        assertEquals("s5", store.restoreState(facesContext, "l3", "a1")[0]);
+    }
+
+
+    private void assertConcurrentAccess(final ViewStateStore store) throws Exception {
+        // create the session map and the session marker up front, the mock
+        // session isn't thread-safe
+        store.saveState(facesContext, "l0", "a0", "s0", "state");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final String logicalId = "l" + (t + 1);
+                final String payload = payload(BLOCK_SIZE + t * 100);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 200; i++) {
+                            String actualId = "a" + i;
+                            store.saveState(facesContext, logicalId, actualId, actualId, payload);
+                            Object[] restored = store.restoreState(facesContext, logicalId, actualId);
+                            // either evicted or intact, never mixed up
+                            if (restored != null && restored[0] != null) {
+                                assertEquals(actualId, restored[0]);
+                                assertEquals(payload, restored[1]);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private static String payload(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + (i % 26)));
+        }
+        return sb.toString();
+    }
+
+}
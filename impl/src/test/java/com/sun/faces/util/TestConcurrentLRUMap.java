@@ -0,0 +1,135 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+/**
+ * Validate LRU functionality of ConcurrentLRUMap
+ */
+public class TestConcurrentLRUMap extends TestCase {
+
+    // ------------------------------------------------------------ Constructors
+    public TestConcurrentLRUMap() {
+        super("TestConcurrentLRUMap");
+    }
+
+    public TestConcurrentLRUMap(String name) {
+        super(name);
+    }
+
+    // ------------------------------------------------------------ Test Methods
+    /**
+     * Ensure that ConcurrentLRUMap evicts the same entries as LRUMap.
+     */
+    public void testEvictionMatchesLRUMap() {
+
+        ConcurrentLRUMap<String, String> map = new ConcurrentLRUMap<String, String>(5);
+        LRUMap<String, String> control = new LRUMap<String, String>(5);
+        String[] keys = { "one", "two", "three", "four", "five", "three", "six", "one", "seven" };
+        for (String key : keys) {
+            map.put(key, key);
+            control.put(key, key);
+            assertEquals(control.keySet(), map.keySet());
+        }
+
+        // a read counts as a use
+        map.get("four");
+        control.get("four");
+        map.put("eight", "eight");
+        control.put("eight", "eight");
+        assertEquals(control.keySet(), map.keySet());
+        assertTrue(map.containsKey("four"));
+    }
+
+    /**
+     * Ensure that putIfAbsent keeps the existing value.
+     */
+    public void testPutIfAbsent() {
+
+        ConcurrentLRUMap<String, String> map = new ConcurrentLRUMap<String, String>(2);
+        assertNull(map.putIfAbsent("one", "1"));
+        assertEquals("1", map.putIfAbsent("one", "one"));
+        assertEquals("1", map.get("one"));
+        map.put("two", "2");
+        map.putIfAbsent("one", "one");
+        map.put("three", "3");
+        assertTrue(map.containsKey("one"));
+        assertFalse(map.containsKey("two"));
+    }
+
+    /**
+     * Ensure that the capacity is honored with concurrent writers.
+     */
+    public void testConcurrentPut() throws Exception {
+
+        final ConcurrentLRUMap<String, Integer> map = new ConcurrentLRUMap<String, Integer>(15);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int offset = t * 1000;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    for (int i = 0; i < 1000; i++) {
+                        map.put("key" + (offset + i), i);
+                        map.get("key" + (offset + i / 2));
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(map.size() <= 15);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.faces.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Validate the background revalidation of ExpiringConcurrentCache
+ */
+public class TestExpiringConcurrentCache extends TestCase {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final ConcurrentMap<String, Integer> versions = new ConcurrentHashMap<String, Integer>();
+    private volatile boolean failing;
+
+    private final ConcurrentCache.Factory<String, Integer> factory =
+          new ConcurrentCache.Factory<String, Integer>() {
+              @Override
+              public Integer newInstance(String key) throws Exception {
+                  if (failing) {
+                      throw new IllegalStateException(key);
+                  }
+                  created.incrementAndGet();
+                  Integer version = versions.get(key);
+                  return (version != null) ? version : 0;
+              }
+          };
+
+    private final ExpiringConcurrentCache.ExpiryChecker<String, Integer> checker =
+          new ExpiringConcurrentCache.ExpiryChecker<String, Integer>() {
+              @Override
+              public boolean isExpired(String key, Integer value) {
+                  Integer version = versions.get(key);
+                  return (version != null && version > value);
+              }
+          };
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    public TestExpiringConcurrentCache() {
+        super("TestExpiringConcurrentCache");
+    }
+
+    public TestExpiringConcurrentCache(String name) {
+        super(name);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    /**
+     * Ensure get() returns the current value until revalidate() replaced it.
+     */
+    public void testStaleWhileRevalidate() throws Exception {
+
+        ExpiringConcurrentCache<String, Integer> cache =
+              new ExpiringConcurrentCache<String, Integer>(factory, checker, false);
+        assertEquals(Integer.valueOf(0), cache.get("a"));
+
+        versions.put("a", 1);
+        assertEquals(Integer.valueOf(0), cache.get("a"));
+        assertTrue(cache.containsKey("a"));
+        assertEquals(1, created.get());
+
+        cache.revalidate();
+        assertEquals(2, created.get());
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+
+        // nothing expired, nothing created
+        cache.revalidate();
+        assertEquals(2, created.get());
+
+    }
+
+
+    /**
+     * Ensure a value that can't be recreated is removed, so get() reports the failure.
+     */
+    public void testRevalidateFailureRemovesValue() throws Exception {
+
+        ExpiringConcurrentCache<String, Integer> cache =
+              new ExpiringConcurrentCache<String, Integer>(factory, checker, false);
+        cache.get("a");
+        versions.put("a", 1);
+        failing = true;
+
+        cache.revalidate();
+        assertFalse(cache.containsKey("a"));
+        try {
+            cache.get("a");
+            fail();
+        } catch (java.util.concurrent.ExecutionException expected) {
+        }
+
+        failing = false;
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+
+    }
+
+
+    /**
+     * Ensure the least recently used objects are evicted once the maximum
+     * number of entries is exceeded, and the counters reflect it.
+     */
+    public void testMaxEntries() throws Exception {
+
+        ExpiringConcurrentCache<String, Integer> cache =
+              new ExpiringConcurrentCache<String, Integer>(factory, checker, true, 2, -1, null);
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("c"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.getLoadCount());
+        assertEquals(1, cache.getEvictionCount());
+
+    }
+
+
+    /**
+     * Ensure the total weight is tracked and bounded.
+     */
+    public void testMaxWeight() throws Exception {
+
+        ExpiringConcurrentCache.Weigher<String, Integer> weigher =
+              new ExpiringConcurrentCache.Weigher<String, Integer>() {
+                  @Override
+                  public long weigh(String key, Integer value) {
+                      return key.length();
+                  }
+              };
+        ExpiringConcurrentCache<String, Integer> cache =
+              new ExpiringConcurrentCache<String, Integer>(factory, checker, false, -1, 5, weigher);
+        cache.get("aa");
+        cache.get("bb");
+        assertEquals(4, cache.getWeight());
+
+        cache.get("ccc");
+        assertEquals(5, cache.getWeight());
+        assertFalse(cache.containsKey("aa"));
+
+        // a replaced object is weighed again
+        versions.put("ccc", 1);
+        cache.revalidate();
+        assertEquals(5, cache.getWeight());
+        assertEquals(Integer.valueOf(1), cache.get("ccc"));
+
+    }
+
+
+    /**
+     * Ensure the expiry is still checked on access by default.
+     */
+    public void testCheckOnAccess() throws Exception {
+
+        ExpiringConcurrentCache<String, Integer> cache =
+              new ExpiringConcurrentCache<String, Integer>(factory, checker);
+        cache.get("a");
+        versions.put("a", 1);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(2, created.get());
+
+    }
+
+}
@@ -155,6 +155,47 @@ public class TestHtmlUtils extends TestCase {
         }
     }
 
+    public void testEscaping() throws IOException {
+
+        char[] buffer = new char[1028];
+        char[] textBuffer = new char[128];
+
+        StringWriter writer = new StringWriter();
+        HtmlUtils.writeText(writer, false, false, buffer, "a<b>&\"c", textBuffer);
+        assertEquals("a&lt;b&gt;&amp;\"c", writer.toString());
+
+        writer = new StringWriter();
+        HtmlUtils.writeAttribute(writer, false, false, buffer, "a<b>\"c&{x}&d", textBuffer, true);
+        assertEquals("a&lt;b&gt;&quot;c&{x}&amp;d", writer.toString());
+
+        writer = new StringWriter();
+        HtmlUtils.writeAttribute(writer, false, false, buffer, "javascript:alert(1)", textBuffer, false);
+        assertEquals("", writer.toString());
+
+        // long values are written in runs rather than character by character
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("abc<");
+        }
+        writer = new StringWriter();
+        HtmlUtils.writeText(writer, false, false, buffer, sb.toString(), textBuffer);
+        assertEquals(sb.toString().replace("<", "&lt;"), writer.toString());
+    }
+
+    public void testDecimalReferences() throws IOException {
+
+        char[] buffer = new char[1028];
+        char[] textBuffer = new char[128];
+
+        StringWriter writer = new StringWriter();
+        HtmlUtils.writeText(writer, true, true, buffer, "\u03e8\u2710\u00e9", textBuffer);
+        assertEquals("&#1000;&#10000;&eacute;", writer.toString());
+
+        writer = new StringWriter();
+        HtmlUtils.writeAttribute(writer, true, false, buffer, "x\u0100y", textBuffer, true);
+        assertEquals("x&#256;y", writer.toString());
+    }
+
     private void testURLEncoding(String urlToEncode, String expectedHTML, String expectedXML)
             throws IOException {
         char[] textBuffer = new char[1024];
@@ -0,0 +1,90 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.faces.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>Tests the web socket message encoding of {@link Json}.</p>
+ */
+public class TestJson extends TestCase {
+
+    public void testEncode() {
+        assertEquals("{\"data\":\"message\"}", Json.encode("message"));
+        assertEquals("{\"data\":42}", Json.encode(42));
+        assertEquals("{\"data\":null}", Json.encode(null));
+        assertEquals("{\"data\":{\"key\":\"value\",\"number\":1}}", Json.encode(createMap()));
+    }
+
+    public void testEncodeBatch() {
+        assertEquals("{\"batch\":[\"message\",42,{\"key\":\"value\",\"number\":1}]}",
+                     Json.encodeBatch(Arrays.asList("message", 42, createMap())));
+        assertEquals("{\"batch\":[]}", Json.encodeBatch(Collections.emptyList()));
+    }
+
+    public void testBatchElementsEncodeLikeSingleMessages() {
+        List<Object> messages = Arrays.asList("message", 42, createMap(), Arrays.asList(1, 2));
+        StringBuilder expected = new StringBuilder("{\"batch\":[");
+        for (Object message : messages) {
+            String single = Json.encode(message);
+            expected.append(single, "{\"data\":".length(), single.length() - 1).append(',');
+        }
+        expected.setCharAt(expected.length() - 1, ']');
+        assertEquals(expected.append('}').toString(), Json.encodeBatch(messages));
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static Map<String, Object> createMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("key", "value");
+        map.put("number", 1);
+        return map;
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.faces.component;
+
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableClientIdIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.faces.FactoryFinder;
+import javax.faces.component.visit.VisitCallback;
+import javax.faces.component.visit.VisitContext;
+import javax.faces.component.visit.VisitResult;
+import javax.faces.context.FacesContext;
+import javax.faces.render.RenderKitFactory;
+
+import com.sun.faces.component.ClientIdIndex;
+import com.sun.faces.component.visit.PartialVisitContext;
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+import com.sun.faces.mock.MockRenderKit;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * <p>
+ * Unit tests for the client id index used by {@link UIViewRoot}.</p>
+ */
+public class ClientIdIndexTestCase extends JUnitFacesTestCaseBase {
+
+    // ------------------------------------------------------ Instance Variables
+    private UIViewRoot root;
+    private UIForm form;
+    private UIPanel panel;
+    private UIOutput output;
+    private UIData data;
+    private UIColumn column;
+
+    // ------------------------------------------------------------ Constructors
+    public ClientIdIndexTestCase(String name) {
+        super(name);
+    }
+
+    // ---------------------------------------------------- Overall Test Methods
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        WebConfiguration.getInstance(externalContext)
+              .overrideContextInitParameter(EnableClientIdIndex, true);
+
+        root = new UIViewRoot();
+        root.setViewId("/viewId");
+        root.setRenderKitId(RenderKitFactory.HTML_BASIC_RENDER_KIT);
+        facesContext.setViewRoot(root);
+        RenderKitFactory renderKitFactory = (RenderKitFactory) FactoryFinder.getFactory(FactoryFinder.RENDER_KIT_FACTORY);
+        try {
+            renderKitFactory.addRenderKit(RenderKitFactory.HTML_BASIC_RENDER_KIT,
+                    new MockRenderKit());
+        } catch (IllegalArgumentException e) {
+        }
+
+        form = new UIForm();
+        form.setId("form");
+        panel = new UIPanel();
+        panel.setId("panel");
+        output = new UIOutput();
+        output.setId("output");
+        data = new UIData();
+        data.setId("data");
+        column = new UIColumn();
+        column.setId("column");
+
+        root.getChildren().add(form);
+        form.getChildren().add(panel);
+        panel.getChildren().add(output);
+        form.getChildren().add(data);
+        data.getChildren().add(column);
+    }
+
+    public static Test suite() {
+        return (new TestSuite(ClientIdIndexTestCase.class));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        WebConfiguration.getInstance(externalContext)
+              .overrideContextInitParameter(EnableClientIdIndex, false);
+        root = null;
+        super.tearDown();
+    }
+
+    // ------------------------------------------------- Individual Test Methods
+    public void testInvokeOnComponent() {
+        final List<UIComponent> found = new ArrayList<>();
+        ContextCallback callback = new ContextCallback() {
+            @Override
+            public void invokeContextCallback(FacesContext context, UIComponent target) {
+                found.add(target);
+            }
+        };
+
+        ClientIdIndex index = ClientIdIndex.getIndex(facesContext, root);
+        assertNotNull(index);
+        assertTrue(index.invokeOnComponent(facesContext, "form:output", callback));
+        assertSame(output, found.get(0));
+
+        // children of iterating components are left to the tree walk
+        assertFalse(index.invokeOnComponent(facesContext, "form:data:column", callback));
+        assertTrue(root.invokeOnComponent(facesContext, "form:data:column", callback));
+        assertSame(column, found.get(1));
+
+        assertFalse(root.invokeOnComponent(facesContext, "form:missing", callback));
+    }
+
+    public void testRemovedComponentIsNotReturned() {
+        ClientIdIndex index = ClientIdIndex.getIndex(facesContext, root);
+        panel.getChildren().remove(output);
+
+        assertNull(index.findComponent(facesContext, "form:output", ':'));
+        assertNull(root.findComponent(":form:output"));
+    }
+
+    public void testFindComponent() {
+        assertSame(output, root.findComponent(":form:output"));
+        assertSame(output, root.findComponent("form:output"));
+        assertSame(column, root.findComponent(":form:data:column"));
+        assertNull(root.findComponent(":form:missing"));
+    }
+
+    public void testFindComponentWithoutPrependId() {
+        // the client id no longer matches the search expression, which must
+        // then be resolved through the tree
+        form.setPrependId(false);
+        ClientIdIndex index = ClientIdIndex.getIndex(facesContext, root);
+        assertEquals("output", output.getClientId(facesContext));
+        assertNull(index.findComponent(facesContext, "output", ':'));
+        assertSame(output, root.findComponent(":form:output"));
+    }
+
+    public void testVisitTree() {
+        UIOutput first = new UIOutput();
+        first.setId("first");
+        panel.getChildren().add(0, first);
+
+        final List<UIComponent> visited = new ArrayList<>();
+        VisitCallback callback = new VisitCallback() {
+            @Override
+            public VisitResult visit(VisitContext context, UIComponent target) {
+                visited.add(target);
+                return VisitResult.REJECT;
+            }
+        };
+
+        ClientIdIndex index = ClientIdIndex.getIndex(facesContext, root);
+        List<String> ids = Arrays.asList("form:output", "form:first");
+        assertTrue(index.visitTree(new PartialVisitContext(facesContext, ids), ids, callback));
+        assertEquals(Arrays.asList(first, output), visited);
+
+        // targets within other targets are reached through the outer one
+        visited.clear();
+        ids = Arrays.asList("form:output", "form:panel");
+        assertTrue(index.visitTree(new PartialVisitContext(facesContext, ids), ids, callback));
+        assertEquals(Arrays.<UIComponent>asList(panel), visited);
+
+        // nothing is visited unless every id can be resolved
+        visited.clear();
+        ids = Arrays.asList("form:output", "form:data:column");
+        assertFalse(index.visitTree(new PartialVisitContext(facesContext, ids), ids, callback));
+        assertTrue(visited.isEmpty());
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.faces.component;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ComponentStateMapTestCase extends TestCase {
+
+    enum Keys {
+        a, b, c, d, e, f, g, h, i, j, k, l, m, n, o, p
+    }
+
+    public void testBasicOperations() {
+        ComponentStateMap map = new ComponentStateMap();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(Keys.a));
+
+        assertNull(map.put(Keys.a, "1"));
+        assertEquals("1", map.put(Keys.a, "2"));
+        assertNull(map.put("attr", null));
+        assertNull(map.put(null, "nullKey"));
+
+        assertEquals(3, map.size());
+        assertEquals("2", map.get(Keys.a));
+        assertTrue(map.containsKey("attr"));
+        assertNull(map.get("attr"));
+        assertEquals("nullKey", map.get(null));
+
+        Map<Serializable, Object> expected = new HashMap<>();
+        expected.put(Keys.a, "2");
+        expected.put("attr", null);
+        expected.put(null, "nullKey");
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+
+        assertEquals("2", map.remove(Keys.a));
+        assertFalse(map.containsKey(Keys.a));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertTrue(map.entrySet().isEmpty());
+    }
+
+    public void testAgainstHashMap() {
+        Random random = new Random(42);
+        ComponentStateMap map = new ComponentStateMap();
+        Map<Serializable, Object> expected = new HashMap<>();
+        Keys[] keys = Keys.values();
+
+        for (int n = 0; n < 20000; n++) {
+            Serializable key = random.nextInt(4) == 0 ? "key" + random.nextInt(24) : keys[random.nextInt(keys.length)];
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    Integer value = random.nextInt(100);
+                    assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.get(key), map.get(key));
+        }
+
+        assertEquals(expected, map);
+    }
+
+    public void testEntrySetValue() {
+        ComponentStateMap map = new ComponentStateMap();
+        map.put(Keys.a, "1");
+        map.put(Keys.b, "2");
+        for (Map.Entry<Serializable, Object> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() + "!");
+        }
+
+        assertEquals("1!", map.get(Keys.a));
+        assertEquals("2!", map.get(Keys.b));
+    }
+
+}
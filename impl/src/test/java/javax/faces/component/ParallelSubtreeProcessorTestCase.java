@@ -0,0 +1,178 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.faces.component;
+
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableParallelSubtreeProcessing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.faces.application.FacesMessage;
+import javax.faces.context.FacesContext;
+import javax.faces.event.ActionEvent;
+import javax.faces.event.FacesEvent;
+import javax.faces.event.PhaseId;
+
+import com.sun.faces.component.ParallelSubtreeProcessor;
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * <p>
+ * Unit tests for the parallel processing of sibling subtrees.</p>
+ */
+public class ParallelSubtreeProcessorTestCase extends JUnitFacesTestCaseBase {
+
+    // ------------------------------------------------------ Instance Variables
+    private UIViewRoot root;
+    private UIPanel panel;
+    private final List<FacesEvent> broadcast =
+          Collections.synchronizedList(new ArrayList<FacesEvent>());
+
+    // ------------------------------------------------------------ Constructors
+    public ParallelSubtreeProcessorTestCase(String name) {
+        super(name);
+    }
+
+    // ---------------------------------------------------- Overall Test Methods
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        WebConfiguration.getInstance(externalContext)
+              .overrideContextInitParameter(EnableParallelSubtreeProcessing, true);
+
+        root = new UIViewRoot();
+        root.setViewId("/viewId");
+        facesContext.setViewRoot(root);
+        panel = new UIPanel();
+        panel.setId("panel");
+        root.getChildren().add(panel);
+        for (int i = 0; i < 8; i++) {
+            Subtree subtree = new Subtree();
+            subtree.setId("s" + i);
+            panel.getChildren().add(subtree);
+        }
+    }
+
+    public static Test suite() {
+        return (new TestSuite(ParallelSubtreeProcessorTestCase.class));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        WebConfiguration.getInstance(externalContext)
+              .overrideContextInitParameter(EnableParallelSubtreeProcessing, false);
+        root = null;
+        panel = null;
+        super.tearDown();
+    }
+
+    // ------------------------------------------------- Individual Test Methods
+    public void testNotMarked() {
+        assertFalse(ParallelSubtreeProcessor.processChildren(facesContext, panel, PhaseId.PROCESS_VALIDATIONS));
+    }
+
+    public void testMessagesAndEventsKeepChildOrder() {
+        panel.getAttributes().put(ParallelSubtreeProcessor.PARALLEL_SUBTREES_ATTRIBUTE, true);
+
+        panel.processValidators(facesContext);
+
+        List<FacesMessage> messages = facesContext.getMessageList();
+        assertEquals(8, messages.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("s" + i, messages.get(i).getSummary());
+            assertEquals(1, facesContext.getMessageList("s" + i).size());
+        }
+        assertTrue(facesContext.isValidationFailed());
+
+        root.processApplication(facesContext);
+        assertEquals(8, broadcast.size());
+        for (int i = 0; i < 8; i++) {
+            assertSame(panel.getChildren().get(i), broadcast.get(i).getComponent());
+        }
+    }
+
+    public void testFailureIsRethrown() {
+        panel.getAttributes().put(ParallelSubtreeProcessor.PARALLEL_SUBTREES_ATTRIBUTE, "true");
+        ((Subtree) panel.getChildren().get(3)).fail = true;
+
+        try {
+            panel.processValidators(facesContext);
+            fail("Expected the exception of the failed subtree");
+        } catch (IllegalStateException expected) {
+            assertEquals("s3", expected.getMessage());
+        }
+        // the children before the failed one have been applied
+        assertEquals(3, facesContext.getMessageList().size());
+    }
+
+    // --------------------------------------------------------- Private Classes
+    private class Subtree extends UIComponentBase {
+
+        private boolean fail;
+
+        @Override
+        public String getFamily() {
+            return "Subtree";
+        }
+
+        @Override
+        public void processValidators(FacesContext context) {
+            assertNotSame(facesContext, context);
+            assertSame(context, FacesContext.getCurrentInstance());
+            if (fail) {
+                throw new IllegalStateException(getId());
+            }
+            context.addMessage(getClientId(context), new FacesMessage(getId()));
+            context.validationFailed();
+            queueEvent(new ActionEvent(this));
+        }
+
+        @Override
+        public void broadcast(FacesEvent event) {
+            broadcast.add(event);
+        }
+    }
+
+}
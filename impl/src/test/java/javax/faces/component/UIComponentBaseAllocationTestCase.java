@@ -0,0 +1,292 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.faces.component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * <p>
+ * Measures the heap allocated by the children and facets containers of
+ * {@link UIComponentBase} and by the traversal of a 10k component tree, using
+ * the per thread allocation counter of the JVM.  The tests are skipped if the
+ * JVM doesn't support it.</p>
+ */
+public class UIComponentBaseAllocationTestCase extends JUnitFacesTestCaseBase {
+
+    private static final int COMPONENTS = 10000;
+    private static final int BRANCHES = 100;
+
+    // ------------------------------------------------------------ Constructors
+    public UIComponentBaseAllocationTestCase(String name) {
+        super(name);
+    }
+
+    // ---------------------------------------------------- Overall Test Methods
+    public static Test suite() {
+        return (new TestSuite(UIComponentBaseAllocationTestCase.class));
+    }
+
+    // ------------------------------------------------- Individual Test Methods
+    public void testEmptyChildrenHaveNoBackingArray() {
+        if (!isSupported()) {
+            return;
+        }
+
+        final Object[] holder = new Object[COMPONENTS];
+        long children = bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    UIPanel panel = new UIPanel();
+                    panel.getChildren();
+                    holder[i] = panel;
+                }
+            }
+        }) - bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    holder[i] = new UIPanel();
+                }
+            }
+        });
+        long preallocated = bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    holder[i] = new ArrayList<UIComponent>(6);
+                }
+            }
+        });
+
+        assertTrue("empty children list: " + children + " bytes, preallocated list: " + preallocated + " bytes",
+                   children < preallocated);
+    }
+
+    /**
+     * An empty facets map holds no <code>HashMap</code>, so it has to be
+     * smaller than an empty one.
+     */
+    public void testEmptyFacetsHaveNoTable() {
+        if (!isSupported()) {
+            return;
+        }
+
+        final Object[] holder = new Object[COMPONENTS];
+        long facets = bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    UIPanel panel = new UIPanel();
+                    panel.getFacets();
+                    holder[i] = panel;
+                }
+            }
+        }) - bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    holder[i] = new UIPanel();
+                }
+            }
+        });
+        long map = bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    holder[i] = new HashMap<String, UIComponent>(3, 1.0f);
+                }
+            }
+        });
+
+        assertTrue("empty facets map: " + facets + " bytes, empty HashMap: " + map + " bytes",
+                   facets < map);
+    }
+
+    /**
+     * A single facet is held in fields of the facets map, so it has to cost
+     * less than a <code>HashMap</code> holding one entry.
+     */
+    public void testSingleFacetHasNoTable() {
+        if (!isSupported()) {
+            return;
+        }
+
+        final Object[] holder = new Object[COMPONENTS];
+        final UIComponent[] facets = new UIComponent[COMPONENTS];
+        for (int i = 0; i < COMPONENTS; i++) {
+            facets[i] = new UIOutput();
+        }
+        long facet = bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    UIPanel panel = new UIPanel();
+                    panel.getFacets().put("header", facets[i]);
+                    holder[i] = panel;
+                }
+            }
+        }) - bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    holder[i] = new UIPanel();
+                }
+            }
+        });
+        long map = bytesPerComponent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < COMPONENTS; i++) {
+                    Map<String, UIComponent> map = new HashMap<>(3, 1.0f);
+                    map.put("header", facets[i]);
+                    holder[i] = map;
+                }
+            }
+        });
+
+        assertTrue("single facet map: " + facet + " bytes, HashMap with one entry: " + map + " bytes",
+                   facet < map);
+    }
+
+    public void testIndexedTraversalAllocatesLessThanIterators() {
+        if (!isSupported()) {
+            return;
+        }
+
+        final UIPanel indexed = createTree(false);
+        final UIPanel iterated = createTree(true);
+        Runnable indexedDecodes = new Runnable() {
+            @Override
+            public void run() {
+                indexed.processDecodes(facesContext);
+            }
+        };
+        Runnable iteratedDecodes = new Runnable() {
+            @Override
+            public void run() {
+                iterated.processDecodes(facesContext);
+            }
+        };
+
+        // let the JIT settle before measuring
+        for (int i = 0; i < 20; i++) {
+            indexedDecodes.run();
+            iteratedDecodes.run();
+        }
+        long indexedBytes = Long.MAX_VALUE;
+        long iteratedBytes = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            indexedBytes = Math.min(indexedBytes, bytesPerComponent(indexedDecodes));
+            iteratedBytes = Math.min(iteratedBytes, bytesPerComponent(iteratedDecodes));
+        }
+
+        assertTrue("indexed traversal: " + indexedBytes + " bytes, iterators: " + iteratedBytes + " bytes",
+                   indexedBytes <= iteratedBytes);
+    }
+
+    // --------------------------------------------------------- Private Methods
+    private static boolean isSupported() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean bean =
+              (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Runs the task and returns the bytes it allocated on the current thread,
+     * divided by {@link #COMPONENTS}.
+     */
+    private static long bytesPerComponent(Runnable task) {
+        com.sun.management.ThreadMXBean bean =
+              (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        task.run();
+        return (bean.getThreadAllocatedBytes(id) - before) / COMPONENTS;
+    }
+
+    /**
+     * Creates a tree of {@link #COMPONENTS} panels with a facet on every
+     * branch.  If <code>iterated</code> is true, the panels redefine
+     * {@link UIComponent#getFacetsAndChildren()}, which makes them use
+     * the iterators.
+     */
+    private static UIPanel createTree(boolean iterated) {
+        UIPanel root = createPanel(iterated);
+        int count = 1;
+        for (int i = 0; i < BRANCHES && count < COMPONENTS; i++) {
+            UIPanel branch = createPanel(iterated);
+            root.getChildren().add(branch);
+            branch.getFacets().put("header", createPanel(iterated));
+            count += 2;
+            for (int j = 0; j < BRANCHES && count < COMPONENTS; j++) {
+                branch.getChildren().add(createPanel(iterated));
+                count++;
+            }
+        }
+        return root;
+    }
+
+    private static UIPanel createPanel(boolean iterated) {
+        UIPanel panel = iterated ? new IteratedPanel() : new UIPanel();
+        panel.setRendererType(null);
+        return panel;
+    }
+
+    public static final class IteratedPanel extends UIPanel {
+
+        @Override
+        public Iterator<UIComponent> getFacetsAndChildren() {
+            return super.getFacetsAndChildren();
+        }
+    }
+}
@@ -1061,6 +1061,82 @@ public class UIComponentBaseTestCase extends UIComponentTestCase {
 
     }
 
+    public void testProcessFacetsAndChildrenOrder() {
+
+        List<UIComponent> processed = new ArrayList<UIComponent>();
+        UIPanel parent = new UIPanel();
+        parent.setRendererType(null);
+        for (int i = 0; i < 3; i++) {
+            parent.getChildren().add(new RecordingComponent(processed));
+            parent.getFacets().put("facet" + i, new RecordingComponent(processed));
+        }
+
+        parent.processDecodes(facesContext);
+        assertEquals(toList(parent.getFacetsAndChildren()), processed);
+
+        // facet changes are reflected in the next traversal
+        parent.getFacets().remove("facet1");
+        parent.getFacets().put("facet3", new RecordingComponent(processed));
+        parent.getChildren().remove(0);
+        processed.clear();
+        parent.processValidators(facesContext);
+        assertEquals(toList(parent.getFacetsAndChildren()), processed);
+        assertEquals(5, processed.size());
+
+        // subclasses redefining their facets and children are honored
+        UIPanel childrenOnly = new UIPanel() {
+            @Override
+            public Iterator<UIComponent> getFacetsAndChildren() {
+                return getChildren().iterator();
+            }
+        };
+        childrenOnly.setRendererType(null);
+        childrenOnly.getFacets().put("facet", new RecordingComponent(processed));
+        UIComponent child = new RecordingComponent(processed);
+        childrenOnly.getChildren().add(child);
+        processed.clear();
+        childrenOnly.processUpdates(facesContext);
+        assertEquals(Collections.singletonList(child), processed);
+
+    }
+
+    private static List<UIComponent> toList(Iterator<UIComponent> kids) {
+        List<UIComponent> result = new ArrayList<UIComponent>();
+        while (kids.hasNext()) {
+            result.add(kids.next());
+        }
+        return result;
+    }
+
+    public static final class RecordingComponent extends UIComponentBase {
+
+        private final List<UIComponent> processed;
+
+        public RecordingComponent(List<UIComponent> processed) {
+            this.processed = processed;
+        }
+
+        @Override
+        public String getFamily() {
+            return "Recording";
+        }
+
+        @Override
+        public void processDecodes(FacesContext context) {
+            processed.add(this);
+        }
+
+        @Override
+        public void processValidators(FacesContext context) {
+            processed.add(this);
+        }
+
+        @Override
+        public void processUpdates(FacesContext context) {
+            processed.add(this);
+        }
+    }
+
     private Object foundComponent = null;
 
     /**
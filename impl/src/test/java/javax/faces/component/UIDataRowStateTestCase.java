@@ -0,0 +1,132 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.faces.component;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.sun.faces.component.RowStateTable;
+import com.sun.faces.junit.JUnitFacesTestCaseBase;
+
+/**
+ * <p>Tests how {@link UIData} stores the per-row state of its descendants.</p>
+ */
+public class UIDataRowStateTestCase extends JUnitFacesTestCaseBase {
+
+    private UIData data;
+    private UIInput input;
+
+
+    public UIDataRowStateTestCase() {
+        super("UIDataRowStateTestCase");
+    }
+
+    public UIDataRowStateTestCase(String name) {
+        super(name);
+    }
+
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        UIViewRoot root = new UIViewRoot();
+        root.setViewId("/viewId");
+        facesContext.setViewRoot(root);
+
+        UIForm form = new UIForm();
+        form.setId("form");
+        data = new UIData();
+        data.setId("data");
+        data.setVar("item");
+        data.setValue(Arrays.asList("row0", "row1", "row2", "row3", "row4"));
+        UIColumn column = new UIColumn();
+        column.setId("column");
+        input = new UIInput();
+        input.setId("input");
+
+        root.getChildren().add(form);
+        form.getChildren().add(data);
+        data.getChildren().add(column);
+        column.getChildren().add(input);
+    }
+
+
+    // ------------------------------------------------------------ Test Methods
+
+
+    public void testRowsSharedInOneTable() {
+        for (int row : new int[] { 0, 2, 4 }) {
+            data.setRowIndex(row);
+            input.setSubmittedValue("value" + row);
+        }
+        data.setRowIndex(-1);
+
+        Map<String, Object> saved = getSaved();
+        assertEquals(1, saved.size());
+        assertTrue(saved.get("form:data") instanceof RowStateTable);
+
+        for (int row = 0; row < 5; row++) {
+            data.setRowIndex(row);
+            assertEquals((row % 2 == 0) ? "value" + row : null, input.getSubmittedValue());
+        }
+        data.setRowIndex(-1);
+        assertEquals(1, getSaved().size());
+    }
+
+    public void testUneditedRowsNotSaved() {
+        data.setRowIndex(1);
+        data.setRowIndex(3);
+        data.setRowIndex(-1);
+
+        Map<String, Object> saved = getSaved();
+        assertTrue(saved == null || saved.isEmpty());
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getSaved() {
+        return (Map<String, Object>) data.getStateHelper().get(UIData.PropertyKeys.saved);
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.faces.convert;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.easymock.EasyMock.replay;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIPanel;
+import javax.faces.context.FacesContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.easymock.PowerMock;
+
+/**
+ * The JUnit tests for the DateTimeConverter class.  The formatters are cached,
+ * so every result is compared with one of a formatter created for the call.
+ */
+public class DateTimeConverterTest {
+
+    private static final Locale[] LOCALES = {
+        Locale.US, Locale.GERMANY, Locale.JAPAN, new Locale("fr", "FR")
+    };
+
+    private static final TimeZone[] TIME_ZONES = {
+        TimeZone.getTimeZone("GMT"),
+        TimeZone.getTimeZone("America/New_York"),
+        TimeZone.getTimeZone("Asia/Tokyo")
+    };
+
+    private static final String[] STYLES = { "default", "short", "medium", "long", "full" };
+
+    private static final String[] PATTERNS = {
+        "dd.MM.yyyy HH:mm", "EEEE, d MMMM yyyy", "yyyy-MM-dd'T'HH:mm:ssXXX"
+    };
+
+    private static final Date DATE = new Date(1500000000000L);
+
+    private FacesContext facesContext;
+    private UIComponent component;
+
+
+    @Before
+    public void setUp() {
+        facesContext = PowerMock.createNiceMock(FacesContext.class);
+        replay(facesContext);
+        component = new UIPanel();
+    }
+
+    /**
+     * Test patterns with every locale and time zone.
+     */
+    @Test
+    public void testPatternLocaleTimeZone() throws Exception {
+        for (String pattern : PATTERNS) {
+            for (Locale locale : LOCALES) {
+                for (TimeZone zone : TIME_ZONES) {
+                    DateTimeConverter converter = createConverter(null, pattern, locale, zone);
+                    SimpleDateFormat expected = new SimpleDateFormat(pattern, locale);
+                    expected.setLenient(false);
+                    expected.setTimeZone(zone);
+                    assertConverts(converter, expected, DATE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test the legacy types with every style, locale and time zone.
+     */
+    @Test
+    public void testTypeStyleLocaleTimeZone() throws Exception {
+        for (Locale locale : LOCALES) {
+            for (TimeZone zone : TIME_ZONES) {
+                for (String dateStyle : STYLES) {
+                    DateTimeConverter converter = createConverter("date", null, locale, zone);
+                    converter.setDateStyle(dateStyle);
+                    assertConverts(converter,
+                                   configure(DateFormat.getDateInstance(getStyle(dateStyle), locale), zone),
+                                   DATE);
+
+                    for (String timeStyle : STYLES) {
+                        converter = createConverter("both", null, locale, zone);
+                        converter.setDateStyle(dateStyle);
+                        converter.setTimeStyle(timeStyle);
+                        assertConverts(converter,
+                                       configure(DateFormat.getDateTimeInstance(getStyle(dateStyle),
+                                                                                getStyle(timeStyle),
+                                                                                locale), zone),
+                                       DATE);
+                    }
+                }
+                for (String timeStyle : STYLES) {
+                    DateTimeConverter converter = createConverter("time", null, locale, zone);
+                    converter.setTimeStyle(timeStyle);
+                    assertConverts(converter,
+                                   configure(DateFormat.getTimeInstance(getStyle(timeStyle), locale), zone),
+                                   DATE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test the Java 8 date and time types with styles, patterns and locales.
+     */
+    @Test
+    public void testJavaTimeTypes() throws Exception {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 7, 14, 2, 40, 30);
+        ZoneId tokyo = ZoneId.of("Asia/Tokyo");
+        ZoneOffset offset = ZoneOffset.ofHoursMinutes(5, 30);
+
+        for (Locale locale : LOCALES) {
+            for (String style : STYLES) {
+                assertConverts(createJavaTimeConverter("localDate", null, style, null, locale),
+                               DateTimeFormatter.ofLocalizedDate(getFormatStyle(style)).withLocale(locale),
+                               dateTime.toLocalDate(), LocalDate::from);
+            }
+            for (String style : new String[] { "default", "short", "medium" }) {
+                assertConverts(createJavaTimeConverter("localTime", null, null, style, locale),
+                               DateTimeFormatter.ofLocalizedTime(getFormatStyle(style)).withLocale(locale),
+                               dateTime.toLocalTime(), LocalTime::from);
+                assertConverts(createJavaTimeConverter("localDateTime", null, style, style, locale),
+                               DateTimeFormatter.ofLocalizedDateTime(getFormatStyle(style),
+                                                                     getFormatStyle(style)).withLocale(locale),
+                               dateTime, LocalDateTime::from);
+            }
+
+            assertConverts(createJavaTimeConverter("localDate", "dd MMMM uuuu", null, null, locale),
+                           DateTimeFormatter.ofPattern("dd MMMM uuuu", locale),
+                           dateTime.toLocalDate(), LocalDate::from);
+            assertConverts(createJavaTimeConverter("localTime", "HH:mm:ss", null, null, locale),
+                           DateTimeFormatter.ofPattern("HH:mm:ss", locale),
+                           dateTime.toLocalTime(), LocalTime::from);
+            assertConverts(createJavaTimeConverter("localDateTime", "dd.MM.uuuu HH:mm", null, null, locale),
+                           DateTimeFormatter.ofPattern("dd.MM.uuuu HH:mm", locale),
+                           dateTime.withSecond(0), LocalDateTime::from);
+
+            assertConverts(createJavaTimeConverter("offsetTime", null, null, null, locale),
+                           DateTimeFormatter.ISO_OFFSET_TIME.withLocale(locale),
+                           OffsetTime.of(dateTime.toLocalTime(), offset), OffsetTime::from);
+            assertConverts(createJavaTimeConverter("offsetDateTime", null, null, null, locale),
+                           DateTimeFormatter.ISO_OFFSET_DATE_TIME.withLocale(locale),
+                           OffsetDateTime.of(dateTime, offset), OffsetDateTime::from);
+            assertConverts(createJavaTimeConverter("offsetDateTime", "uuuu-MM-dd HH:mm:ss xxx", null, null, locale),
+                           DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss xxx", locale),
+                           OffsetDateTime.of(dateTime, offset), OffsetDateTime::from);
+            assertConverts(createJavaTimeConverter("zonedDateTime", null, null, null, locale),
+                           DateTimeFormatter.ISO_ZONED_DATE_TIME.withLocale(locale),
+                           ZonedDateTime.of(dateTime, tokyo), ZonedDateTime::from);
+            assertConverts(createJavaTimeConverter("zonedDateTime", "uuuu-MM-dd HH:mm VV", null, null, locale),
+                           DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm VV", locale),
+                           ZonedDateTime.of(dateTime.withSecond(0), tokyo), ZonedDateTime::from);
+        }
+    }
+
+    /**
+     * Test that the time zone of a converter doesn't affect the Java 8 types,
+     * and doesn't leak into a converter sharing the cached formatter.
+     */
+    @Test
+    public void testTimeZoneIsPerConverter() throws Exception {
+        DateTimeConverter tokyo = createConverter(null, PATTERNS[0], Locale.US, TIME_ZONES[2]);
+        DateTimeConverter gmt = createConverter(null, PATTERNS[0], Locale.US, TIME_ZONES[0]);
+        assertEquals("14.07.2017 11:40", tokyo.getAsString(facesContext, component, DATE));
+        assertEquals("14.07.2017 02:40", gmt.getAsString(facesContext, component, DATE));
+        assertEquals("14.07.2017 11:40", tokyo.getAsString(facesContext, component, DATE));
+
+        LocalDate date = LocalDate.of(2017, 7, 14);
+        DateTimeConverter first = createJavaTimeConverter("localDate", "dd.MM.uuuu", null, null, Locale.US);
+        DateTimeConverter second = createJavaTimeConverter("localDate", "dd.MM.uuuu", null, null, Locale.US);
+        second.setTimeZone(TIME_ZONES[2]);
+        assertEquals("14.07.2017", first.getAsString(facesContext, component, date));
+        assertEquals("14.07.2017", second.getAsString(facesContext, component, date));
+    }
+
+    /**
+     * Test that concurrent conversions sharing the cached formatters don't
+     * share any mutable state.
+     */
+    @Test
+    public void testConcurrentConversions() throws Exception {
+        final List<Object[]> cases = new ArrayList<>();
+        for (Locale locale : LOCALES) {
+            for (TimeZone zone : TIME_ZONES) {
+                for (String pattern : PATTERNS) {
+                    SimpleDateFormat expected = new SimpleDateFormat(pattern, locale);
+                    expected.setTimeZone(zone);
+                    cases.add(new Object[] { pattern, locale, zone, expected.format(DATE) });
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int failures = 0;
+                        for (int i = 0; i < 2000; i++) {
+                            Object[] c = cases.get((i * 7 + offset) % cases.size());
+                            DateTimeConverter converter = createConverter(
+                                  null, (String) c[0], (Locale) c[1], (TimeZone) c[2]);
+                            String formatted = converter.getAsString(facesContext, component, DATE);
+                            if (!c[3].equals(formatted)) {
+                                failures++;
+                            }
+                            Date parsed = (Date) converter.getAsObject(facesContext, component, formatted);
+                            if (!formatted.equals(converter.getAsString(facesContext, component, parsed))) {
+                                failures++;
+                            }
+                        }
+                        return failures;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(0), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private void assertConverts(DateTimeConverter converter, DateFormat expected, Date value)
+    throws Exception {
+
+        String formatted = expected.format(value);
+        assertEquals(formatted, converter.getAsString(facesContext, component, value));
+        assertEquals(expected.parse(formatted), converter.getAsObject(facesContext, component, formatted));
+
+    }
+
+    private <T extends TemporalAccessor> void assertConverts(DateTimeConverter converter,
+                                                             DateTimeFormatter expected,
+                                                             T value,
+                                                             java.time.temporal.TemporalQuery<T> query) {
+
+        String formatted = expected.format(value);
+        assertEquals(formatted, converter.getAsString(facesContext, component, value));
+        Object parsed = converter.getAsObject(facesContext, component, formatted);
+        assertEquals(expected.parse(formatted, query), parsed);
+        assertTrue(parsed.getClass() == value.getClass());
+
+    }
+
+    private static DateTimeConverter createConverter(String type, String pattern, Locale locale, TimeZone zone) {
+        DateTimeConverter converter = new DateTimeConverter();
+        if (type != null) {
+            converter.setType(type);
+        }
+        converter.setPattern(pattern);
+        converter.setLocale(locale);
+        converter.setTimeZone(zone);
+        return converter;
+    }
+
+    private static DateTimeConverter createJavaTimeConverter(String type, String pattern,
+                                                             String dateStyle, String timeStyle,
+                                                             Locale locale) {
+        DateTimeConverter converter = new DateTimeConverter();
+        converter.setType(type);
+        converter.setPattern(pattern);
+        converter.setLocale(locale);
+        if (dateStyle != null) {
+            converter.setDateStyle(dateStyle);
+        }
+        if (timeStyle != null) {
+            converter.setTimeStyle(timeStyle);
+        }
+        return converter;
+    }
+
+    private static DateFormat configure(DateFormat format, TimeZone zone) {
+        format.setLenient(false);
+        format.setTimeZone(zone);
+        return format;
+    }
+
+    private static int getStyle(String name) {
+        switch (name) {
+            case "short":
+                return DateFormat.SHORT;
+            case "medium":
+                return DateFormat.MEDIUM;
+            case "long":
+                return DateFormat.LONG;
+            case "full":
+                return DateFormat.FULL;
+            default:
+                return DateFormat.DEFAULT;
+        }
+    }
+
+    private static FormatStyle getFormatStyle(String name) {
+        switch (name) {
+            case "short":
+                return FormatStyle.SHORT;
+            case "long":
+                return FormatStyle.LONG;
+            case "full":
+                return FormatStyle.FULL;
+            default:
+                return FormatStyle.MEDIUM;
+        }
+    }
+
+}
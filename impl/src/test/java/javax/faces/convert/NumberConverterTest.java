@@ -0,0 +1,252 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.faces.convert;
+
+import static junit.framework.Assert.assertEquals;
+import static org.easymock.EasyMock.replay;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIPanel;
+import javax.faces.context.FacesContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.easymock.PowerMock;
+
+/**
+ * The JUnit tests for the NumberConverter class.  The formats are cached,
+ * so every result is compared with one of a format created for the call.
+ */
+public class NumberConverterTest {
+
+    private static final Locale[] LOCALES = {
+        Locale.US, Locale.GERMANY, Locale.JAPAN, new Locale("fr", "FR")
+    };
+
+    private static final String[] TYPES = { "number", "currency", "percent" };
+
+    private static final String[] CURRENCY_CODES = { null, "USD", "EUR", "JPY" };
+
+    private static final String[] PATTERNS = { "#,##0.00", "0.###E0", "\u00a4 #,##0.00" };
+
+    private static final double VALUE = 1234567.891;
+
+    private FacesContext facesContext;
+    private UIComponent component;
+
+
+    @Before
+    public void setUp() {
+        facesContext = PowerMock.createNiceMock(FacesContext.class);
+        replay(facesContext);
+        component = new UIPanel();
+    }
+
+    /**
+     * Test every type with every locale and currency code.
+     */
+    @Test
+    public void testTypeLocaleCurrency() throws Exception {
+        for (String type : TYPES) {
+            for (Locale locale : LOCALES) {
+                for (String currencyCode : CURRENCY_CODES) {
+                    NumberConverter converter = createConverter(type, null, locale, currencyCode);
+                    NumberFormat expected = createFormat(type, null, locale);
+                    if ("currency".equals(type) && currencyCode != null) {
+                        expected.setCurrency(Currency.getInstance(currencyCode));
+                    }
+                    assertConverts(converter, expected, VALUE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test patterns with every locale and currency code.
+     */
+    @Test
+    public void testPatternLocaleCurrency() throws Exception {
+        for (String pattern : PATTERNS) {
+            for (Locale locale : LOCALES) {
+                for (String currencyCode : CURRENCY_CODES) {
+                    NumberConverter converter = createConverter(null, pattern, locale, currencyCode);
+                    NumberFormat expected = createFormat(null, pattern, locale);
+                    if (currencyCode != null) {
+                        expected.setCurrency(Currency.getInstance(currencyCode));
+                    }
+                    assertConverts(converter, expected, VALUE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the digit and grouping settings of one converter don't leak
+     * into a converter sharing the cached format.
+     */
+    @Test
+    public void testSettingsArePerConverter() throws Exception {
+        for (Locale locale : LOCALES) {
+            NumberConverter configured = createConverter("currency", null, locale, "JPY");
+            configured.setGroupingUsed(false);
+            configured.setMaxFractionDigits(0);
+            configured.setMinIntegerDigits(9);
+            NumberConverter plain = createConverter("currency", null, locale, null);
+
+            NumberFormat expected = createFormat("currency", null, locale);
+            expected.setCurrency(Currency.getInstance("JPY"));
+            expected.setGroupingUsed(false);
+            expected.setMinimumIntegerDigits(9);
+            expected.setMaximumFractionDigits(0);
+            NumberFormat expectedPlain = createFormat("currency", null, locale);
+
+            assertEquals(expected.format(VALUE), configured.getAsString(facesContext, component, VALUE));
+            assertEquals(expectedPlain.format(VALUE), plain.getAsString(facesContext, component, VALUE));
+            assertEquals(expected.format(VALUE), configured.getAsString(facesContext, component, VALUE));
+        }
+    }
+
+    /**
+     * Test that concurrent conversions sharing the cached formats don't
+     * share any mutable state.
+     */
+    @Test
+    public void testConcurrentConversions() throws Exception {
+        final List<Object[]> cases = new ArrayList<>();
+        for (String type : TYPES) {
+            for (Locale locale : LOCALES) {
+                for (String currencyCode : CURRENCY_CODES) {
+                    for (int maxFractionDigits = 0; maxFractionDigits < 3; maxFractionDigits++) {
+                        NumberFormat expected = createFormat(type, null, locale);
+                        if ("currency".equals(type) && currencyCode != null) {
+                            expected.setCurrency(Currency.getInstance(currencyCode));
+                        }
+                        expected.setGroupingUsed(maxFractionDigits != 1);
+                        expected.setMaximumFractionDigits(maxFractionDigits);
+                        cases.add(new Object[] {
+                            type, locale, currencyCode, maxFractionDigits, expected.format(VALUE)
+                        });
+                    }
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int failures = 0;
+                        for (int i = 0; i < 2000; i++) {
+                            Object[] c = cases.get((i * 7 + offset) % cases.size());
+                            NumberConverter converter = createConverter(
+                                  (String) c[0], null, (Locale) c[1], (String) c[2]);
+                            int maxFractionDigits = (Integer) c[3];
+                            converter.setGroupingUsed(maxFractionDigits != 1);
+                            converter.setMaxFractionDigits(maxFractionDigits);
+                            if (!c[4].equals(converter.getAsString(facesContext, component, VALUE))) {
+                                failures++;
+                            }
+                        }
+                        return failures;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(0), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private void assertConverts(NumberConverter converter, NumberFormat expected, double value)
+    throws Exception {
+
+        String formatted = expected.format(value);
+        assertEquals(formatted, converter.getAsString(facesContext, component, value));
+        assertEquals(expected.parse(formatted), converter.getAsObject(facesContext, component, formatted));
+
+    }
+
+    private static NumberConverter createConverter(String type, String pattern, Locale locale,
+                                                   String currencyCode) {
+        NumberConverter converter = new NumberConverter();
+        if (type != null) {
+            converter.setType(type);
+        }
+        converter.setPattern(pattern);
+        converter.setLocale(locale);
+        converter.setCurrencyCode(currencyCode);
+        return converter;
+    }
+
+    private static NumberFormat createFormat(String type, String pattern, Locale locale) {
+        NumberFormat format;
+        if (pattern != null) {
+            format = new DecimalFormat(pattern, new DecimalFormatSymbols(locale));
+        } else if ("currency".equals(type)) {
+            format = NumberFormat.getCurrencyInstance(locale);
+        } else if ("percent".equals(type)) {
+            format = NumberFormat.getPercentInstance(locale);
+        } else {
+            format = NumberFormat.getNumberInstance(locale);
+        }
+        format.setGroupingUsed(true);
+        return format;
+    }
+
+}
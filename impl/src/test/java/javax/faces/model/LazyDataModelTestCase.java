@@ -0,0 +1,254 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.faces.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * <p>
+ * Unit tests for {@link LazyDataModel}.</p>
+ */
+public class LazyDataModelTestCase extends TestCase {
+
+    // ------------------------------------------------------------ Constructors
+    /**
+     * Construct a new instance of this test case.
+     *
+     * @param name Name of the test case
+     */
+    public LazyDataModelTestCase(String name) {
+
+        super(name);
+
+    }
+
+    // ------------------------------------------------------ Instance Variables
+    // The model we are testing, backed by 25 rows "row0".."row24"
+    private RecordingModel model = null;
+
+    // ---------------------------------------------------- Overall Test Methods
+    // Set up instance variables required by this test case.
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        model = new RecordingModel(25);
+    }
+
+    // Return the tests included in this test case.
+    public static Test suite() {
+        return (new TestSuite(LazyDataModelTestCase.class));
+    }
+
+    // Tear down instance variables required by ths test case
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        model = null;
+    }
+
+    // ------------------------------------------------- Individual Test Methods
+    // Test that iterating all rows loads one window per page
+    public void testSequentialIteration() {
+        List<String> rows = new ArrayList<String>();
+        for (String row : model) {
+            rows.add(row);
+        }
+        assertEquals(25, rows.size());
+        assertEquals("row0", rows.get(0));
+        assertEquals("row24", rows.get(24));
+        assertEquals("/load(0,10,null)/load(10,10,null)/load(20,10,null)", model.trace.toString());
+        assertEquals(0, model.counts);
+    }
+
+    // Test that a page is loaded once and reused
+    public void testPageReused() {
+        model.setPageSize(5);
+        for (int pass = 0; pass < 3; pass++) {
+            for (int i = 15; i < 20; i++) {
+                model.setRowIndex(i);
+                assertTrue(model.isRowAvailable());
+                assertEquals("row" + i, model.getRowData());
+            }
+        }
+        assertEquals("/load(15,5,null)", model.trace.toString());
+    }
+
+    // Test row availability beyond the last row
+    public void testRowAvailable() {
+        model.setRowIndex(-1);
+        assertTrue(!model.isRowAvailable());
+        model.setRowIndex(24);
+        assertTrue(model.isRowAvailable());
+        model.setRowIndex(25);
+        assertTrue(!model.isRowAvailable());
+        try {
+            model.getRowData();
+            fail("Should have thrown NoRowAvailableException");
+        } catch (NoRowAvailableException e) {
+            // Expected result
+        }
+        assertEquals("/load(24,10,null)", model.trace.toString());
+
+        // Once counted, rows beyond the count are not loaded
+        assertEquals(25, model.getRowCount());
+        model.setRowIndex(40);
+        assertTrue(!model.isRowAvailable());
+        assertEquals("/load(24,10,null)", model.trace.toString());
+    }
+
+    // Test that the row count is counted once
+    public void testRowCount() {
+        assertEquals(25, model.getRowCount());
+        assertEquals(25, model.getRowCount());
+        assertEquals(1, model.counts);
+        model.reset();
+        assertEquals(25, model.getRowCount());
+        assertEquals(2, model.counts);
+    }
+
+    // Test that only the most recently used windows are kept
+    public void testWindowEviction() {
+        model.setRowIndex(0);
+        model.getRowData();
+        model.setRowIndex(10);
+        model.getRowData();
+        model.setRowIndex(0);
+        model.getRowData();
+        model.setRowIndex(20);
+        model.getRowData();
+        assertEquals("/load(0,10,null)/load(10,10,null)/load(20,10,null)", model.trace.toString());
+
+        // Window 10 was least recently used
+        model.setRowIndex(5);
+        model.getRowData();
+        model.setRowIndex(15);
+        model.getRowData();
+        assertEquals("/load(0,10,null)/load(10,10,null)/load(20,10,null)/load(15,10,null)", model.trace.toString());
+    }
+
+    // Test that changing the sort criteria or resetting discards loaded rows
+    public void testSortAndReset() {
+        model.setRowIndex(3);
+        assertEquals("row3", model.getRowData());
+        model.setSort("name");
+        model.setSort("name");
+        assertEquals("row3", model.getRowData());
+        model.reset();
+        assertEquals("row3", model.getRowData());
+        assertEquals("/load(3,10,null)/load(3,10,name)/load(3,10,name)", model.trace.toString());
+        assertEquals(3, model.getRowIndex());
+    }
+
+    // Test listener notification
+    public void testListeners() {
+        ListenerTestImpl listener = new ListenerTestImpl();
+        ListenerTestImpl.trace(null);
+        model.addDataModelListener(listener);
+        model.setRowIndex(0);
+        model.setRowIndex(0); // No movement so no event
+        model.setRowIndex(-1);
+        assertEquals("/0/-1", ListenerTestImpl.trace());
+    }
+
+    // Test the wrapped data
+    public void testWrapped() {
+        assertNull(model.getWrappedData());
+        model.setRowIndex(12);
+        assertEquals(10, ((List) model.getWrappedData()).size());
+        model.setWrappedData(null);
+        assertEquals("/load(12,10,null)", model.trace.toString());
+        try {
+            model.setWrappedData(new ArrayList<String>());
+            fail("Should have thrown UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected result
+        }
+    }
+
+    // Test invalid arguments
+    public void testInvalidArguments() {
+        try {
+            model.setPageSize(0);
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected result
+        }
+        try {
+            model.setRowIndex(-2);
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected result
+        }
+    }
+
+    // ---------------------------------------------------------- Nested Classes
+    private static class RecordingModel extends LazyDataModel<String> {
+
+        private final int total;
+        private final StringBuilder trace = new StringBuilder();
+        private int counts;
+
+        RecordingModel(int total) {
+            this.total = total;
+        }
+
+        @Override
+        protected List<String> load(int first, int pageSize, String sort) {
+            trace.append("/load(").append(first).append(',').append(pageSize).append(',').append(sort).append(')');
+            List<String> rows = new ArrayList<String>();
+            for (int i = first; i < Math.min(first + pageSize, total); i++) {
+                rows.add("row" + i);
+            }
+            return rows;
+        }
+
+        @Override
+        protected int count() {
+            counts++;
+            return total;
+        }
+    }
+}
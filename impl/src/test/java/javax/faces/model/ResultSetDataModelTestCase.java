@@ -39,12 +39,14 @@
  */
 package javax.faces.model;
 
+import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.faces.FacesException;
 import com.sun.faces.mock.MockResultSet;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
@@ -541,6 +543,88 @@ public class ResultSetDataModelTestCase extends DataModelTestCaseBase {
         assertTrue(!values.isEmpty());
     }
 
+    // Test sequential row access on a forward only ResultSet
+    public void testStreamingRows() throws Exception {
+        model = new ResultSetDataModel(new MockResultSet(beans, ResultSet.TYPE_FORWARD_ONLY));
+        for (int i = 0; i < beans.length; i++) {
+            model.setRowIndex(i);
+            assertTrue(model.isRowAvailable());
+            assertTrue(model.isRowAvailable());
+            Map map = (Map) model.getRowData();
+            assertEquals(beans[i].getStringProperty(),
+                    (String) map.get("stringProperty"));
+            assertEquals(beans[i].getStringProperty(),
+                    (String) map.get("stringPROPERTY"));
+            assertNull(map.get("foo"));
+        }
+        model.setRowIndex(beans.length);
+        assertTrue(!model.isRowAvailable());
+        model.setRowIndex(beans.length + 1);
+        assertTrue(!model.isRowAvailable());
+    }
+
+    // Test that a forward only ResultSet reuses a single row Map
+    public void testStreamingRowDataReused() throws Exception {
+        model = new ResultSetDataModel(new MockResultSet(beans, ResultSet.TYPE_FORWARD_ONLY));
+        model.setRowIndex(0);
+        Map first = (Map) model.getRowData();
+        assertEquals(beans[0].getIntProperty(),
+                ((Integer) first.get("intProperty")).intValue());
+        model.setRowIndex(2);
+        assertTrue(first == model.getRowData());
+        assertEquals(beans[2].getIntProperty(),
+                ((Integer) first.get("intProperty")).intValue());
+        assertTrue(first.containsKey("INTPROPERTY"));
+        assertTrue(first.keySet().contains("stringProperty"));
+        assertEquals(first.keySet().size(), first.size());
+        assertEquals(first.size(), first.entrySet().size());
+    }
+
+    // Test put() and unsupported operations on a forward only ResultSet row
+    public void testStreamingRowDataPut() throws Exception {
+        model = new ResultSetDataModel(new MockResultSet(beans, ResultSet.TYPE_FORWARD_ONLY));
+        model.setRowIndex(1);
+        Map map = (Map) model.getRowData();
+        map.put("stringPROPERTY", "This is string 1 modified");
+        assertEquals("This is string 1 modified", beans[1].getStringProperty());
+        assertEquals("This is string 1 modified",
+                (String) map.get("stringProperty"));
+        try {
+            map.put("foo", "bar");
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected result
+        }
+        try {
+            map.remove("stringProperty");
+            fail("Should have thrown UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected result
+        }
+        try {
+            map.clear();
+            fail("Should have thrown UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected result
+        }
+    }
+
+    // Test that a forward only ResultSet cannot move backwards
+    public void testStreamingBackwards() throws Exception {
+        model = new ResultSetDataModel(new MockResultSet(beans, ResultSet.TYPE_FORWARD_ONLY));
+        model.setRowIndex(3);
+        assertTrue(model.isRowAvailable());
+        try {
+            model.setRowIndex(1);
+            model.isRowAvailable();
+            fail("Should have thrown FacesException");
+        } catch (FacesException e) {
+            // Expected result
+        }
+        model.setRowIndex(-1);
+        assertTrue(!model.isRowAvailable());
+    }
+
     // ------------------------------------------------------- Protected Methods
     @Override
     protected BeanTestImpl data() throws Exception {